@@ -0,0 +1,53 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Chart bucketing: what the chart screen computes for the WEEK, MONTH and YEAR filters (the
+ * newest period of each, against the whole history) and for ALL, at 1, 5 and 20 years of data.
+ */
+@State(Scope.Benchmark)
+public class AggregationBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int years;
+
+    private WeightSeries series;
+    private ChartPeriod week;
+    private ChartPeriod month;
+    private ChartPeriod year;
+
+    @Setup
+    public void setUp() {
+        series = WeightSeries.from(BenchmarkData.entries(years));
+        week = ChartPeriod.containing(ChartPeriod.FilterType.WEEK, BenchmarkData.lastDay());
+        month = ChartPeriod.containing(ChartPeriod.FilterType.MONTH, BenchmarkData.lastDay());
+        year = ChartPeriod.containing(ChartPeriod.FilterType.YEAR, BenchmarkData.lastDay());
+    }
+
+    @Benchmark
+    public MetricResults weekPeriod() {
+        return week.aggregate(series);
+    }
+
+    @Benchmark
+    public MetricResults monthPeriod() {
+        return month.aggregate(series);
+    }
+
+    @Benchmark
+    public MetricResults yearPeriod() {
+        return year.aggregate(series);
+    }
+
+    // ALL: daily buckets over the whole history, then the roll-up the chart picks for a full zoom-out.
+    @Benchmark
+    public MetricResults allTime() {
+        AdaptiveAggregation adaptive = AdaptiveAggregation.of(series, series.day(0), series.day(series.size() - 1));
+        return adaptive.level(adaptive.granularityFor(adaptive.startDay(), adaptive.endDay(), 120));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Datasets shared by the benchmarks: one user's daily entries from SyntheticDataGenerator, with a
+ * fixed seed and a fixed end date, so every run (and every machine) measures the same data.
+ */
+final class BenchmarkData {
+
+    // The generated history ends the day before this, whatever today is.
+    static final LocalDate END = LocalDate.of(2026, 1, 1);
+
+    private static final long SEED = 20240101L;
+
+    private BenchmarkData() {
+    }
+
+    // `years` of daily entries ending on END - 1, oldest first.
+    static List<WeightData> entries(int years) {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(new SyntheticDataGenerator.Builder()
+                .seed(SEED)
+                .startDate(END.minusYears(years))
+                .years(years)
+                .build());
+        List<WeightData> entries = new ArrayList<>(years * 366);
+        for (Iterator<WeightData> it = generator.entries(0); it.hasNext(); ) {
+            entries.add(it.next());
+        }
+        return entries;
+    }
+
+    // The last day with data.
+    static LocalDate lastDay() {
+        return END.minusDays(1);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Date parsing and formatting as done for every entry read or saved: parsing stored
+ * "yyyy-MM-dd" dates and legacy "dd-MM-yyyy" ones into epoch days, normalizing, and formatting
+ * epoch days back. Each operation covers every day of 1, 5 or 20 years.
+ */
+@State(Scope.Benchmark)
+public class DateKeysBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int years;
+
+    private String[] storageDates;
+    private String[] legacyDates;
+    private long[] epochDays;
+
+    @Setup
+    public void setUp() {
+        List<WeightData> entries = BenchmarkData.entries(years);
+        storageDates = new String[entries.size()];
+        legacyDates = new String[entries.size()];
+        epochDays = new long[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            WeightData data = entries.get(i);
+            storageDates[i] = data.getDate();
+            legacyDates[i] = LocalDate.ofEpochDay(data.getEpochDay()).format(DateKeys.INPUT_FORMAT);
+            epochDays[i] = data.getEpochDay();
+        }
+    }
+
+    @Benchmark
+    public void parseStorageDates(Blackhole blackhole) {
+        for (String date : storageDates) blackhole.consume(DateKeys.parseEpochDay(date));
+    }
+
+    @Benchmark
+    public void parseLegacyDates(Blackhole blackhole) {
+        for (String date : legacyDates) blackhole.consume(DateKeys.parseEpochDay(date));
+    }
+
+    @Benchmark
+    public void normalizeLegacyDates(Blackhole blackhole) {
+        for (String date : legacyDates) blackhole.consume(DateKeys.normalize(date));
+    }
+
+    @Benchmark
+    public void formatEpochDays(Blackhole blackhole) {
+        for (long day : epochDays) blackhole.consume(DateKeys.toStorageDate(day));
+    }
+}
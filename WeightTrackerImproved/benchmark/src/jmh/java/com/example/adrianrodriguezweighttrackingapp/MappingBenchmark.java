@@ -0,0 +1,44 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Mapping loaded entries into the shapes the screens use: the columnar WeightSeries every chart
+ * load builds, and the newest-first history list. (Firestore's own document-to-WeightData mapping
+ * needs the Android SDK, so it isn't covered here.)
+ */
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int years;
+
+    private List<WeightData> entries;
+
+    @Setup
+    public void setUp() {
+        entries = BenchmarkData.entries(years);
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).setDocumentId(String.format(Locale.US, "doc-%06d", i));
+        }
+    }
+
+    @Benchmark
+    public WeightSeries toSeries() {
+        return WeightSeries.from(entries);
+    }
+
+    @Benchmark
+    public List<WeightData> toHistoryList() {
+        PagedWeightList list = new PagedWeightList();
+        list.applyNewestPage(entries, false);
+        return list.toList();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of recording into MetricsRegistry, which sits on the query, mapping, aggregation and bind
+ * paths. gc.alloc.rate.norm should stay at 0 bytes per operation.
+ */
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private final MetricsRegistry.Histogram histogram = MetricsRegistry.histogram("benchmark.histogram");
+    private final MetricsRegistry.Counter counter = MetricsRegistry.counter("benchmark.counter");
+
+    @Benchmark
+    public void recordLatency() {
+        histogram.recordSince(MetricsRegistry.now());
+    }
+
+    @Benchmark
+    public void incrementCounter() {
+        counter.increment();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * History row text: formatting every line of every row, as WeightRowModel does for each entry the
+ * list shows (without PrecomputedText, which needs a device). Covers 1, 5 or 20 years of rows.
+ */
+@State(Scope.Benchmark)
+public class RowTextBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int years;
+
+    private List<WeightData> entries;
+
+    @Setup
+    public void setUp() {
+        entries = BenchmarkData.entries(years);
+    }
+
+    @Benchmark
+    public void formatRows(Blackhole blackhole) {
+        for (WeightData data : entries) {
+            blackhole.consume(WeightRowText.date(data));
+            blackhole.consume(WeightRowText.weight(data));
+            blackhole.consume(WeightRowText.notes(data));
+            blackhole.consume(WeightRowText.sleep(data));
+            blackhole.consume(WeightRowText.steps(data));
+            blackhole.consume(WeightRowText.calories(data));
+            blackhole.consume(WeightRowText.mood(data));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One pass of the user journey the harness measures, against an {@link InMemoryWeightStore}:
+ * open the history list, scroll it, open the chart, cycle WEEK / MONTH / YEAR / ALL, page through
+ * periods, then save today's entry and refresh both screens.
+ *
+ * Each step does what the activity does with the data between the query and the views:
+ * DataDisplayActivity merges pages into a PagedWeightList and builds the row text, and
+ * WeightChartActivity aggregates the period (from monthly rollups for YEAR, adaptively for ALL)
+ * and turns the buckets into thinned chart points. View inflation and drawing are not included,
+ * and every chart load is a cache miss, so the numbers are the worst case for the data path.
+ */
+final class AppScenario {
+
+    /**
+     * Runs a step and records its latency and allocation.
+     */
+    interface StepTimer {
+        void time(String step, Runnable body);
+    }
+
+    // Same values as DataDisplayActivity.PAGE_SIZE and WeightChartActivity.VISIBLE_POINT_BUDGET.
+    private static final int PAGE_SIZE = 50;
+    private static final int VISIBLE_POINT_BUDGET = 120;
+
+    // Older pages loaded per pass, i.e. how far the user scrolls down the history.
+    private static final int SCROLL_PAGES = 10;
+
+    // Periods stepped back and then forward again, per filter.
+    private static final int NAVIGATION_STEPS = 2;
+
+    private static final ChartPeriod.FilterType[] FILTER_CYCLE = {
+            ChartPeriod.FilterType.MONTH, ChartPeriod.FilterType.YEAR, ChartPeriod.FilterType.WEEK};
+
+    private final InMemoryWeightStore store;
+    private final String userId;
+    private final LocalDate today;
+
+    // Keeps results reachable so the JIT can't drop the work that produced them.
+    private Object sink;
+
+    AppScenario(InMemoryWeightStore store, String userId, LocalDate today) {
+        this.store = store;
+        this.userId = userId;
+        this.today = today;
+    }
+
+    void run(StepTimer timer) {
+        PagedWeightList history = new PagedWeightList();
+        timer.time("openList", () -> sink = loadNewestPage(history));
+        for (int i = 0; i < SCROLL_PAGES && !history.isEndReached(); i++) {
+            timer.time("scrollList", () -> sink = loadOlderPage(history));
+        }
+
+        ChartPeriod[] current = {ChartPeriod.containing(ChartPeriod.FilterType.WEEK, today)};
+        timer.time("openChart", () -> sink = showPeriod(current[0]));
+        for (ChartPeriod.FilterType filter : FILTER_CYCLE) {
+            current[0] = ChartPeriod.containing(filter, today);
+            timer.time("switchFilter", () -> sink = showPeriod(current[0]));
+            for (int direction : new int[]{-1, 1}) {
+                for (int i = 0; i < NAVIGATION_STEPS; i++) {
+                    current[0] = current[0].shift(direction);
+                    timer.time("navigatePeriod", () -> sink = showPeriod(current[0]));
+                }
+            }
+        }
+        timer.time("allTime", () -> sink = showPeriod(ChartPeriod.allTime()));
+
+        timer.time("addEntry", () -> {
+            WeightData entry = new WeightData(today.format(DateKeys.STORAGE_FORMAT), 172.4, "Scenario entry",
+                    7.5, 8000, "Happy", 2100);
+            // Keyed by day like WeightRepository.addEntry, so every pass replaces today's entry.
+            entry.setDocumentId(DateKeys.entryId(entry.getEpochDay()));
+            store.addEntry(userId, entry);
+            // Both screens listen to the collection and refresh what they show.
+            loadNewestPage(history);
+            sink = showPeriod(current[0]);
+        });
+    }
+
+    // DataDisplayActivity: the live newest page.
+    private int loadNewestPage(PagedWeightList history) {
+        List<WeightData> page = store.page(userId, null, PAGE_SIZE);
+        history.applyNewestPage(page, page.size() == PAGE_SIZE);
+        return rowText(page);
+    }
+
+    // DataDisplayActivity: the next older page, requested when the list nears its end.
+    private int loadOlderPage(PagedWeightList history) {
+        PagedWeightList.EntryKey oldest = history.oldestKey();
+        if (oldest == null) return 0;
+        List<WeightData> page = store.page(userId, oldest, PAGE_SIZE);
+        history.applyOlderPage(oldest, page, page.size() == PAGE_SIZE);
+        return rowText(page);
+    }
+
+    // WeightRowModel.create without the PrecomputedText step, which needs the Android framework.
+    private static int rowText(List<WeightData> page) {
+        int length = 0;
+        for (WeightData data : page) {
+            length += WeightRowText.date(data).length() + WeightRowText.weight(data).length();
+            length += lengthOf(WeightRowText.notes(data)) + lengthOf(WeightRowText.sleep(data))
+                    + lengthOf(WeightRowText.steps(data)) + lengthOf(WeightRowText.calories(data))
+                    + lengthOf(WeightRowText.mood(data));
+        }
+        return length;
+    }
+
+    private static int lengthOf(String text) {
+        return text != null ? text.length() : 0;
+    }
+
+    // WeightChartActivity.fetchPeriod and the display method for the period's type.
+    private float[] showPeriod(ChartPeriod period) {
+        if (period.type == ChartPeriod.FilterType.YEAR) {
+            List<WeightRollup> rollups = store.monthlyRollups(userId, period.start.getYear());
+            return plot(period.aggregateRollups(rollups).weight(), Integer.MAX_VALUE);
+        }
+        WeightSeries series = store.series(userId, period.startDay(), period.endDay());
+        if (period.type != ChartPeriod.FilterType.ALL) {
+            return plot(period.aggregate(series).weight(), Integer.MAX_VALUE);
+        }
+        if (series.isEmpty()) return new float[0];
+        AdaptiveAggregation aggregation = AdaptiveAggregation.of(series, series.day(0), series.day(series.size() - 1));
+        MetricResults level = aggregation.level(aggregation.granularityFor(
+                aggregation.startDay(), aggregation.endDay(), VISIBLE_POINT_BUDGET));
+        return plot(level.weight(), VISIBLE_POINT_BUDGET);
+    }
+
+    // WeightChartActivity.entriesFor: the buckets with a value, thinned to maxPoints with LTTB.
+    private static float[] plot(AggregateResult result, int maxPoints) {
+        int count = 0;
+        float[] x = new float[result.bucketCount()];
+        float[] y = new float[result.bucketCount()];
+        for (int b = 0; b < result.bucketCount(); b++) {
+            if (!result.hasValue(b)) continue;
+            x[count] = b;
+            y[count] = result.value(b);
+            count++;
+        }
+        int[] kept = Downsampler.largestTriangleThreeBuckets(x, y, count, Math.min(count, maxPoints));
+        float[] points = new float[kept.length * 2];
+        for (int i = 0; i < kept.length; i++) {
+            points[2 * i] = x[kept[i]];
+            points[2 * i + 1] = y[kept[i]];
+        }
+        return points;
+    }
+}
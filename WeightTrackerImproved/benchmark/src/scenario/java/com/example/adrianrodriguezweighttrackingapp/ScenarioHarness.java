@@ -0,0 +1,157 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * End-to-end scenario benchmark: runs {@link AppScenario} against an {@link InMemoryWeightStore}
+ * filled by {@link SyntheticDataGenerator}, at several history lengths, and reports p50/p99
+ * latency and allocation for every step. Any step over its budget fails the run (exit code 1),
+ * which fails the Gradle build.
+ *
+ * Budgets are read from a properties file, one pair per step, and apply at every data size:
+ *
+ *   openList.p99Ms=5        p99 latency, in milliseconds
+ *   openList.allocKb=256    median allocation per run of the step, in KB
+ *
+ * Arguments: [years,...] [warmup passes] [measured passes] [budgets file] [report file]
+ */
+public final class ScenarioHarness {
+
+    private static final long SEED = 20240101L;
+    private static final LocalDate END = LocalDate.of(2026, 1, 1);
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int[] yearsList = parseYears(args.length > 0 ? args[0] : "1,5,20");
+        int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int passes = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        Properties budgets = loadBudgets(args.length > 3 ? Paths.get(args[3]) : null);
+        Path report = args.length > 4 ? Paths.get(args[4]) : null;
+
+        ScenarioHarness harness = new ScenarioHarness();
+        List<StepStats> results = new ArrayList<>();
+        for (int years : yearsList) {
+            results.addAll(harness.run(years, warmup, passes));
+        }
+
+        List<String> failures = checkBudgets(results, budgets);
+        print(results, budgets);
+        if (report != null) writeReport(report, results);
+
+        if (!failures.isEmpty()) {
+            System.out.println();
+            System.out.println("Over budget:");
+            for (String failure : failures) System.out.println("  " + failure);
+            System.exit(1);
+        }
+    }
+
+    // Runs the warm-up passes unrecorded, then the measured ones, on a fresh store of `years` of data.
+    private List<StepStats> run(int years, int warmup, int passes) throws Exception {
+        InMemoryWeightStore store = new InMemoryWeightStore();
+        SyntheticDataGenerator.Stats generated = new SyntheticDataGenerator(new SyntheticDataGenerator.Builder()
+                .seed(SEED)
+                .startDate(END.minusYears(years))
+                .years(years)
+                .build()).run(store);
+        String userId = store.userIds().iterator().next();
+        System.out.println(String.format(Locale.US, "%d years: %d entries", years, generated.entries));
+
+        AppScenario scenario = new AppScenario(store, userId, END.minusDays(1));
+        for (int i = 0; i < warmup; i++) {
+            scenario.run((step, body) -> body.run());
+        }
+
+        Map<String, StepStats> byStep = new LinkedHashMap<>();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < passes; i++) {
+            scenario.run((step, body) -> {
+                long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+                long start = System.nanoTime();
+                body.run();
+                long elapsed = System.nanoTime() - start;
+                long allocated = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+                StepStats stats = byStep.get(step);
+                if (stats == null) {
+                    stats = new StepStats(step, years);
+                    byStep.put(step, stats);
+                }
+                stats.add(elapsed, allocated);
+            });
+        }
+        return new ArrayList<>(byStep.values());
+    }
+
+    private static List<String> checkBudgets(List<StepStats> results, Properties budgets) {
+        List<String> failures = new ArrayList<>();
+        for (StepStats stats : results) {
+            String p99Budget = budgets.getProperty(stats.step + ".p99Ms");
+            if (p99Budget != null && stats.p99Ms() > Double.parseDouble(p99Budget)) {
+                failures.add(String.format(Locale.US, "%s at %d years: p99 %.3f ms > %s ms",
+                        stats.step, stats.years, stats.p99Ms(), p99Budget));
+            }
+            String allocBudget = budgets.getProperty(stats.step + ".allocKb");
+            if (allocBudget != null && stats.p50AllocKb() > Double.parseDouble(allocBudget)) {
+                failures.add(String.format(Locale.US, "%s at %d years: allocates %.1f KB > %s KB",
+                        stats.step, stats.years, stats.p50AllocKb(), allocBudget));
+            }
+        }
+        return failures;
+    }
+
+    private static void print(List<StepStats> results, Properties budgets) {
+        System.out.println();
+        System.out.println(String.format(Locale.US, "%-15s %5s %7s %10s %10s %10s %12s %12s %10s",
+                "step", "years", "samples", "p50 ms", "p99 ms", "budget", "p50 KB", "p99 KB", "budget"));
+        for (StepStats stats : results) {
+            System.out.println(String.format(Locale.US, "%-15s %5d %7d %10.3f %10.3f %10s %12.1f %12.1f %10s",
+                    stats.step, stats.years, stats.count(), stats.p50Ms(), stats.p99Ms(),
+                    budgets.getProperty(stats.step + ".p99Ms", "-"), stats.p50AllocKb(), stats.p99AllocKb(),
+                    budgets.getProperty(stats.step + ".allocKb", "-")));
+        }
+    }
+
+    // CSV with one row per step and data size, for comparing runs.
+    private static void writeReport(Path report, List<StepStats> results) throws IOException {
+        if (report.getParent() != null) Files.createDirectories(report.getParent());
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8))) {
+            out.println("step,years,samples,p50Ms,p99Ms,p50AllocKb,p99AllocKb");
+            for (StepStats stats : results) {
+                out.println(String.format(Locale.US, "%s,%d,%d,%.4f,%.4f,%.2f,%.2f", stats.step, stats.years,
+                        stats.count(), stats.p50Ms(), stats.p99Ms(), stats.p50AllocKb(), stats.p99AllocKb()));
+            }
+        }
+    }
+
+    private static Properties loadBudgets(Path file) throws IOException {
+        Properties budgets = new Properties();
+        if (file == null) return budgets;
+        try (InputStream in = Files.newInputStream(file)) {
+            budgets.load(in);
+        }
+        return budgets;
+    }
+
+    private static int[] parseYears(String list) {
+        String[] parts = list.split(",");
+        int[] years = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) years[i] = Integer.parseInt(parts[i].trim());
+        return years;
+    }
+}
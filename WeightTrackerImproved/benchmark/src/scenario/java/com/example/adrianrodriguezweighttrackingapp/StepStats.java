@@ -0,0 +1,61 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import java.util.Arrays;
+
+/**
+ * Timings and allocations recorded for one scenario step at one data size, one sample per time
+ * the step ran.
+ */
+final class StepStats {
+
+    final String step;
+    final int years;
+
+    private long[] nanos = new long[64];
+    private long[] bytes = new long[64];
+    private int count;
+
+    StepStats(String step, int years) {
+        this.step = step;
+        this.years = years;
+    }
+
+    void add(long elapsedNanos, long allocatedBytes) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, count * 2);
+            bytes = Arrays.copyOf(bytes, count * 2);
+        }
+        nanos[count] = elapsedNanos;
+        bytes[count] = allocatedBytes;
+        count++;
+    }
+
+    int count() {
+        return count;
+    }
+
+    double p50Ms() {
+        return percentile(nanos, 50) / 1_000_000.0;
+    }
+
+    double p99Ms() {
+        return percentile(nanos, 99) / 1_000_000.0;
+    }
+
+    double p50AllocKb() {
+        return percentile(bytes, 50) / 1024.0;
+    }
+
+    double p99AllocKb() {
+        return percentile(bytes, 99) / 1024.0;
+    }
+
+    // Nearest-rank percentile of the recorded samples.
+    private long percentile(long[] samples, int p) {
+        if (count == 0) return 0;
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(p / 100.0 * count);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
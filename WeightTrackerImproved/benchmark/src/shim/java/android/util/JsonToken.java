@@ -0,0 +1,19 @@
+package android.util;
+
+/**
+ * JVM stand-in for Android's {@code JsonToken}, with the same constants as Gson's, which
+ * {@link JsonReader} maps from. Only lets JsonRecordReader compile and run here; it is never part
+ * of the app.
+ */
+public enum JsonToken {
+    BEGIN_ARRAY,
+    END_ARRAY,
+    BEGIN_OBJECT,
+    END_OBJECT,
+    NAME,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL,
+    END_DOCUMENT
+}
@@ -0,0 +1,16 @@
+package com.google.firebase.firestore;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Compile-time stand-in for Firestore's {@code @Exclude}, which ships in an Android library the
+ * JVM benchmark build can't use. Only lets WeightData and WeightRollup compile here; it is never
+ * part of the app.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.FIELD})
+public @interface Exclude {
+}
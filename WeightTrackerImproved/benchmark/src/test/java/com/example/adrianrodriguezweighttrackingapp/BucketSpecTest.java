@@ -0,0 +1,134 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bucket edges of {@link BucketSpec} at week, month, quarter and year boundaries.
+ */
+public class BucketSpecTest {
+
+    @Test
+    public void calendarWeeks_startOnMondayAndClipToRange() {
+        // Wednesday 2024-01-03 to Tuesday 2024-01-16.
+        BucketSpec spec = BucketSpec.calendarWeeks(day("2024-01-03"), day("2024-01-16"));
+
+        assertEquals(3, spec.bucketCount());
+        assertEquals(day("2024-01-03"), spec.bucketStart(0));
+        assertEquals(day("2024-01-08"), spec.bucketStart(1));
+        assertEquals(day("2024-01-15"), spec.bucketStart(2));
+        assertEquals(day("2024-01-17"), spec.bucketStart(3));
+        assertEquals(0, spec.bucketOf(day("2024-01-07"))); // Sunday.
+        assertEquals(1, spec.bucketOf(day("2024-01-08"))); // Monday.
+        assertEquals(2, spec.bucketOf(day("2024-01-16")));
+        assertEquals(-1, spec.bucketOf(day("2024-01-02")));
+        assertEquals(-1, spec.bucketOf(day("2024-01-17")));
+    }
+
+    @Test
+    public void calendarWeeks_spanTheNewYear() {
+        // 2024-12-30 is a Monday, so its week runs into 2025.
+        BucketSpec spec = BucketSpec.calendarWeeks(day("2024-12-25"), day("2025-01-06"));
+
+        assertEquals(3, spec.bucketCount());
+        assertEquals(1, spec.bucketOf(day("2024-12-31")));
+        assertEquals(1, spec.bucketOf(day("2025-01-05")));
+        assertEquals(2, spec.bucketOf(day("2025-01-06")));
+    }
+
+    @Test
+    public void months_clipToRangeAndFollowMonthLengths() {
+        BucketSpec spec = BucketSpec.months(day("2024-01-31"), day("2024-03-01"));
+
+        assertEquals(3, spec.bucketCount());
+        assertEquals(day("2024-01-31"), spec.bucketStart(0));
+        assertEquals(day("2024-02-01"), spec.bucketStart(1));
+        assertEquals(day("2024-03-01"), spec.bucketStart(2));
+        assertEquals(1, spec.bucketOf(day("2024-02-29")));
+        assertEquals(2, spec.bucketOf(day("2024-03-01")));
+        assertEquals(day("2024-03-01"), spec.endDay());
+    }
+
+    @Test
+    public void quarters_startOnQuarterMonths() {
+        BucketSpec spec = BucketSpec.quarters(day("2024-02-15"), day("2024-07-01"));
+
+        assertEquals(3, spec.bucketCount());
+        assertEquals(day("2024-02-15"), spec.bucketStart(0));
+        assertEquals(day("2024-04-01"), spec.bucketStart(1));
+        assertEquals(day("2024-07-01"), spec.bucketStart(2));
+        assertEquals(0, spec.bucketOf(day("2024-03-31")));
+        assertEquals("Q1 2024", spec.label(0));
+        assertEquals("Q3 2024", spec.label(2));
+    }
+
+    @Test
+    public void years_splitOnNewYear() {
+        BucketSpec spec = BucketSpec.years(day("2023-12-31"), day("2025-01-01"));
+
+        assertEquals(3, spec.bucketCount());
+        assertEquals(0, spec.bucketOf(day("2023-12-31")));
+        assertEquals(1, spec.bucketOf(day("2024-01-01")));
+        assertEquals(1, spec.bucketOf(day("2024-12-31")));
+        assertEquals(2, spec.bucketOf(day("2025-01-01")));
+        assertEquals("2023", spec.label(0));
+        assertEquals("2025", spec.label(2));
+    }
+
+    @Test
+    public void weeksFromStart_lastBucketIsShorter() {
+        BucketSpec spec = BucketSpec.weeksFromStart(day("2024-01-03"), day("2024-01-18"));
+
+        assertEquals(3, spec.bucketCount());
+        assertEquals(day("2024-01-17"), spec.bucketStart(2));
+        assertEquals(2, spec.bucketOf(day("2024-01-18")));
+        assertEquals("Week 1", spec.label(0));
+        assertEquals("Week 3", spec.label(2));
+    }
+
+    @Test
+    public void custom_rejectsEmptyBucketsAndRanges() {
+        try {
+            BucketSpec.custom(day("2024-01-01"), day("2024-01-31"), 0);
+            fail("Accepted zero days per bucket");
+        } catch (IllegalArgumentException expected) {
+            // Expected.
+        }
+        try {
+            BucketSpec.days(day("2024-01-02"), day("2024-01-01"));
+            fail("Accepted an empty range");
+        } catch (IllegalArgumentException expected) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void granularityBucketCount_matchesTheBuiltSpec() {
+        long first = day("2023-12-20");
+        for (long start = first; start < first + 20; start++) {
+            for (long end = start; end < start + 800; end += 13) {
+                for (BucketSpec.Granularity granularity : BucketSpec.Granularity.values()) {
+                    assertEquals(granularity + " " + start + ".." + end,
+                            granularity.spec(start, end).bucketCount(), granularity.bucketCount(start, end));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void granularityForRange_picksTheFinestThatFits() {
+        long start = day("2024-01-01");
+
+        assertEquals(BucketSpec.Granularity.DAY, BucketSpec.Granularity.forRange(start, start + 29, 30));
+        assertEquals(BucketSpec.Granularity.WEEK, BucketSpec.Granularity.forRange(start, start + 30, 30));
+        assertEquals(BucketSpec.Granularity.MONTH, BucketSpec.Granularity.forRange(start, day("2025-12-31"), 30));
+        assertEquals(BucketSpec.Granularity.QUARTER, BucketSpec.Granularity.forRange(start, day("2040-12-31"), 30));
+    }
+
+    private static long day(String date) {
+        return LocalDate.parse(date).toEpochDay();
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * RFC 4180 parsing, delimiters, byte order marks and line endings in {@link CsvRecordReader}.
+ */
+public class CsvRecordReaderTest {
+
+    @Test
+    public void quotedFields_keepDelimitersQuotesAndLineBreaks() throws IOException {
+        List<ImportRecordReader.Record> records = readAll(
+                "date,weight,notes\n"
+                        + "2024-01-01,80,\"after dinner, late\"\n"
+                        + "2024-01-02,81,\"she said \"\"hi\"\"\"\n"
+                        + "2024-01-03,82,\"two\nlines\"\n"
+                        + "2024-01-04,83,\"\"\n");
+
+        assertEquals(4, records.size());
+        assertEquals("after dinner, late", records.get(0).fields.get("notes"));
+        assertEquals("she said \"hi\"", records.get(1).fields.get("notes"));
+        assertEquals("two\nlines", records.get(2).fields.get("notes"));
+        assertEquals("", records.get(3).fields.get("notes"));
+    }
+
+    @Test
+    public void recordLines_countLineBreaksInsideQuotes() throws IOException {
+        List<ImportRecordReader.Record> records = readAll(
+                "date,notes\n"
+                        + "2024-01-01,\"one\ntwo\nthree\"\n"
+                        + "2024-01-02,plain\n");
+
+        assertEquals(2, records.get(0).line);
+        assertEquals(5, records.get(1).line);
+    }
+
+    @Test
+    public void crlfLineEndings_areNotPartOfTheValues() throws IOException {
+        List<ImportRecordReader.Record> records = readAll(
+                "Date,Weight\r\n2024-01-01,80\r\n2024-01-02,81\r\n");
+
+        assertEquals(2, records.size());
+        assertEquals("80", records.get(0).fields.get("weight"));
+        assertEquals("81", records.get(1).fields.get("weight"));
+        assertEquals(3, records.get(1).line);
+    }
+
+    @Test
+    public void crlfInsideQuotes_isKept() throws IOException {
+        List<ImportRecordReader.Record> records = readAll("date,notes\r\n2024-01-01,\"a\r\nb\"\r\n");
+
+        assertEquals("a\r\nb", records.get(0).fields.get("notes"));
+    }
+
+    @Test
+    public void byteOrderMark_isDropped() throws IOException {
+        List<ImportRecordReader.Record> records = readAll("\uFEFFDate,Weight\r\n2024-01-01,80\r\n");
+
+        assertEquals("2024-01-01", records.get(0).fields.get("date"));
+    }
+
+    @Test
+    public void byteOrderMark_beforeAQuotedHeader() throws IOException {
+        List<ImportRecordReader.Record> records = readAll("\uFEFF\"Weight, kg\",\"Date\"\n80,2024-01-01\n");
+
+        assertEquals("80", records.get(0).fields.get("weightkg"));
+        assertEquals("2024-01-01", records.get(0).fields.get("date"));
+    }
+
+    @Test
+    public void semicolonDelimiter_isDetectedFromTheHeader() throws IOException {
+        List<ImportRecordReader.Record> records = readAll("Date;Weight (kg);Notes\n2024-01-01;80,5;a, b\n");
+
+        assertEquals("80,5", records.get(0).fields.get("weightkg"));
+        assertEquals("a, b", records.get(0).fields.get("notes"));
+    }
+
+    @Test
+    public void tabDelimiter_isDetectedFromTheHeader() throws IOException {
+        List<ImportRecordReader.Record> records = readAll("Date\tWeight\n2024-01-01\t80\n");
+
+        assertEquals("80", records.get(0).fields.get("weight"));
+    }
+
+    @Test
+    public void blankLinesAndMissingFinalNewline() throws IOException {
+        List<ImportRecordReader.Record> records = readAll("date,weight\n\n2024-01-01,80\n\n2024-01-02,81");
+
+        assertEquals(2, records.size());
+        assertEquals("81", records.get(1).fields.get("weight"));
+    }
+
+    @Test
+    public void shortRows_leaveMissingFieldsOut() throws IOException {
+        List<ImportRecordReader.Record> records = readAll("date,weight,notes\n2024-01-01,80\n");
+
+        assertEquals("80", records.get(0).fields.get("weight"));
+        assertFalse(records.get(0).fields.containsKey("notes"));
+    }
+
+    @Test
+    public void emptyFile_hasNoRecords() throws IOException {
+        assertTrue(readAll("").isEmpty());
+        assertTrue(readAll("date,weight\n").isEmpty());
+    }
+
+    @Test
+    public void unterminatedQuote_fails() {
+        try {
+            readAll("date,notes\n2024-01-01,\"never closed\n");
+            fail("Read an unterminated quoted field");
+        } catch (IOException expected) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void open_picksCsvOrJson() throws IOException {
+        try (ImportRecordReader reader = ImportRecordReader.open(stream("\uFEFFdate,weight\n2024-01-01,80\n"))) {
+            assertTrue(reader instanceof CsvRecordReader);
+            assertEquals("80", reader.next().fields.get("weight"));
+        }
+        try (ImportRecordReader reader = ImportRecordReader.open(stream("\uFEFF \r\n [{\"weight\": 80}]"))) {
+            assertTrue(reader instanceof JsonRecordReader);
+            assertEquals("80", reader.next().fields.get("weight"));
+        }
+    }
+
+    @Test
+    public void fieldKey_keepsLowercaseLettersAndDigits() {
+        assertEquals("weightkg", ImportRecordReader.fieldKey("Weight (kg)"));
+        assertEquals("hoursofsleep", ImportRecordReader.fieldKey("hours_of_sleep"));
+        assertEquals("", ImportRecordReader.fieldKey(" - "));
+    }
+
+    private static List<ImportRecordReader.Record> readAll(String csv) throws IOException {
+        List<ImportRecordReader.Record> records = new ArrayList<>();
+        try (CsvRecordReader reader = new CsvRecordReader(stream(csv))) {
+            ImportRecordReader.Record record;
+            while ((record = reader.next()) != null) records.add(record);
+        }
+        return records;
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * LTTB downsampling in {@link Downsampler}.
+ */
+public class DownsamplerTest {
+
+    @Test
+    public void thresholdAtLeastSize_keepsEveryPoint() {
+        float[] x = line(10);
+        float[] y = line(10);
+
+        assertArrayEquals(indices(10), Downsampler.largestTriangleThreeBuckets(x, y, 10, 10));
+        assertArrayEquals(indices(10), Downsampler.largestTriangleThreeBuckets(x, y, 10, 500));
+        assertArrayEquals(new int[0], Downsampler.largestTriangleThreeBuckets(new float[0], new float[0], 0, 3));
+    }
+
+    @Test
+    public void thresholdBelowThree_keepsEveryPoint() {
+        float[] x = line(10);
+
+        assertArrayEquals(indices(10), Downsampler.largestTriangleThreeBuckets(x, x, 10, 2));
+        assertArrayEquals(indices(10), Downsampler.largestTriangleThreeBuckets(x, x, 10, 0));
+    }
+
+    @Test
+    public void sizeOnlyCountsTheFirstPoints() {
+        // The arrays may be longer than the line, e.g. reused buffers.
+        float[] x = line(100);
+
+        assertArrayEquals(indices(5), Downsampler.largestTriangleThreeBuckets(x, x, 5, 5));
+        int[] kept = Downsampler.largestTriangleThreeBuckets(x, x, 50, 10);
+        assertEquals(49, kept[kept.length - 1]);
+    }
+
+    @Test
+    public void reduces_toThresholdKeepingFirstAndLast() {
+        for (int size = 4; size < 300; size += 7) {
+            for (int threshold = 3; threshold < size; threshold += 5) {
+                float[] x = line(size);
+                float[] y = new float[size];
+                for (int i = 0; i < size; i++) y[i] = (float) Math.sin(i / 3.0);
+
+                int[] kept = Downsampler.largestTriangleThreeBuckets(x, y, size, threshold);
+
+                String where = size + " -> " + threshold;
+                assertEquals(where, threshold, kept.length);
+                assertEquals(where, 0, kept[0]);
+                assertEquals(where, size - 1, kept[kept.length - 1]);
+                for (int i = 1; i < kept.length; i++) {
+                    assertTrue(where, kept[i] > kept[i - 1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void keepsSpikesAndDips() {
+        int size = 1000;
+        float[] x = line(size);
+        float[] y = new float[size];
+        Arrays.fill(y, 80f);
+        y[321] = 95f;
+        y[654] = 60f;
+
+        int[] kept = Downsampler.largestTriangleThreeBuckets(x, y, size, 20);
+
+        assertTrue(contains(kept, 321));
+        assertTrue(contains(kept, 654));
+    }
+
+    private static float[] line(int size) {
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) values[i] = i;
+        return values;
+    }
+
+    private static int[] indices(int size) {
+        int[] all = new int[size];
+        for (int i = 0; i < size; i++) all[i] = i;
+        return all;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Out-of-order batches and the day range an interrupted import rebuilds, in {@link ImportCheckpoint}.
+ */
+public class ImportCheckpointTest {
+
+    @Test
+    public void batchesInOrder_moveTheCheckpoint() {
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.batchWritten(0, 400, 100, 120);
+        checkpoint.batchWritten(400, 800, 121, 150);
+
+        assertEquals(800, checkpoint.records());
+        assertEquals(100, checkpoint.firstDay());
+        assertEquals(150, checkpoint.lastDay());
+    }
+
+    @Test
+    public void batchPastAGap_waitsForTheGap() {
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.batchWritten(0, 400, 100, 120);
+        checkpoint.batchWritten(800, 1200, 200, 220);
+        assertEquals(400, checkpoint.records());
+
+        checkpoint.batchWritten(400, 800, 150, 160);
+        assertEquals(1200, checkpoint.records());
+    }
+
+    @Test
+    public void interruptedImport_rebuildsBatchesPastTheCheckpoint() {
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        // The second batch never lands; the import is cancelled after the third did.
+        checkpoint.batchWritten(0, 400, 100, 120);
+        checkpoint.batchWritten(800, 1200, 300, 320);
+
+        assertEquals(400, checkpoint.records());
+        assertTrue(checkpoint.hasWrittenDays());
+        assertEquals(100, checkpoint.firstDay());
+        assertEquals(320, checkpoint.lastDay());
+    }
+
+    @Test
+    public void resumedImport_keepsTheDaysOfEarlierRuns() {
+        ImportCheckpoint checkpoint = new ImportCheckpoint(400, 100, 120);
+        checkpoint.batchWritten(400, 800, 50, 60);
+
+        assertEquals(800, checkpoint.records());
+        assertEquals(50, checkpoint.firstDay());
+        assertEquals(120, checkpoint.lastDay());
+    }
+
+    @Test
+    public void onlyRejectedRecords_haveNothingToRebuild() {
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        assertFalse(checkpoint.hasWrittenDays());
+
+        checkpoint.batchWritten(0, 37, Long.MAX_VALUE, Long.MIN_VALUE);
+
+        assertEquals(37, checkpoint.records());
+        assertFalse(checkpoint.hasWrittenDays());
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Date formats, strict date checks, number formats and range checks in {@link ImportRowNormalizer}.
+ */
+public class ImportRowNormalizerTest {
+
+    private TimeZone defaultZone;
+    private ImportRowNormalizer normalizer;
+
+    @Before
+    public void setUp() {
+        // Timestamps are read in the device's zone; pin it so they land on a known day.
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        normalizer = new ImportRowNormalizer();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void acceptedDateFormats() {
+        String[] dates = {
+                "2024-01-05", "05-01-2024", "2024-01-05T07:30:00Z", "2024-01-05 07:30", "2024/01/05", "2024/1/5",
+                "1/5/2024", "01/05/2024", "5.1.2024", "05.01.2024", "20240105", "1704456000", "1704456000000"
+        };
+        for (String date : dates) {
+            WeightData data = normalizer.normalize(record("date", date, "weight", "80"));
+            assertNotNull(date + ": " + normalizer.getRejectReason(), data);
+            assertEquals(date, LocalDate.of(2024, 1, 5).toEpochDay(), data.getEpochDay());
+        }
+    }
+
+    @Test
+    public void impossibleDates_areRejectedNotClamped() {
+        String[] dates = {
+                "2023-02-30", "30-02-2023", "2023/02/30", "2/30/2023", "30.2.2023", "20230230", "2023-13-01", "2023-04-31"
+        };
+        for (String date : dates) {
+            assertNull(date, normalizer.normalize(record("date", date, "weight", "80")));
+            assertTrue(date, normalizer.getRejectReason().contains("unreadable date"));
+        }
+    }
+
+    @Test
+    public void leapDay_isAccepted() {
+        assertNotNull(normalizer.normalize(record("date", "2024-02-29", "weight", "80")));
+        assertNotNull(normalizer.normalize(record("date", "2/29/2024", "weight", "80")));
+        assertNull(normalizer.normalize(record("date", "2023-02-29", "weight", "80")));
+    }
+
+    @Test
+    public void datesOutOfRange_areRejected() {
+        assertNull(normalizer.normalize(record("date", "1899-12-31", "weight", "80")));
+        assertTrue(normalizer.getRejectReason().contains("out of range"));
+        String future = LocalDate.now().plusDays(3).toString();
+        assertNull(normalizer.normalize(record("date", future, "weight", "80")));
+    }
+
+    @Test
+    public void weights_acceptUnitsAndDecimalCommas() {
+        assertEquals(72.5, weightOf("72.5"), 0);
+        assertEquals(72.5, weightOf("72,5"), 0);
+        assertEquals(72.5, weightOf("72.5 kg"), 0);
+        assertEquals(1234.5, weightOf("1,234.5"), 0);
+    }
+
+    @Test
+    public void invalidWeights_rejectTheRecord() {
+        assertNull(normalizer.normalize(record("date", "2024-01-05")));
+        assertEquals("Record 1: no weight", normalizer.getRejectReason());
+        for (String weight : new String[] { "abc", "0", "-70", "2000" }) {
+            assertNull(weight, normalizer.normalize(record("date", "2024-01-05", "weight", weight)));
+            assertTrue(weight, normalizer.getRejectReason().contains("invalid weight"));
+        }
+    }
+
+    @Test
+    public void optionalMetrics_outOfRangeAreDropped() {
+        WeightData kept = normalizer.normalize(record("date", "2024-01-05", "weight", "80", "sleep", "7.5",
+                "steps", "10,234", "calories", "2100.0", "mood", "Happy", "notes", "ok"));
+        WeightData dropped = normalizer.normalize(record("date", "2024-01-05", "weight", "80", "sleep", "30",
+                "steps", "-5", "calories", "lots"));
+
+        assertEquals(Double.valueOf(7.5), kept.getHoursOfSleep());
+        assertEquals(Integer.valueOf(10234), kept.getDailySteps());
+        assertEquals(Integer.valueOf(2100), kept.getCalorieIntake());
+        assertEquals("Happy", kept.getMood());
+        assertEquals("ok", kept.getNotes());
+        assertNotNull(dropped);
+        assertNull(dropped.getHoursOfSleep());
+        assertNull(dropped.getDailySteps());
+        assertNull(dropped.getCalorieIntake());
+    }
+
+    @Test
+    public void fieldAliases_areFound() {
+        WeightData data = normalizer.normalize(record("recordedat", "2024-01-05", "bodyweight", " 80 ",
+                "hoursofsleep", "", "sleephours", "6"));
+
+        assertNotNull(data);
+        assertEquals(80, data.getWeight(), 0);
+        assertEquals(Double.valueOf(6), data.getHoursOfSleep());
+    }
+
+    @Test
+    public void rejectReason_isClearedByTheNextRecord() {
+        assertNull(normalizer.normalize(record("date", "nope", "weight", "80")));
+        assertNotNull(normalizer.getRejectReason());
+        assertNotNull(normalizer.normalize(record("date", "2024-01-05", "weight", "80")));
+        assertNull(normalizer.getRejectReason());
+    }
+
+    private double weightOf(String weight) {
+        WeightData data = normalizer.normalize(record("date", "2024-01-05", "weight", weight));
+        assertNotNull(weight + ": " + normalizer.getRejectReason(), data);
+        return data.getWeight();
+    }
+
+    // Fields as (key, value) pairs, keyed the way ImportRecordReader.fieldKey leaves them.
+    private static ImportRecordReader.Record record(String... keysAndValues) {
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) fields.put(keysAndValues[i], keysAndValues[i + 1]);
+        return new ImportRecordReader.Record(fields, 1);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Entry arrays, wrapped exports and value types in {@link JsonRecordReader}.
+ */
+public class JsonRecordReaderTest {
+
+    @Test
+    public void topLevelArray() throws IOException {
+        List<ImportRecordReader.Record> records = readAll(
+                "[{\"Date\": \"2024-01-01\", \"Weight (kg)\": 80.5}, {\"date\": \"2024-01-02\", \"weight\": \"81\"}]");
+
+        assertEquals(2, records.size());
+        assertEquals("2024-01-01", records.get(0).fields.get("date"));
+        assertEquals("80.5", records.get(0).fields.get("weightkg"));
+        assertEquals("81", records.get(1).fields.get("weight"));
+        assertEquals(1, records.get(0).line);
+        assertEquals(2, records.get(1).line);
+    }
+
+    @Test
+    public void wrappedExport_usesTheFirstArrayProperty() throws IOException {
+        List<ImportRecordReader.Record> records = readAll(
+                "{\"version\": 2, \"meta\": {\"app\": \"x\", \"tags\": [1, 2]}, \"entries\": [{\"weight\": 80}]}");
+
+        // "tags" is inside an object, so "entries" is the first array property of the export.
+        assertEquals(1, records.size());
+        assertEquals("80", records.get(0).fields.get("weight"));
+    }
+
+    @Test
+    public void valueTypes_nestedValuesAndNullsAreSkipped() throws IOException {
+        List<ImportRecordReader.Record> records = readAll(
+                "[{\"weight\": 80, \"synced\": true, \"mood\": null, \"tags\": [\"a\"], \"meta\": {\"x\": 1}, \"notes\": \"ok\"}]");
+
+        ImportRecordReader.Record record = records.get(0);
+        assertEquals("80", record.fields.get("weight"));
+        assertEquals("true", record.fields.get("synced"));
+        assertEquals("ok", record.fields.get("notes"));
+        assertFalse(record.fields.containsKey("mood"));
+        assertFalse(record.fields.containsKey("tags"));
+        assertFalse(record.fields.containsKey("meta"));
+    }
+
+    @Test
+    public void nonObjectEntries_areSkipped() throws IOException {
+        List<ImportRecordReader.Record> records = readAll("[1, \"x\", {\"weight\": 80}, [2], {\"weight\": 81}]");
+
+        assertEquals(2, records.size());
+        assertEquals("81", records.get(1).fields.get("weight"));
+    }
+
+    @Test
+    public void byteOrderMarkAndCrlf() throws IOException {
+        List<ImportRecordReader.Record> records = readAll("\uFEFF[\r\n  {\"weight\": 80},\r\n  {\"weight\": 81}\r\n]\r\n");
+
+        assertEquals(2, records.size());
+    }
+
+    @Test
+    public void noEntryArray_hasNoRecords() throws IOException {
+        assertTrue(readAll("{\"version\": 2}").isEmpty());
+        assertTrue(readAll("[]").isEmpty());
+    }
+
+    private static List<ImportRecordReader.Record> readAll(String json) throws IOException {
+        List<ImportRecordReader.Record> records = new ArrayList<>();
+        try (JsonRecordReader reader = new JsonRecordReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))) {
+            ImportRecordReader.Record record;
+            while ((record = reader.next()) != null) records.add(record);
+        }
+        return records;
+    }
+}
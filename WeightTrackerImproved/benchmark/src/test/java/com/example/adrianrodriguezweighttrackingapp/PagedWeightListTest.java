@@ -0,0 +1,144 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Merging pages by key range in {@link PagedWeightList}.
+ */
+public class PagedWeightListTest {
+
+    @Test
+    public void pages_areKeptNewestFirst() {
+        PagedWeightList list = new PagedWeightList();
+        list.applyNewestPage(entries("2024-01-10", "2024-01-09", "2024-01-08"), true);
+        list.applyOlderPage(list.oldestKey(), entries("2024-01-07", "2024-01-06", "2024-01-05"), true);
+
+        assertEquals(Arrays.asList("2024-01-10", "2024-01-09", "2024-01-08", "2024-01-07", "2024-01-06", "2024-01-05"),
+                ids(list.toList()));
+        assertEquals("2024-01-05", list.oldestKey().documentId);
+        assertFalse(list.isEndReached());
+    }
+
+    @Test
+    public void sameDay_isOrderedByDocumentIdDescending() {
+        PagedWeightList list = new PagedWeightList();
+        list.applyNewestPage(Arrays.asList(entry("2024-01-10", "a"), entry("2024-01-10", "c"), entry("2024-01-10", "b")), false);
+
+        assertEquals(Arrays.asList("c", "b", "a"), ids(list.toList()));
+    }
+
+    @Test
+    public void olderPage_replacesOnlyItsOwnRange() {
+        PagedWeightList list = new PagedWeightList();
+        list.applyNewestPage(entries("2024-01-10", "2024-01-09"), true);
+        list.applyOlderPage(list.oldestKey(), entries("2024-01-08", "2024-01-07"), true);
+        list.applyOlderPage(list.oldestKey(), entries("2024-01-06", "2024-01-05"), true);
+
+        // The middle page is fetched again after 2024-01-07 was deleted elsewhere, so it now ends at
+        // 2024-01-06; rows past its last row stay.
+        PagedWeightList.EntryKey cursor = PagedWeightList.keyOf(entry("2024-01-09", "2024-01-09"));
+        list.applyOlderPage(cursor, entries("2024-01-08", "2024-01-06"), true);
+
+        assertEquals(Arrays.asList("2024-01-10", "2024-01-09", "2024-01-08", "2024-01-06", "2024-01-05"),
+                ids(list.toList()));
+        assertEquals("2024-01-05", list.oldestKey().documentId);
+    }
+
+    @Test
+    public void shortOlderPage_reachesTheEnd() {
+        PagedWeightList list = new PagedWeightList();
+        list.applyNewestPage(entries("2024-01-10", "2024-01-09"), true);
+        list.applyOlderPage(list.oldestKey(), entries("2024-01-08"), false);
+
+        assertTrue(list.isEndReached());
+        list.applyOlderPage(list.oldestKey(), Collections.<WeightData>emptyList(), false);
+        assertEquals(3, list.size());
+    }
+
+    @Test
+    public void newestPage_leavesRowsItPushedOutInPlace() {
+        PagedWeightList list = new PagedWeightList();
+        list.applyNewestPage(entries("2024-01-10", "2024-01-09", "2024-01-08"), true);
+        list.applyOlderPage(list.oldestKey(), entries("2024-01-07", "2024-01-06"), true);
+
+        // A new entry arrives; the live page of three now ends at 2024-01-09.
+        list.applyNewestPage(entries("2024-01-11", "2024-01-10", "2024-01-09"), true);
+
+        assertEquals(Arrays.asList("2024-01-11", "2024-01-10", "2024-01-09", "2024-01-08", "2024-01-07", "2024-01-06"),
+                ids(list.toList()));
+    }
+
+    @Test
+    public void shortNewestPage_replacesEverything() {
+        PagedWeightList list = new PagedWeightList();
+        list.applyNewestPage(entries("2024-01-10", "2024-01-09"), true);
+        list.applyOlderPage(list.oldestKey(), entries("2024-01-08", "2024-01-07"), true);
+
+        list.applyNewestPage(entries("2024-01-10"), false);
+
+        assertEquals(Collections.singletonList("2024-01-10"), ids(list.toList()));
+        assertTrue(list.isEndReached());
+    }
+
+    @Test
+    public void fullNewestPage_afterAShortOne_allowsOlderPagesAgain() {
+        PagedWeightList list = new PagedWeightList();
+        list.applyNewestPage(entries("2024-01-10", "2024-01-09"), false);
+        assertTrue(list.isEndReached());
+
+        // An import filled the history past one page.
+        list.applyNewestPage(entries("2024-01-12", "2024-01-11", "2024-01-10"), true);
+
+        assertFalse(list.isEndReached());
+    }
+
+    @Test
+    public void fullNewestPage_keepsTheEndReachedByOlderPages() {
+        PagedWeightList list = new PagedWeightList();
+        list.applyNewestPage(entries("2024-01-10", "2024-01-09"), true);
+        list.applyOlderPage(list.oldestKey(), entries("2024-01-08"), false);
+
+        list.applyNewestPage(entries("2024-01-11", "2024-01-10"), true);
+
+        assertTrue(list.isEndReached());
+        assertEquals(Arrays.asList("2024-01-11", "2024-01-10", "2024-01-09", "2024-01-08"), ids(list.toList()));
+    }
+
+    @Test
+    public void removeAndEntriesWithoutIds() {
+        PagedWeightList list = new PagedWeightList();
+        WeightData unsaved = new WeightData("2024-01-11", 80, null, null, null, null, null);
+        List<WeightData> page = new ArrayList<>(entries("2024-01-10", "2024-01-09"));
+        page.add(0, unsaved);
+        list.applyNewestPage(page, false);
+
+        assertEquals(2, list.size());
+        list.remove("2024-01-10");
+        assertEquals(Collections.singletonList("2024-01-09"), ids(list.toList()));
+    }
+
+    static List<WeightData> entries(String... dates) {
+        List<WeightData> entries = new ArrayList<>();
+        for (String date : dates) entries.add(entry(date, date));
+        return entries;
+    }
+
+    static WeightData entry(String date, String documentId) {
+        WeightData data = new WeightData(date, 80, null, null, null, null, null);
+        data.setDocumentId(documentId);
+        return data;
+    }
+
+    static List<String> ids(List<WeightData> entries) {
+        List<String> ids = new ArrayList<>();
+        for (WeightData data : entries) ids.add(data.getDocumentId());
+        return ids;
+    }
+}
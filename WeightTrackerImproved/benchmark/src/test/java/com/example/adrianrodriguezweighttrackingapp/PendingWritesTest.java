@@ -0,0 +1,126 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.example.adrianrodriguezweighttrackingapp.PagedWeightListTest.entries;
+import static com.example.adrianrodriguezweighttrackingapp.PagedWeightListTest.entry;
+import static com.example.adrianrodriguezweighttrackingapp.PagedWeightListTest.ids;
+import static org.junit.Assert.*;
+
+/**
+ * Laying queued saves and deletes over a loaded history page with {@link PendingWrites#overlay}.
+ */
+public class PendingWritesTest {
+
+    @Test
+    public void nothingPending_returnsTheLoadedList() {
+        List<WeightData> loaded = entries("2024-01-10", "2024-01-09");
+
+        assertSame(loaded, new PendingWrites().overlay(loaded, key("2024-01-09"), false));
+    }
+
+    @Test
+    public void queuedEntries_areInsertedInOrder() {
+        PendingWrites pending = new PendingWrites();
+        pending.queued(entries("2024-01-11", "2024-01-08"));
+
+        List<WeightData> shown = pending.overlay(entries("2024-01-10", "2024-01-07", "2024-01-06"), key("2024-01-06"), false);
+
+        assertEquals(Arrays.asList("2024-01-11", "2024-01-10", "2024-01-08", "2024-01-07", "2024-01-06"), ids(shown));
+    }
+
+    @Test
+    public void queuedEntryOnTheOldestKey_isShownOnce() {
+        PendingWrites pending = new PendingWrites();
+        WeightData edited = entry("2024-01-09", "2024-01-09");
+        edited.setWeight(75);
+        pending.queued(Collections.singletonList(edited));
+
+        List<WeightData> shown = pending.overlay(entries("2024-01-10", "2024-01-09"), key("2024-01-09"), false);
+
+        assertEquals(Arrays.asList("2024-01-10", "2024-01-09"), ids(shown));
+        assertEquals(75, shown.get(1).getWeight(), 0);
+    }
+
+    @Test
+    public void queuedEntryPastThePageBoundary_waitsForItsPage() {
+        PendingWrites pending = new PendingWrites();
+        pending.queued(entries("2024-01-08"));
+        List<WeightData> loaded = entries("2024-01-10", "2024-01-09");
+
+        // Older than anything loaded: it belongs to the next page, which will bring it along.
+        assertEquals(Arrays.asList("2024-01-10", "2024-01-09"), ids(pending.overlay(loaded, key("2024-01-09"), false)));
+        // Nothing older exists on the server, so it goes at the end.
+        assertEquals(Arrays.asList("2024-01-10", "2024-01-09", "2024-01-08"),
+                ids(pending.overlay(loaded, key("2024-01-09"), true)));
+    }
+
+    @Test
+    public void queuedEntries_showWhenNothingIsLoaded() {
+        PendingWrites pending = new PendingWrites();
+        pending.queued(entries("2024-01-08", "2024-01-09"));
+
+        assertEquals(Arrays.asList("2024-01-09", "2024-01-08"),
+                ids(pending.overlay(Collections.<WeightData>emptyList(), null, false)));
+    }
+
+    @Test
+    public void sameDay_queuedAndLoadedAreOrderedByDocumentId() {
+        PendingWrites pending = new PendingWrites();
+        pending.queued(Collections.singletonList(entry("2024-01-09", "b")));
+
+        List<WeightData> loaded = Arrays.asList(entry("2024-01-10", "x"), entry("2024-01-09", "c"), entry("2024-01-09", "a"));
+        List<WeightData> shown = pending.overlay(loaded, PagedWeightList.keyOf(loaded.get(2)), false);
+
+        assertEquals(Arrays.asList("x", "c", "b", "a"), ids(shown));
+    }
+
+    @Test
+    public void deletes_hideEntriesUntilUndone() {
+        PendingWrites pending = new PendingWrites();
+        pending.queued(entries("2024-01-11"));
+        pending.deleteStarted(Arrays.asList("2024-01-11", "2024-01-09"));
+        List<WeightData> loaded = entries("2024-01-10", "2024-01-09");
+
+        assertEquals(Collections.singletonList("2024-01-10"), ids(pending.overlay(loaded, key("2024-01-09"), false)));
+        assertFalse(pending.isQueued("2024-01-11"));
+
+        pending.deleteCancelled(Collections.singletonList("2024-01-09"));
+        assertEquals(Arrays.asList("2024-01-10", "2024-01-09"), ids(pending.overlay(loaded, key("2024-01-09"), false)));
+    }
+
+    @Test
+    public void purgedEntries_stayHiddenUntilSavedAgain() {
+        PendingWrites pending = new PendingWrites();
+        pending.deleteStarted(Collections.singletonList("2024-01-09"));
+        pending.purged(Collections.singletonList("2024-01-09"));
+        List<WeightData> stalePage = entries("2024-01-10", "2024-01-09");
+
+        assertEquals(Collections.singletonList("2024-01-10"), ids(pending.overlay(stalePage, key("2024-01-09"), false)));
+
+        pending.queued(entries("2024-01-09"));
+        assertEquals(Arrays.asList("2024-01-10", "2024-01-09"), ids(pending.overlay(stalePage, key("2024-01-09"), false)));
+    }
+
+    @Test
+    public void sentEntries_loseTheirPendingMark() {
+        PendingWrites pending = new PendingWrites();
+        int[] changes = new int[1];
+        pending.addListener(() -> changes[0]++);
+        pending.queued(entries("2024-01-09"));
+
+        pending.sent(Collections.singletonList("2024-01-09"));
+        pending.sent(Collections.singletonList("2024-01-09"));
+
+        assertFalse(pending.isQueued("2024-01-09"));
+        assertEquals(2, changes[0]); // Queued, then sent once; the repeat changed nothing.
+    }
+
+    private static PagedWeightList.EntryKey key(String date) {
+        return PagedWeightList.keyOf(entry(date, date));
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bucket assignment and same-day policies of {@link SeriesAggregator}.
+ */
+public class SeriesAggregatorTest {
+
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void weekBoundary_sundayAndMondayLandInDifferentBuckets() {
+        WeightSeries series = series(
+                entry("2024-01-07", 80), // Sunday.
+                entry("2024-01-08", 90)); // Monday.
+        BucketSpec spec = BucketSpec.calendarWeeks(day("2024-01-01"), day("2024-01-14"));
+
+        AggregateResult result = aggregate(series, spec, SeriesAggregator.Reducer.MEAN, SeriesAggregator.SameDayPolicy.ALL);
+
+        assertEquals(80f, result.value(0), DELTA);
+        assertEquals(90f, result.value(1), DELTA);
+    }
+
+    @Test
+    public void monthBoundary_lastAndFirstDayLandInDifferentBuckets() {
+        WeightSeries series = series(
+                entry("2024-01-31", 80),
+                entry("2024-02-01", 90),
+                entry("2024-02-29", 100),
+                entry("2024-03-01", 110));
+        BucketSpec spec = BucketSpec.months(day("2024-01-01"), day("2024-03-31"));
+
+        AggregateResult result = aggregate(series, spec, SeriesAggregator.Reducer.MEAN, SeriesAggregator.SameDayPolicy.ALL);
+
+        assertEquals(80f, result.value(0), DELTA);
+        assertEquals(95f, result.value(1), DELTA);
+        assertEquals(2, result.count(1));
+        assertEquals(110f, result.value(2), DELTA);
+    }
+
+    @Test
+    public void yearBoundary_entriesOutsideTheRangeAreIgnored() {
+        WeightSeries series = series(
+                entry("2022-12-31", 50),
+                entry("2023-12-31", 80),
+                entry("2024-01-01", 90),
+                entry("2025-01-01", 60));
+        BucketSpec spec = BucketSpec.years(day("2023-01-01"), day("2024-12-31"));
+
+        AggregateResult result = aggregate(series, spec, SeriesAggregator.Reducer.COUNT, SeriesAggregator.SameDayPolicy.ALL);
+
+        assertEquals(2, result.bucketCount());
+        assertEquals(1f, result.value(0), DELTA);
+        assertEquals(1f, result.value(1), DELTA);
+    }
+
+    @Test
+    public void emptyBuckets_areNaNExceptForCount() {
+        WeightSeries series = series(entry("2024-01-01", 80));
+        BucketSpec spec = BucketSpec.days(day("2024-01-01"), day("2024-01-02"));
+
+        AggregateResult mean = aggregate(series, spec, SeriesAggregator.Reducer.MEAN, SeriesAggregator.SameDayPolicy.ALL);
+        AggregateResult count = aggregate(series, spec, SeriesAggregator.Reducer.COUNT, SeriesAggregator.SameDayPolicy.ALL);
+
+        assertFalse(mean.hasValue(1));
+        assertTrue(Float.isNaN(mean.value(1)));
+        assertEquals(0f, count.value(1), DELTA);
+    }
+
+    @Test
+    public void sameDayPolicies() {
+        // Two entries on the 1st (80 then 84) and one on the 2nd, all in one bucket.
+        WeightSeries series = series(
+                entry("2024-01-01", 80),
+                entry("2024-01-01", 84),
+                entry("2024-01-02", 90));
+        BucketSpec spec = BucketSpec.custom(day("2024-01-01"), day("2024-01-07"), 7);
+
+        AggregateResult all = aggregate(series, spec, SeriesAggregator.Reducer.MEAN, SeriesAggregator.SameDayPolicy.ALL);
+        AggregateResult first = aggregate(series, spec, SeriesAggregator.Reducer.MEAN, SeriesAggregator.SameDayPolicy.FIRST);
+        AggregateResult last = aggregate(series, spec, SeriesAggregator.Reducer.MEAN, SeriesAggregator.SameDayPolicy.LAST);
+        AggregateResult dailyMean = aggregate(series, spec, SeriesAggregator.Reducer.MEAN, SeriesAggregator.SameDayPolicy.DAILY_MEAN);
+
+        assertEquals(254f / 3, all.value(0), DELTA);
+        assertEquals(3, all.count(0));
+        assertEquals(85f, first.value(0), DELTA);
+        assertEquals(2, first.count(0));
+        assertEquals(87f, last.value(0), DELTA);
+        assertEquals(86f, dailyMean.value(0), DELTA);
+        assertEquals(2, dailyMean.count(0));
+    }
+
+    @Test
+    public void sameDayPolicies_withMinAndLast() {
+        WeightSeries series = series(
+                entry("2024-01-01", 84),
+                entry("2024-01-01", 80),
+                entry("2024-01-01", 82));
+        BucketSpec spec = BucketSpec.days(day("2024-01-01"), day("2024-01-01"));
+
+        assertEquals(80f, aggregate(series, spec, SeriesAggregator.Reducer.MIN, SeriesAggregator.SameDayPolicy.ALL).value(0), DELTA);
+        assertEquals(84f, aggregate(series, spec, SeriesAggregator.Reducer.MIN, SeriesAggregator.SameDayPolicy.FIRST).value(0), DELTA);
+        assertEquals(82f, aggregate(series, spec, SeriesAggregator.Reducer.MIN, SeriesAggregator.SameDayPolicy.DAILY_MEAN).value(0), DELTA);
+        assertEquals(82f, aggregate(series, spec, SeriesAggregator.Reducer.LAST, SeriesAggregator.SameDayPolicy.ALL).value(0), DELTA);
+        assertEquals(84f, aggregate(series, spec, SeriesAggregator.Reducer.MAX, SeriesAggregator.SameDayPolicy.ALL).value(0), DELTA);
+    }
+
+    @Test
+    public void optionalMetrics_skipEntriesWithoutThem() {
+        WeightSeries series = WeightSeries.from(Arrays.asList(
+                new WeightData("2024-01-01", 80, null, 7.0, null, null, null),
+                new WeightData("2024-01-02", 81, null, null, 9000, null, null),
+                new WeightData("2024-01-03", 82, null, 8.0, null, null, null)));
+        BucketSpec spec = BucketSpec.custom(day("2024-01-01"), day("2024-01-03"), 3);
+
+        MetricResults results = SeriesAggregator.aggregateAll(series, spec,
+                SeriesAggregator.Reducer.MEAN, SeriesAggregator.SameDayPolicy.ALL);
+
+        assertEquals(3, results.get(SeriesAggregator.Metric.WEIGHT).count(0));
+        assertEquals(7.5f, results.get(SeriesAggregator.Metric.SLEEP).value(0), DELTA);
+        assertEquals(2, results.get(SeriesAggregator.Metric.SLEEP).count(0));
+        assertEquals(9000f, results.get(SeriesAggregator.Metric.STEPS).value(0), DELTA);
+        assertFalse(results.get(SeriesAggregator.Metric.CALORIES).hasValue(0));
+    }
+
+    @Test
+    public void rollUp_matchesAggregatingTheEntriesDirectly() {
+        List<WeightData> entries = new ArrayList<>();
+        LocalDate start = LocalDate.of(2023, 12, 20);
+        for (int i = 0; i < 120; i++) {
+            if (i % 4 == 3) continue; // Leave some days empty.
+            entries.add(entry(start.plusDays(i).toString(), 70 + (i % 9)));
+            if (i % 5 == 0) entries.add(entry(start.plusDays(i).toString(), 75));
+        }
+        WeightSeries series = WeightSeries.from(entries);
+        long first = start.toEpochDay();
+        long last = first + 119;
+        BucketSpec daily = BucketSpec.days(first, last);
+        BucketSpec monthly = BucketSpec.months(first, last);
+
+        for (SeriesAggregator.Reducer reducer : SeriesAggregator.Reducer.values()) {
+            AggregateResult direct = aggregate(series, monthly, reducer, SeriesAggregator.SameDayPolicy.ALL);
+            AggregateResult rolled = SeriesAggregator.rollUp(
+                    aggregate(series, daily, reducer, SeriesAggregator.SameDayPolicy.ALL), monthly, reducer);
+            assertEquals(direct.bucketCount(), rolled.bucketCount());
+            for (int b = 0; b < direct.bucketCount(); b++) {
+                assertEquals(reducer + " bucket " + b, direct.value(b), rolled.value(b), 0.001f);
+                assertEquals(reducer + " bucket " + b, direct.count(b), rolled.count(b));
+            }
+        }
+    }
+
+    private static AggregateResult aggregate(WeightSeries series, BucketSpec spec, SeriesAggregator.Reducer reducer,
+                                             SeriesAggregator.SameDayPolicy policy) {
+        return SeriesAggregator.aggregate(series, spec, SeriesAggregator.Metric.WEIGHT, reducer, policy);
+    }
+
+    private static WeightSeries series(WeightData... entries) {
+        return WeightSeries.from(Arrays.asList(entries));
+    }
+
+    private static WeightData entry(String date, double weight) {
+        return new WeightData(date, weight, null, null, null, null, null);
+    }
+
+    private static long day(String date) {
+        return LocalDate.parse(date).toEpochDay();
+    }
+}
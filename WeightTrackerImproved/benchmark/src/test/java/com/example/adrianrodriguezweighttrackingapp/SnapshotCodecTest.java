@@ -0,0 +1,229 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips and corrupt files for the snapshot format in {@link SnapshotCodec}.
+ */
+public class SnapshotCodecTest {
+
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void roundTrip_keepsEveryColumn() {
+        List<WeightData> entries = Arrays.asList(
+                entry("2023-01-01", 80.25, 7.5, 9000, "Happy", 2100),
+                entry("2023-01-02", 79.5, null, null, null, null),
+                entry("2023-01-05", 81.0, 6.0, 12000, "Tired", null),
+                entry("2023-03-01", 78.75, null, 4000, "Happy", 1800));
+
+        SnapshotCodec.Contents contents = SnapshotCodec.decode(encode(entries, Collections.emptyList()));
+        WeightSeries series = contents.series;
+
+        assertEquals(4, series.size());
+        assertSeriesEquals(WeightSeries.from(entries), series);
+        assertTrue(contents.newestPage.isEmpty());
+    }
+
+    @Test
+    public void roundTrip_negativeDeltas() {
+        // Weight drops and a day before the epoch give negative zigzag deltas and a negative first day.
+        List<WeightData> entries = Arrays.asList(
+                entry("1969-12-30", 120.0, null, null, null, null),
+                entry("1969-12-31", 60.5, null, null, null, null),
+                entry("1970-01-01", 0.01, null, null, null, null),
+                entry("1970-01-02", 99.99, null, null, null, null));
+
+        WeightSeries series = SnapshotCodec.decode(encode(entries, Collections.emptyList())).series;
+
+        assertEquals(LocalDate.of(1969, 12, 30).toEpochDay(), series.day(0));
+        assertEquals(120.0f, series.weight(0), DELTA);
+        assertEquals(60.5f, series.weight(1), DELTA);
+        assertEquals(0.01f, series.weight(2), DELTA);
+        assertEquals(99.99f, series.weight(3), DELTA);
+    }
+
+    @Test
+    public void roundTrip_gapsAcrossYears() {
+        List<WeightData> entries = Arrays.asList(
+                entry("2019-12-31", 80.0, null, null, "Happy", null),
+                entry("2022-01-01", 79.0, null, null, "Calm", null),
+                entry("2022-06-30", 78.0, null, null, "Happy", null));
+
+        ByteBuffer file = encode(entries, Collections.emptyList());
+        List<SnapshotCodec.Block> blocks = SnapshotCodec.readBlocks(file);
+        WeightSeries series = SnapshotCodec.decode(file).series;
+
+        assertEquals(2, blocks.size());
+        assertEquals(2019, blocks.get(0).year);
+        assertEquals(2022, blocks.get(1).year);
+        assertSeriesEquals(WeightSeries.from(entries), series);
+        // Each block has its own mood dictionary; the decoded series shares one across years.
+        assertEquals(series.moodCode(0), series.moodCode(2));
+        assertEquals(3, series.moodCount());
+    }
+
+    @Test
+    public void emptySnapshot_decodesToEmptySeries() {
+        SnapshotCodec.Contents contents = SnapshotCodec.decode(SnapshotCodec.encode(
+                Collections.<SnapshotCodec.Block>emptyList(), Collections.<WeightData>emptyList()));
+
+        assertSame(WeightSeries.EMPTY, contents.series);
+        assertTrue(contents.newestPage.isEmpty());
+    }
+
+    @Test
+    public void emptiedYear_isDroppedAndOtherBlocksAreCopied() {
+        List<WeightData> entries = Arrays.asList(
+                entry("2020-05-01", 80.0, null, null, null, null),
+                entry("2021-05-01", 79.0, 8.0, null, null, null),
+                entry("2022-05-01", 78.0, null, 5000, null, null));
+        List<SnapshotCodec.Block> blocks = new ArrayList<>(SnapshotCodec.readBlocks(encode(entries, Collections.emptyList())));
+
+        // What a rewrite does when every 2021 entry was deleted: the block goes, the others are reused.
+        blocks.remove(1);
+        WeightSeries series = SnapshotCodec.decode(SnapshotCodec.encode(blocks, Collections.<WeightData>emptyList())).series;
+
+        assertEquals(2, series.size());
+        assertEquals(LocalDate.of(2020, 5, 1).toEpochDay(), series.day(0));
+        assertEquals(LocalDate.of(2022, 5, 1).toEpochDay(), series.day(1));
+        assertFalse(series.hasSleep(0) || series.hasSleep(1));
+        assertTrue(series.hasSteps(1));
+        assertEquals(5000, series.steps(1));
+    }
+
+    @Test
+    public void head_keepsExactValuesAndIds() {
+        WeightData full = entry("2024-02-29", 72.123456, 7.25, 10234, "Happy", 1999);
+        full.setNotes("Long run \u00e9t\u00e9");
+        full.setDocumentId("doc-1");
+        WeightData bare = entry("2024-02-28", 72.5, null, null, null, null);
+        bare.setDocumentId("doc-2");
+
+        List<WeightData> page = SnapshotCodec.decode(encode(Collections.<WeightData>emptyList(), Arrays.asList(full, bare))).newestPage;
+
+        assertEquals(2, page.size());
+        WeightData first = page.get(0);
+        assertEquals("doc-1", first.getDocumentId());
+        assertEquals(full.getEpochDay(), first.getEpochDay());
+        assertEquals(72.123456, first.getWeight(), 0);
+        assertEquals(Double.valueOf(7.25), first.getHoursOfSleep());
+        assertEquals(Integer.valueOf(10234), first.getDailySteps());
+        assertEquals(Integer.valueOf(1999), first.getCalorieIntake());
+        assertEquals("Happy", first.getMood());
+        assertEquals("Long run \u00e9t\u00e9", first.getNotes());
+        WeightData second = page.get(1);
+        assertEquals("doc-2", second.getDocumentId());
+        assertNull(second.getHoursOfSleep());
+        assertNull(second.getDailySteps());
+        assertNull(second.getCalorieIntake());
+        assertNull(second.getMood());
+        assertNull(second.getNotes());
+    }
+
+    @Test
+    public void truncatedFile_isRejected() {
+        ByteBuffer file = encode(sampleYear(), Collections.<WeightData>emptyList());
+
+        assertRejected(copy(file, file.remaining() - 1));
+        assertRejected(copy(file, 30));
+        assertRejected(copy(file, 10)); // Shorter than the header.
+        assertRejected(copy(file, 0));
+    }
+
+    @Test
+    public void badChecksum_isRejected() {
+        ByteBuffer file = encode(sampleYear(), Collections.<WeightData>emptyList());
+
+        ByteBuffer flippedBody = copy(file, file.remaining());
+        int last = flippedBody.limit() - 1;
+        flippedBody.put(last, (byte) (flippedBody.get(last) ^ 1));
+        assertRejected(flippedBody);
+
+        ByteBuffer flippedChecksum = copy(file, file.remaining());
+        flippedChecksum.putInt(20, flippedChecksum.getInt(20) + 1);
+        assertRejected(flippedChecksum);
+    }
+
+    @Test
+    public void otherVersion_isRejected() {
+        ByteBuffer file = encode(sampleYear(), Collections.<WeightData>emptyList());
+        file.putInt(4, SnapshotCodec.VERSION + 1);
+
+        assertRejected(file);
+    }
+
+    // --- Helpers ---
+
+    private static List<WeightData> sampleYear() {
+        List<WeightData> entries = new ArrayList<>();
+        LocalDate day = LocalDate.of(2023, 1, 1);
+        for (int i = 0; i < 365; i++) {
+            entries.add(entry(day.plusDays(i).toString(), 80 + (i % 7) * 0.1, i % 2 == 0 ? 7.0 : null,
+                    i % 3 == 0 ? 8000 + i : null, i % 5 == 0 ? "Happy" : null, null));
+        }
+        return entries;
+    }
+
+    private static WeightData entry(String date, double weight, Double sleep, Integer steps, String mood, Integer calories) {
+        return new WeightData(date, weight, null, sleep, steps, mood, calories);
+    }
+
+    // Encodes the entries one block per year, the way SeriesSnapshot's rewrite does.
+    private static ByteBuffer encode(List<WeightData> entries, List<WeightData> head) {
+        List<SnapshotCodec.Block> blocks = new ArrayList<>();
+        WeightSeries all = WeightSeries.from(entries);
+        int start = 0;
+        while (start < all.size()) {
+            int year = LocalDate.ofEpochDay(all.day(start)).getYear();
+            List<WeightData> yearEntries = new ArrayList<>();
+            for (WeightData entry : entries) {
+                if (LocalDate.ofEpochDay(entry.getEpochDay()).getYear() == year) yearEntries.add(entry);
+            }
+            blocks.add(SnapshotCodec.encodeBlock(year, WeightSeries.from(yearEntries)));
+            start += yearEntries.size();
+        }
+        return SnapshotCodec.encode(blocks, head);
+    }
+
+    private static ByteBuffer copy(ByteBuffer file, int length) {
+        ByteBuffer source = file.duplicate();
+        source.limit(Math.min(source.limit(), source.position() + length));
+        ByteBuffer copy = ByteBuffer.allocate(source.remaining());
+        copy.put(source).flip();
+        return copy;
+    }
+
+    private static void assertRejected(ByteBuffer file) {
+        try {
+            SnapshotCodec.decode(file);
+            fail("Decoded a corrupt snapshot");
+        } catch (IllegalArgumentException expected) {
+            // The snapshot is ignored and rebuilt.
+        }
+    }
+
+    private static void assertSeriesEquals(WeightSeries expected, WeightSeries actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.day(i), actual.day(i));
+            assertEquals(expected.weight(i), actual.weight(i), DELTA);
+            assertEquals(expected.hasSleep(i), actual.hasSleep(i));
+            if (expected.hasSleep(i)) assertEquals(expected.sleep(i), actual.sleep(i), DELTA);
+            assertEquals(expected.hasSteps(i), actual.hasSteps(i));
+            if (expected.hasSteps(i)) assertEquals(expected.steps(i), actual.steps(i));
+            assertEquals(expected.hasCalories(i), actual.hasCalories(i));
+            if (expected.hasCalories(i)) assertEquals(expected.calories(i), actual.calories(i));
+            assertEquals(expected.mood(i), actual.mood(i));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.adrianrodriguezweighttrackingapp.BucketSpec.Granularity;
+
+import java.util.EnumMap;
+
+/**
+ * AdaptiveAggregation holds the chart values (every metric) of an ALL / custom range period at
+ * every {@link Granularity}, so the chart can switch between days, weeks, months and quarters as
+ * the user zooms without refetching or rescanning the entries.
+ *
+ * The entries are aggregated once, into daily means, when the object is created. Coarser levels
+ * are rolled up from the daily values the first time they are asked for and then kept, so each
+ * zoom step costs at most one pass over the days of the range.
+ *
+ * The range is clipped to the days that actually have entries, which keeps "All time" (whose
+ * period spans centuries) down to the length of the user's history. Used on the main thread only.
+ */
+public final class AdaptiveAggregation {
+
+    private final long startDay;
+    private final long endDay;
+    private final MetricResults daily;
+    private final EnumMap<Granularity, MetricResults> levels = new EnumMap<>(Granularity.class);
+
+    private AdaptiveAggregation(long startDay, long endDay, MetricResults daily) {
+        this.startDay = startDay;
+        this.endDay = endDay;
+        this.daily = daily;
+        levels.put(Granularity.DAY, daily);
+    }
+
+    /**
+     * Aggregates every metric of the series inside [startDay, endDay] into daily means, in one pass.
+     *
+     * @return The aggregation, or null if the range holds no entries.
+     */
+    @Nullable
+    public static AdaptiveAggregation of(@NonNull WeightSeries series, long startDay, long endDay) {
+        int from = series.lowerBound(startDay);
+        int to = series.lowerBound(endDay + 1);
+        if (from >= to) return null;
+
+        long first = Math.max(startDay, series.day(from));
+        long last = Math.min(endDay, series.day(to - 1));
+        MetricResults daily = SeriesAggregator.aggregateAll(series, BucketSpec.days(first, last),
+                SeriesAggregator.Reducer.MEAN, SeriesAggregator.SameDayPolicy.DAILY_MEAN);
+        return new AdaptiveAggregation(first, last, daily);
+    }
+
+    // First and last day with an entry.
+    public long startDay() {
+        return startDay;
+    }
+
+    public long endDay() {
+        return endDay;
+    }
+
+    /**
+     * The finest granularity that shows the visible part of the range, [visibleStart, visibleEnd]
+     * clipped to the range, in at most `maxPoints` buckets.
+     */
+    @NonNull
+    public Granularity granularityFor(long visibleStart, long visibleEnd, int maxPoints) {
+        long from = Math.max(startDay, visibleStart);
+        long to = Math.min(endDay, visibleEnd);
+        if (to < from) to = from;
+        return Granularity.forRange(from, to, maxPoints);
+    }
+
+    /**
+     * The whole range's chart values for every metric at the given granularity, rolled up from
+     * the daily values the first time they are needed.
+     */
+    @NonNull
+    public MetricResults level(@NonNull Granularity granularity) {
+        MetricResults result = levels.get(granularity);
+        if (result == null) {
+            result = SeriesAggregator.rollUpAll(daily, granularity.spec(startDay, endDay), SeriesAggregator.Reducer.MEAN);
+            levels.put(granularity, result);
+        }
+        return result;
+    }
+
+    // Lowest and highest daily mean weight; every coarser level lies between them.
+    public float min() {
+        return daily.weight().min();
+    }
+
+    public float max() {
+        return daily.weight().max();
+    }
+}
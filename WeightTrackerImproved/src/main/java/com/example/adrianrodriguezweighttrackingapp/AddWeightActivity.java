@@ -3,21 +3,19 @@ package com.example.adrianrodriguezweighttrackingapp;
 import android.app.DatePickerDialog;
 import android.content.Intent;
 import android.os.Bundle;
-import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.ProgressBar;
 import android.widget.Spinner;
 import android.widget.Toast;
 import android.widget.ArrayAdapter;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.android.material.snackbar.Snackbar;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -29,7 +27,11 @@ import java.util.Locale;
  * AddWeightActivity is responsible for allowing users to input and save their daily
  * weight entries along with additional health metrics such as sleep, steps, calories, and mood.
  * It provides a date picker for easy date selection and handles data validation before
- * persisting the information to a user-specific collection in Firebase Firestore.
+ * persisting the information through the user's WeightRepository, which writes to
+ * Firebase Firestore and the on-device cache.
+ *
+ * There is one entry per day. When a date is picked, that day's entry is looked up (a single
+ * document read) and, if it exists, its values are filled in; saving then updates it.
  */
 public class AddWeightActivity extends AppCompatActivity {
 
@@ -38,7 +40,6 @@ public class AddWeightActivity extends AppCompatActivity {
     private EditText editTextWeight;
     private EditText editTextNotes;
     private Button buttonSave;
-    private ProgressBar progressBar;
 
     // UI components for additional health data points
     private EditText editTextSleep; // For hours of sleep
@@ -46,9 +47,11 @@ public class AddWeightActivity extends AppCompatActivity {
     private EditText editTextCalories; // For calorie intake
     private Spinner spinnerMood; // For selecting mood from predefined options
 
-    // Firebase instances for authentication and database interaction
+    // Firebase authentication instance; database access goes through WeightRepository.
     private FirebaseAuth mAuth;
-    private FirebaseFirestore db;
+
+    // Lookup of the selected day's existing entry, if one is running.
+    private WeightRepository.RequestHandle existingEntryLookup;
 
     // Date formatter for consistent date string handling
     private SimpleDateFormat dateFormatter = new SimpleDateFormat("dd-MM-yyyy", Locale.US);
@@ -67,16 +70,14 @@ public class AddWeightActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.add_weight_activity); // Set the layout for this activity.
 
-        // Initialize Firebase Authentication and Firestore instances.
+        // Initialize the Firebase Authentication instance.
         mAuth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
 
         // Initialize core UI components by finding them in the layout.
         editTextDate = findViewById(R.id.editTextDate);
         editTextWeight = findViewById(R.id.editTextWeight);
         editTextNotes = findViewById(R.id.editTextNotes);
         buttonSave = findViewById(R.id.buttonSave);
-        progressBar = findViewById(R.id.progressBar);
 
         // Initialize new UI components for extended health data.
         editTextSleep = findViewById(R.id.editTextSleep);
@@ -122,14 +123,75 @@ public class AddWeightActivity extends AppCompatActivity {
                 (view, selectedYear, selectedMonth, selectedDay) -> {
                     calendar.set(selectedYear, selectedMonth, selectedDay); // Set the selected date to the calendar.
                     editTextDate.setText(dateFormatter.format(calendar.getTime())); // Format and display the date.
+                    lookUpExistingEntry(); // The day may already have an entry to edit.
                 },
                 year, month, day); // Initial year, month, and day for the picker.
         datePickerDialog.show();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // The screen is gone, so there is nothing left to fill in.
+        if (existingEntryLookup != null) existingEntryLookup.cancel();
+    }
+
+    /**
+     * Looks up the entry already saved for the selected date with a single document read. If there
+     * is one, its values are filled in and the button becomes "Update Entry", since saving replaces
+     * the day's entry rather than adding a second one.
+     */
+    private void lookUpExistingEntry() {
+        FirebaseUser currentUser = mAuth.getCurrentUser();
+        long epochDay = DateKeys.parseEpochDay(editTextDate.getText().toString().trim());
+        if (currentUser == null || epochDay == DateKeys.MISSING_EPOCH_DAY) return;
+
+        // Drop the answer for a date the user has already moved away from.
+        if (existingEntryLookup != null) existingEntryLookup.cancel();
+        buttonSave.setText("Save Entry");
+        existingEntryLookup = WeightRepository.getInstance(this, currentUser.getUid())
+                .loadEntryForDay(epochDay, new WeightRepository.EntryCallback() {
+                    @Override
+                    public void onEntryLoaded(@Nullable WeightData entry, boolean fromCache) {
+                        if (entry != null) showExistingEntry(entry);
+                    }
+
+                    @Override
+                    public void onError(@NonNull Exception e) {
+                        // Not a problem: without the lookup, saving still replaces the day's entry.
+                    }
+                });
+    }
+
+    /**
+     * Fills in the values of the selected day's saved entry. Fields the user has already typed in are left alone.
+     */
+    private void showExistingEntry(@NonNull WeightData entry) {
+        fillIfEmpty(editTextWeight, String.valueOf(entry.getWeight()));
+        fillIfEmpty(editTextNotes, entry.getNotes());
+        fillIfEmpty(editTextSleep, entry.getHoursOfSleep() != null ? String.valueOf(entry.getHoursOfSleep()) : null);
+        fillIfEmpty(editTextSteps, entry.getDailySteps() != null ? String.valueOf(entry.getDailySteps()) : null);
+        fillIfEmpty(editTextCalories, entry.getCalorieIntake() != null ? String.valueOf(entry.getCalorieIntake()) : null);
+        if (entry.getMood() != null && spinnerMood.getSelectedItemPosition() == 0) {
+            // Select the saved mood if it's still one of the options.
+            for (int i = 1; i < spinnerMood.getCount(); i++) {
+                if (entry.getMood().equals(spinnerMood.getItemAtPosition(i).toString())) {
+                    spinnerMood.setSelection(i);
+                    break;
+                }
+            }
+        }
+        buttonSave.setText("Update Entry");
+    }
+
+    private static void fillIfEmpty(EditText field, String value) {
+        if (value != null && field.getText().toString().trim().isEmpty()) field.setText(value);
+    }
+
     /**
-     * Gathers all user inputs, performs validation, and saves the data to Firebase Firestore.
-     * Displays a ProgressBar during the save operation and provides user feedback via Snackbar/Toast.
+     * Gathers all user inputs, performs validation, and saves the data through the repository.
+     * The save returns as soon as the entry is stored on the device (it is uploaded to Firestore
+     * in the background), and the user gets feedback via Snackbar/Toast.
      */
     private void saveWeightData() {
         // Retrieve the currently authenticated Firebase user.
@@ -142,8 +204,8 @@ public class AddWeightActivity extends AppCompatActivity {
             return;
         }
 
-        // Get the unique user ID to store data in a user-specific collection.
-        String userId = currentUser.getUid();
+        // Get the repository for this user's data (it owns the user-specific Firestore collection).
+        WeightRepository weightRepository = WeightRepository.getInstance(this, currentUser.getUid());
 
         // Retrieve and trim input strings from UI fields.
         String dateString = editTextDate.getText().toString().trim();
@@ -255,48 +317,47 @@ public class AddWeightActivity extends AppCompatActivity {
         }
 
 
-        // Show the ProgressBar and disable the save button to indicate a background operation.
-        progressBar.setVisibility(View.VISIBLE);
+        // Disable the save button only until the entry is written to the device (a few milliseconds),
+        // so a double tap can't queue it twice. Uploading happens in the background.
         buttonSave.setEnabled(false);
 
         // Create a new WeightData object encapsulating all the collected and validated data.
         WeightData newWeightData = new WeightData(dateString, weightValue, notes,
                 hoursOfSleep, dailySteps, selectedMood, calorieIntake);
 
-        // Define the Firestore collection path where weight entries will be stored.
-        // This creates a hierarchical structure: "users/{userId}/weightEntries".
-        CollectionReference weightEntriesRef = db.collection("users").document(userId).collection("weightEntries");
-
-        // Save the new WeightData object to Firestore.
-        // .add() creates a new document with an auto-generated ID within the collection.
-        weightEntriesRef.add(newWeightData)
-                .addOnSuccessListener(documentReference -> {
-                    // Data saved successfully.
-                    // Hide ProgressBar and re-enable the save button.
-                    progressBar.setVisibility(View.GONE);
-                    buttonSave.setEnabled(true);
-
-                    // Clear all input fields after successful saving, preparing for a new entry.
-                    editTextDate.setText("");
-                    editTextWeight.setText("");
-                    editTextNotes.setText("");
-                    editTextSleep.setText("");
-                    editTextSteps.setText("");
-                    editTextCalories.setText("");
-                    spinnerMood.setSelection(0); // Reset spinner to the first item (e.g., "Select Mood").
-
-                    // Display a success message using a Snackbar for better user experience.
-                    Snackbar.make(findViewById(android.R.id.content), "Weight entry saved successfully!", Snackbar.LENGTH_LONG)
-                            .show();
-                })
-                .addOnFailureListener(e -> {
-                    // Data saving failed.
-                    // Hide ProgressBar and re-enable the save button.
-                    progressBar.setVisibility(View.GONE);
-                    buttonSave.setEnabled(true);
-
-                    // Display an error message to the user.
-                    Toast.makeText(AddWeightActivity.this, "Error adding weight data: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                });
+        // Save the new WeightData object through the repository.
+        // It becomes the entry for its day, replacing any earlier one for that date.
+        // It is cached and queued on the device right away; the repository sends it to Firestore
+        // in the background and keeps retrying if the network is down, so nothing typed is lost.
+        weightRepository.addEntry(newWeightData, new WeightRepository.WriteCallback() {
+            @Override
+            public void onSuccess() {
+                // Entry saved on the device, ready for the next one.
+                buttonSave.setEnabled(true);
+                buttonSave.setText("Save Entry");
+
+                // Clear all input fields after successful saving, preparing for a new entry.
+                editTextDate.setText("");
+                editTextWeight.setText("");
+                editTextNotes.setText("");
+                editTextSleep.setText("");
+                editTextSteps.setText("");
+                editTextCalories.setText("");
+                spinnerMood.setSelection(0); // Reset spinner to the first item (e.g., "Select Mood").
+
+                // Display a success message using a Snackbar for better user experience.
+                Snackbar.make(findViewById(android.R.id.content), "Weight entry saved successfully!", Snackbar.LENGTH_LONG)
+                        .show();
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e) {
+                // The entry couldn't even be stored on the device. The fields are kept so nothing is lost.
+                buttonSave.setEnabled(true);
+
+                // Display an error message to the user.
+                Toast.makeText(AddWeightActivity.this, "Error adding weight data: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+
+/**
+ * AggregateResult is the output of {@link SeriesAggregator}: one value per bucket of a
+ * {@link BucketSpec}, plus how many entries went into it. Buckets without entries hold NaN
+ * (or 0 for COUNT) and report hasValue() == false.
+ */
+public final class AggregateResult {
+
+    private final BucketSpec spec;
+    private final float[] values;
+    private final int[] counts;
+
+    AggregateResult(@NonNull BucketSpec spec, @NonNull float[] values, @NonNull int[] counts) {
+        this.spec = spec;
+        this.values = values;
+        this.counts = counts;
+    }
+
+    @NonNull
+    public BucketSpec spec() {
+        return spec;
+    }
+
+    public int bucketCount() {
+        return values.length;
+    }
+
+    public boolean hasValue(int bucket) {
+        return counts[bucket] > 0 && !Float.isNaN(values[bucket]);
+    }
+
+    public float value(int bucket) {
+        return values[bucket];
+    }
+
+    // Number of entries (after the same-day policy) that went into the bucket.
+    public int count(int bucket) {
+        return counts[bucket];
+    }
+
+    @NonNull
+    public String label(int bucket) {
+        return spec.label(bucket);
+    }
+
+    /**
+     * Returns true if no bucket has a value.
+     */
+    public boolean isEmpty() {
+        for (int b = 0; b < values.length; b++) {
+            if (hasValue(b)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Smallest bucket value, or NaN if every bucket is empty.
+     */
+    public float min() {
+        float min = Float.NaN;
+        for (int b = 0; b < values.length; b++) {
+            if (hasValue(b) && (Float.isNaN(min) || values[b] < min)) min = values[b];
+        }
+        return min;
+    }
+
+    /**
+     * Largest bucket value, or NaN if every bucket is empty.
+     */
+    public float max() {
+        float max = Float.NaN;
+        for (int b = 0; b < values.length; b++) {
+            if (hasValue(b) && (Float.isNaN(max) || values[b] > max)) max = values[b];
+        }
+        return max;
+    }
+}
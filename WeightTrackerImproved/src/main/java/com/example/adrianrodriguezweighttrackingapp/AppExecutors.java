@@ -0,0 +1,63 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * AppExecutors holds the shared thread pools used by the data layer.
+ * Disk work runs on a single background thread so local cache writes are applied
+ * in the order they were issued, and results are handed back on the main thread
+ * where the activities can touch their views. CPU-only work (formatting, aggregation)
+ * gets its own thread so it never queues behind a slow disk read, and so do bulk jobs.
+ */
+public final class AppExecutors {
+
+    // Single thread for all SQLite reads and writes, keeping them strictly ordered.
+    private static final ExecutorService DISK_IO = Executors.newSingleThreadExecutor();
+
+    // Single thread for CPU work that shouldn't run on the UI thread; results come out in submission order.
+    private static final ExecutorService COMPUTATION = Executors.newSingleThreadExecutor();
+
+    // Single thread for long-running bulk jobs (imports), which may block for minutes and must not
+    // hold up cache reads on the disk thread.
+    private static final ExecutorService BULK = Executors.newSingleThreadExecutor();
+
+    // Posts work back onto the Android main (UI) thread.
+    private static final Executor MAIN_THREAD = new MainThreadExecutor();
+
+    private AppExecutors() {
+        // Utility class, no instances.
+    }
+
+    public static ExecutorService diskIO() {
+        return DISK_IO;
+    }
+
+    public static ExecutorService computation() {
+        return COMPUTATION;
+    }
+
+    public static ExecutorService bulk() {
+        return BULK;
+    }
+
+    public static Executor mainThread() {
+        return MAIN_THREAD;
+    }
+
+    // Simple Executor that forwards every Runnable to the main Looper.
+    private static class MainThreadExecutor implements Executor {
+        private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            mainThreadHandler.post(command);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+/**
+ * BucketSpec splits an inclusive range of epoch days into consecutive buckets (days, weeks,
+ * months, quarters, years, or a custom number of days) for {@link SeriesAggregator}, and names each one
+ * for the chart's X-axis.
+ *
+ * Every spec is stored the same way, as an ascending array of bucket start days, so the
+ * aggregator can assign sorted entries to buckets with a single forward-moving cursor.
+ * Formatters are built once here instead of once per label.
+ */
+public final class BucketSpec {
+
+    // Shared label formatters.
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("EEE\nMMM dd", Locale.getDefault());
+    private static final DateTimeFormatter DATE_LABEL = DateTimeFormatter.ofPattern("MMM dd", Locale.getDefault());
+    private static final DateTimeFormatter MONTH_LABEL = DateTimeFormatter.ofPattern("MMM", Locale.getDefault());
+    private static final DateTimeFormatter YEAR_LABEL = DateTimeFormatter.ofPattern("yyyy", Locale.getDefault());
+
+    // How a bucket's label is written.
+    private enum LabelStyle { DAY, RELATIVE_WEEK, DATE, MONTH, QUARTER, YEAR }
+
+    /**
+     * Calendar bucket sizes the chart can switch between as the visible range changes, finest
+     * first. Every bucket is a whole number of days, so any level can be rolled up from the
+     * daily one without going back to the raw entries.
+     */
+    public enum Granularity {
+        DAY, WEEK, MONTH, QUARTER;
+
+        /**
+         * Buckets of this size covering [startDay, endDay].
+         */
+        @NonNull
+        public BucketSpec spec(long startDay, long endDay) {
+            switch (this) {
+                case DAY:
+                    return days(startDay, endDay);
+                case WEEK:
+                    return calendarWeeks(startDay, endDay);
+                case MONTH:
+                    return months(startDay, endDay);
+                default:
+                    return quarters(startDay, endDay);
+            }
+        }
+
+        /**
+         * Number of buckets of this size overlapping [startDay, endDay], without building them.
+         */
+        public long bucketCount(long startDay, long endDay) {
+            LocalDate start = LocalDate.ofEpochDay(startDay);
+            LocalDate end = LocalDate.ofEpochDay(endDay);
+            switch (this) {
+                case DAY:
+                    return endDay - startDay + 1;
+                case WEEK:
+                    long firstMonday = start.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+                    return (endDay - firstMonday) / 7 + 1;
+                case MONTH:
+                    return monthIndex(end) - monthIndex(start) + 1;
+                default:
+                    return monthIndex(end) / 3 - monthIndex(start) / 3 + 1;
+            }
+        }
+
+        /**
+         * The finest granularity that shows [startDay, endDay] in at most `maxBuckets` buckets,
+         * or QUARTER if even that needs more.
+         */
+        @NonNull
+        public static Granularity forRange(long startDay, long endDay, int maxBuckets) {
+            for (Granularity granularity : values()) {
+                if (granularity.bucketCount(startDay, endDay) <= maxBuckets) return granularity;
+            }
+            return QUARTER;
+        }
+
+        // Months since year 0, so month and quarter counts are simple differences.
+        private static long monthIndex(LocalDate date) {
+            return date.getYear() * 12L + date.getMonthValue() - 1;
+        }
+    }
+
+    // boundaries[b] is the first day of bucket b; boundaries[count] is the day after the last bucket.
+    private final long[] boundaries;
+    private final LabelStyle labelStyle;
+
+    private BucketSpec(long[] boundaries, LabelStyle labelStyle) {
+        this.boundaries = boundaries;
+        this.labelStyle = labelStyle;
+    }
+
+    /**
+     * One bucket per day, labelled like "Mon\nJan 01".
+     */
+    @NonNull
+    public static BucketSpec days(long startDay, long endDay) {
+        return fixedWidth(startDay, endDay, 1, LabelStyle.DAY);
+    }
+
+    /**
+     * Seven-day buckets counted from the first day of the range, labelled "Week 1", "Week 2", ...
+     * (the last one may be shorter).
+     */
+    @NonNull
+    public static BucketSpec weeksFromStart(long startDay, long endDay) {
+        return fixedWidth(startDay, endDay, 7, LabelStyle.RELATIVE_WEEK);
+    }
+
+    /**
+     * Monday-to-Sunday calendar weeks overlapping the range, labelled with their Monday ("Jan 01").
+     * The first and last buckets are clipped to the range.
+     */
+    @NonNull
+    public static BucketSpec calendarWeeks(long startDay, long endDay) {
+        long firstMonday = LocalDate.ofEpochDay(startDay).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+        int count = (int) ((endDay - firstMonday) / 7) + 1;
+        long[] boundaries = new long[count + 1];
+        for (int b = 0; b < count; b++) {
+            boundaries[b] = Math.max(startDay, firstMonday + 7L * b);
+        }
+        boundaries[count] = endDay + 1;
+        return new BucketSpec(boundaries, LabelStyle.DATE);
+    }
+
+    /**
+     * Calendar months overlapping the range, labelled "Jan", "Feb", ... The first and last
+     * buckets are clipped to the range.
+     */
+    @NonNull
+    public static BucketSpec months(long startDay, long endDay) {
+        LocalDate first = LocalDate.ofEpochDay(startDay).withDayOfMonth(1);
+        LocalDate last = LocalDate.ofEpochDay(endDay).withDayOfMonth(1);
+        int count = (int) ChronoUnit.MONTHS.between(first, last) + 1;
+        long[] boundaries = new long[count + 1];
+        for (int b = 0; b < count; b++) {
+            boundaries[b] = Math.max(startDay, first.plusMonths(b).toEpochDay());
+        }
+        boundaries[count] = endDay + 1;
+        return new BucketSpec(boundaries, LabelStyle.MONTH);
+    }
+
+    /**
+     * Calendar quarters overlapping the range, labelled "Q1 2024", ... The first and last
+     * buckets are clipped to the range.
+     */
+    @NonNull
+    public static BucketSpec quarters(long startDay, long endDay) {
+        LocalDate start = LocalDate.ofEpochDay(startDay);
+        LocalDate first = start.withDayOfMonth(1).withMonth((start.getMonthValue() - 1) / 3 * 3 + 1);
+        LocalDate last = LocalDate.ofEpochDay(endDay).withDayOfMonth(1);
+        int count = (int) (ChronoUnit.MONTHS.between(first, last) / 3) + 1;
+        long[] boundaries = new long[count + 1];
+        for (int b = 0; b < count; b++) {
+            boundaries[b] = Math.max(startDay, first.plusMonths(3L * b).toEpochDay());
+        }
+        boundaries[count] = endDay + 1;
+        return new BucketSpec(boundaries, LabelStyle.QUARTER);
+    }
+
+    /**
+     * Calendar years overlapping the range, labelled "2024", ... The first and last buckets are
+     * clipped to the range.
+     */
+    @NonNull
+    public static BucketSpec years(long startDay, long endDay) {
+        int firstYear = LocalDate.ofEpochDay(startDay).getYear();
+        int count = LocalDate.ofEpochDay(endDay).getYear() - firstYear + 1;
+        long[] boundaries = new long[count + 1];
+        for (int b = 0; b < count; b++) {
+            boundaries[b] = Math.max(startDay, LocalDate.of(firstYear + b, 1, 1).toEpochDay());
+        }
+        boundaries[count] = endDay + 1;
+        return new BucketSpec(boundaries, LabelStyle.YEAR);
+    }
+
+    /**
+     * Buckets of a fixed number of days counted from the first day of the range, labelled with
+     * their first day ("Jan 01").
+     */
+    @NonNull
+    public static BucketSpec custom(long startDay, long endDay, int daysPerBucket) {
+        if (daysPerBucket < 1) {
+            throw new IllegalArgumentException("daysPerBucket must be at least 1: " + daysPerBucket);
+        }
+        return fixedWidth(startDay, endDay, daysPerBucket, LabelStyle.DATE);
+    }
+
+    private static BucketSpec fixedWidth(long startDay, long endDay, int width, LabelStyle style) {
+        if (endDay < startDay) {
+            throw new IllegalArgumentException("Empty range: " + startDay + " to " + endDay);
+        }
+        int count = (int) ((endDay - startDay) / width) + 1;
+        long[] boundaries = new long[count + 1];
+        for (int b = 0; b < count; b++) {
+            boundaries[b] = startDay + (long) width * b;
+        }
+        boundaries[count] = endDay + 1;
+        return new BucketSpec(boundaries, style);
+    }
+
+    public int bucketCount() {
+        return boundaries.length - 1;
+    }
+
+    public long startDay() {
+        return boundaries[0];
+    }
+
+    public long endDay() {
+        return boundaries[boundaries.length - 1] - 1;
+    }
+
+    // First day of bucket b; bucketStart(bucketCount()) is the day after the range.
+    public long bucketStart(int bucket) {
+        return boundaries[bucket];
+    }
+
+    /**
+     * Returns the bucket containing the given day, or -1 if it's outside the range.
+     */
+    public int bucketOf(long epochDay) {
+        if (epochDay < boundaries[0] || epochDay > endDay()) return -1;
+        int low = 0;
+        int high = bucketCount() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (boundaries[mid] <= epochDay) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * X-axis label of a bucket.
+     */
+    @NonNull
+    public String label(int bucket) {
+        switch (labelStyle) {
+            case RELATIVE_WEEK:
+                return "Week " + (bucket + 1);
+            case DAY:
+                return LocalDate.ofEpochDay(boundaries[bucket]).format(DAY_LABEL);
+            case MONTH:
+                return LocalDate.ofEpochDay(boundaries[bucket]).format(MONTH_LABEL);
+            case QUARTER:
+                LocalDate first = LocalDate.ofEpochDay(boundaries[bucket]);
+                return "Q" + ((first.getMonthValue() - 1) / 3 + 1) + " " + first.getYear();
+            case YEAR:
+                return LocalDate.ofEpochDay(boundaries[bucket]).format(YEAR_LABEL);
+            default:
+                return LocalDate.ofEpochDay(boundaries[bucket]).format(DATE_LABEL);
+        }
+    }
+}
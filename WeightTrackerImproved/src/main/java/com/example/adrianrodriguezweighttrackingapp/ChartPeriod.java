@@ -0,0 +1,215 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+
+/**
+ * ChartPeriod is one page of the weight chart: a week, month or year, identified by its type
+ * and first day. It knows its date range, its title, how to step to the neighbouring period,
+ * and how its chart values are aggregated, so the activity, the period cache and the
+ * prefetcher all agree on what a period contains.
+ *
+ * An ALL period is either the whole history or a custom date range. It has no fixed buckets:
+ * the chart picks a day, week, month or quarter bucket size to suit its zoom level.
+ *
+ * Two periods are equal when they have the same type and date range.
+ */
+public final class ChartPeriod {
+
+    /**
+     * The chart's time filters.
+     */
+    public enum FilterType { WEEK, MONTH, YEAR, ALL }
+
+    // Bounds of the "whole history" range; every real entry falls inside them.
+    private static final LocalDate ALL_TIME_START = LocalDate.of(1900, 1, 1);
+    private static final LocalDate ALL_TIME_END = LocalDate.of(2199, 12, 31);
+
+    // Formatters for the period title, built once instead of on every load.
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("MMM dd");
+    private static final DateTimeFormatter DAY_YEAR_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy");
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("MMMM yyyy");
+    private static final DateTimeFormatter YEAR_FORMAT = DateTimeFormatter.ofPattern("yyyy");
+
+    public final FilterType type;
+    public final LocalDate start;
+    public final LocalDate end;
+
+    private ChartPeriod(FilterType type, LocalDate start, LocalDate end) {
+        this.type = type;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Returns the period of the given type that contains the anchor date.
+     */
+    @NonNull
+    public static ChartPeriod containing(@NonNull FilterType type, @NonNull LocalDate anchor) {
+        switch (type) {
+            case WEEK:
+                // Start of the week (Monday) and end of the week (Sunday).
+                LocalDate monday = anchor.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                return new ChartPeriod(type, monday, monday.plusDays(6));
+            case MONTH:
+                return new ChartPeriod(type, anchor.with(TemporalAdjusters.firstDayOfMonth()),
+                        anchor.with(TemporalAdjusters.lastDayOfMonth()));
+            case ALL:
+                return allTime();
+            default:
+                return new ChartPeriod(type, anchor.with(TemporalAdjusters.firstDayOfYear()),
+                        anchor.with(TemporalAdjusters.lastDayOfYear()));
+        }
+    }
+
+    /**
+     * The whole history.
+     */
+    @NonNull
+    public static ChartPeriod allTime() {
+        return new ChartPeriod(FilterType.ALL, ALL_TIME_START, ALL_TIME_END);
+    }
+
+    /**
+     * A custom inclusive date range, shown like ALL.
+     */
+    @NonNull
+    public static ChartPeriod range(@NonNull LocalDate start, @NonNull LocalDate end) {
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("Range ends before it starts: " + start + " to " + end);
+        }
+        return new ChartPeriod(FilterType.ALL, start, end);
+    }
+
+    /**
+     * Returns true for the whole-history period (as opposed to a custom range).
+     */
+    public boolean isAllTime() {
+        return type == FilterType.ALL && start.equals(ALL_TIME_START) && end.equals(ALL_TIME_END);
+    }
+
+    /**
+     * Returns the period `direction` steps away (-1 for the previous one, +1 for the next).
+     * A custom range moves by its own length; the whole history has no neighbours and stays put.
+     */
+    @NonNull
+    public ChartPeriod shift(int direction) {
+        switch (type) {
+            case WEEK:
+                return containing(type, start.plusWeeks(direction));
+            case MONTH:
+                return containing(type, start.plusMonths(direction));
+            case ALL:
+                if (isAllTime()) return this;
+                long length = endDay() - startDay() + 1;
+                return range(start.plusDays(direction * length), end.plusDays(direction * length));
+            default:
+                return containing(type, start.plusYears(direction));
+        }
+    }
+
+    public long startDay() {
+        return start.toEpochDay();
+    }
+
+    public long endDay() {
+        return end.toEpochDay();
+    }
+
+    /**
+     * Returns true if any day of this period lies inside [startDay, endDay].
+     */
+    public boolean overlaps(long startDay, long endDay) {
+        return startDay() <= endDay && endDay() >= startDay;
+    }
+
+    /**
+     * Text shown above the chart, e.g. "Jan 01 - Jan 07, 2024", "January 2024" or "2024".
+     */
+    @NonNull
+    public String title() {
+        switch (type) {
+            case WEEK:
+                return start.format(DAY_FORMAT) + " - " + end.format(DAY_YEAR_FORMAT);
+            case MONTH:
+                return start.format(MONTH_FORMAT);
+            case ALL:
+                return isAllTime() ? "All time" : start.format(DAY_YEAR_FORMAT) + " - " + end.format(DAY_YEAR_FORMAT);
+            default:
+                return start.format(YEAR_FORMAT);
+        }
+    }
+
+    /**
+     * Text shown on an empty chart.
+     */
+    @NonNull
+    public String noDataText() {
+        switch (type) {
+            case WEEK:
+                return "No weight data available for this period.";
+            case MONTH:
+                return "No weight data available for this month.";
+            case ALL:
+                return isAllTime() ? "No weight data recorded yet." : "No weight data available for this range.";
+            default:
+                return "No weight data available for this year.";
+        }
+    }
+
+    /**
+     * Aggregates raw entries into this period's chart values, for every metric in one pass.
+     * WEEK shows one point per day (the day's first entry); MONTH shows the average of each
+     * 7-day block counted from the 1st; YEAR shows the average of each month. ALL periods use
+     * {@link AdaptiveAggregation} instead.
+     */
+    @NonNull
+    public MetricResults aggregate(@NonNull WeightSeries series) {
+        switch (type) {
+            case ALL:
+                throw new IllegalStateException("ALL periods are bucketed by AdaptiveAggregation");
+            case WEEK:
+                return SeriesAggregator.aggregateAll(series, BucketSpec.days(startDay(), endDay()),
+                        SeriesAggregator.Reducer.MEAN, SeriesAggregator.SameDayPolicy.FIRST);
+            case MONTH:
+                return SeriesAggregator.aggregateAll(series, BucketSpec.weeksFromStart(startDay(), endDay()),
+                        SeriesAggregator.Reducer.MEAN, SeriesAggregator.SameDayPolicy.ALL);
+            default:
+                return SeriesAggregator.aggregateAll(series, BucketSpec.months(startDay(), endDay()),
+                        SeriesAggregator.Reducer.MEAN, SeriesAggregator.SameDayPolicy.ALL);
+        }
+    }
+
+    /**
+     * Builds a YEAR period's chart values from its monthly rollups.
+     */
+    @NonNull
+    public MetricResults aggregateRollups(@NonNull List<WeightRollup> monthlyRollups) {
+        return SeriesAggregator.fromRollupsAll(monthlyRollups, BucketSpec.months(startDay(), endDay()),
+                SeriesAggregator.Reducer.MEAN);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChartPeriod)) return false;
+        ChartPeriod other = (ChartPeriod) o;
+        return type == other.type && start.equals(other.start) && end.equals(other.end);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * type.hashCode() + start.hashCode()) + end.hashCode();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return type + " " + start + " to " + end;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ChartPeriodCache keeps the computed chart values of recently viewed (or prefetched) chart
+ * periods, so flipping back and forth between periods redraws instantly without another query.
+ *
+ * Entries are either fresh (computed from a server result within the last few minutes) or
+ * provisional (computed from the on-device cache, or from a fresh result that has aged out).
+ * A fresh entry is drawn without refetching; a provisional one is drawn right away and then
+ * replaced once the server answers.
+ *
+ * ALL / custom range periods have no fixed buckets, so for them the cache keeps the loaded
+ * {@link WeightSeries} itself, which the chart buckets to suit its current zoom.
+ *
+ * WeightRepository owns one cache per user and drops every entry whose date range is touched
+ * by an add or delete. Safe to use from any thread.
+ */
+public class ChartPeriodCache {
+
+    private static final String TAG = "ChartPeriodCache";
+
+    // Periods kept; the least recently used one is evicted first. Bucketed periods take about a
+    // kilobyte each (four metrics), ALL series about 21 bytes per entry.
+    private static final int MAX_ENTRIES = 48;
+
+    // How long a server result counts as fresh, to pick up edits made on other devices.
+    private static final long FRESH_FOR_MS = 5 * 60 * 1000L;
+
+    /**
+     * A cached period: its chart values for every metric (or, for ALL periods, its series) and
+     * whether they are fresh.
+     */
+    public static final class Cached {
+        @Nullable public final MetricResults result;
+        @Nullable public final WeightSeries series;
+        public final boolean fresh;
+
+        Cached(MetricResults result, WeightSeries series, boolean fresh) {
+            this.result = result;
+            this.series = series;
+            this.fresh = fresh;
+        }
+    }
+
+    private static final class Slot {
+        final MetricResults result;
+        final WeightSeries series;
+        final boolean fromServer;
+        final long storedAtMs;
+
+        Slot(MetricResults result, WeightSeries series, boolean fromServer, long storedAtMs) {
+            this.result = result;
+            this.series = series;
+            this.fromServer = fromServer;
+            this.storedAtMs = storedAtMs;
+        }
+    }
+
+    // Access-ordered, so iteration starts at the least recently used period.
+    private final LinkedHashMap<ChartPeriod, Slot> slots = new LinkedHashMap<ChartPeriod, Slot>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ChartPeriod, Slot> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Returns the cached values of a period, or null if it isn't cached.
+     */
+    @Nullable
+    public synchronized Cached get(@NonNull ChartPeriod period) {
+        Slot slot = slots.get(period);
+        if (slot == null) return null;
+        boolean fresh = slot.fromServer && SystemClock.elapsedRealtime() - slot.storedAtMs < FRESH_FOR_MS;
+        return new Cached(slot.result, slot.series, fresh);
+    }
+
+    /**
+     * Returns true if the period is cached with fresh values, i.e. there is no need to fetch it.
+     */
+    public synchronized boolean isFresh(@NonNull ChartPeriod period) {
+        Cached cached = get(period);
+        return cached != null && cached.fresh;
+    }
+
+    /**
+     * Stores a period's values. Values computed from the on-device cache never replace fresh ones.
+     *
+     * @param fromServer True if the values were computed from a server result.
+     */
+    public synchronized void put(@NonNull ChartPeriod period, @NonNull MetricResults result, boolean fromServer) {
+        if (!fromServer && isFresh(period)) return;
+        slots.put(period, new Slot(result, null, fromServer, SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * Stores the loaded series of an ALL period, with the same freshness rules as {@link #put}.
+     */
+    public synchronized void putSeries(@NonNull ChartPeriod period, @NonNull WeightSeries series, boolean fromServer) {
+        if (!fromServer && isFresh(period)) return;
+        slots.put(period, new Slot(null, series, fromServer, SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * Fills in provisional WEEK and MONTH entries for every week and month lying fully inside
+     * [rangeStart, rangeEnd], computed from a series covering that range (e.g. a year of cached
+     * entries loaded for the YEAR view). Periods already cached are left alone.
+     */
+    public void seedFrom(@NonNull WeightSeries series, long rangeStart, long rangeEnd) {
+        int seeded = 0;
+        LocalDate week = LocalDate.ofEpochDay(rangeStart).with(TemporalAdjusters.nextOrSame(DayOfWeek.MONDAY));
+        for (; week.plusDays(6).toEpochDay() <= rangeEnd; week = week.plusWeeks(1)) {
+            if (seedPeriod(ChartPeriod.containing(ChartPeriod.FilterType.WEEK, week), series)) seeded++;
+        }
+        LocalDate month = LocalDate.ofEpochDay(rangeStart);
+        month = month.getDayOfMonth() == 1 ? month : month.plusMonths(1).withDayOfMonth(1);
+        for (; month.with(TemporalAdjusters.lastDayOfMonth()).toEpochDay() <= rangeEnd; month = month.plusMonths(1)) {
+            if (seedPeriod(ChartPeriod.containing(ChartPeriod.FilterType.MONTH, month), series)) seeded++;
+        }
+        Log.d(TAG, "Seeded " + seeded + " periods from " + series.size() + " cached entries.");
+    }
+
+    private boolean seedPeriod(ChartPeriod period, WeightSeries series) {
+        synchronized (this) {
+            if (slots.containsKey(period)) return false;
+        }
+        MetricResults result = period.aggregate(series);
+        synchronized (this) {
+            if (slots.containsKey(period)) return false;
+            slots.put(period, new Slot(result, null, false, SystemClock.elapsedRealtime()));
+        }
+        return true;
+    }
+
+    /**
+     * Drops every period that contains at least one day of [startDay, endDay].
+     */
+    public synchronized void invalidate(long startDay, long endDay) {
+        int removed = 0;
+        Iterator<ChartPeriod> it = slots.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().overlaps(startDay, endDay)) {
+                it.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            Log.d(TAG, "Invalidated " + removed + " periods for epoch days " + startDay + " to " + endDay);
+        }
+    }
+
+    /**
+     * Drops everything, e.g. after the rollups were rebuilt.
+     */
+    public synchronized void clear() {
+        slots.clear();
+    }
+}
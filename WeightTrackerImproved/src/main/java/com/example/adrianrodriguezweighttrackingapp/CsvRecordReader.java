@@ -0,0 +1,161 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CsvRecordReader streams a CSV export row by row. The first row is the header and names the
+ * fields of every following row.
+ *
+ * Follows RFC 4180: fields may be quoted, quotes inside quoted fields are doubled, and quoted
+ * fields may contain delimiters and line breaks. The delimiter (',', ';' or tab, as used by
+ * trackers with European or spreadsheet exports) is detected from the header row.
+ */
+public class CsvRecordReader implements ImportRecordReader {
+
+    private final BufferedReader reader;
+    private char delimiter = ',';
+    private String[] header;
+    private long line = 1;   // Line the reader is on.
+    private int pending = -2; // One character of lookahead; -2 means none.
+
+    CsvRecordReader(@NonNull InputStream in) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    @Nullable
+    @Override
+    public Record next() throws IOException {
+        if (header == null && !readHeader()) return null;
+
+        List<String> values;
+        long startLine;
+        do {
+            startLine = line;
+            values = readRow();
+            if (values == null) return null;
+        } while (values.size() == 1 && values.get(0).isEmpty()); // Blank lines.
+
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length && i < values.size(); i++) {
+            if (!header[i].isEmpty()) fields.put(header[i], values.get(i));
+        }
+        return new Record(fields, startLine);
+    }
+
+    // Reads the header row, detecting the delimiter from it. Returns false for an empty file.
+    private boolean readHeader() throws IOException {
+        // Drop a UTF-8 byte order mark first, so a quoted first column name is still read as quoted.
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') reader.reset();
+
+        reader.mark(8192);
+        String firstLine = reader.readLine();
+        if (firstLine == null) return false;
+        reader.reset();
+        delimiter = detectDelimiter(firstLine);
+
+        List<String> names = readRow();
+        if (names == null) return false;
+        header = new String[names.size()];
+        for (int i = 0; i < header.length; i++) {
+            header[i] = ImportRecordReader.fieldKey(names.get(i));
+        }
+        return true;
+    }
+
+    // The most frequent of ',', ';' and tab outside quotes on the header line.
+    private static char detectDelimiter(String headerLine) {
+        int commas = 0;
+        int semicolons = 0;
+        int tabs = 0;
+        boolean quoted = false;
+        for (int i = 0; i < headerLine.length(); i++) {
+            char c = headerLine.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted) {
+                if (c == ',') commas++;
+                else if (c == ';') semicolons++;
+                else if (c == '\t') tabs++;
+            }
+        }
+        if (semicolons > commas && semicolons >= tabs) return ';';
+        if (tabs > commas) return '\t';
+        return ',';
+    }
+
+    // Reads one row's fields, or returns null at the end of the file.
+    @Nullable
+    private List<String> readRow() throws IOException {
+        int c = read();
+        if (c == -1) return null;
+
+        List<String> values = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field at line " + line);
+                } else if (c == '"') {
+                    int nextChar = read();
+                    if (nextChar == '"') {
+                        field.append('"'); // Escaped quote.
+                    } else {
+                        quoted = false;
+                        c = nextChar;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == delimiter) {
+                values.add(field.toString().trim());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    int nextChar = read();
+                    if (nextChar != '\n') unread(nextChar);
+                }
+                if (c != -1) line++;
+                values.add(field.toString().trim());
+                return values;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (pending != -2) {
+            int c = pending;
+            pending = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void unread(int c) {
+        pending = c;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
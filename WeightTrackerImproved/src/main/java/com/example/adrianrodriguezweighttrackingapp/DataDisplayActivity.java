@@ -1,47 +1,104 @@
 package com.example.adrianrodriguezweighttrackingapp;
 
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
 import android.util.Log; // For printing messages to Logcat, helpful for debugging
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.OnBackPressedCallback;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull; // Helps show that a parameter shouldn't be null
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.android.material.snackbar.Snackbar;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.ListenerRegistration;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
-// This screen shows all the weight entries for a user.
-// It uses Firebase Firestore to get and update the data in real-time.
-public class DataDisplayActivity extends AppCompatActivity implements WeightDataAdapter.OnItemDeleteListener {
+// This screen shows the weight entries for a user, a page at a time as they scroll.
+// It reads through WeightRepository: cached entries show up first, and the newest page stays live from Firestore.
+// Writes show up right away too: new entries appear (marked as waiting to sync) before the server has them,
+// and deleted ones disappear as soon as you tap delete. A delete can be undone from the Snackbar for a few seconds.
+// Long-press an entry to select several and delete them all at once (handy for cleaning up a bad import).
+public class DataDisplayActivity extends AppCompatActivity
+        implements WeightDataAdapter.OnItemDeleteListener, WeightDataAdapter.OnSelectionChangedListener {
 
     // A tag for logging messages, makes it easier to find our messages in Logcat
     private static final String TAG = "DataDisplayActivity";
 
+    // How many entries we fetch per page, and how close to the bottom we start fetching the next one
+    private static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_DISTANCE = 10;
+
     // UI parts of our screen
     private RecyclerView recyclerViewWeightData; // Shows a scrollable list of weight entries
     private WeightDataAdapter weightDataAdapter; // Helps put our weight data into the RecyclerView
     private TextView textViewNoDataMessage; // Shows a message if there's no data
     private Button buttonViewCharts; // Button to go to the charts screen
+    private Button buttonImportData; // Button to import entries exported from another tracker
+    private Button buttonExportData; // Button to save every entry to a CSV or JSON file
+    private TextView textViewTransferStatus; // Shows how far along an import or export is
+    private View layoutSelectionBar; // Shown instead of the title while entries are selected
+    private TextView textViewSelectionCount; // "3 selected"
+
+    // While entries are selected, the back button clears the selection instead of leaving the screen
+    private final OnBackPressedCallback clearSelectionOnBack = new OnBackPressedCallback(false) {
+        @Override
+        public void handleOnBackPressed() {
+            weightDataAdapter.clearSelection();
+        }
+    };
 
-    // Firebase connections
+    // Firebase and data connections
     private FirebaseAuth mAuth; // For checking who's logged in
-    private FirebaseFirestore db; // Our database connection
-    private CollectionReference weightEntriesRef; // Points to where our weight data is stored for the current user
-    private ListenerRegistration weightDataListener; // Keeps track of our real-time database listener
+    private WeightRepository weightRepository; // Local-first access to the current user's weight data
+    private ListenerRegistration weightDataListener; // Keeps track of our real-time listener on the newest page
+
+    // The pages of history we've loaded so far (newest page is live, older ones are fetched as you scroll)
+    private final PagedWeightList pagedWeightList = new PagedWeightList();
+    private boolean loadingOlderPage; // True while we're waiting on an older page, so we don't ask twice
+
+    // Writes the server hasn't confirmed yet, laid over the loaded pages; we redraw whenever they change
+    private PendingWrites pendingWrites;
+    private final PendingWrites.Listener pendingWritesListener = this::showLoadedEntries;
+
+    // The import that's running, if any. Cancelled when the screen goes away; importing the same file again picks up where it stopped.
+    private WeightRepository.RequestHandle importHandle;
+
+    // Lets the user pick a CSV or JSON file to import (has to be registered before the activity starts)
+    private final ActivityResultLauncher<String[]> importFilePicker =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::startImport);
+
+    // The export that's running, if any. Cancelled when the screen goes away.
+    private WeightRepository.RequestHandle exportHandle;
+
+    // Let the user choose where to save an export; one picker per format since the file type is fixed up front
+    private final ActivityResultLauncher<String> csvExportPicker = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(WeightExporter.Format.CSV.mimeType),
+            uri -> startExport(uri, WeightExporter.Format.CSV));
+    private final ActivityResultLauncher<String> jsonExportPicker = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(WeightExporter.Format.JSON.mimeType),
+            uri -> startExport(uri, WeightExporter.Format.JSON));
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -50,7 +107,6 @@ public class DataDisplayActivity extends AppCompatActivity implements WeightData
 
         // Get our Firebase stuff ready
         mAuth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
 
         // Check if a user is logged in. If not, send them back to the login screen.
         FirebaseUser currentUser = mAuth.getCurrentUser();
@@ -61,21 +117,52 @@ public class DataDisplayActivity extends AppCompatActivity implements WeightData
             return;
         }
 
-        // Set up where we'll store weight entries in Firestore for THIS user
-        weightEntriesRef = db.collection("users")
-                .document(currentUser.getUid())
-                .collection("weightEntries");
+        // Get the repository that holds weight entries for THIS user
+        weightRepository = WeightRepository.getInstance(this, currentUser.getUid());
+        pendingWrites = weightRepository.getPendingWrites();
 
         // Find our UI elements from the layout
         recyclerViewWeightData = findViewById(R.id.recyclerViewWeightData);
         textViewNoDataMessage = findViewById(R.id.textViewNoDataMessage);
 
         // Tell the RecyclerView how to arrange its items (like a list, top to bottom)
-        recyclerViewWeightData.setLayoutManager(new LinearLayoutManager(this));
-        // Make an adapter to handle our list data and tell it to use "this" activity for deletions
-        weightDataAdapter = new WeightDataAdapter(new ArrayList<>(), this);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerViewWeightData.setLayoutManager(layoutManager);
+        // Make an adapter to handle our list data and tell it to use "this" activity for deletions and selections
+        weightDataAdapter = new WeightDataAdapter(this, this);
         recyclerViewWeightData.setAdapter(weightDataAdapter);
 
+        // The bar that shows up while entries are selected: select all, cancel, or delete them all
+        layoutSelectionBar = findViewById(R.id.layoutSelectionBar);
+        textViewSelectionCount = findViewById(R.id.textViewSelectionCount);
+        findViewById(R.id.buttonSelectAll).setOnClickListener(v -> weightDataAdapter.selectAll());
+        findViewById(R.id.buttonCancelSelection).setOnClickListener(v -> weightDataAdapter.clearSelection());
+        findViewById(R.id.buttonDeleteSelected).setOnClickListener(v -> {
+            List<WeightData> selected = weightDataAdapter.getSelectedEntries();
+            weightDataAdapter.clearSelection();
+            deleteWeightData(selected);
+        });
+        getOnBackPressedDispatcher().addCallback(this, clearSelectionOnBack);
+
+        // When the user scrolls close to the bottom, fetch the next (older) page of history
+        recyclerViewWeightData.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0) return; // Only care about scrolling down
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= weightDataAdapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadOlderPage();
+                }
+            }
+        });
+
+        // Show the last known entries from the snapshot file right away, before the cache or Firebase answer
+        SnapshotCodec.Contents snapshot = weightRepository.readSnapshot();
+        if (snapshot != null && !snapshot.newestPage.isEmpty()) {
+            pagedWeightList.applyNewestPage(snapshot.newestPage, true);
+            showLoadedEntries();
+        }
+
         // --- Set up what happens when buttons are clicked ---
 
         // Button to add new data
@@ -85,6 +172,32 @@ public class DataDisplayActivity extends AppCompatActivity implements WeightData
             startActivity(intent); // Go to the add weight screen
         });
 
+        // Button to import a CSV or JSON file from another tracker
+        textViewTransferStatus = findViewById(R.id.textViewTransferStatus);
+        buttonImportData = findViewById(R.id.buttonImportData);
+        buttonImportData.setOnClickListener(v -> importFilePicker.launch(new String[] {
+                "text/csv", "text/comma-separated-values", "text/plain", "application/json", "application/octet-stream"
+        }));
+
+        // Button to export everything: ask which format, then where to save it
+        buttonExportData = findViewById(R.id.buttonExportData);
+        buttonExportData.setOnClickListener(v -> new AlertDialog.Builder(this)
+                .setTitle("Export format")
+                .setItems(new String[] { "CSV (spreadsheets)", "JSON" }, (dialog, which) -> {
+                    WeightExporter.Format format = which == 0 ? WeightExporter.Format.CSV : WeightExporter.Format.JSON;
+                    String fileName = "weight-entries." + format.extension;
+                    (format == WeightExporter.Format.CSV ? csvExportPicker : jsonExportPicker).launch(fileName);
+                })
+                .show());
+
+        // Debug builds only: long-press the title to see the performance metrics screen
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            findViewById(R.id.textViewHistoryTitle).setOnLongClickListener(v -> {
+                startActivity(new Intent(DataDisplayActivity.this, MetricsActivity.class));
+                return true;
+            });
+        }
+
         // Button to see charts
         buttonViewCharts = findViewById(R.id.buttonViewCharts);
         buttonViewCharts.setOnClickListener(v -> {
@@ -116,11 +229,19 @@ public class DataDisplayActivity extends AppCompatActivity implements WeightData
             return;
         }
 
-        // Make sure our database reference is pointing to the right user's data
-        if (weightEntriesRef == null || !weightEntriesRef.getPath().contains(currentUser.getUid())) {
-            weightEntriesRef = db.collection("users").document(currentUser.getUid()).collection("weightEntries");
+        // Make sure our repository is pointing to the right user's data
+        if (weightRepository == null || !weightRepository.getUserId().equals(currentUser.getUid())) {
+            weightRepository = WeightRepository.getInstance(this, currentUser.getUid());
         }
 
+        // Redraw whenever an entry is queued, synced, or starts or stops being deleted
+        pendingWrites = weightRepository.getPendingWrites();
+        pendingWrites.addListener(pendingWritesListener);
+        showLoadedEntries(); // Picks up anything queued while we were in the background
+
+        // Quietly fix up any old entries that are missing their epoch-day key (runs once per user)
+        weightRepository.migrateLegacyDates();
+
         // Start listening for weight data updates
         loadWeightData();
     }
@@ -135,69 +256,234 @@ public class DataDisplayActivity extends AppCompatActivity implements WeightData
             weightDataListener.remove(); // Stop the listener
             Log.d(TAG, "Stopped listening for data.");
         }
+        if (pendingWrites != null) {
+            pendingWrites.removeListener(pendingWritesListener);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Stop a running import; what's already saved stays, and picking the same file again resumes it
+        if (importHandle != null) {
+            importHandle.cancel();
+            importHandle = null;
+        }
+        // Stop a running export too (the half-written file is left for the user to delete or overwrite)
+        if (exportHandle != null) {
+            exportHandle.cancel();
+            exportHandle = null;
+        }
     }
 
-    // Sets up a real-time listener for the user's weight entries.
-    // This function runs whenever the data changes in the database.
+    // Sets up a real-time listener for the newest page of the user's weight entries.
+    // The cached page from the phone shows up first, then this runs again whenever that page changes in the database.
     private void loadWeightData() {
-        weightDataListener = weightEntriesRef.orderBy("date", Query.Direction.DESCENDING) // Sort by date, newest first
-                .addSnapshotListener((snapshots, e) -> {
-                    // If there's an error getting data
-                    if (e != null) {
-                        Log.e(TAG, "Problem getting weight data:", e);
-                        Toast.makeText(DataDisplayActivity.this, "Error loading data.", Toast.LENGTH_LONG).show();
-                        textViewNoDataMessage.setText("Couldn't load data. Try again later!");
-                        textViewNoDataMessage.setVisibility(View.VISIBLE);
-                        recyclerViewWeightData.setVisibility(View.GONE);
-                        return;
-                    }
-
-                    // If we got some data back
-                    if (snapshots != null && !snapshots.isEmpty()) {
-                        Log.d(TAG, "Got " + snapshots.size() + " weight entries.");
-                        List<WeightData> updatedList = new ArrayList<>();
-                        // Go through each weight entry we got
-                        for (QueryDocumentSnapshot doc : snapshots) {
-                            // Turn the database entry into our WeightData object
-                            WeightData data = doc.toObject(WeightData.class);
-                            data.setDocumentId(doc.getId()); // Save the document ID so we can delete it later
-                            updatedList.add(data);
-                        }
-                        weightDataAdapter.updateData(updatedList); // Update the list shown on screen
-
-                        // Show the list, hide the "no data" message
-                        textViewNoDataMessage.setVisibility(View.GONE);
-                        recyclerViewWeightData.setVisibility(View.VISIBLE);
-                    } else {
-                        // If there's no data
-                        Log.d(TAG, "No weight data for this user yet.");
-                        weightDataAdapter.updateData(new ArrayList<>()); // Clear the list on screen
-                        // Show the "no data" message, hide the list
-                        textViewNoDataMessage.setText("No weight data recorded yet. Tap '+' to add your first entry!");
-                        textViewNoDataMessage.setVisibility(View.VISIBLE);
-                        recyclerViewWeightData.setVisibility(View.GONE);
-                    }
-                });
+        weightDataListener = weightRepository.listenNewestPage(PAGE_SIZE, new WeightRepository.PageCallback() {
+            @Override
+            public void onPageLoaded(@NonNull List<WeightData> page, boolean fullPage, boolean fromCache) {
+                Log.d(TAG, "Got " + page.size() + " newest weight entries" + (fromCache ? " from the cache." : "."));
+                // A short page from the cache doesn't mean there's nothing older on the server
+                pagedWeightList.applyNewestPage(page, fullPage || fromCache);
+                showLoadedEntries();
+            }
+
+            @Override
+            public void onError(@NonNull Exception e) {
+                // Only called when there wasn't even a cached copy to show
+                Log.e(TAG, "Problem getting weight data:", e);
+                Toast.makeText(DataDisplayActivity.this, "Error loading data.", Toast.LENGTH_LONG).show();
+                textViewNoDataMessage.setText("Couldn't load data. Try again later!");
+                textViewNoDataMessage.setVisibility(View.VISIBLE);
+                recyclerViewWeightData.setVisibility(View.GONE);
+            }
+        });
+    }
+
+    // Fetches the next page of entries older than the oldest one we have (one-time read, not live)
+    private void loadOlderPage() {
+        PagedWeightList.EntryKey oldest = pagedWeightList.oldestKey();
+        if (loadingOlderPage || oldest == null || pagedWeightList.isEndReached()) return;
+        loadingOlderPage = true;
+
+        weightRepository.loadOlderPage(oldest, PAGE_SIZE, new WeightRepository.PageCallback() {
+            @Override
+            public void onPageLoaded(@NonNull List<WeightData> page, boolean fullPage, boolean fromCache) {
+                Log.d(TAG, "Got " + page.size() + " older weight entries" + (fromCache ? " from the cache." : "."));
+                loadingOlderPage = false;
+                pagedWeightList.applyOlderPage(oldest, page, fullPage || fromCache);
+                showLoadedEntries();
+            }
+
+            @Override
+            public void onError(@NonNull Exception e) {
+                loadingOlderPage = false;
+                Log.e(TAG, "Problem getting older weight data:", e);
+            }
+        });
+    }
+
+    // Puts everything we've loaded so far on screen, or the "no data" message if there's nothing.
+    // Entries still waiting to sync are slotted in, and ones being deleted are left out.
+    private void showLoadedEntries() {
+        List<WeightData> loaded = pendingWrites.overlay(pagedWeightList.toList(),
+                pagedWeightList.oldestKey(), pagedWeightList.isEndReached());
+        weightDataAdapter.updateData(loaded, pendingWrites.queuedIds()); // Update the list shown on screen
+
+        if (!loaded.isEmpty()) {
+            // Show the list, hide the "no data" message
+            textViewNoDataMessage.setVisibility(View.GONE);
+            recyclerViewWeightData.setVisibility(View.VISIBLE);
+        } else {
+            // If there's no data
+            Log.d(TAG, "No weight data for this user yet.");
+            // Show the "no data" message, hide the list
+            textViewNoDataMessage.setText("No weight data recorded yet. Tap '+' to add your first entry!");
+            textViewNoDataMessage.setVisibility(View.VISIBLE);
+            recyclerViewWeightData.setVisibility(View.GONE);
+        }
+    }
+
+    // Imports the file the user picked, showing progress under the list as it goes
+    private void startImport(Uri uri) {
+        if (uri == null || importHandle != null) return; // Picker was cancelled, or an import is already running
+
+        long size = fileSize(uri);
+        // The same file (same place, same size) counts as the same import, so it can be resumed
+        String sourceId = uri + "#" + size;
+        buttonImportData.setEnabled(false);
+        textViewTransferStatus.setText("Starting import...");
+        textViewTransferStatus.setVisibility(View.VISIBLE);
+
+        importHandle = weightRepository.importEntries(() -> openImportFile(uri), size, sourceId, new WeightImporter.Listener() {
+            @Override
+            public void onProgress(@NonNull WeightImporter.Progress progress) {
+                textViewTransferStatus.setText(describeImport("Importing", progress));
+            }
+
+            @Override
+            public void onComplete(@NonNull WeightImporter.Progress progress) {
+                importHandle = null;
+                buttonImportData.setEnabled(true);
+                textViewTransferStatus.setText(describeImport("Import finished", progress));
+                Toast.makeText(DataDisplayActivity.this, "Imported " + progress.imported + " entries!", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e, @NonNull WeightImporter.Progress progress) {
+                importHandle = null;
+                buttonImportData.setEnabled(true);
+                Log.e(TAG, "Import failed:", e);
+                textViewTransferStatus.setText(describeImport("Import stopped", progress)
+                        + "\nPick the same file again to continue where it left off.");
+                Toast.makeText(DataDisplayActivity.this, "Import failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    // Runs on a background thread when the import starts reading
+    private InputStream openImportFile(Uri uri) throws FileNotFoundException {
+        InputStream in = getContentResolver().openInputStream(uri);
+        if (in == null) throw new FileNotFoundException("Can't open " + uri);
+        return in;
+    }
+
+    // The picked file's size in bytes, or -1 if the provider doesn't say
+    private long fileSize(Uri uri) {
+        try (Cursor cursor = getContentResolver().query(uri, new String[] { OpenableColumns.SIZE }, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Couldn't get the size of " + uri, e);
+        }
+        return -1;
+    }
+
+    // e.g. "Importing (42%): 1200 entries added, 3 rows skipped"
+    private static String describeImport(String state, WeightImporter.Progress progress) {
+        StringBuilder text = new StringBuilder(state);
+        if (progress.fraction() >= 0 && progress.fraction() < 1) {
+            text.append(String.format(Locale.getDefault(), " (%d%%)", Math.round(progress.fraction() * 100)));
+        }
+        text.append(": ").append(progress.imported).append(" entries added");
+        if (progress.rejected > 0) text.append(", ").append(progress.rejected).append(" rows skipped");
+        if (progress.resumedFrom > 0) text.append(" (resumed after row ").append(progress.resumedFrom).append(")");
+        return text.toString();
+    }
+
+    // Writes every entry to the file the user created, showing progress under the list as it goes
+    private void startExport(Uri uri, WeightExporter.Format format) {
+        if (uri == null || exportHandle != null) return; // Picker was cancelled, or an export is already running
+
+        buttonExportData.setEnabled(false);
+        textViewTransferStatus.setText("Starting export...");
+        textViewTransferStatus.setVisibility(View.VISIBLE);
+
+        exportHandle = weightRepository.exportEntries(() -> openExportFile(uri), format, new WeightExporter.Listener() {
+            @Override
+            public void onProgress(@NonNull WeightExporter.Progress progress) {
+                textViewTransferStatus.setText(String.format(Locale.getDefault(), "Exporting (%d%%): %d entries written",
+                        Math.round(progress.fraction * 100), progress.entriesWritten));
+            }
+
+            @Override
+            public void onComplete(@NonNull WeightExporter.Progress progress) {
+                exportHandle = null;
+                buttonExportData.setEnabled(true);
+                textViewTransferStatus.setText("Export finished: " + progress.entriesWritten + " entries saved");
+                Toast.makeText(DataDisplayActivity.this, "Export saved!", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e, @NonNull WeightExporter.Progress progress) {
+                exportHandle = null;
+                buttonExportData.setEnabled(true);
+                Log.e(TAG, "Export failed:", e);
+                textViewTransferStatus.setText("Export stopped after " + progress.entriesWritten + " entries.");
+                Toast.makeText(DataDisplayActivity.this, "Export failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    // Runs on a background thread when the export starts writing.
+    // Goes through a file channel ("wt" truncates anything already in the file); closing it closes the descriptor too.
+    private WritableByteChannel openExportFile(Uri uri) throws FileNotFoundException {
+        ParcelFileDescriptor descriptor = getContentResolver().openFileDescriptor(uri, "wt");
+        if (descriptor == null) throw new FileNotFoundException("Can't open " + uri);
+        return new ParcelFileDescriptor.AutoCloseOutputStream(descriptor).getChannel();
     }
 
     // This gets called by the adapter when the delete button next to a weight entry is clicked
     @Override
-    public void onDeleteClick(@NonNull String documentId) {
-        Log.d(TAG, "Delete button clicked for ID: " + documentId);
+    public void onDeleteClick(@NonNull WeightData entry) {
+        Log.d(TAG, "Delete button clicked for ID: " + entry.getDocumentId());
 
         // Make sure the ID isn't empty
-        if (documentId.isEmpty()) {
+        if (entry.getDocumentId() == null || entry.getDocumentId().isEmpty()) {
             Toast.makeText(DataDisplayActivity.this, "Can't delete: missing ID.", Toast.LENGTH_SHORT).show();
             Log.e(TAG, "Tried to delete with an empty document ID.");
             return;
         }
 
-        // Go ahead and try to delete it from Firebase
-        deleteWeightData(documentId);
+        // Go ahead and delete it (a single entry goes the same way as a bulk delete)
+        deleteWeightData(Collections.singletonList(entry));
+    }
+
+    // This gets called by the adapter whenever entries get selected or unselected (0 means selection mode is over)
+    @Override
+    public void onSelectionChanged(int selectedCount) {
+        boolean selecting = selectedCount > 0;
+        layoutSelectionBar.setVisibility(selecting ? View.VISIBLE : View.GONE);
+        findViewById(R.id.textViewHistoryTitle).setVisibility(selecting ? View.GONE : View.VISIBLE);
+        textViewSelectionCount.setText(String.format(Locale.getDefault(), "%d selected", selectedCount));
+        clearSelectionOnBack.setEnabled(selecting);
     }
 
-    // Deletes a weight entry from Firebase
-    private void deleteWeightData(@NonNull String documentId) {
+    // Deletes weight entries, with a few seconds to undo it
+    private void deleteWeightData(@NonNull List<WeightData> entries) {
+        if (entries.isEmpty()) return;
+
         // Just make sure someone is still logged in before trying to delete
         FirebaseUser currentUser = mAuth.getCurrentUser();
         if (currentUser == null) {
@@ -206,24 +492,29 @@ public class DataDisplayActivity extends AppCompatActivity implements WeightData
             return;
         }
 
-        // Get the right place in the database to delete from
-        CollectionReference userWeightEntriesRef = db.collection("users")
-                .document(currentUser.getUid())
-                .collection("weightEntries");
-
-        Log.d(TAG, "Trying to delete document ID: " + documentId);
-
-        // Tell Firebase to delete the document
-        userWeightEntriesRef.document(documentId).delete()
-                .addOnSuccessListener(aVoid -> {
-                    // Success! The screen will update by itself because of the real-time listener.
-                    Toast.makeText(DataDisplayActivity.this, "Entry deleted!", Toast.LENGTH_SHORT).show();
-                    Log.d(TAG, "Document deleted successfully: " + documentId);
-                })
-                .addOnFailureListener(e -> {
-                    // Uh oh, something went wrong
-                    Toast.makeText(DataDisplayActivity.this, "Error deleting entry: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                    Log.e(TAG, "Failed to delete document " + documentId + ": " + e.getMessage(), e);
-                });
+        Log.d(TAG, "Trying to delete " + entries.size() + " entries");
+        List<String> documentIds = new ArrayList<>(entries.size());
+        for (WeightData entry : entries) documentIds.add(entry.getDocumentId());
+
+        // Ask the repository to delete them. They're only marked as deleted on the phone at first (the rows
+        // disappear right away through the pending-writes listener); the server copies go once the undo time is up.
+        weightRepository.deleteEntries(entries, new WeightRepository.WriteCallback() {
+            @Override
+            public void onSuccess() {
+                String message = entries.size() == 1 ? "Entry deleted" : entries.size() + " entries deleted";
+                Snackbar.make(findViewById(android.R.id.content), message, Snackbar.LENGTH_LONG)
+                        .setDuration(WeightRepository.UNDO_WINDOW_MS)
+                        .setAction("Undo", v -> weightRepository.restoreEntries(documentIds))
+                        .show();
+                Log.d(TAG, "Marked " + entries.size() + " entries as deleted");
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e) {
+                // Uh oh, something went wrong. The rows are already back in the list, so just say so.
+                Toast.makeText(DataDisplayActivity.this, "Couldn't delete entries: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                Log.e(TAG, "Failed to delete " + entries.size() + " entries: " + e.getMessage(), e);
+            }
+        });
     }
 }
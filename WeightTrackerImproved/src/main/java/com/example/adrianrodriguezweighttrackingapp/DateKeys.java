@@ -0,0 +1,82 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+
+/**
+ * DateKeys converts between the date strings users see and the integer epoch-day key
+ * (days since 1970-01-01) that every query, sort and chart bucket is based on.
+ *
+ * Older entries were saved either as "yyyy-MM-dd" (generated data) or "dd-MM-yyyy"
+ * (the add screen), so parsing accepts both, while new entries are always written in
+ * the canonical "yyyy-MM-dd" form alongside their epoch day.
+ *
+ * It also names entry documents: a user has one entry per day, stored under {@link #entryId}.
+ */
+public final class DateKeys {
+
+    // Marks an entry whose epoch day has not been set or could not be derived.
+    public static final long MISSING_EPOCH_DAY = Long.MIN_VALUE;
+
+    // Canonical storage format for the human-readable "date" field. Both formats parse strictly:
+    // "2023-02-30" is not a date, rather than being read as 2023-02-28.
+    public static final DateTimeFormatter STORAGE_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM-dd")
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    // Format produced by the date picker on the add screen.
+    public static final DateTimeFormatter INPUT_FORMAT = DateTimeFormatter.ofPattern("dd-MM-uuuu")
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    private DateKeys() {
+        // Utility class, no instances.
+    }
+
+    /**
+     * Parses a date string in either supported format into an epoch day.
+     *
+     * @return The epoch day, or {@link #MISSING_EPOCH_DAY} if the string is null or not a valid date.
+     */
+    public static long parseEpochDay(@Nullable String date) {
+        if (date == null || date.length() != 10) return MISSING_EPOCH_DAY;
+        // "yyyy-MM-dd" has its first dash at index 4, "dd-MM-yyyy" at index 2.
+        DateTimeFormatter formatter = date.charAt(4) == '-' ? STORAGE_FORMAT : INPUT_FORMAT;
+        try {
+            return LocalDate.parse(date, formatter).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return MISSING_EPOCH_DAY;
+        }
+    }
+
+    /**
+     * Formats an epoch day in the canonical "yyyy-MM-dd" storage format.
+     */
+    @NonNull
+    public static String toStorageDate(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).format(STORAGE_FORMAT);
+    }
+
+    /**
+     * The document ID of a user's entry for the given day: the day in storage format, e.g.
+     * "2024-06-21". Saving a day again overwrites its document instead of adding a duplicate, and
+     * a day's entry can be read by ID. Entries saved before this have random IDs until
+     * {@link DateMigrationJob} moves them.
+     */
+    @NonNull
+    public static String entryId(long epochDay) {
+        return toStorageDate(epochDay);
+    }
+
+    /**
+     * Rewrites a date string in the canonical storage format, or returns it unchanged if it can't be parsed.
+     */
+    @Nullable
+    public static String normalize(@Nullable String date) {
+        long epochDay = parseEpochDay(date);
+        return epochDay == MISSING_EPOCH_DAY ? date : toStorageDate(epochDay);
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DateMigrationJob rewrites a user's existing weight entries so every document carries the
+ * integer `epochDay` key and a canonical "yyyy-MM-dd" `date`. Entries saved before this field
+ * existed would otherwise be missing from every epoch-day range query and ordering.
+ *
+ * It also moves entries saved under random document IDs, from before a day's entry was stored
+ * under {@link DateKeys#entryId}, to their day's document, merging it and deleting the old one in
+ * the same batch. Of several such entries for one day the last one moved wins. A day document
+ * that already existed was saved after the random-ID entries, so it is kept as it is and the
+ * old entries are only deleted. The rollups of the years it moved entries in are rebuilt at the end.
+ *
+ * The collection is walked in document-ID order, one chunk per round trip, and the last
+ * processed ID is saved after every committed chunk, with the days changed so far. If the app is
+ * killed part way through, the next run picks up from that checkpoint instead of starting over.
+ */
+public class DateMigrationJob {
+
+    private static final String TAG = "DateMigrationJob";
+
+    // Documents read (and at most written) per round trip; well under the 500-write batch limit.
+    // A moved entry takes two writes, so a chunk is at most 400.
+    private static final int CHUNK_SIZE = 200;
+
+    // Document IDs per `whereIn` query when looking up existing day documents.
+    private static final int ID_QUERY_LIMIT = 10;
+
+    // SharedPreferences file and keys for the per-user checkpoint. The "v2" keys belong to the run
+    // that also moves random-ID entries, so users who finished the first version run it again.
+    private static final String PREFS_NAME = "date_migration";
+    private static final String KEY_CURSOR_PREFIX = "cursor_v2_";
+    private static final String KEY_DONE_PREFIX = "done_v2_";
+    private static final String KEY_FIRST_DAY_PREFIX = "first_day_v2_";
+    private static final String KEY_LAST_DAY_PREFIX = "last_day_v2_";
+
+    // Only one migration runs at a time within the process.
+    private static boolean running;
+
+    private final FirebaseFirestore db;
+    private final CollectionReference weightEntriesRef;
+    private final CollectionReference rollupsRef;
+    private final WeightCacheHelper cache;
+    private final ChartPeriodCache chartCache;
+    private final SeriesSnapshot snapshot;
+    private final SharedPreferences prefs;
+    private final String userId;
+
+    // Day documents seen this run: true if it was saved by the app (and wins over random-ID
+    // entries), false if this run created it by moving an entry there (and the next one wins).
+    private final Map<String, Boolean> dayDocuments = new HashMap<>();
+
+    // Days of the entries changed so far, including earlier runs; first > last if none.
+    private long firstDay;
+    private long lastDay;
+
+    // Reads and writes are filed under the screen that started the migration.
+    private final FirestoreCostLedger ledger = FirestoreCostLedger.getInstance();
+    private final String screen = ledger.currentScreen();
+
+    // Run once the whole collection has been migrated (may be null).
+    private Runnable onComplete;
+
+    DateMigrationJob(@NonNull Context context, @NonNull FirebaseFirestore db,
+                     @NonNull CollectionReference weightEntriesRef, @NonNull CollectionReference rollupsRef,
+                     @NonNull WeightCacheHelper cache, @NonNull ChartPeriodCache chartCache,
+                     @NonNull SeriesSnapshot snapshot, @NonNull String userId) {
+        this.db = db;
+        this.weightEntriesRef = weightEntriesRef;
+        this.rollupsRef = rollupsRef;
+        this.cache = cache;
+        this.chartCache = chartCache;
+        this.snapshot = snapshot;
+        this.userId = userId;
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Starts (or resumes) the migration in the background. Does nothing if it is already running.
+     *
+     * @param onComplete Run on the main thread once every document has been migrated, including
+     *                   right away if that already happened on an earlier run. May be null.
+     */
+    public void start(Runnable onComplete) {
+        if (prefs.getBoolean(KEY_DONE_PREFIX + userId, false)) {
+            if (onComplete != null) onComplete.run();
+            return;
+        }
+        synchronized (DateMigrationJob.class) {
+            if (running) return;
+            running = true;
+        }
+        this.onComplete = onComplete;
+        String cursor = prefs.getString(KEY_CURSOR_PREFIX + userId, null);
+        firstDay = prefs.getLong(KEY_FIRST_DAY_PREFIX + userId, Long.MAX_VALUE);
+        lastDay = prefs.getLong(KEY_LAST_DAY_PREFIX + userId, Long.MIN_VALUE);
+        Log.d(TAG, "Starting date migration for " + userId + (cursor != null ? " from " + cursor : ""));
+        migrateChunk(cursor);
+    }
+
+    // Reads one chunk after the given document ID, fixes what needs fixing, then moves on to the next.
+    private void migrateChunk(String afterDocumentId) {
+        Query query = weightEntriesRef.orderBy(FieldPath.documentId()).limit(CHUNK_SIZE);
+        if (afterDocumentId != null) {
+            query = query.startAfter(afterDocumentId);
+        }
+
+        query.get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                // Leave the checkpoint where it is; the next start() resumes from it.
+                Log.w(TAG, "Migration chunk failed, will resume later.", task.getException());
+                finish(false);
+                return;
+            }
+
+            QuerySnapshot chunk = task.getResult();
+            ledger.recordRead(screen, "entries.migration",
+                    FirestoreCostLedger.Source.firestore(chunk.getMetadata().isFromCache()), chunk.size());
+            if (chunk.isEmpty()) {
+                rebuildRollups();
+                return;
+            }
+            findDayDocuments(chunk);
+        });
+    }
+
+    // Looks up which day documents that the chunk's random-ID entries move to already exist,
+    // then writes the chunk.
+    private void findDayDocuments(QuerySnapshot chunk) {
+        Set<String> unknown = new LinkedHashSet<>();
+        for (DocumentSnapshot doc : chunk.getDocuments()) {
+            long epochDay = DateKeys.parseEpochDay(doc.getString("date"));
+            if (epochDay == DateKeys.MISSING_EPOCH_DAY) continue;
+            String dayId = DateKeys.entryId(epochDay);
+            if (!dayId.equals(doc.getId()) && !dayDocuments.containsKey(dayId)) unknown.add(dayId);
+        }
+        if (unknown.isEmpty()) {
+            writeChunk(chunk);
+            return;
+        }
+
+        List<String> ids = new ArrayList<>(unknown);
+        List<Task<QuerySnapshot>> reads = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += ID_QUERY_LIMIT) {
+            List<String> group = ids.subList(i, Math.min(ids.size(), i + ID_QUERY_LIMIT));
+            reads.add(weightEntriesRef.whereIn(FieldPath.documentId(), new ArrayList<>(group)).get());
+        }
+        Tasks.whenAll(reads).addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                Log.w(TAG, "Day document lookup failed, will resume later.", task.getException());
+                finish(false);
+                return;
+            }
+            for (String id : ids) dayDocuments.put(id, false);
+            for (Task<QuerySnapshot> read : reads) {
+                QuerySnapshot result = read.getResult();
+                ledger.recordRead(screen, "entries.migration",
+                        FirestoreCostLedger.Source.firestore(result.getMetadata().isFromCache()), result.size());
+                for (DocumentSnapshot doc : result.getDocuments()) dayDocuments.put(doc.getId(), true);
+            }
+            writeChunk(chunk);
+        });
+    }
+
+    // Fixes and moves what needs it in one batch, then moves on to the next chunk.
+    private void writeChunk(QuerySnapshot chunk) {
+        WriteBatch batch = db.batch();
+        List<WeightData> moved = new ArrayList<>();
+        List<String> removedIds = new ArrayList<>();
+        long[] days = {Long.MAX_VALUE, Long.MIN_VALUE};
+        int writes = 0;
+        for (DocumentSnapshot doc : chunk.getDocuments()) {
+            writes += addFixIfNeeded(batch, doc, moved, removedIds, days);
+        }
+
+        String lastId = chunk.getDocuments().get(chunk.size() - 1).getId();
+        boolean lastChunk = chunk.size() < CHUNK_SIZE;
+        int finalWrites = writes;
+
+        batch.commit().addOnCompleteListener(commit -> {
+            if (!commit.isSuccessful()) {
+                Log.w(TAG, "Migration batch failed, will resume later.", commit.getException());
+                finish(false);
+                return;
+            }
+            ledger.recordWrite(screen, "entries.migration", finalWrites);
+            Log.d(TAG, "Migrated " + chunk.size() + " entries with " + finalWrites + " writes up to " + lastId);
+            if (days[0] <= days[1]) {
+                AppExecutors.diskIO().execute(() -> {
+                    for (String id : removedIds) cache.delete(userId, id);
+                    cache.upsert(userId, moved);
+                });
+                snapshot.markDirty(days[0], days[1]);
+                chartCache.invalidate(days[0], days[1]);
+                firstDay = Math.min(firstDay, days[0]);
+                lastDay = Math.max(lastDay, days[1]);
+            }
+            prefs.edit()
+                    .putString(KEY_CURSOR_PREFIX + userId, lastId)
+                    .putLong(KEY_FIRST_DAY_PREFIX + userId, firstDay)
+                    .putLong(KEY_LAST_DAY_PREFIX + userId, lastDay)
+                    .apply();
+            if (lastChunk) {
+                rebuildRollups();
+            } else {
+                migrateChunk(lastId);
+            }
+        });
+    }
+
+    // Queues the writes one document needs: a random-ID entry is merged into its day's document
+    // (unless the app saved that one, which is newer) and deleted; a day document whose epoch day
+    // is missing or whose date isn't canonical is updated. Moved entries and removed IDs are added
+    // to the lists for the cache, and the entry's day widens `days`. Returns the writes queued.
+    private int addFixIfNeeded(WriteBatch batch, DocumentSnapshot doc, List<WeightData> moved,
+                               List<String> removedIds, long[] days) {
+        String date = doc.getString("date");
+        long epochDay = DateKeys.parseEpochDay(date);
+        if (epochDay == DateKeys.MISSING_EPOCH_DAY) {
+            Log.w(TAG, "Skipping entry " + doc.getId() + " with unreadable date: " + date);
+            return 0;
+        }
+
+        String canonicalDate = DateKeys.toStorageDate(epochDay);
+        String dayId = DateKeys.entryId(epochDay);
+        int writes;
+        if (!dayId.equals(doc.getId())) {
+            DocumentReference dayRef = weightEntriesRef.document(dayId);
+            writes = 1;
+            if (!Boolean.TRUE.equals(dayDocuments.get(dayId))) {
+                Map<String, Object> fields = new HashMap<>(doc.getData());
+                fields.put("epochDay", epochDay);
+                fields.put("date", canonicalDate);
+                batch.set(dayRef, fields, SetOptions.merge());
+                dayDocuments.put(dayId, false);
+                WeightData data = doc.toObject(WeightData.class);
+                if (data != null) {
+                    data.setDate(canonicalDate);
+                    data.setEpochDay(epochDay);
+                    data.setDocumentId(dayId);
+                    moved.add(data);
+                }
+                writes++;
+            }
+            batch.delete(doc.getReference());
+            removedIds.add(doc.getId());
+        } else {
+            Long storedEpochDay = doc.getLong("epochDay");
+            if (storedEpochDay != null && storedEpochDay == epochDay && canonicalDate.equals(date)) {
+                return 0; // Already migrated.
+            }
+            batch.update(doc.getReference(), "epochDay", epochDay, "date", canonicalDate);
+            writes = 1;
+        }
+        days[0] = Math.min(days[0], epochDay);
+        days[1] = Math.max(days[1], epochDay);
+        return writes;
+    }
+
+    // Once every chunk is written, rebuilds the rollups of the years whose entries changed.
+    private void rebuildRollups() {
+        if (firstDay > lastDay) {
+            finish(true);
+            return;
+        }
+        new RollupRebuilder(db, weightEntriesRef, rollupsRef).rebuildYears(firstDay, lastDay, new WeightRepository.WriteCallback() {
+            @Override
+            public void onSuccess() {
+                chartCache.clear();
+                finish(true);
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e) {
+                // The cursor is at the end, so the next start() only rebuilds the rollups.
+                Log.w(TAG, "Rollup rebuild after migration failed, will retry later.", e);
+                finish(false);
+            }
+        });
+    }
+
+    private void finish(boolean completed) {
+        if (completed) {
+            Log.d(TAG, "Date migration complete for " + userId);
+            prefs.edit()
+                    .putBoolean(KEY_DONE_PREFIX + userId, true)
+                    .remove(KEY_CURSOR_PREFIX + userId)
+                    .remove(KEY_FIRST_DAY_PREFIX + userId)
+                    .remove(KEY_LAST_DAY_PREFIX + userId)
+                    .apply();
+        }
+        synchronized (DateMigrationJob.class) {
+            running = false;
+        }
+        if (completed && onComplete != null) {
+            onComplete.run();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Downsampler reduces a long line series to a fixed number of points before it is handed to
+ * the chart, using Largest-Triangle-Three-Buckets (LTTB, Steinarsson 2013).
+ *
+ * The first and last points are always kept. The points in between are split into
+ * (threshold - 2) equal buckets, and from each bucket the point forming the largest triangle
+ * with the previously kept point and the average of the next bucket is kept. That favours
+ * points where the line changes direction, so spikes and dips survive even at high reduction
+ * ratios, unlike averaging or taking every n-th point.
+ */
+public final class Downsampler {
+
+    private Downsampler() {
+        // Static helpers only.
+    }
+
+    /**
+     * Picks at most `threshold` points of the line (x[i], y[i]), i in [0, size).
+     * x must be ascending.
+     *
+     * @return The indices of the kept points, ascending. If size <= threshold (or threshold < 3),
+     *         every index is returned.
+     */
+    @NonNull
+    public static int[] largestTriangleThreeBuckets(@NonNull float[] x, @NonNull float[] y, int size, int threshold) {
+        if (threshold < 3 || size <= threshold) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) all[i] = i;
+            return all;
+        }
+
+        int[] kept = new int[threshold];
+        int keptCount = 0;
+        kept[keptCount++] = 0; // Always keep the first point.
+
+        // Width of each middle bucket; the first and last points sit in buckets of their own.
+        double bucketWidth = (double) (size - 2) / (threshold - 2);
+        int previous = 0;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket (or the last point, for the final bucket).
+            int nextStart = (int) Math.floor((bucket + 1) * bucketWidth) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketWidth) + 1, size);
+            if (bucket == threshold - 3) {
+                nextStart = size - 1;
+                nextEnd = size;
+            }
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += x[i];
+                avgY += y[i];
+            }
+            int nextCount = nextEnd - nextStart;
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            // Point of the current bucket with the largest triangle (previous kept, candidate, next average).
+            int start = (int) Math.floor(bucket * bucketWidth) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketWidth) + 1;
+            double px = x[previous];
+            double py = y[previous];
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                // Twice the triangle area; the factor doesn't change which point wins.
+                double area = Math.abs((px - avgX) * (y[i] - py) - (px - x[i]) * (avgY - py));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            kept[keptCount++] = chosen;
+            previous = chosen;
+        }
+
+        kept[keptCount] = size - 1; // Always keep the last point.
+        return kept;
+    }
+}
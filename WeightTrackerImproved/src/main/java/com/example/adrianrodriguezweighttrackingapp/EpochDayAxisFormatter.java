@@ -0,0 +1,36 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import com.github.mikephil.charting.formatter.ValueFormatter;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Labels a chart X-axis whose values are days counted from a base epoch day, as used by the
+ * ALL / custom range view. Long spans show "Jan 2024", shorter ones "Jan 05".
+ */
+public class EpochDayAxisFormatter extends ValueFormatter {
+
+    // Spans longer than this (in days) are labelled by month and year.
+    private static final long MONTH_LABEL_SPAN_DAYS = 120;
+
+    private static final DateTimeFormatter MONTH_YEAR_LABEL = DateTimeFormatter.ofPattern("MMM yyyy");
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("MMM dd");
+
+    private final long baseDay;
+    private final DateTimeFormatter format;
+
+    /**
+     * @param baseDay  The epoch day at X = 0.
+     * @param spanDays Number of days the axis covers, to pick the label style.
+     */
+    public EpochDayAxisFormatter(long baseDay, long spanDays) {
+        this.baseDay = baseDay;
+        this.format = spanDays > MONTH_LABEL_SPAN_DAYS ? MONTH_YEAR_LABEL : DAY_LABEL;
+    }
+
+    @Override
+    public String getFormattedValue(float value) {
+        return LocalDate.ofEpochDay(baseDay + Math.round(value)).format(format);
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * FirestoreCostLedger counts the documents every data flow reads and writes, so we can see which
+ * screens and queries drive the Firestore bill. Each read is filed under the screen that was in
+ * front when the request was made, a query shape (a stable name such as "entries.range") and
+ * where the documents came from:
+ *
+ * - SERVER: billed, one read per document, and one for a query that matches nothing.
+ * - FIRESTORE_CACHE: served by the Firestore SDK's offline cache; not billed.
+ * - LOCAL_CACHE: rows from WeightCacheHelper; not billed, counted to show what the cache saves.
+ *
+ * Writes and deletes are billed one per document. Counts cover the current session, which starts
+ * when a user's repository is created (sign-in or app start). WeightRepository keeps
+ * {@link #enterScreen} pointed at the activity in front.
+ *
+ * Read budgets cap the billed reads of one screen per session. The first time a screen goes over
+ * its budget the {@link BudgetListener} is told, once per session; the repository only sets one
+ * in debuggable builds.
+ */
+public final class FirestoreCostLedger {
+
+    /**
+     * Where the documents of a read came from.
+     */
+    public enum Source {
+        SERVER, FIRESTORE_CACHE, LOCAL_CACHE;
+
+        /**
+         * Source of a Firestore snapshot, from its metadata's isFromCache().
+         */
+        @NonNull
+        public static Source firestore(boolean fromCache) {
+            return fromCache ? FIRESTORE_CACHE : SERVER;
+        }
+    }
+
+    /**
+     * Told when a screen's billed reads first go over its budget in a session.
+     */
+    public interface BudgetListener {
+        void onReadBudgetExceeded(@NonNull String screen, long billedReads, long budget);
+    }
+
+    // Screen for work started outside any activity.
+    public static final String NO_SCREEN = "background";
+
+    private static final FirestoreCostLedger INSTANCE = new FirestoreCostLedger();
+
+    // Per (screen, shape, source) for reads and (screen, shape) for writes, sorted for the report.
+    private final Map<String, Line> reads = new TreeMap<>();
+    private final Map<String, Line> writes = new TreeMap<>();
+
+    private final Map<String, Long> billedReadsByScreen = new HashMap<>();
+    private final Map<String, Long> readBudgets = new HashMap<>();
+    private final Set<String> screensOverBudget = new HashSet<>();
+
+    private volatile String currentScreen = NO_SCREEN;
+    private String sessionUserId;
+    private long sessionStartedAtMs = System.currentTimeMillis();
+    @Nullable private BudgetListener budgetListener;
+
+    private FirestoreCostLedger() {
+    }
+
+    @NonNull
+    public static FirestoreCostLedger getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Clears the counts and starts a new session for the given user. Budgets are kept.
+     */
+    public synchronized void startSession(@NonNull String userId) {
+        sessionUserId = userId;
+        reset();
+    }
+
+    /**
+     * Clears the counts, keeping the session's user and the budgets.
+     */
+    public synchronized void reset() {
+        reads.clear();
+        writes.clear();
+        billedReadsByScreen.clear();
+        screensOverBudget.clear();
+        sessionStartedAtMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Files reads and writes from now on under the given screen.
+     */
+    public void enterScreen(@NonNull String screen) {
+        currentScreen = screen;
+    }
+
+    /**
+     * The screen requests are filed under right now. Capture it when a request starts, since its
+     * result may arrive after the user moved on.
+     */
+    @NonNull
+    public String currentScreen() {
+        return currentScreen;
+    }
+
+    /**
+     * Sets the most billed reads the given screen should cause per session (0 or less removes it).
+     */
+    public synchronized void setReadBudget(@NonNull String screen, long maxBilledReads) {
+        if (maxBilledReads > 0) {
+            readBudgets.put(screen, maxBilledReads);
+        } else {
+            readBudgets.remove(screen);
+        }
+    }
+
+    public synchronized void setBudgetListener(@Nullable BudgetListener listener) {
+        budgetListener = listener;
+    }
+
+    /**
+     * Records one query or document read that returned `documents` documents.
+     */
+    public void recordRead(@NonNull String screen, @NonNull String shape, @NonNull Source source, long documents) {
+        long billed = source == Source.SERVER ? Math.max(1, documents) : 0;
+        BudgetListener listener = null;
+        long total;
+        long budget = 0;
+        synchronized (this) {
+            line(reads, screen + '|' + shape + '|' + source, screen, shape, source).add(documents, billed);
+            if (billed == 0) return;
+            total = billedReadsByScreen.containsKey(screen) ? billedReadsByScreen.get(screen) + billed : billed;
+            billedReadsByScreen.put(screen, total);
+            Long limit = readBudgets.get(screen);
+            if (limit != null && total > limit && screensOverBudget.add(screen)) {
+                listener = budgetListener;
+                budget = limit;
+            }
+        }
+        // Outside the lock, so the listener can post to the main thread or log freely.
+        if (listener != null) listener.onReadBudgetExceeded(screen, total, budget);
+    }
+
+    /**
+     * Records `documents` document writes or deletes.
+     */
+    public synchronized void recordWrite(@NonNull String screen, @NonNull String shape, long documents) {
+        line(writes, screen + '|' + shape, screen, shape, null).add(documents, documents);
+    }
+
+    /**
+     * Billed reads of the session so far, over every screen.
+     */
+    public synchronized long billedReads() {
+        long total = 0;
+        for (long screenReads : billedReadsByScreen.values()) total += screenReads;
+        return total;
+    }
+
+    /**
+     * Totals per screen, then every read and write line, for the debug screen.
+     */
+    @NonNull
+    public synchronized String describe() {
+        StringBuilder text = new StringBuilder(String.format(Locale.US,
+                "Session: %d billed reads, %d writes\n", billedReads(), totalWrites()));
+        for (Map.Entry<String, Long> entry : new TreeMap<>(billedReadsByScreen).entrySet()) {
+            Long budget = readBudgets.get(entry.getKey());
+            text.append(String.format(Locale.US, "  %s: %d reads%s\n", entry.getKey(), entry.getValue(),
+                    budget != null ? " (budget " + budget + (screensOverBudget.contains(entry.getKey()) ? ", OVER)" : ")") : ""));
+        }
+        text.append("Reads (screen / shape / source: queries, documents, billed)\n");
+        for (Line line : reads.values()) {
+            text.append(String.format(Locale.US, "  %s / %s / %s: %d, %d, %d\n",
+                    line.screen, line.shape, line.source, line.operations, line.documents, line.billed));
+        }
+        text.append("Writes (screen / shape: operations, documents)\n");
+        for (Line line : writes.values()) {
+            text.append(String.format(Locale.US, "  %s / %s: %d, %d\n", line.screen, line.shape, line.operations, line.documents));
+        }
+        return text.toString();
+    }
+
+    /**
+     * The session's counts as JSON, for the exported report.
+     */
+    @NonNull
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\"sessionStartedAtMs\": ").append(sessionStartedAtMs)
+                .append(", \"userId\": ").append(sessionUserId != null ? '"' + sessionUserId + '"' : "null")
+                .append(", \"billedReads\": ").append(billedReads())
+                .append(", \"writes\": ").append(totalWrites())
+                .append(",\n    \"screens\": {");
+        boolean first = true;
+        for (Map.Entry<String, Long> entry : new TreeMap<>(billedReadsByScreen).entrySet()) {
+            Long budget = readBudgets.get(entry.getKey());
+            json.append(first ? "" : ", ").append('"').append(entry.getKey()).append("\": {\"billedReads\": ")
+                    .append(entry.getValue()).append(", \"budget\": ").append(budget != null ? budget.toString() : "null")
+                    .append('}');
+            first = false;
+        }
+        json.append("},\n    \"reads\": [");
+        appendLines(json, reads);
+        json.append("],\n    \"writes\": [");
+        appendLines(json, writes);
+        return json.append("]}").toString();
+    }
+
+    private long totalWrites() {
+        long total = 0;
+        for (Line line : writes.values()) total += line.documents;
+        return total;
+    }
+
+    private static void appendLines(StringBuilder json, Map<String, Line> lines) {
+        boolean first = true;
+        for (Line line : lines.values()) {
+            json.append(first ? "\n      " : ",\n      ")
+                    .append("{\"screen\": \"").append(line.screen)
+                    .append("\", \"shape\": \"").append(line.shape).append('"');
+            if (line.source != null) json.append(", \"source\": \"").append(line.source).append('"');
+            json.append(", \"operations\": ").append(line.operations)
+                    .append(", \"documents\": ").append(line.documents)
+                    .append(", \"billed\": ").append(line.billed).append('}');
+            first = false;
+        }
+    }
+
+    private static Line line(Map<String, Line> lines, String key, String screen, String shape, @Nullable Source source) {
+        Line line = lines.get(key);
+        if (line == null) {
+            line = new Line(screen, shape, source);
+            lines.put(key, line);
+        }
+        return line;
+    }
+
+    // Running totals for one screen and query shape (and source, for reads).
+    private static final class Line {
+        final String screen;
+        final String shape;
+        @Nullable final Source source;
+        long operations;
+        long documents;
+        long billed;
+
+        Line(String screen, String shape, @Nullable Source source) {
+            this.screen = screen;
+            this.shape = shape;
+            this.source = source;
+        }
+
+        void add(long documentCount, long billedCount) {
+            operations++;
+            documents += documentCount;
+            billed += billedCount;
+        }
+    }
+}
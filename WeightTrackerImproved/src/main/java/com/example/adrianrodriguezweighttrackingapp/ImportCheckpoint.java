@@ -0,0 +1,67 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import java.util.TreeMap;
+
+/**
+ * ImportCheckpoint is the resume state of one {@link WeightImporter} file: how many records from
+ * the start of the file are known to be written, and the days covered by every batch that landed.
+ *
+ * Batches commit concurrently and can land out of order. The record checkpoint only moves past a
+ * batch once every batch before it has landed too, while the day range grows with each batch as
+ * it lands, so it also covers batches past the checkpoint. That range is what has to be rebuilt
+ * in the rollups, whether the import completes or not.
+ *
+ * Not thread-safe; WeightImporter guards it with its job's lock.
+ */
+final class ImportCheckpoint {
+
+    private long records;
+    private final TreeMap<Long, Long> doneAhead = new TreeMap<>(); // Written batches past the checkpoint: start -> end.
+    private long firstDay;
+    private long lastDay;
+
+    // A file nothing has been written from yet.
+    ImportCheckpoint() {
+        this(0, Long.MAX_VALUE, Long.MIN_VALUE);
+    }
+
+    // A checkpoint saved by an earlier run.
+    ImportCheckpoint(long records, long firstDay, long lastDay) {
+        this.records = records;
+        this.firstDay = firstDay;
+        this.lastDay = lastDay;
+    }
+
+    /**
+     * Records that the batch of records [start, end) landed, with entries on days
+     * [batchFirstDay, batchLastDay]. A batch of only rejected records passes an empty day range
+     * (first day after the last) and just moves the checkpoint.
+     */
+    void batchWritten(long start, long end, long batchFirstDay, long batchLastDay) {
+        firstDay = Math.min(firstDay, batchFirstDay);
+        lastDay = Math.max(lastDay, batchLastDay);
+        doneAhead.put(start, end);
+        Long next;
+        while ((next = doneAhead.remove(records)) != null) {
+            records = next;
+        }
+    }
+
+    // Records [0, records()) are all written.
+    long records() {
+        return records;
+    }
+
+    // True if any entry was written; the days are then [firstDay(), lastDay()].
+    boolean hasWrittenDays() {
+        return firstDay <= lastDay;
+    }
+
+    long firstDay() {
+        return firstDay;
+    }
+
+    long lastDay() {
+        return lastDay;
+    }
+}
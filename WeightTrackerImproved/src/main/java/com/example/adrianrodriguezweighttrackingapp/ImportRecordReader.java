@@ -0,0 +1,78 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * ImportRecordReader streams the records of an export file (CSV or JSON) one at a time, so an
+ * import never holds more than the current record of the file in memory.
+ *
+ * A record is only the raw fields of one row, keyed by a normalized field name (lowercase
+ * letters and digits only, so "Weight (kg)" becomes "weightkg"). Turning them into a
+ * {@link WeightData} is up to {@link ImportRowNormalizer}.
+ */
+public interface ImportRecordReader extends Closeable {
+
+    /**
+     * One row of the file: its fields and where it was found, for error messages (the line it
+     * started on for CSV, its position in the entry array for JSON).
+     */
+    final class Record {
+        public final Map<String, String> fields;
+        public final long line;
+
+        Record(@NonNull Map<String, String> fields, long line) {
+            this.fields = fields;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Returns the next record, or null at the end of the file.
+     *
+     * @throws IOException If the file can't be read or isn't valid CSV/JSON at this point.
+     */
+    @Nullable
+    Record next() throws IOException;
+
+    /**
+     * Opens a reader for the stream, picking CSV or JSON from its first non-blank character
+     * ('[' or '{' means JSON). The stream is closed with the reader.
+     */
+    @NonNull
+    static ImportRecordReader open(@NonNull InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(64);
+        int c;
+        int peeked = 0;
+        do {
+            c = buffered.read();
+            peeked++;
+            // Skip blanks and a UTF-8 byte order mark, without reading past the mark.
+        } while (peeked < 64 && (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == 0xEF || c == 0xBB || c == 0xBF));
+        buffered.reset();
+        if (c == '[' || c == '{') {
+            return new JsonRecordReader(buffered);
+        }
+        return new CsvRecordReader(buffered);
+    }
+
+    /**
+     * Normalizes a column or property name: lowercase, letters and digits only.
+     */
+    @NonNull
+    static String fieldKey(@NonNull String name) {
+        StringBuilder key = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char ch = Character.toLowerCase(name.charAt(i));
+            if ((ch >= 'a' && ch <= 'z') || (ch >= '0' && ch <= '9')) key.append(ch);
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Map;
+
+/**
+ * ImportRowNormalizer turns the raw fields of an imported record into a {@link WeightData}, or
+ * rejects it with a reason.
+ *
+ * Other trackers name their columns differently, so every field is looked up under a few common
+ * names ("weight", "Weight (kg)", "body_weight", ...). Dates are accepted as "yyyy-MM-dd",
+ * "dd-MM-yyyy", ISO date-times, "yyyy/MM/dd", "MM/dd/yyyy" (US style, as most exports use),
+ * "dd.MM.yyyy", "yyyyMMdd" and Unix timestamps in seconds or milliseconds. Weights are taken as
+ * they are, since the app doesn't convert units.
+ *
+ * A record needs a valid date and weight. Optional metrics that are missing or out of range are
+ * dropped rather than rejecting the whole row. Not thread-safe; one normalizer per import.
+ */
+public class ImportRowNormalizer {
+
+    // Field names (as normalized by ImportRecordReader.fieldKey) that each value is looked up under.
+    private static final String[] DATE_KEYS = { "date", "day", "datetime", "timestamp", "time", "recordedat" };
+    private static final String[] WEIGHT_KEYS = { "weight", "weightkg", "weightlb", "weightlbs", "bodyweight", "mass" };
+    private static final String[] NOTES_KEYS = { "notes", "note", "comment", "comments" };
+    private static final String[] SLEEP_KEYS = { "hoursofsleep", "sleep", "sleephours", "sleeph", "sleepduration" };
+    private static final String[] STEPS_KEYS = { "dailysteps", "steps", "stepcount" };
+    private static final String[] MOOD_KEYS = { "mood" };
+    private static final String[] CALORIES_KEYS = { "calorieintake", "calories", "kcal", "energy" };
+
+    // Plausible ranges; values outside them are typos or unit mix-ups.
+    private static final double MAX_WEIGHT = 1500;
+    private static final double MAX_SLEEP_HOURS = 24;
+    private static final int MAX_STEPS = 200_000;
+    private static final int MAX_CALORIES = 20_000;
+    private static final int MAX_NOTES_LENGTH = 500;
+    private static final int MAX_MOOD_LENGTH = 40;
+    private static final long EARLIEST_DAY = LocalDate.of(1900, 1, 1).toEpochDay();
+
+    // Date formats besides the ones DateKeys already understands. Strict, so an impossible date
+    // like "2023-02-30" is rejected instead of being moved to a real day (and overwriting its entry).
+    private static final DateTimeFormatter SLASH_YEAR_FIRST = DateTimeFormatter.ofPattern("uuuu/M/d")
+            .withResolverStyle(ResolverStyle.STRICT);
+    private static final DateTimeFormatter SLASH_MONTH_FIRST = DateTimeFormatter.ofPattern("M/d/uuuu")
+            .withResolverStyle(ResolverStyle.STRICT);
+    private static final DateTimeFormatter DOTTED = DateTimeFormatter.ofPattern("d.M.uuuu")
+            .withResolverStyle(ResolverStyle.STRICT);
+    private static final DateTimeFormatter COMPACT = DateTimeFormatter.BASIC_ISO_DATE; // Already strict.
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final long latestDay = LocalDate.now().plusDays(1).toEpochDay();
+    private String rejectReason;
+
+    /**
+     * Returns the record as a new entry (without a document ID), or null if it was rejected;
+     * {@link #getRejectReason()} then says why.
+     */
+    @Nullable
+    public WeightData normalize(@NonNull ImportRecordReader.Record record) {
+        rejectReason = null;
+        Map<String, String> fields = record.fields;
+
+        String rawDate = find(fields, DATE_KEYS);
+        long epochDay = parseDay(rawDate);
+        if (epochDay == DateKeys.MISSING_EPOCH_DAY) {
+            return reject(record, rawDate == null ? "no date" : "unreadable date \"" + rawDate + "\"");
+        }
+        if (epochDay < EARLIEST_DAY || epochDay > latestDay) {
+            return reject(record, "date out of range \"" + rawDate + "\"");
+        }
+
+        String rawWeight = find(fields, WEIGHT_KEYS);
+        double weight = parseDecimal(rawWeight);
+        if (Double.isNaN(weight) || weight <= 0 || weight > MAX_WEIGHT) {
+            return reject(record, rawWeight == null ? "no weight" : "invalid weight \"" + rawWeight + "\"");
+        }
+
+        double sleep = parseDecimal(find(fields, SLEEP_KEYS));
+        Double hoursOfSleep = sleep >= 0 && sleep <= MAX_SLEEP_HOURS ? sleep : null;
+        long steps = parseWhole(find(fields, STEPS_KEYS));
+        Integer dailySteps = steps >= 0 && steps <= MAX_STEPS ? (int) steps : null;
+        long calories = parseWhole(find(fields, CALORIES_KEYS));
+        Integer calorieIntake = calories >= 0 && calories <= MAX_CALORIES ? (int) calories : null;
+
+        return new WeightData(DateKeys.toStorageDate(epochDay), weight,
+                clip(find(fields, NOTES_KEYS), MAX_NOTES_LENGTH), hoursOfSleep, dailySteps,
+                clip(find(fields, MOOD_KEYS), MAX_MOOD_LENGTH), calorieIntake);
+    }
+
+    /**
+     * Why the last record passed to {@link #normalize} was rejected, or null if it wasn't.
+     */
+    @Nullable
+    public String getRejectReason() {
+        return rejectReason;
+    }
+
+    private WeightData reject(ImportRecordReader.Record record, String reason) {
+        rejectReason = "Record " + record.line + ": " + reason;
+        return null;
+    }
+
+    // The first non-blank value stored under any of the keys.
+    @Nullable
+    private static String find(Map<String, String> fields, String[] keys) {
+        for (String key : keys) {
+            String value = fields.get(key);
+            if (value != null && !value.trim().isEmpty()) return value.trim();
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String clip(@Nullable String value, int maxLength) {
+        if (value == null) return null;
+        return value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+
+    // Parses any of the accepted date forms into an epoch day.
+    private long parseDay(@Nullable String raw) {
+        if (raw == null) return DateKeys.MISSING_EPOCH_DAY;
+
+        if (isDigits(raw)) {
+            try {
+                switch (raw.length()) {
+                    case 8:
+                        return LocalDate.parse(raw, COMPACT).toEpochDay();
+                    case 10:
+                        return Instant.ofEpochSecond(Long.parseLong(raw)).atZone(zone).toLocalDate().toEpochDay();
+                    case 13:
+                        return Instant.ofEpochMilli(Long.parseLong(raw)).atZone(zone).toLocalDate().toEpochDay();
+                    default:
+                        return DateKeys.MISSING_EPOCH_DAY;
+                }
+            } catch (DateTimeParseException | NumberFormatException e) {
+                return DateKeys.MISSING_EPOCH_DAY;
+            }
+        }
+
+        // "2024-01-05T07:30:00Z" or "2024-01-05 07:30": only the date part matters.
+        String date = raw.length() > 10 && (raw.charAt(10) == 'T' || raw.charAt(10) == ' ') ? raw.substring(0, 10) : raw;
+        long epochDay = DateKeys.parseEpochDay(date);
+        if (epochDay != DateKeys.MISSING_EPOCH_DAY) return epochDay;
+
+        DateTimeFormatter formatter;
+        if (date.indexOf('/') == 4) {
+            formatter = SLASH_YEAR_FIRST;
+        } else if (date.indexOf('/') > 0) {
+            formatter = SLASH_MONTH_FIRST;
+        } else if (date.indexOf('.') > 0) {
+            formatter = DOTTED;
+        } else {
+            return DateKeys.MISSING_EPOCH_DAY;
+        }
+        try {
+            return LocalDate.parse(date, formatter).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return DateKeys.MISSING_EPOCH_DAY;
+        }
+    }
+
+    // Parses "72.5", "72,5" or "72.5 kg" (the leading number of the value), or returns NaN.
+    private static double parseDecimal(@Nullable String raw) {
+        if (raw == null) return Double.NaN;
+        String number = leadingNumber(raw);
+        if (number.indexOf(',') >= 0 && number.indexOf('.') < 0) {
+            number = number.replace(',', '.'); // Decimal comma.
+        } else {
+            number = number.replace(",", ""); // Thousands separators.
+        }
+        try {
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    // Parses "10234", "10,234" or "2100.0" as a whole number, or returns -1.
+    private static long parseWhole(@Nullable String raw) {
+        if (raw == null) return -1;
+        String number = leadingNumber(raw).replace(",", "");
+        try {
+            return Math.round(Double.parseDouble(number));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // The leading run of digits, signs and separators of a value ("72.5 kg" -> "72.5").
+    private static String leadingNumber(String raw) {
+        int end = 0;
+        while (end < raw.length()) {
+            char c = raw.charAt(end);
+            if ((c >= '0' && c <= '9') || c == '.' || c == ',' || (end == 0 && (c == '-' || c == '+'))) {
+                end++;
+            } else {
+                break;
+            }
+        }
+        return raw.substring(0, end);
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return !value.isEmpty();
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * InMemoryWeightStore is a stand-in backend that keeps entries in memory, per user, so generated
+ * datasets can be aggregated, benchmarked and profiled without Firestore, SQLite or a device.
+ * Writes complete immediately on the calling thread. Safe to use from any thread.
+ *
+ * It answers the same queries the screens send to Firestore: newest-first history pages with a
+ * cursor, date-range series for the chart, and monthly rollups for the YEAR view. Entries are
+ * indexed by (epochDay, documentId) like the Firestore indexes, so a query only touches the
+ * entries it returns, and rollups are updated on every write like WeightRepository does.
+ */
+public class InMemoryWeightStore implements WeightEntrySink {
+
+    // Oldest first by (epochDay, documentId), the order of the Firestore composite index.
+    private static final Comparator<PagedWeightList.EntryKey> OLDEST_FIRST = (a, b) -> {
+        int byDay = Long.compare(a.epochDay, b.epochDay);
+        return byDay != 0 ? byDay : a.documentId.compareTo(b.documentId);
+    };
+
+    private final Map<String, UserData> usersById = new HashMap<>();
+
+    // Source of IDs for entries written without one, as Firestore assigns them on add.
+    private long nextId;
+
+    @Override
+    public synchronized void write(@NonNull String userId, @NonNull List<WeightData> chunk, @NonNull Completion done) {
+        UserData user = user(userId);
+        for (WeightData data : chunk) {
+            add(user, data);
+        }
+        done.onDone(null);
+    }
+
+    /**
+     * Saves one entry, giving it a document ID if it has none, and folds it into its rollups.
+     */
+    public synchronized void addEntry(@NonNull String userId, @NonNull WeightData data) {
+        add(user(userId), data);
+    }
+
+    @NonNull
+    public synchronized Set<String> userIds() {
+        return Collections.unmodifiableSet(new TreeSet<>(usersById.keySet()));
+    }
+
+    /**
+     * Returns the user's entries in the order they were written.
+     */
+    @NonNull
+    public synchronized List<WeightData> entries(@NonNull String userId) {
+        UserData user = usersById.get(userId);
+        return user != null ? new ArrayList<>(user.inWriteOrder) : Collections.emptyList();
+    }
+
+    /**
+     * Returns up to `limit` entries, newest first, older than `after` (or the newest ones if
+     * null), like {@link WeightRepository#loadOlderPage} and the live newest page.
+     */
+    @NonNull
+    public synchronized List<WeightData> page(@NonNull String userId, @Nullable PagedWeightList.EntryKey after, int limit) {
+        UserData user = usersById.get(userId);
+        if (user == null) return Collections.emptyList();
+        NavigableMap<PagedWeightList.EntryKey, WeightData> older =
+                after != null ? user.byKey.headMap(after, false) : user.byKey;
+        List<WeightData> page = new ArrayList<>(Math.min(limit, older.size()));
+        for (WeightData data : older.descendingMap().values()) {
+            if (page.size() == limit) break;
+            page.add(data);
+        }
+        return page;
+    }
+
+    /**
+     * Returns the user's entries inside [startDay, endDay] as a series, like
+     * {@link WeightRepository#loadSeries} would.
+     */
+    @NonNull
+    public synchronized WeightSeries series(@NonNull String userId, long startDay, long endDay) {
+        UserData user = usersById.get(userId);
+        if (user == null || endDay < startDay) return WeightSeries.EMPTY;
+        // "" sorts before every document ID, so this spans whole days.
+        NavigableMap<PagedWeightList.EntryKey, WeightData> inRange = user.byKey.subMap(
+                new PagedWeightList.EntryKey(startDay, ""), true,
+                new PagedWeightList.EntryKey(endDay + 1, ""), false);
+        return WeightSeries.from(new ArrayList<>(inRange.values()));
+    }
+
+    /**
+     * Returns the monthly rollups of the given year in month order, like
+     * {@link WeightRepository#loadMonthlyRollups}. Months without entries are left out.
+     */
+    @NonNull
+    public synchronized List<WeightRollup> monthlyRollups(@NonNull String userId, int year) {
+        UserData user = usersById.get(userId);
+        if (user == null) return Collections.emptyList();
+        return new ArrayList<>(user.monthlyRollups.subMap(
+                String.format(Locale.US, "M-%04d-01", year), true,
+                String.format(Locale.US, "M-%04d-12", year), true).values());
+    }
+
+    public synchronized int size() {
+        int size = 0;
+        for (UserData user : usersById.values()) size += user.inWriteOrder.size();
+        return size;
+    }
+
+    public synchronized void clear() {
+        usersById.clear();
+    }
+
+    private UserData user(String userId) {
+        UserData user = usersById.get(userId);
+        if (user == null) {
+            user = new UserData();
+            usersById.put(userId, user);
+        }
+        return user;
+    }
+
+    private void add(UserData user, WeightData data) {
+        if (data.getDocumentId() == null) {
+            data.setDocumentId(String.format(Locale.US, "mem-%08d", nextId++));
+        }
+        user.inWriteOrder.add(data);
+        WeightData replaced = user.byKey.put(PagedWeightList.keyOf(data), data);
+        if (replaced != null) {
+            user.inWriteOrder.remove(replaced);
+            user.rollup(replaced, -1);
+        }
+        user.rollup(data, +1);
+    }
+
+    // One user's entries, in write order and in index order, and their monthly rollups by ID.
+    private static final class UserData {
+        final List<WeightData> inWriteOrder = new ArrayList<>();
+        final NavigableMap<PagedWeightList.EntryKey, WeightData> byKey = new TreeMap<>(OLDEST_FIRST);
+        final NavigableMap<String, WeightRollup> monthlyRollups = new TreeMap<>();
+
+        void rollup(WeightData data, int sign) {
+            String id = WeightRollup.idFor(WeightRollup.TYPE_MONTH, data.getEpochDay());
+            WeightRollup rollup = monthlyRollups.get(id);
+            if (rollup == null) {
+                rollup = WeightRollup.forPeriod(WeightRollup.TYPE_MONTH, data.getEpochDay());
+                monthlyRollups.put(id, rollup);
+            }
+            rollup.apply(data, sign);
+        }
+    }
+}
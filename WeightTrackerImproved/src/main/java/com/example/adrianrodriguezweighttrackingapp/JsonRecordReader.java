@@ -0,0 +1,108 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JsonRecordReader streams a JSON export object by object with {@link JsonReader}, so a file with
+ * years of entries is never parsed into one tree.
+ *
+ * Accepts either a top-level array of entry objects, or an object whose first array property
+ * holds them (e.g. {"entries": [...]}, as most trackers wrap their exports). Scalar properties
+ * become fields; nested objects and arrays inside an entry are skipped.
+ */
+public class JsonRecordReader implements ImportRecordReader {
+
+    private final JsonReader reader;
+    private boolean started;
+    private boolean finished;
+    private long recordNumber;
+
+    JsonRecordReader(@NonNull InputStream in) throws IOException {
+        PushbackReader text = new PushbackReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        int first = text.read();
+        if (first != '\uFEFF' && first != -1) text.unread(first); // Drop a UTF-8 byte order mark.
+        this.reader = new JsonReader(text);
+        reader.setLenient(true);
+    }
+
+    @Nullable
+    @Override
+    public Record next() throws IOException {
+        if (finished) return null;
+        if (!started) {
+            started = true;
+            if (!enterEntryArray()) {
+                finished = true;
+                return null;
+            }
+        }
+
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue(); // Not an entry.
+                continue;
+            }
+            recordNumber++;
+            return new Record(readFields(), recordNumber);
+        }
+        finished = true;
+        return null;
+    }
+
+    // Positions the reader inside the array holding the entries. Returns false if there is none.
+    private boolean enterEntryArray() throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            return true;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.nextName();
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                return true;
+            }
+            reader.skipValue();
+        }
+        return false;
+    }
+
+    private Map<String, String> readFields() throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = ImportRecordReader.fieldKey(reader.nextName());
+            switch (reader.peek()) {
+                case STRING:
+                case NUMBER:
+                    fields.put(key, reader.nextString());
+                    break;
+                case BOOLEAN:
+                    fields.put(key, String.valueOf(reader.nextBoolean()));
+                    break;
+                default:
+                    reader.skipValue(); // null, nested objects and arrays.
+                    break;
+            }
+        }
+        reader.endObject();
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
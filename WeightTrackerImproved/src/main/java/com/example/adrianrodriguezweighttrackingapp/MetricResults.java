@@ -0,0 +1,44 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+
+import java.util.EnumMap;
+
+/**
+ * MetricResults holds the chart values of every {@link SeriesAggregator.Metric} for the same
+ * buckets, as produced together by {@link SeriesAggregator#aggregateAll}. The chart keeps one of
+ * these per period, so turning a sleep, steps or calories overlay on or off is only a redraw.
+ */
+public final class MetricResults {
+
+    private final EnumMap<SeriesAggregator.Metric, AggregateResult> results;
+
+    MetricResults(@NonNull EnumMap<SeriesAggregator.Metric, AggregateResult> results) {
+        for (SeriesAggregator.Metric metric : SeriesAggregator.Metric.values()) {
+            if (!results.containsKey(metric)) {
+                throw new IllegalArgumentException("Missing result for " + metric);
+            }
+        }
+        this.results = results;
+    }
+
+    @NonNull
+    public AggregateResult get(@NonNull SeriesAggregator.Metric metric) {
+        return results.get(metric);
+    }
+
+    // Weight is recorded with every entry, so its result decides whether the period has data.
+    @NonNull
+    public AggregateResult weight() {
+        return results.get(SeriesAggregator.Metric.WEIGHT);
+    }
+
+    @NonNull
+    public BucketSpec spec() {
+        return weight().spec();
+    }
+
+    public boolean isEmpty() {
+        return weight().isEmpty();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MetricsActivity is a debug screen that lists everything in {@link MetricsRegistry}: query round
+ * trips, mapping, aggregation, chart updates and list binds, with their percentiles. Below them
+ * is the session's Firestore cost report from {@link FirestoreCostLedger}. The values can be
+ * reset before reproducing a problem, and saved as JSON (also written to Logcat) so runs on
+ * different devices or builds can be compared.
+ *
+ * Only reachable in debuggable builds, by long-pressing the title of the history screen.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    private static final String TAG = "MetricsActivity";
+
+    private TextView textViewMetrics;
+
+    // Lets the user choose where to save the JSON dump.
+    private final ActivityResultLauncher<String> jsonPicker = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/json"), this::saveJson);
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+
+        textViewMetrics = findViewById(R.id.textViewMetrics);
+        findViewById(R.id.buttonRefreshMetrics).setOnClickListener(v -> refresh());
+        findViewById(R.id.buttonResetMetrics).setOnClickListener(v -> {
+            MetricsRegistry.reset();
+            FirestoreCostLedger.getInstance().reset();
+            refresh();
+        });
+        findViewById(R.id.buttonExportMetrics).setOnClickListener(v -> {
+            Log.i(TAG, report());
+            jsonPicker.launch("weight-tracker-metrics-" + System.currentTimeMillis() + ".json");
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        refresh();
+    }
+
+    private void refresh() {
+        String metrics = MetricsRegistry.describe();
+        textViewMetrics.setText((metrics.isEmpty() ? "Nothing recorded yet.\n" : metrics)
+                + "\nFirestore cost\n" + FirestoreCostLedger.getInstance().describe());
+    }
+
+    // Both reports in one JSON document.
+    private static String report() {
+        return "{\"metrics\": " + MetricsRegistry.toJson().trim()
+                + ",\n\"firestoreCost\": " + FirestoreCostLedger.getInstance().toJson() + "}\n";
+    }
+
+    // Writes the current values to the chosen file, off the main thread.
+    private void saveJson(@Nullable Uri uri) {
+        if (uri == null) return; // The user backed out of the picker.
+        String json = report();
+        AppExecutors.diskIO().execute(() -> {
+            boolean saved;
+            try (OutputStream out = getContentResolver().openOutputStream(uri, "wt")) {
+                if (out == null) throw new FileNotFoundException("Can't open " + uri);
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+                saved = true;
+            } catch (Exception e) {
+                Log.e(TAG, "Couldn't save metrics:", e);
+                saved = false;
+            }
+            boolean result = saved;
+            AppExecutors.mainThread().execute(() -> Toast.makeText(this,
+                    result ? "Metrics saved." : "Couldn't save metrics.", Toast.LENGTH_SHORT).show());
+        });
+    }
+}
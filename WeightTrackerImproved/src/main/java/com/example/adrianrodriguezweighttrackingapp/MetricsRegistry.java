@@ -0,0 +1,287 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * MetricsRegistry collects in-app performance metrics: counters, gauges and latency histograms
+ * with fixed buckets. Metrics are registered once, usually into a static field of the class that
+ * records them, and recording only touches atomics, so it is safe on any thread and allocates
+ * nothing on the hot paths:
+ *
+ *   private static final MetricsRegistry.Histogram RANGE_QUERY = MetricsRegistry.histogram("firestore.entries.range");
+ *   ...
+ *   long start = MetricsRegistry.now();
+ *   ...
+ *   RANGE_QUERY.recordSince(start);
+ *
+ * Values live for the life of the process. MetricsActivity shows them and can save them as JSON.
+ */
+public final class MetricsRegistry {
+
+    // Upper bounds of the histogram buckets, in microseconds. One more bucket holds everything slower.
+    private static final long[] BUCKET_BOUNDS_US = {
+            10, 25, 50, 100, 250, 500,
+            1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+            100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000};
+
+    // Every registered metric by name, sorted for display.
+    private static final Map<String, Metric> METRICS = new TreeMap<>();
+
+    private MetricsRegistry() {
+        // Static registry, no instances.
+    }
+
+    /**
+     * Returns the counter with the given name, registering it on first use.
+     */
+    @NonNull
+    public static Counter counter(@NonNull String name) {
+        return register(name, Counter.class, new Counter());
+    }
+
+    /**
+     * Returns the gauge with the given name, registering it on first use.
+     */
+    @NonNull
+    public static Gauge gauge(@NonNull String name) {
+        return register(name, Gauge.class, new Gauge());
+    }
+
+    /**
+     * Returns the latency histogram with the given name, registering it on first use.
+     */
+    @NonNull
+    public static Histogram histogram(@NonNull String name) {
+        return register(name, Histogram.class, new Histogram());
+    }
+
+    /**
+     * Start time for {@link Histogram#recordSince}; a monotonic clock in nanoseconds.
+     */
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Clears every metric's values. Registrations are kept.
+     */
+    public static synchronized void reset() {
+        for (Metric metric : METRICS.values()) metric.reset();
+    }
+
+    /**
+     * One line per metric, for the debug screen.
+     */
+    @NonNull
+    public static synchronized String describe() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Metric> entry : METRICS.entrySet()) {
+            text.append(entry.getKey()).append('\n');
+            text.append("    ").append(entry.getValue().describe()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Every metric as a JSON object keyed by metric name. Histogram times are in microseconds.
+     */
+    @NonNull
+    public static synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"capturedAtMs\": ").append(System.currentTimeMillis())
+                .append(",\n  \"metrics\": {");
+        boolean first = true;
+        for (Map.Entry<String, Metric> entry : METRICS.entrySet()) {
+            json.append(first ? "\n    \"" : ",\n    \"").append(entry.getKey()).append("\": ");
+            entry.getValue().appendJson(json);
+            first = false;
+        }
+        return json.append("\n  }\n}\n").toString();
+    }
+
+    private static synchronized <T extends Metric> T register(String name, Class<T> type, T fresh) {
+        Metric existing = METRICS.get(name);
+        if (existing == null) {
+            METRICS.put(name, fresh);
+            return fresh;
+        }
+        if (!type.isInstance(existing)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a "
+                    + existing.getClass().getSimpleName());
+        }
+        return type.cast(existing);
+    }
+
+    private abstract static class Metric {
+        abstract void reset();
+
+        abstract String describe();
+
+        abstract void appendJson(StringBuilder json);
+    }
+
+    /**
+     * A count that only goes up, e.g. documents mapped or cache hits.
+     */
+    public static final class Counter extends Metric {
+        private final AtomicLong count = new AtomicLong();
+
+        public void increment() {
+            count.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            count.addAndGet(delta);
+        }
+
+        public long get() {
+            return count.get();
+        }
+
+        @Override
+        void reset() {
+            count.set(0);
+        }
+
+        @Override
+        String describe() {
+            return "count " + count.get();
+        }
+
+        @Override
+        void appendJson(StringBuilder json) {
+            json.append("{\"type\": \"counter\", \"count\": ").append(count.get()).append('}');
+        }
+    }
+
+    /**
+     * The latest value of something, e.g. the number of rows in the list.
+     */
+    public static final class Gauge extends Metric {
+        private final AtomicLong value = new AtomicLong();
+
+        public void set(long newValue) {
+            value.set(newValue);
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        @Override
+        void reset() {
+            value.set(0);
+        }
+
+        @Override
+        String describe() {
+            return "value " + value.get();
+        }
+
+        @Override
+        void appendJson(StringBuilder json) {
+            json.append("{\"type\": \"gauge\", \"value\": ").append(value.get()).append('}');
+        }
+    }
+
+    /**
+     * Latency distribution over fixed buckets from 10 us to 10 s. Percentiles are reported as
+     * the upper bound of the bucket they fall in, so they are accurate to one bucket.
+     */
+    public static final class Histogram extends Metric {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_US.length + 1);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * Records the time elapsed since `startNanos`, a value from {@link MetricsRegistry#now}.
+         */
+        public void recordSince(long startNanos) {
+            recordNanos(System.nanoTime() - startNanos);
+        }
+
+        public void recordNanos(long nanos) {
+            long micros = nanos / 1_000;
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_US.length && micros > BUCKET_BOUNDS_US[bucket]) bucket++;
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        public long count() {
+            return count.get();
+        }
+
+        public long meanMicros() {
+            long n = count.get();
+            return n > 0 ? totalNanos.get() / n / 1_000 : 0;
+        }
+
+        public long maxMicros() {
+            return maxNanos.get() / 1_000;
+        }
+
+        /**
+         * Returns the upper bound, in microseconds, of the bucket holding the given percentile
+         * (0-100), or the maximum if it falls in the overflow bucket.
+         */
+        public long percentileMicros(double percentile) {
+            long n = count.get();
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+            long seen = 0;
+            for (int b = 0; b < BUCKET_BOUNDS_US.length; b++) {
+                seen += buckets.get(b);
+                if (seen >= rank) return Math.min(BUCKET_BOUNDS_US[b], maxMicros());
+            }
+            return maxMicros();
+        }
+
+        @Override
+        void reset() {
+            for (int b = 0; b < buckets.length(); b++) buckets.set(b, 0);
+            count.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+        }
+
+        @Override
+        String describe() {
+            return String.format(Locale.US, "n %d  p50 %s  p90 %s  p99 %s  max %s", count(),
+                    formatMicros(percentileMicros(50)), formatMicros(percentileMicros(90)),
+                    formatMicros(percentileMicros(99)), formatMicros(maxMicros()));
+        }
+
+        @Override
+        void appendJson(StringBuilder json) {
+            json.append("{\"type\": \"histogram\", \"count\": ").append(count())
+                    .append(", \"meanUs\": ").append(meanMicros())
+                    .append(", \"p50Us\": ").append(percentileMicros(50))
+                    .append(", \"p90Us\": ").append(percentileMicros(90))
+                    .append(", \"p99Us\": ").append(percentileMicros(99))
+                    .append(", \"maxUs\": ").append(maxMicros())
+                    .append(", \"buckets\": [");
+            for (int b = 0; b < buckets.length(); b++) {
+                if (b > 0) json.append(", ");
+                json.append("{\"leUs\": ").append(b < BUCKET_BOUNDS_US.length ? String.valueOf(BUCKET_BOUNDS_US[b]) : "null")
+                        .append(", \"count\": ").append(buckets.get(b)).append('}');
+            }
+            json.append("]}");
+        }
+
+        private static String formatMicros(long micros) {
+            return micros >= 1_000 ? String.format(Locale.US, "%.1fms", micros / 1_000.0) : micros + "us";
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * OutboxFlusher sends a user's write-behind outbox to Firestore in the background. Saves only
+ * go as far as the outbox and the local cache (see {@link WeightCacheHelper#enqueue}), so they
+ * return right away; this class drains the outbox oldest first, in coalesced batches.
+ *
+ * A batch is up to {@link #BATCH_SIZE} queued entries sent in one transaction, which also folds
+ * them into their week/month/year rollups. Entries are keyed by day ({@link DateKeys#entryId}),
+ * so each one is a merge upsert: if the day already has an entry, its old values are taken back
+ * out of the rollups before the new ones go in. Each rollup is read and written once per batch, however
+ * many of the batch's entries fall into it, so a week of back-filled days costs one write to that
+ * week's rollup instead of seven. Flushes wait {@link #COALESCE_DELAY_MS} after a save so entries
+ * typed back to back share a batch.
+ *
+ * The outbox also holds tombstones of deleted entries (see {@link WeightCacheHelper#tombstone}).
+ * They are held back until their undo window has passed, then purged in the same batches: the
+ * entry document is deleted, its values are taken back out of its rollups, and rollups left with
+ * no entries are deleted too. Deleting a few hundred entries therefore costs a few transactions.
+ *
+ * The transaction skips entries the server already has with the same values, and tombstones of
+ * entries it no longer has. Sending a batch again, because it committed just before the process
+ * died, therefore changes nothing.
+ *
+ * A failed batch is retried with exponential backoff, from {@link #RETRY_BASE_MS} doubling up to
+ * {@link #RETRY_MAX_MS}. Entries are never dropped; they stay queued until the server has them.
+ *
+ * All state here is only touched on the main thread.
+ */
+final class OutboxFlusher {
+
+    private static final String TAG = "OutboxFlusher";
+
+    // Queued writes per transaction. With their rollups this stays far below Firestore's 500 writes.
+    static final int BATCH_SIZE = 50;
+
+    // How long a save waits for more saves before its batch is sent.
+    static final long COALESCE_DELAY_MS = 1_000;
+
+    // Backoff after failed flushes: the first retry waits the base, each further failure doubles it.
+    private static final long RETRY_BASE_MS = 2_000;
+    private static final long RETRY_MAX_MS = 5 * 60_000;
+
+    // Server round trip of one batch, entries sent and purged, failed batches and the outbox size after each read.
+    private static final MetricsRegistry.Histogram FLUSH = MetricsRegistry.histogram("firestore.outbox.flush");
+    private static final MetricsRegistry.Counter FLUSHED = MetricsRegistry.counter("outbox.flushed");
+    private static final MetricsRegistry.Counter PURGED = MetricsRegistry.counter("outbox.purged");
+    private static final MetricsRegistry.Counter FAILED = MetricsRegistry.counter("outbox.flushFailures");
+    private static final MetricsRegistry.Gauge QUEUED = MetricsRegistry.gauge("outbox.queued");
+
+    private final String userId;
+    private final FirebaseFirestore db;
+    private final CollectionReference weightEntriesRef;
+    private final CollectionReference rollupsRef;
+    private final WeightCacheHelper cache;
+    private final Listener listener;
+    private final FirestoreCostLedger ledger = FirestoreCostLedger.getInstance();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushTask = this::flush;
+
+    private boolean flushing;         // A batch is being read or sent.
+    private boolean scheduled;        // flushTask is posted to the handler.
+    private long scheduledAt;         // When it will run, in SystemClock.uptimeMillis() time.
+    private int consecutiveFailures;
+
+    /**
+     * Told on the main thread after a batch has been committed and taken out of the outbox.
+     */
+    interface Listener {
+        /**
+         * @param saved   Entries the server now has as queued.
+         * @param deleted Entries whose tombstones were purged; the server no longer has them.
+         */
+        void onBatchSent(@NonNull List<WeightData> saved, @NonNull List<WeightData> deleted);
+    }
+
+    OutboxFlusher(@NonNull String userId, @NonNull FirebaseFirestore db, @NonNull CollectionReference weightEntriesRef,
+                  @NonNull CollectionReference rollupsRef, @NonNull WeightCacheHelper cache,
+                  @NonNull Listener listener) {
+        this.userId = userId;
+        this.db = db;
+        this.weightEntriesRef = weightEntriesRef;
+        this.rollupsRef = rollupsRef;
+        this.cache = cache;
+        this.listener = listener;
+    }
+
+    /**
+     * Drains the outbox after `delayMs`, unless a flush is already running or due sooner; a running
+     * flush keeps going until nothing is ready to send, and a scheduled retry keeps its backoff.
+     */
+    void requestFlush(long delayMs) {
+        if (flushing) return;
+        long at = SystemClock.uptimeMillis() + delayMs;
+        if (scheduled) {
+            if (consecutiveFailures > 0 || at >= scheduledAt) return;
+            handler.removeCallbacks(flushTask);
+        }
+        scheduled = true;
+        scheduledAt = at;
+        handler.postAtTime(flushTask, at);
+    }
+
+    // Reads the oldest batch that may be sent now from disk and sends it.
+    private void flush() {
+        scheduled = false;
+        flushing = true;
+        // Filed under the screen in front when the batch goes out, usually the one the entries were typed on.
+        String screen = ledger.currentScreen();
+        AppExecutors.diskIO().execute(() -> {
+            long now = System.currentTimeMillis();
+            List<WeightCacheHelper.QueuedWrite> batch = cache.queuedWrites(userId, BATCH_SIZE, now);
+            // Nothing ready: come back when the first held-back tombstone is.
+            long wait = batch.isEmpty() ? cache.nextReadyAt(userId) - now : 0;
+            QUEUED.set(cache.queuedCount(userId));
+            AppExecutors.mainThread().execute(() -> {
+                if (batch.isEmpty()) {
+                    flushing = false;
+                    if (wait < Long.MAX_VALUE / 2) requestFlush(Math.max(0, wait));
+                    return;
+                }
+                send(screen, batch);
+            });
+        });
+    }
+
+    private void send(String screen, List<WeightCacheHelper.QueuedWrite> batch) {
+        long started = MetricsRegistry.now();
+        db.runTransaction(transaction -> commit(transaction, batch))
+                .addOnSuccessListener(outcome -> {
+                    FLUSH.recordSince(started);
+                    FLUSHED.add(outcome.entriesWritten);
+                    PURGED.add(outcome.entriesDeleted);
+                    consecutiveFailures = 0;
+                    recordCost(screen, batch, outcome);
+
+                    List<WeightData> saved = new ArrayList<>(batch.size());
+                    List<WeightData> deleted = new ArrayList<>();
+                    for (WeightCacheHelper.QueuedWrite write : batch) {
+                        (write.delete ? deleted : saved).add(write.entry);
+                    }
+                    AppExecutors.diskIO().execute(() -> {
+                        cache.dequeue(userId, batch);
+                        // Straight on to the next batch, if anything was queued meanwhile.
+                        AppExecutors.mainThread().execute(() -> {
+                            listener.onBatchSent(saved, deleted);
+                            flushing = false;
+                            requestFlush(0);
+                        });
+                    });
+                })
+                .addOnFailureListener(e -> {
+                    FAILED.increment();
+                    long delay = Math.min(RETRY_MAX_MS, RETRY_BASE_MS << Math.min(consecutiveFailures, 16));
+                    consecutiveFailures++;
+                    Log.w(TAG, "Sending " + batch.size() + " queued writes failed, retrying in " + delay + " ms", e);
+                    flushing = false;
+                    requestFlush(delay);
+                });
+    }
+
+    // One read of each queued entry's document, then the rollups of the days that changed.
+    // Rollup writes are filed with the saves, entry deletes on their own.
+    private void recordCost(String screen, List<WeightCacheHelper.QueuedWrite> batch, Outcome outcome) {
+        int deletes = 0;
+        for (WeightCacheHelper.QueuedWrite write : batch) {
+            if (write.delete) deletes++;
+        }
+        if (batch.size() > deletes) {
+            ledger.recordRead(screen, "entries.outbox", FirestoreCostLedger.Source.SERVER, batch.size() - deletes);
+        }
+        if (deletes > 0) {
+            ledger.recordRead(screen, "entries.delete", FirestoreCostLedger.Source.SERVER, deletes);
+        }
+        if (outcome.rollupsWritten > 0) {
+            ledger.recordRead(screen, "rollups.transaction", FirestoreCostLedger.Source.SERVER, outcome.rollupsWritten);
+        }
+        if (outcome.entriesWritten + outcome.rollupsWritten > 0) {
+            ledger.recordWrite(screen, "entries.outbox", outcome.entriesWritten + outcome.rollupsWritten);
+        }
+        if (outcome.entriesDeleted > 0) {
+            ledger.recordWrite(screen, "entries.delete", outcome.entriesDeleted);
+        }
+    }
+
+    // Upserts the batch's saved entries and deletes its tombstoned ones, and moves their rollups
+    // from each day's old values to the new ones. Rollups left empty are deleted.
+    // Firestore transactions need every read to happen before any write, and may run this more
+    // than once, so all state is built in here.
+    private Outcome commit(Transaction transaction, List<WeightCacheHelper.QueuedWrite> batch)
+            throws FirebaseFirestoreException {
+        List<WeightData> changed = new ArrayList<>(batch.size());
+        List<WeightData> replaced = new ArrayList<>(batch.size()); // The day's stored entry, or null.
+        List<DocumentReference> removedRefs = new ArrayList<>();
+        List<WeightData> removed = new ArrayList<>(); // Values of deleted entries that count in rollups.
+        for (WeightCacheHelper.QueuedWrite write : batch) {
+            WeightData data = write.entry;
+            DocumentReference entryRef = weightEntriesRef.document(data.getDocumentId());
+            DocumentSnapshot current = transaction.get(entryRef);
+            WeightData existing = current.exists() ? current.toObject(WeightData.class) : null;
+            if (existing != null && !existing.hasEpochDay()) {
+                existing.setEpochDay(DateKeys.parseEpochDay(existing.getDate()));
+            }
+            if (write.delete) {
+                // Already gone, e.g. purged by a batch that committed just before the process died.
+                if (!current.exists()) continue;
+                removedRefs.add(entryRef);
+                if (existing != null && existing.hasEpochDay()) removed.add(existing);
+                continue;
+            }
+            // Already stored as queued, e.g. by a batch that committed just before the process died.
+            if (data.hasSameContent(existing)) continue;
+            changed.add(data);
+            replaced.add(existing != null && existing.hasEpochDay() ? existing : null);
+        }
+
+        // Every rollup the changed and deleted days fall into, read once. Missing ones start out empty.
+        Map<String, WeightRollup> rollups = new TreeMap<>();
+        List<WeightData> touched = new ArrayList<>(changed);
+        touched.addAll(removed);
+        for (WeightData data : touched) {
+            for (String type : WeightRollup.ALL_TYPES) {
+                String id = WeightRollup.idFor(type, data.getEpochDay());
+                if (rollups.containsKey(id)) continue;
+                DocumentSnapshot snapshot = transaction.get(rollupsRef.document(id));
+                WeightRollup existing = snapshot.exists() ? snapshot.toObject(WeightRollup.class) : null;
+                rollups.put(id, existing != null ? existing : WeightRollup.forPeriod(type, data.getEpochDay()));
+            }
+        }
+
+        for (int i = 0; i < changed.size(); i++) {
+            WeightData data = changed.get(i);
+            WeightData old = replaced.get(i);
+            // Merge, so fields this app doesn't know about survive an overwrite.
+            transaction.set(weightEntriesRef.document(data.getDocumentId()), data, SetOptions.merge());
+            for (String type : WeightRollup.ALL_TYPES) {
+                WeightRollup rollup = rollups.get(WeightRollup.idFor(type, data.getEpochDay()));
+                if (old != null) rollup.apply(old, -1);
+                rollup.apply(data, +1);
+            }
+        }
+        for (DocumentReference entryRef : removedRefs) transaction.delete(entryRef);
+        for (WeightData old : removed) {
+            for (String type : WeightRollup.ALL_TYPES) {
+                rollups.get(WeightRollup.idFor(type, old.getEpochDay())).apply(old, -1);
+            }
+        }
+        for (WeightRollup rollup : rollups.values()) {
+            DocumentReference rollupRef = rollupsRef.document(rollup.getId());
+            if (rollup.isEmpty()) {
+                transaction.delete(rollupRef);
+            } else {
+                transaction.set(rollupRef, rollup);
+            }
+        }
+        return new Outcome(changed.size(), removedRefs.size(), rollups.size());
+    }
+
+    // What one committed batch wrote.
+    private static final class Outcome {
+        final int entriesWritten;
+        final int entriesDeleted;
+        final int rollupsWritten; // Including rollups deleted because they became empty.
+
+        Outcome(int entriesWritten, int entriesDeleted, int rollupsWritten) {
+            this.entriesWritten = entriesWritten;
+            this.entriesDeleted = entriesDeleted;
+            this.rollupsWritten = rollupsWritten;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * PagedWeightList is the in-memory window of history entries shown by DataDisplayActivity.
+ * Entries are kept newest first, ordered by (epochDay, documentId) exactly like the paged
+ * Firestore and cache queries, so the oldest loaded entry is always the cursor for the next page.
+ *
+ * Pages are merged by key range rather than appended: a page replaces whatever was held
+ * between its bounds. That way a cached page is cleanly swapped for the server copy, deleted
+ * entries disappear, and entries pushed out of the live newest page by a new entry stay put.
+ */
+public class PagedWeightList {
+
+    // Newest first: higher epoch day first, then higher document ID (matches the DESC queries).
+    static final Comparator<EntryKey> NEWEST_FIRST = (a, b) -> {
+        int byDay = Long.compare(b.epochDay, a.epochDay);
+        return byDay != 0 ? byDay : b.documentId.compareTo(a.documentId);
+    };
+
+    private final NavigableMap<EntryKey, WeightData> entries = new TreeMap<>(NEWEST_FIRST);
+
+    // Set while the oldest page held came back shorter than requested, meaning there is nothing
+    // older to fetch.
+    private boolean endReached;
+    // True once an older page has been merged; until then the newest page alone decides endReached.
+    private boolean olderPagesLoaded;
+
+    /**
+     * Merges the live newest page. Everything newer than the page's oldest entry is replaced.
+     *
+     * @param page     The newest entries, newest first.
+     * @param fullPage True if the page was filled to its limit (so older entries may exist).
+     */
+    public void applyNewestPage(@NonNull List<WeightData> page, boolean fullPage) {
+        EntryKey lower = fullPage && !page.isEmpty() ? keyOf(page.get(page.size() - 1)) : null;
+        replaceRange(null, lower, page);
+        if (!fullPage) {
+            endReached = true;
+            olderPagesLoaded = false; // A short page replaced everything.
+        } else if (!olderPagesLoaded) {
+            // The history grew past one page (e.g. after an import); older pages exist again. Once
+            // older pages are held, only they know whether the end was reached.
+            endReached = false;
+        }
+    }
+
+    /**
+     * Merges a page of entries older than the given cursor.
+     *
+     * @param afterKey The cursor the page was requested with (the oldest entry held at that time).
+     * @param page     The entries older than the cursor, newest first.
+     * @param fullPage True if the page was filled to its limit.
+     */
+    public void applyOlderPage(@NonNull EntryKey afterKey, @NonNull List<WeightData> page, boolean fullPage) {
+        EntryKey lower = fullPage && !page.isEmpty() ? keyOf(page.get(page.size() - 1)) : null;
+        replaceRange(afterKey, lower, page);
+        olderPagesLoaded = true;
+        endReached = !fullPage;
+    }
+
+    /**
+     * Removes an entry, e.g. after it was deleted outside the live page.
+     */
+    public void remove(@NonNull String documentId) {
+        entries.values().removeIf(data -> documentId.equals(data.getDocumentId()));
+    }
+
+    /**
+     * Returns the key of the oldest loaded entry, the cursor for the next older page, or null if empty.
+     */
+    @Nullable
+    public EntryKey oldestKey() {
+        return entries.isEmpty() ? null : entries.lastKey();
+    }
+
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the loaded entries as a new list, newest first.
+     */
+    @NonNull
+    public List<WeightData> toList() {
+        return new ArrayList<>(entries.values());
+    }
+
+    // Replaces everything strictly older than `upper` (or everything if null) and at least as new
+    // as `lower` (or down to the oldest entry if null) with the given page.
+    private void replaceRange(@Nullable EntryKey upper, @Nullable EntryKey lower, List<WeightData> page) {
+        NavigableMap<EntryKey, WeightData> window;
+        if (upper == null && lower == null) {
+            window = entries;
+        } else if (upper == null) {
+            window = entries.headMap(lower, true);
+        } else if (lower == null) {
+            window = entries.tailMap(upper, false);
+        } else {
+            window = entries.subMap(upper, false, lower, true);
+        }
+        window.clear();
+        for (WeightData data : page) {
+            if (data.getDocumentId() == null) continue;
+            entries.put(keyOf(data), data);
+        }
+    }
+
+    @NonNull
+    public static EntryKey keyOf(@NonNull WeightData data) {
+        return new EntryKey(data.getEpochDay(), data.getDocumentId());
+    }
+
+    /**
+     * Position of an entry in the history ordering; also the cursor for paged queries.
+     */
+    public static final class EntryKey {
+        public final long epochDay;
+        public final String documentId;
+
+        public EntryKey(long epochDay, @NonNull String documentId) {
+            this.epochDay = epochDay;
+            this.documentId = documentId;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * PendingWrites tracks a user's writes that the server hasn't confirmed yet, so screens can show
+ * them before it does: entries still waiting in the outbox (see {@link OutboxFlusher}), entries
+ * deleted on this device whose tombstones haven't been purged yet, and entries purged this session
+ * that pages loaded earlier may still contain. It plays the part of Firestore's hasPendingWrites() for our own
+ * write-behind queue, which the Firestore SDK doesn't know about until a batch is sent.
+ *
+ * {@link #overlay} lays this state over the entries a screen has loaded: queued entries are
+ * added in their place, deleted entries are left out. Listeners hear about every change, so a
+ * deleted row comes back if its delete is undone and a queued row loses its pending mark once
+ * its batch is through.
+ *
+ * Only touched on the main thread.
+ */
+public final class PendingWrites {
+
+    /**
+     * Told whenever an entry is queued, sent, deleted, restored or purged.
+     */
+    public interface Listener {
+        void onPendingWritesChanged();
+    }
+
+    // Queued entries by document ID, oldest first.
+    private final Map<String, WeightData> queued = new LinkedHashMap<>();
+    private final Set<String> deleting = new HashSet<>(); // Tombstoned, not purged yet.
+    private final Set<String> purged = new HashSet<>();   // Gone from the server this session.
+    private final List<Listener> listeners = new ArrayList<>();
+
+    PendingWrites() {
+    }
+
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * True if the entry is saved on the device but not on the server yet.
+     */
+    public boolean isQueued(@NonNull String documentId) {
+        return queued.containsKey(documentId);
+    }
+
+    /**
+     * IDs of the queued entries, to mark their rows as pending.
+     */
+    @NonNull
+    public Set<String> queuedIds() {
+        return Collections.unmodifiableSet(queued.keySet());
+    }
+
+    /**
+     * Returns `loaded` (newest first) with the pending writes applied: deleted entries are
+     * removed, and queued entries that aren't in it yet are inserted in order. Queued entries older
+     * than the oldest loaded one are only added once the end of the history has been reached,
+     * since until then they belong to a page that isn't loaded.
+     *
+     * @param oldest     Key of the oldest loaded entry, or null if nothing is loaded.
+     * @param endReached True if there is nothing older than `loaded` on the server.
+     */
+    @NonNull
+    public List<WeightData> overlay(@NonNull List<WeightData> loaded, @Nullable PagedWeightList.EntryKey oldest,
+                                    boolean endReached) {
+        if (queued.isEmpty() && deleting.isEmpty() && purged.isEmpty()) return loaded;
+        Map<PagedWeightList.EntryKey, WeightData> merged = new TreeMap<>(PagedWeightList.NEWEST_FIRST);
+        for (WeightData data : loaded) {
+            String documentId = data.getDocumentId();
+            if (!deleting.contains(documentId) && !purged.contains(documentId)) {
+                merged.put(PagedWeightList.keyOf(data), data);
+            }
+        }
+        for (WeightData data : queued.values()) {
+            if (deleting.contains(data.getDocumentId())) continue;
+            PagedWeightList.EntryKey key = PagedWeightList.keyOf(data);
+            if (endReached || oldest == null || PagedWeightList.NEWEST_FIRST.compare(key, oldest) <= 0) {
+                merged.put(key, data); // A row with the same key is the same entry, so either copy will do.
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    // Called by the repository when it queues or restores an entry, and with the outbox's contents
+    // on start. Queuing a deleted day again replaces its tombstone.
+    void queued(@NonNull Collection<WeightData> entries) {
+        if (entries.isEmpty()) return;
+        for (WeightData data : entries) {
+            queued.put(data.getDocumentId(), data);
+            deleting.remove(data.getDocumentId());
+            purged.remove(data.getDocumentId());
+        }
+        notifyListeners();
+    }
+
+    // Called once a batch of saves has been committed.
+    void sent(@NonNull Collection<String> documentIds) {
+        boolean changed = false;
+        for (String documentId : documentIds) changed |= queued.remove(documentId) != null;
+        if (changed) notifyListeners();
+    }
+
+    // Called when entries are tombstoned, and with the outbox's tombstones on start. A queued save
+    // of the same entry was replaced by its tombstone, so it isn't queued anymore.
+    void deleteStarted(@NonNull Collection<String> documentIds) {
+        boolean changed = false;
+        for (String documentId : documentIds) {
+            changed |= deleting.add(documentId);
+            changed |= queued.remove(documentId) != null;
+        }
+        if (changed) notifyListeners();
+    }
+
+    // Called when a delete is undone, or its tombstone couldn't be written; the entries show up again.
+    void deleteCancelled(@NonNull Collection<String> documentIds) {
+        boolean changed = false;
+        for (String documentId : documentIds) changed |= deleting.remove(documentId);
+        if (changed) notifyListeners();
+    }
+
+    // Called once a batch of tombstones has been purged from the server. An entry saved again
+    // while its delete was on the way is queued, and stays.
+    void purged(@NonNull Collection<String> documentIds) {
+        boolean changed = false;
+        for (String documentId : documentIds) {
+            if (queued.containsKey(documentId)) continue;
+            changed |= deleting.remove(documentId);
+            changed |= purged.add(documentId);
+        }
+        if (changed) notifyListeners();
+    }
+
+    private void notifyListeners() {
+        for (Listener listener : new ArrayList<>(listeners)) listener.onPendingWritesChanged();
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * RollupRebuilder recomputes a user's week/month/year rollup documents from the raw weight
+ * entries. Day-to-day, rollups are kept current by the add and delete transactions in
+ * {@link WeightRepository}; this tool is for everything else: entries that existed before
+ * rollups did, bulk writes, and clearing min/max values flagged as stale after deletes.
+ *
+ * Raw entries are streamed page by page in epoch-day order, so memory only grows with the
+ * number of periods (a few hundred for ten years), not with the number of entries.
+ */
+public class RollupRebuilder {
+
+    private static final String TAG = "RollupRebuilder";
+
+    // Raw entries read per page.
+    private static final int PAGE_SIZE = 500;
+
+    // Rollup writes per batch, below Firestore's 500-operation limit.
+    private static final int WRITE_CHUNK_SIZE = 400;
+
+    private final FirebaseFirestore db;
+    private final CollectionReference weightEntriesRef;
+    private final CollectionReference rollupsRef;
+
+    // Reads and writes are filed under the screen that started the rebuild.
+    private final FirestoreCostLedger ledger = FirestoreCostLedger.getInstance();
+    private final String screen = ledger.currentScreen();
+
+    RollupRebuilder(@NonNull FirebaseFirestore db, @NonNull CollectionReference weightEntriesRef,
+                    @NonNull CollectionReference rollupsRef) {
+        this.db = db;
+        this.weightEntriesRef = weightEntriesRef;
+        this.rollupsRef = rollupsRef;
+    }
+
+    /**
+     * Rebuilds every rollup for the user.
+     */
+    public void rebuildAll(@NonNull WeightRepository.WriteCallback callback) {
+        rebuild(Long.MIN_VALUE, Long.MAX_VALUE, callback);
+    }
+
+    /**
+     * Rebuilds the rollups for every year touched by [startDay, endDay]. The range is widened to
+     * whole years (and the weeks straddling them) so that no rebuilt rollup is only partially counted.
+     */
+    public void rebuildYears(long startDay, long endDay, @NonNull WeightRepository.WriteCallback callback) {
+        LocalDate firstYearStart = LocalDate.ofEpochDay(startDay).with(TemporalAdjusters.firstDayOfYear());
+        LocalDate lastYearEnd = LocalDate.ofEpochDay(endDay).with(TemporalAdjusters.lastDayOfYear());
+        long from = firstYearStart.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+        long to = lastYearEnd.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY)).toEpochDay();
+        rebuild(from, to, callback);
+    }
+
+    // Streams the raw entries in [from, to], then replaces every rollup that lies fully inside it.
+    private void rebuild(long from, long to, WeightRepository.WriteCallback callback) {
+        Log.d(TAG, "Rebuilding rollups for epoch days " + from + " to " + to);
+        readPage(from, to, null, new TreeMap<>(), callback);
+    }
+
+    private void readPage(long from, long to, DocumentSnapshot after,
+                          Map<String, WeightRollup> rollups, WeightRepository.WriteCallback callback) {
+        Query query = weightEntriesRef.orderBy("epochDay").limit(PAGE_SIZE);
+        if (from != Long.MIN_VALUE) query = query.whereGreaterThanOrEqualTo("epochDay", from);
+        if (to != Long.MAX_VALUE) query = query.whereLessThanOrEqualTo("epochDay", to);
+        if (after != null) query = query.startAfter(after);
+
+        query.get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                callback.onFailure(task.getException() != null ? task.getException()
+                        : new IllegalStateException("Rollup rebuild read failed"));
+                return;
+            }
+            QuerySnapshot page = task.getResult();
+            ledger.recordRead(screen, "entries.rollupRebuild",
+                    FirestoreCostLedger.Source.firestore(page.getMetadata().isFromCache()), page.size());
+            for (DocumentSnapshot doc : page.getDocuments()) {
+                WeightData entry = doc.toObject(WeightData.class);
+                if (entry == null || !entry.hasEpochDay()) continue;
+                for (String type : WeightRollup.ALL_TYPES) {
+                    WeightRollup period = WeightRollup.forPeriod(type, entry.getEpochDay());
+                    // Partially covered periods at the edges of the range are left alone.
+                    if (period.getStartEpochDay() < from || period.getEndEpochDay() > to) continue;
+                    WeightRollup rollup = rollups.get(period.getId());
+                    if (rollup == null) {
+                        rollup = period;
+                        rollups.put(period.getId(), rollup);
+                    }
+                    rollup.apply(entry, +1);
+                }
+            }
+
+            if (page.size() == PAGE_SIZE) {
+                readPage(from, to, page.getDocuments().get(page.size() - 1), rollups, callback);
+            } else {
+                replaceRollups(from, to, rollups, callback);
+            }
+        });
+    }
+
+    // Deletes stale rollups in the range that no longer have entries, then writes the fresh ones.
+    private void replaceRollups(long from, long to, Map<String, WeightRollup> rollups,
+                                WeightRepository.WriteCallback callback) {
+        Query existing = rollupsRef;
+        if (from != Long.MIN_VALUE) existing = existing.whereGreaterThanOrEqualTo("startEpochDay", from);
+        if (to != Long.MAX_VALUE) existing = existing.whereLessThanOrEqualTo("startEpochDay", to);
+
+        existing.get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                callback.onFailure(task.getException() != null ? task.getException()
+                        : new IllegalStateException("Rollup rebuild read failed"));
+                return;
+            }
+
+            ledger.recordRead(screen, "rollups.rebuild",
+                    FirestoreCostLedger.Source.firestore(task.getResult().getMetadata().isFromCache()), task.getResult().size());
+            List<RollupWrite> ops = new ArrayList<>();
+            Set<String> keep = new HashSet<>(rollups.keySet());
+            for (DocumentSnapshot doc : task.getResult().getDocuments()) {
+                Long end = doc.getLong("endEpochDay");
+                boolean insideRange = end == null || end <= to;
+                if (insideRange && !keep.contains(doc.getId())) {
+                    ops.add(new RollupWrite(doc.getId(), null));
+                }
+            }
+            for (WeightRollup rollup : rollups.values()) {
+                ops.add(new RollupWrite(rollup.getId(), rollup));
+            }
+            commitChunk(ops, 0, callback);
+        });
+    }
+
+    private void commitChunk(List<RollupWrite> ops, int from, WeightRepository.WriteCallback callback) {
+        if (from >= ops.size()) {
+            Log.d(TAG, "Rollup rebuild wrote " + ops.size() + " documents.");
+            callback.onSuccess();
+            return;
+        }
+        int to = Math.min(from + WRITE_CHUNK_SIZE, ops.size());
+        WriteBatch batch = db.batch();
+        for (RollupWrite op : ops.subList(from, to)) {
+            if (op.rollup == null) {
+                batch.delete(rollupsRef.document(op.documentId));
+            } else {
+                batch.set(rollupsRef.document(op.documentId), op.rollup);
+            }
+        }
+        batch.commit()
+                .addOnSuccessListener(aVoid -> {
+                    ledger.recordWrite(screen, "rollups.rebuild", to - from);
+                    commitChunk(ops, to, callback);
+                })
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    // One pending write of the rebuild: a rollup to set, or a null rollup meaning "delete this ID".
+    private static class RollupWrite {
+        final String documentId;
+        final WeightRollup rollup;
+
+        RollupWrite(String documentId, WeightRollup rollup) {
+            this.documentId = documentId;
+            this.rollup = rollup;
+        }
+    }
+}
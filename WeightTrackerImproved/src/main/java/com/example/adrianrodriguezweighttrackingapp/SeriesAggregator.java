@@ -0,0 +1,362 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+
+/**
+ * SeriesAggregator reduces a {@link WeightSeries} to one value per bucket of a {@link BucketSpec}
+ * in a single pass. Because the series is sorted by day, entries are assigned to buckets by a
+ * cursor that only moves forward, so the cost is O(entries + buckets) for any bucket size.
+ *
+ * Several entries on the same day are first combined according to a {@link SameDayPolicy},
+ * then every bucket keeps sum, count, min, max and last value, from which the requested
+ * {@link Reducer} is read. Several metrics can be aggregated in the same pass
+ * ({@link #aggregateAll}), each with its own accumulators.
+ */
+public final class SeriesAggregator {
+
+    /**
+     * The metric being aggregated. Entries that didn't record an optional metric are ignored.
+     */
+    public enum Metric { WEIGHT, SLEEP, STEPS, CALORIES }
+
+    /**
+     * How each bucket is reduced to a single value.
+     */
+    public enum Reducer { MEAN, MIN, MAX, LAST, COUNT }
+
+    /**
+     * What happens when a day has more than one entry. Within a day, entries are taken in the
+     * order the series holds them (query order).
+     */
+    public enum SameDayPolicy {
+        ALL,        // Every entry counts separately.
+        FIRST,      // Only the day's first entry counts.
+        LAST,       // Only the day's last entry counts.
+        DAILY_MEAN  // The day's entries are averaged into one value first.
+    }
+
+    private SeriesAggregator() {
+        // Static helpers only.
+    }
+
+    /**
+     * Aggregates one metric of the series into the buckets of the spec.
+     * Entries outside the spec's range are ignored.
+     */
+    @NonNull
+    public static AggregateResult aggregate(@NonNull WeightSeries series, @NonNull BucketSpec spec,
+                                            @NonNull Metric metric, @NonNull Reducer reducer,
+                                            @NonNull SameDayPolicy policy) {
+        return aggregate(series, spec, new Metric[] { metric }, reducer, policy)[0];
+    }
+
+    /**
+     * Aggregates every metric of the series into the buckets of the spec in the same single pass,
+     * so overlays cost no extra scan of the entries.
+     */
+    @NonNull
+    public static MetricResults aggregateAll(@NonNull WeightSeries series, @NonNull BucketSpec spec,
+                                             @NonNull Reducer reducer, @NonNull SameDayPolicy policy) {
+        Metric[] metrics = Metric.values();
+        AggregateResult[] results = aggregate(series, spec, metrics, reducer, policy);
+        EnumMap<Metric, AggregateResult> byMetric = new EnumMap<>(Metric.class);
+        for (int m = 0; m < metrics.length; m++) {
+            byMetric.put(metrics[m], results[m]);
+        }
+        return new MetricResults(byMetric);
+    }
+
+    // The single pass behind both public versions: per-metric accumulators are updated side by
+    // side as the cursor walks the entries, and results[m] belongs to metrics[m].
+    private static AggregateResult[] aggregate(WeightSeries series, BucketSpec spec, Metric[] metrics,
+                                               Reducer reducer, SameDayPolicy policy) {
+        int buckets = spec.bucketCount();
+        int metricCount = metrics.length;
+        double[][] sums = new double[metricCount][buckets];
+        int[][] counts = new int[metricCount][buckets];
+        float[][] mins = new float[metricCount][buckets];
+        float[][] maxes = new float[metricCount][buckets];
+        float[][] lasts = new float[metricCount][buckets];
+        for (int m = 0; m < metricCount; m++) {
+            Arrays.fill(mins[m], Float.POSITIVE_INFINITY);
+            Arrays.fill(maxes[m], Float.NEGATIVE_INFINITY);
+        }
+
+        long endDay = spec.endDay();
+        int bucket = 0;
+        long nextBucketStart = spec.bucketStart(1);
+
+        // Running totals of the current day for each metric, folded into its bucket when the day changes.
+        long currentDay = Long.MIN_VALUE;
+        double[] daySum = new double[metricCount];
+        int[] dayCount = new int[metricCount];
+        float[] dayMin = new float[metricCount];
+        float[] dayMax = new float[metricCount];
+        float[] dayFirst = new float[metricCount];
+        float[] dayLast = new float[metricCount];
+
+        int size = series.size();
+        for (int i = series.lowerBound(spec.startDay()); i <= size; i++) {
+            boolean done = i == size || series.day(i) > endDay;
+            long day = done ? Long.MAX_VALUE : series.day(i);
+
+            if (day != currentDay) {
+                // Fold the finished day into its bucket.
+                for (int m = 0; m < metricCount; m++) {
+                    if (dayCount[m] == 0) continue;
+                    switch (policy) {
+                        case ALL:
+                            add(bucket, daySum[m], dayCount[m], dayMin[m], dayMax[m], dayLast[m],
+                                    sums[m], counts[m], mins[m], maxes[m], lasts[m]);
+                            break;
+                        case FIRST:
+                            add(bucket, dayFirst[m], 1, dayFirst[m], dayFirst[m], dayFirst[m],
+                                    sums[m], counts[m], mins[m], maxes[m], lasts[m]);
+                            break;
+                        case LAST:
+                            add(bucket, dayLast[m], 1, dayLast[m], dayLast[m], dayLast[m],
+                                    sums[m], counts[m], mins[m], maxes[m], lasts[m]);
+                            break;
+                        default:
+                            float mean = (float) (daySum[m] / dayCount[m]);
+                            add(bucket, mean, 1, mean, mean, mean, sums[m], counts[m], mins[m], maxes[m], lasts[m]);
+                            break;
+                    }
+                    dayCount[m] = 0;
+                    daySum[m] = 0;
+                }
+            }
+            if (done) break;
+            currentDay = day;
+
+            // Move the bucket cursor forward to the bucket containing this day.
+            while (day >= nextBucketStart) {
+                bucket++;
+                nextBucketStart = spec.bucketStart(bucket + 1);
+            }
+
+            for (int m = 0; m < metricCount; m++) {
+                if (!has(series, metrics[m], i)) continue;
+                float value = value(series, metrics[m], i);
+                if (dayCount[m] == 0) {
+                    dayFirst[m] = value;
+                    dayMin[m] = value;
+                    dayMax[m] = value;
+                } else {
+                    dayMin[m] = Math.min(dayMin[m], value);
+                    dayMax[m] = Math.max(dayMax[m], value);
+                }
+                dayLast[m] = value;
+                daySum[m] += value;
+                dayCount[m]++;
+            }
+        }
+
+        AggregateResult[] results = new AggregateResult[metricCount];
+        for (int m = 0; m < metricCount; m++) {
+            results[m] = new AggregateResult(spec, reduce(reducer, sums[m], counts[m], mins[m], maxes[m], lasts[m]), counts[m]);
+        }
+        return results;
+    }
+
+    // Reads the requested reducer's value out of each bucket's totals.
+    private static float[] reduce(Reducer reducer, double[] sums, int[] counts, float[] mins, float[] maxes, float[] lasts) {
+        float[] values = new float[counts.length];
+        for (int b = 0; b < counts.length; b++) {
+            if (counts[b] == 0) {
+                values[b] = reducer == Reducer.COUNT ? 0f : Float.NaN;
+                continue;
+            }
+            switch (reducer) {
+                case MEAN:
+                    values[b] = (float) (sums[b] / counts[b]);
+                    break;
+                case MIN:
+                    values[b] = mins[b];
+                    break;
+                case MAX:
+                    values[b] = maxes[b];
+                    break;
+                case LAST:
+                    values[b] = lasts[b];
+                    break;
+                default:
+                    values[b] = counts[b];
+                    break;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Builds the same kind of result from stored rollups instead of raw entries, one rollup per
+     * bucket (e.g. monthly rollups into a {@link BucketSpec#months} spec). LAST isn't kept by
+     * rollups and reads as the mean.
+     */
+    @NonNull
+    public static AggregateResult fromRollups(@NonNull List<WeightRollup> rollups, @NonNull BucketSpec spec,
+                                              @NonNull Metric metric, @NonNull Reducer reducer) {
+        int buckets = spec.bucketCount();
+        float[] values = new float[buckets];
+        int[] counts = new int[buckets];
+        Arrays.fill(values, reducer == Reducer.COUNT ? 0f : Float.NaN);
+
+        for (WeightRollup rollup : rollups) {
+            if (rollup == null || rollup.isEmpty()) continue;
+            int b = spec.bucketOf(rollup.getStartEpochDay());
+            if (b < 0) continue;
+            WeightRollup.MetricStats stats = statsOf(rollup, metric);
+            if (stats == null || stats.getCount() <= 0) continue;
+
+            counts[b] = (int) stats.getCount();
+            switch (reducer) {
+                case MIN:
+                    values[b] = stats.getMin() != null ? stats.getMin().floatValue() : Float.NaN;
+                    break;
+                case MAX:
+                    values[b] = stats.getMax() != null ? stats.getMax().floatValue() : Float.NaN;
+                    break;
+                case COUNT:
+                    values[b] = counts[b];
+                    break;
+                default:
+                    values[b] = (float) stats.getMean();
+                    break;
+            }
+        }
+        return new AggregateResult(spec, values, counts);
+    }
+
+    /**
+     * {@link #fromRollups} for every metric at once.
+     */
+    @NonNull
+    public static MetricResults fromRollupsAll(@NonNull List<WeightRollup> rollups, @NonNull BucketSpec spec,
+                                               @NonNull Reducer reducer) {
+        EnumMap<Metric, AggregateResult> byMetric = new EnumMap<>(Metric.class);
+        for (Metric metric : Metric.values()) {
+            byMetric.put(metric, fromRollups(rollups, spec, metric, reducer));
+        }
+        return new MetricResults(byMetric);
+    }
+
+    /**
+     * {@link #rollUp} for every metric at once.
+     */
+    @NonNull
+    public static MetricResults rollUpAll(@NonNull MetricResults finer, @NonNull BucketSpec coarser,
+                                          @NonNull Reducer reducer) {
+        EnumMap<Metric, AggregateResult> byMetric = new EnumMap<>(Metric.class);
+        for (Metric metric : Metric.values()) {
+            byMetric.put(metric, rollUp(finer.get(metric), coarser, reducer));
+        }
+        return new MetricResults(byMetric);
+    }
+
+    /**
+     * Rolls a result up into coarser buckets, e.g. a daily result into months, without going
+     * back to the raw entries. Every bucket of `finer` must lie inside one bucket of `coarser`,
+     * and `reducer` must be the one `finer` was computed with. MEAN is weighted by each finer
+     * bucket's count, so the result is the same as aggregating the entries directly.
+     */
+    @NonNull
+    public static AggregateResult rollUp(@NonNull AggregateResult finer, @NonNull BucketSpec coarser,
+                                         @NonNull Reducer reducer) {
+        int buckets = coarser.bucketCount();
+        double[] sums = new double[buckets];
+        int[] counts = new int[buckets];
+        float[] values = new float[buckets];
+        Arrays.fill(values, reducer == Reducer.COUNT ? 0f : Float.NaN);
+
+        BucketSpec finerSpec = finer.spec();
+        int bucket = 0;
+        long nextBucketStart = coarser.bucketStart(1);
+        long endDay = coarser.endDay();
+        for (int f = finerSpec.bucketOf(coarser.startDay()); f >= 0 && f < finer.bucketCount(); f++) {
+            long day = finerSpec.bucketStart(f);
+            if (day > endDay) break;
+            // Both specs are ascending, so the coarse cursor only moves forward.
+            while (day >= nextBucketStart) {
+                bucket++;
+                nextBucketStart = coarser.bucketStart(bucket + 1);
+            }
+            if (!finer.hasValue(f)) continue;
+
+            float value = finer.value(f);
+            int count = finer.count(f);
+            boolean first = counts[bucket] == 0;
+            counts[bucket] += count;
+            switch (reducer) {
+                case MEAN:
+                    sums[bucket] += (double) value * count;
+                    values[bucket] = (float) (sums[bucket] / counts[bucket]);
+                    break;
+                case MIN:
+                    values[bucket] = first ? value : Math.min(values[bucket], value);
+                    break;
+                case MAX:
+                    values[bucket] = first ? value : Math.max(values[bucket], value);
+                    break;
+                case LAST:
+                    values[bucket] = value;
+                    break;
+                default:
+                    values[bucket] = counts[bucket];
+                    break;
+            }
+        }
+        return new AggregateResult(coarser, values, counts);
+    }
+
+    private static void add(int b, double sum, int count, float min, float max, float last,
+                            double[] sums, int[] counts, float[] mins, float[] maxes, float[] lasts) {
+        sums[b] += sum;
+        counts[b] += count;
+        mins[b] = Math.min(mins[b], min);
+        maxes[b] = Math.max(maxes[b], max);
+        lasts[b] = last;
+    }
+
+    private static boolean has(WeightSeries series, Metric metric, int i) {
+        switch (metric) {
+            case SLEEP:
+                return series.hasSleep(i);
+            case STEPS:
+                return series.hasSteps(i);
+            case CALORIES:
+                return series.hasCalories(i);
+            default:
+                return true;
+        }
+    }
+
+    private static float value(WeightSeries series, Metric metric, int i) {
+        switch (metric) {
+            case SLEEP:
+                return series.sleep(i);
+            case STEPS:
+                return series.steps(i);
+            case CALORIES:
+                return series.calories(i);
+            default:
+                return series.weight(i);
+        }
+    }
+
+    private static WeightRollup.MetricStats statsOf(WeightRollup rollup, Metric metric) {
+        switch (metric) {
+            case SLEEP:
+                return rollup.getSleep();
+            case STEPS:
+                return rollup.getSteps();
+            case CALORIES:
+                return rollup.getCalories();
+            default:
+                return rollup.getWeight();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * SeriesSnapshot keeps a compact binary copy of a user's cached entries in a file, so the history
+ * list and the chart can draw the last known data on a cold start, before SQLite or Firestore have
+ * answered. The file is memory-mapped and decoded straight into a {@link WeightSeries}; ten years
+ * of daily entries take about 40 KB and decode in well under a frame.
+ *
+ * The file format and its encoding live in {@link SnapshotCodec}; this class owns the file, the
+ * mapping and the incremental rewrite.
+ *
+ * Weights and sleep are kept at display precision, which is all the snapshot is drawn with; the
+ * SQLite cache and Firestore keep the exact values and replace the snapshot's as soon as they load.
+ *
+ * WeightRepository marks day ranges dirty whenever it writes server results to the cache. The
+ * rewrite runs on the disk thread behind those cache writes, re-encodes only the years that
+ * changed and copies every other block byte for byte from the old file, then swaps the new file in
+ * with a rename. A file with another version or a bad checksum is ignored and rebuilt from scratch.
+ */
+public class SeriesSnapshot {
+
+    private static final String TAG = "SeriesSnapshot";
+
+    // Entries kept in full for the history list; one page of DataDisplayActivity.
+    static final int HEAD_SIZE = 50;
+
+    private static final String DIRECTORY = "snapshots";
+
+    private final String userId;
+    private final WeightCacheHelper cache;
+    private final File file;
+
+    // Guarded by this.
+    private final List<long[]> dirtyRanges = new ArrayList<>();
+    private boolean rewriteScheduled;
+    private SnapshotCodec.Contents contents; // Decoded on the first read, dropped when the file is rewritten.
+
+    SeriesSnapshot(@NonNull Context context, @NonNull String userId, @NonNull WeightCacheHelper cache) {
+        this.userId = userId;
+        this.cache = cache;
+        this.file = new File(new File(context.getApplicationContext().getFilesDir(), DIRECTORY), userId + ".bin");
+    }
+
+    /**
+     * Returns the snapshot's contents, mapping and decoding the file on first use, or null if there
+     * is no usable snapshot yet. Meant to be called on the main thread while a screen is created:
+     * it reads one small mapped file and allocates only the series columns.
+     */
+    @Nullable
+    public synchronized SnapshotCodec.Contents read() {
+        if (contents != null) return contents;
+        long started = SystemClock.elapsedRealtime();
+        ByteBuffer mapped = map();
+        if (mapped == null) return null;
+        try {
+            contents = SnapshotCodec.decode(mapped);
+            Log.d(TAG, "Decoded " + contents.series.size() + " entries in "
+                    + (SystemClock.elapsedRealtime() - started) + " ms");
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Ignoring unreadable snapshot", e);
+        }
+        return contents;
+    }
+
+    /**
+     * Records that the cached entries inside [startDay, endDay] changed (either end may be
+     * Long.MIN_VALUE/MAX_VALUE for "unbounded") and schedules a rewrite on the disk thread, behind
+     * the cache write that caused it. Rewrites requested while one is pending are merged into it.
+     */
+    public void markDirty(long startDay, long endDay) {
+        synchronized (this) {
+            dirtyRanges.add(new long[]{startDay, endDay});
+            if (rewriteScheduled) return;
+            rewriteScheduled = true;
+        }
+        AppExecutors.diskIO().execute(this::rewrite);
+    }
+
+    // --- Rewriting ---
+
+    private void rewrite() {
+        List<long[]> ranges;
+        synchronized (this) {
+            ranges = new ArrayList<>(dirtyRanges);
+            dirtyRanges.clear();
+            rewriteScheduled = false;
+        }
+        long started = SystemClock.elapsedRealtime();
+
+        TreeMap<Integer, SnapshotCodec.Block> blocks = new TreeMap<>();
+        ByteBuffer old = map();
+        boolean reused = false;
+        if (old != null) {
+            try {
+                for (SnapshotCodec.Block block : SnapshotCodec.readBlocks(old)) blocks.put(block.year, block);
+                reused = true;
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Rebuilding unreadable snapshot", e);
+                blocks.clear();
+            }
+        }
+
+        // Resolve the dirty ranges to years, bounded by what is cached and what the old file held.
+        long[] bounds = cache.dayBounds(userId);
+        long low = Long.MAX_VALUE;
+        long high = Long.MIN_VALUE;
+        if (bounds != null) {
+            low = bounds[0];
+            high = bounds[1];
+        }
+        if (!blocks.isEmpty()) {
+            low = Math.min(low, LocalDate.of(blocks.firstKey(), 1, 1).toEpochDay());
+            high = Math.max(high, LocalDate.of(blocks.lastKey(), 12, 31).toEpochDay());
+        }
+        if (!reused) {
+            ranges = Collections.singletonList(new long[]{Long.MIN_VALUE, Long.MAX_VALUE});
+        }
+        TreeSet<Integer> dirtyYears = new TreeSet<>();
+        if (low <= high) {
+            for (long[] range : ranges) {
+                long start = Math.max(range[0], low);
+                long end = Math.min(range[1], high);
+                if (start > end) continue;
+                for (int year = LocalDate.ofEpochDay(start).getYear(); year <= LocalDate.ofEpochDay(end).getYear(); year++) {
+                    dirtyYears.add(year);
+                }
+            }
+        }
+
+        for (int year : dirtyYears) {
+            List<WeightData> entries = cache.queryRange(userId,
+                    LocalDate.of(year, 1, 1).toEpochDay(), LocalDate.of(year, 12, 31).toEpochDay());
+            WeightSeries series = WeightSeries.from(entries);
+            if (series.isEmpty()) {
+                blocks.remove(year);
+            } else {
+                blocks.put(year, SnapshotCodec.encodeBlock(year, series));
+            }
+        }
+
+        try {
+            List<WeightData> head = cache.queryPage(userId, null, HEAD_SIZE);
+            write(SnapshotCodec.encode(new ArrayList<>(blocks.values()), head));
+            synchronized (this) {
+                contents = null;
+            }
+            Log.d(TAG, "Rewrote " + dirtyYears.size() + " of " + blocks.size() + " years in "
+                    + (SystemClock.elapsedRealtime() - started) + " ms");
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't write snapshot", e);
+        }
+    }
+
+    // Writes the file next to the old one and renames it over it, so readers never see half a file.
+    private void write(ByteBuffer out) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            FileChannel channel = stream.getChannel();
+            while (out.hasRemaining()) channel.write(out);
+            stream.getFD().sync();
+        }
+        if (!temp.renameTo(file)) throw new IOException("Can't replace " + file);
+    }
+
+    // --- Reading ---
+
+    @Nullable
+    private ByteBuffer map() {
+        if (!file.isFile()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            // The mapping stays valid after the file is closed, and after it's renamed over.
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't map snapshot", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * SnapshotCodec encodes and decodes the snapshot file that {@link SeriesSnapshot} maps. It only
+ * works on byte buffers, so the format can be checked on the JVM without a device.
+ *
+ * Layout (big-endian):
+ *   header       magic "WTSS", format version, block count, head entry count, head offset and a
+ *                CRC32 of everything after the header
+ *   block index  one row per calendar year: year, offset, length and entry count
+ *   blocks       one per year: epoch days as varint deltas from the year's first entry, weights
+ *                in hundredths as zigzag varint deltas, the sleep/steps/calories presence bits
+ *                packed three per entry, each entry's present values (sleep in tenths of an
+ *                hour), then the year's mood dictionary and its codes packed at the fewest bits
+ *                that hold them
+ *   head         the newest page of entries in full (document ID and notes included) for the list
+ *
+ * Decoding a buffer that is truncated, has another version or fails its checksum throws an
+ * IllegalArgumentException (or a BufferUnderflowException for a block cut short).
+ */
+final class SnapshotCodec {
+
+    private static final int MAGIC = 0x57545353; // "WTSS"
+    static final int VERSION = 1;
+
+    // magic, version, block count, head count, head offset, checksum.
+    private static final int HEADER_SIZE = 24;
+    // year, offset, length, entry count.
+    private static final int INDEX_ROW_SIZE = 16;
+
+    // Mood codes are unsigned bytes in WeightSeries, and 0 is NO_MOOD.
+    private static final int MAX_MOODS = 255;
+
+    // Head entry flags.
+    private static final int HAS_SLEEP = 1;
+    private static final int HAS_STEPS = 1 << 1;
+    private static final int HAS_CALORIES = 1 << 2;
+    private static final int HAS_NOTES = 1 << 3;
+    private static final int HAS_MOOD = 1 << 4;
+
+    /**
+     * What a snapshot holds: every cached entry as a series, and the newest page of entries for
+     * the history list.
+     */
+    public static final class Contents {
+        @NonNull public final WeightSeries series;
+        @NonNull public final List<WeightData> newestPage; // Newest first, like a history page.
+
+        Contents(@NonNull WeightSeries series, @NonNull List<WeightData> newestPage) {
+            this.series = series;
+            this.newestPage = newestPage;
+        }
+    }
+
+    // One year's encoded entries.
+    static final class Block {
+        final int year;
+        final int count;
+        final ByteBuffer bytes;
+
+        Block(int year, int count, ByteBuffer bytes) {
+            this.year = year;
+            this.count = count;
+            this.bytes = bytes;
+        }
+    }
+
+    private SnapshotCodec() {
+    }
+
+    // --- Encoding ---
+
+    /**
+     * Lays out a whole file: the header, an index row per block (in the order given, which should
+     * be by year), the blocks and the encoded head page. Returns it ready to be written.
+     */
+    static ByteBuffer encode(List<Block> blocks, List<WeightData> headPage) {
+        byte[] head = encodeHead(headPage);
+        int size = HEADER_SIZE + INDEX_ROW_SIZE * blocks.size();
+        for (Block block : blocks) size += block.bytes.remaining();
+        int headOffset = size;
+        size += head.length;
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(blocks.size())
+                .putInt(headPage.size()).putInt(headOffset).putInt(0);
+        int offset = HEADER_SIZE + INDEX_ROW_SIZE * blocks.size();
+        for (Block block : blocks) {
+            out.putInt(block.year).putInt(offset).putInt(block.bytes.remaining()).putInt(block.count);
+            offset += block.bytes.remaining();
+        }
+        for (Block block : blocks) out.put(block.bytes.duplicate());
+        out.put(head);
+        out.putInt(20, checksum(out, HEADER_SIZE, size));
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Encodes one year of entries. The series must not be empty; a year without entries simply
+     * has no block.
+     */
+    static Block encodeBlock(int year, WeightSeries series) {
+        return new Block(year, series.size(), ByteBuffer.wrap(encodeEntries(series)));
+    }
+
+    private static byte[] encodeEntries(WeightSeries series) {
+        int n = series.size();
+        Encoder out = new Encoder(8 + 6 * n);
+
+        out.writeInt(series.day(0));
+        for (int i = 1; i < n; i++) {
+            out.writeVarint(series.day(i) - series.day(i - 1)); // Sorted, so never negative.
+        }
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            long hundredths = Math.round(series.weight(i) * 100.0);
+            out.writeVarint(zigzag(hundredths - previous));
+            previous = hundredths;
+        }
+        byte[] presence = new byte[(3 * n + 7) / 8];
+        for (int i = 0; i < n; i++) {
+            if (series.hasSleep(i)) setBit(presence, 3 * i);
+            if (series.hasSteps(i)) setBit(presence, 3 * i + 1);
+            if (series.hasCalories(i)) setBit(presence, 3 * i + 2);
+        }
+        out.write(presence, 0, presence.length);
+        for (int i = 0; i < n; i++) {
+            if (series.hasSleep(i)) out.writeVarint(zigzag(Math.round(series.sleep(i) * 10.0)));
+            if (series.hasSteps(i)) out.writeVarint(zigzag(series.steps(i)));
+            if (series.hasCalories(i)) out.writeVarint(zigzag(series.calories(i)));
+        }
+
+        int moodCount = series.moodCount();
+        out.writeVarint(moodCount);
+        for (int code = 1; code < moodCount; code++) {
+            out.writeString(series.moodForCode(code));
+        }
+        int bitsPerCode = bitsFor(moodCount);
+        if (bitsPerCode > 0) {
+            byte[] packed = new byte[(n * bitsPerCode + 7) / 8];
+            for (int i = 0; i < n; i++) {
+                writeBits(packed, i * bitsPerCode, bitsPerCode, series.moodCode(i));
+            }
+            out.write(packed, 0, packed.length);
+        }
+        return out.toByteArray();
+    }
+
+    // The head keeps exact values: it's only a page, and its rows are what the list shows.
+    private static byte[] encodeHead(List<WeightData> page) {
+        Encoder out = new Encoder(64 * page.size());
+        for (WeightData data : page) {
+            out.writeInt((int) data.getEpochDay());
+            out.writeLong(Double.doubleToLongBits(data.getWeight()));
+            out.writeString(data.getDocumentId());
+            int flags = (data.getHoursOfSleep() != null ? HAS_SLEEP : 0)
+                    | (data.getDailySteps() != null ? HAS_STEPS : 0)
+                    | (data.getCalorieIntake() != null ? HAS_CALORIES : 0)
+                    | (data.getNotes() != null ? HAS_NOTES : 0)
+                    | (data.getMood() != null ? HAS_MOOD : 0);
+            out.write(flags);
+            if (data.getHoursOfSleep() != null) out.writeLong(Double.doubleToLongBits(data.getHoursOfSleep()));
+            if (data.getDailySteps() != null) out.writeInt(data.getDailySteps());
+            if (data.getCalorieIntake() != null) out.writeInt(data.getCalorieIntake());
+            if (data.getNotes() != null) out.writeString(data.getNotes());
+            if (data.getMood() != null) out.writeString(data.getMood());
+        }
+        return out.toByteArray();
+    }
+
+    // --- Decoding ---
+
+    /**
+     * Checks the header and checksum and returns the file's blocks, which share the buffer's
+     * bytes so they can be copied into a new file unchanged.
+     */
+    static List<Block> readBlocks(ByteBuffer buffer) {
+        checkHeader(buffer);
+        return readIndex(buffer);
+    }
+
+    private static void checkHeader(ByteBuffer buffer) {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Snapshot version " + buffer.getInt(4));
+        }
+        if (buffer.getInt(20) != checksum(buffer, HEADER_SIZE, buffer.limit())) {
+            throw new IllegalArgumentException("Snapshot checksum mismatch");
+        }
+    }
+
+    private static List<Block> readIndex(ByteBuffer buffer) {
+        int blockCount = buffer.getInt(8);
+        List<Block> blocks = new ArrayList<>(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            int row = HEADER_SIZE + i * INDEX_ROW_SIZE;
+            int offset = buffer.getInt(row + 4);
+            int length = buffer.getInt(row + 8);
+            int count = buffer.getInt(row + 12);
+            if (count <= 0 || offset < HEADER_SIZE || length < 0 || offset + length > buffer.limit()) {
+                throw new IllegalArgumentException("Bad block " + i);
+            }
+            ByteBuffer bytes = buffer.duplicate();
+            bytes.limit(offset + length).position(offset);
+            blocks.add(new Block(buffer.getInt(row), count, bytes.slice()));
+        }
+        return blocks;
+    }
+
+    /**
+     * Decodes a whole file into a series of every entry and the head page.
+     */
+    static Contents decode(ByteBuffer buffer) {
+        checkHeader(buffer);
+        List<Block> blocks = readIndex(buffer);
+        int size = 0;
+        for (Block block : blocks) size += block.count;
+
+        int[] days = new int[size];
+        float[] weight = new float[size];
+        float[] sleep = new float[size];
+        int[] steps = new int[size];
+        int[] calories = new int[size];
+        long[] sleepPresent = new long[WeightSeries.bitmapWords(size)];
+        long[] stepsPresent = new long[WeightSeries.bitmapWords(size)];
+        long[] caloriesPresent = new long[WeightSeries.bitmapWords(size)];
+        byte[] moods = new byte[size];
+        List<String> dictionary = new ArrayList<>();
+        dictionary.add(null); // Code 0 is NO_MOOD.
+        Map<String, Integer> codes = new HashMap<>();
+
+        int base = 0;
+        for (Block block : blocks) {
+            ByteBuffer in = block.bytes.duplicate();
+            int n = block.count;
+
+            int day = in.getInt();
+            for (int i = 0; i < n; i++) {
+                if (i > 0) day += (int) readVarint(in);
+                days[base + i] = day;
+            }
+            long hundredths = 0;
+            for (int i = 0; i < n; i++) {
+                hundredths += unzigzag(readVarint(in));
+                weight[base + i] = hundredths / 100f;
+            }
+            byte[] presence = new byte[(3 * n + 7) / 8];
+            in.get(presence);
+            for (int i = 0; i < n; i++) {
+                int index = base + i;
+                if (bit(presence, 3 * i)) {
+                    sleep[index] = unzigzag(readVarint(in)) / 10f;
+                    WeightSeries.setBit(sleepPresent, index);
+                }
+                if (bit(presence, 3 * i + 1)) {
+                    steps[index] = (int) unzigzag(readVarint(in));
+                    WeightSeries.setBit(stepsPresent, index);
+                }
+                if (bit(presence, 3 * i + 2)) {
+                    calories[index] = (int) unzigzag(readVarint(in));
+                    WeightSeries.setBit(caloriesPresent, index);
+                }
+            }
+
+            // Map the block's mood codes onto the series-wide dictionary.
+            int moodCount = (int) readVarint(in);
+            int[] toSeriesCode = new int[Math.max(1, moodCount)];
+            for (int code = 1; code < moodCount; code++) {
+                String mood = readString(in);
+                Integer seriesCode = codes.get(mood);
+                if (seriesCode == null && dictionary.size() <= MAX_MOODS) {
+                    seriesCode = dictionary.size();
+                    dictionary.add(mood);
+                    codes.put(mood, seriesCode);
+                }
+                toSeriesCode[code] = seriesCode != null ? seriesCode : WeightSeries.NO_MOOD;
+            }
+            int bitsPerCode = bitsFor(moodCount);
+            if (bitsPerCode > 0) {
+                byte[] packed = new byte[(n * bitsPerCode + 7) / 8];
+                in.get(packed);
+                for (int i = 0; i < n; i++) {
+                    int code = readBits(packed, i * bitsPerCode, bitsPerCode);
+                    if (code >= moodCount) throw new IllegalArgumentException("Bad mood code " + code);
+                    moods[base + i] = (byte) toSeriesCode[code];
+                }
+            }
+            base += n;
+        }
+
+        WeightSeries series = size == 0 ? WeightSeries.EMPTY : new WeightSeries(size, days, weight, sleep, steps,
+                calories, sleepPresent, stepsPresent, caloriesPresent, moods, dictionary.toArray(new String[0]));
+        return new Contents(series, decodeHead(buffer));
+    }
+
+    private static List<WeightData> decodeHead(ByteBuffer buffer) {
+        int count = buffer.getInt(12);
+        int offset = buffer.getInt(16);
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset);
+        List<WeightData> page = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long epochDay = in.getInt();
+            double weight = in.getDouble();
+            String documentId = readString(in);
+            int flags = in.get();
+            Double sleep = (flags & HAS_SLEEP) != 0 ? in.getDouble() : null;
+            Integer steps = (flags & HAS_STEPS) != 0 ? in.getInt() : null;
+            Integer calories = (flags & HAS_CALORIES) != 0 ? in.getInt() : null;
+            String notes = (flags & HAS_NOTES) != 0 ? readString(in) : null;
+            String mood = (flags & HAS_MOOD) != 0 ? readString(in) : null;
+            WeightData data = new WeightData(DateKeys.toStorageDate(epochDay), weight, notes, sleep, steps, mood, calories);
+            data.setEpochDay(epochDay);
+            data.setDocumentId(documentId);
+            page.add(data);
+        }
+        return page;
+    }
+
+    // --- Varints, zigzag and bit packing ---
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarint(in);
+        if (length < 0 || length > in.remaining()) throw new IllegalArgumentException("Bad string length " + length);
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Bits needed for codes 0 .. count - 1; 0 when every entry has the same (only) code.
+    private static int bitsFor(int count) {
+        return count <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(count - 1);
+    }
+
+    private static boolean bit(byte[] bits, int index) {
+        return (bits[index >>> 3] & (1 << (index & 7))) != 0;
+    }
+
+    private static void setBit(byte[] bits, int index) {
+        bits[index >>> 3] |= (byte) (1 << (index & 7));
+    }
+
+    private static int readBits(byte[] bits, int start, int width) {
+        int value = 0;
+        for (int i = 0; i < width; i++) {
+            if (bit(bits, start + i)) value |= 1 << i;
+        }
+        return value;
+    }
+
+    private static void writeBits(byte[] bits, int start, int width, int value) {
+        for (int i = 0; i < width; i++) {
+            if ((value & (1 << i)) != 0) setBit(bits, start + i);
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int from, int to) {
+        ByteBuffer range = buffer.duplicate();
+        range.limit(to).position(from);
+        CRC32 crc = new CRC32();
+        crc.update(range);
+        return (int) crc.getValue();
+    }
+
+    // Growable byte buffer with the snapshot's primitive encodings.
+    private static final class Encoder extends ByteArrayOutputStream {
+        Encoder(int initialSize) {
+            super(Math.max(32, initialSize));
+        }
+
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
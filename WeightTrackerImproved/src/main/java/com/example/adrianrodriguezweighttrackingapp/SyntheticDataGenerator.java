@@ -0,0 +1,362 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * SyntheticDataGenerator makes up realistic weight histories (a slow trend, daily noise, and
+ * sleep, steps, mood and calories with gaps) for any number of users and years, and writes them
+ * to a {@link WeightEntrySink} in chunks.
+ *
+ * Everything is derived from the configured seed: each user gets its own {@link Random} seeded
+ * from the seed and the user's position, and values are drawn in a fixed order, so the same
+ * {@link Config} always produces the same entries, whatever the sink and however its writes are
+ * timed. {@link Stats#fingerprint} is a hash of every generated value, to check that two
+ * benchmark or profiling runs really used the same dataset.
+ *
+ * Entries are produced lazily, one chunk at a time; at most {@link Config#maxInFlight} chunks
+ * are waiting on the sink at once. Has no Android dependencies, so it also runs on a plain JVM.
+ */
+public class SyntheticDataGenerator {
+
+    // Entries per sink write by default; below Firestore's 500-write batch limit, like WeightImporter.BATCH_SIZE.
+    private static final int DEFAULT_CHUNK_SIZE = 400;
+
+    private static final String[] MOODS = {"Happy", "Neutral", "Motivated", "Tired", "Relaxed"};
+
+    /**
+     * What to generate. Build one with {@link Builder}; the defaults give one year of daily
+     * entries for one user, like the chart screen's test data button.
+     */
+    public static final class Config {
+        public final long seed;
+        public final List<String> userIds;
+        public final LocalDate startDate;
+        public final int years;
+        public final int entriesPerDay;
+        public final double missingDayRate;     // Chance that a day has no entries at all.
+        public final double missingMetricRate;  // Chance, per optional metric and entry, that it's left out.
+        public final double notesRate;          // Chance that an entry has a note.
+        public final double initialWeight;
+        public final double initialWeightSpread; // Users start up to this far above or below initialWeight.
+        public final double trendPerMonth;
+        public final double dailyNoise;          // Each weigh-in is up to this far off the trend.
+        public final int chunkSize;
+        public final int maxInFlight;
+
+        private Config(Builder builder) {
+            this.seed = builder.seed;
+            this.userIds = Collections.unmodifiableList(new ArrayList<>(builder.userIds));
+            this.startDate = builder.startDate;
+            this.years = builder.years;
+            this.entriesPerDay = builder.entriesPerDay;
+            this.missingDayRate = builder.missingDayRate;
+            this.missingMetricRate = builder.missingMetricRate;
+            this.notesRate = builder.notesRate;
+            this.initialWeight = builder.initialWeight;
+            this.initialWeightSpread = builder.initialWeightSpread;
+            this.trendPerMonth = builder.trendPerMonth;
+            this.dailyNoise = builder.dailyNoise;
+            this.chunkSize = builder.chunkSize;
+            this.maxInFlight = builder.maxInFlight;
+        }
+
+        // First day after the generated range.
+        public LocalDate endDate() {
+            return startDate.plusYears(years);
+        }
+    }
+
+    public static final class Builder {
+        private long seed = 42;
+        private List<String> userIds = Collections.singletonList("synthetic-user-0000");
+        private LocalDate startDate = LocalDate.of(LocalDate.now().getYear(), 1, 1);
+        private int years = 1;
+        private int entriesPerDay = 1;
+        private double missingDayRate = 0;
+        private double missingMetricRate = 0.1;
+        private double notesRate = 1;
+        private double initialWeight = 180.0;
+        private double initialWeightSpread = 0;
+        private double trendPerMonth = -0.5;
+        private double dailyNoise = 2.0;
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+        private int maxInFlight = 2;
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        // Generates for these users (e.g. the signed-in one).
+        public Builder userIds(@NonNull String... userIds) {
+            if (userIds.length == 0) throw new IllegalArgumentException("At least one user is needed");
+            this.userIds = Arrays.asList(userIds);
+            return this;
+        }
+
+        // Generates for `count` made-up users, "synthetic-user-0000" and up.
+        public Builder users(int count) {
+            if (count < 1) throw new IllegalArgumentException("At least one user is needed");
+            List<String> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) ids.add(String.format(Locale.US, "synthetic-user-%04d", i));
+            this.userIds = ids;
+            return this;
+        }
+
+        // Pass a fixed date for reproducible runs; the default is January 1st of this year.
+        public Builder startDate(@NonNull LocalDate startDate) {
+            this.startDate = startDate;
+            return this;
+        }
+
+        public Builder years(int years) {
+            if (years < 1) throw new IllegalArgumentException("years must be at least 1");
+            this.years = years;
+            return this;
+        }
+
+        public Builder entriesPerDay(int entriesPerDay) {
+            if (entriesPerDay < 1) throw new IllegalArgumentException("entriesPerDay must be at least 1");
+            this.entriesPerDay = entriesPerDay;
+            return this;
+        }
+
+        public Builder missingDayRate(double rate) {
+            this.missingDayRate = checkRate(rate);
+            return this;
+        }
+
+        public Builder missingMetricRate(double rate) {
+            this.missingMetricRate = checkRate(rate);
+            return this;
+        }
+
+        public Builder notesRate(double rate) {
+            this.notesRate = checkRate(rate);
+            return this;
+        }
+
+        public Builder initialWeight(double weight, double spread) {
+            this.initialWeight = weight;
+            this.initialWeightSpread = spread;
+            return this;
+        }
+
+        public Builder trend(double perMonth, double dailyNoise) {
+            this.trendPerMonth = perMonth;
+            this.dailyNoise = dailyNoise;
+            return this;
+        }
+
+        // Entries per sink write, and how many writes may be outstanding at once.
+        public Builder chunking(int chunkSize, int maxInFlight) {
+            if (chunkSize < 1 || maxInFlight < 1) throw new IllegalArgumentException("chunkSize and maxInFlight must be positive");
+            this.chunkSize = chunkSize;
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        @NonNull
+        public Config build() {
+            return new Config(this);
+        }
+
+        private static double checkRate(double rate) {
+            if (rate < 0 || rate > 1) throw new IllegalArgumentException("Rates go from 0 to 1: " + rate);
+            return rate;
+        }
+    }
+
+    /**
+     * What a run produced.
+     */
+    public static final class Stats {
+        public final int users;
+        public final long entries;
+        public final long chunks;
+        public final long fingerprint;
+        public final long elapsedMs;
+
+        Stats(int users, long entries, long chunks, long fingerprint, long elapsedMs) {
+            this.users = users;
+            this.entries = entries;
+            this.chunks = chunks;
+            this.fingerprint = fingerprint;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d entries for %d users in %d chunks, %d ms (fingerprint %016x)",
+                    entries, users, chunks, elapsedMs, fingerprint);
+        }
+    }
+
+    private final Config config;
+
+    public SyntheticDataGenerator(@NonNull Config config) {
+        this.config = config;
+    }
+
+    /**
+     * Generates every user's entries and writes them to the sink, blocking until the sink has
+     * finished every chunk. Don't call it on a thread the sink delivers its completions on (e.g.
+     * the main thread for {@link WeightRepository}); run it on a background executor.
+     *
+     * @throws Exception The first error the sink reported; chunks after it are not sent.
+     */
+    @NonNull
+    public Stats run(@NonNull WeightEntrySink sink) throws Exception {
+        long started = System.nanoTime();
+        Semaphore inFlight = new Semaphore(config.maxInFlight);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        long entries = 0;
+        long chunks = 0;
+        long fingerprint = 17;
+
+        try {
+            for (int user = 0; user < config.userIds.size(); user++) {
+                String userId = config.userIds.get(user);
+                Iterator<WeightData> it = entries(user);
+                List<WeightData> chunk = new ArrayList<>(config.chunkSize);
+                while (it.hasNext()) {
+                    WeightData data = it.next();
+                    fingerprint = 31 * fingerprint + hash(data);
+                    chunk.add(data);
+                    if (chunk.size() == config.chunkSize || !it.hasNext()) {
+                        // Wait for room before sending, so no more than maxInFlight chunks are pending.
+                        inFlight.acquire();
+                        if (failure.get() != null) {
+                            inFlight.release();
+                            break;
+                        }
+                        entries += chunk.size();
+                        chunks++;
+                        sink.write(userId, chunk, error -> {
+                            if (error != null) failure.compareAndSet(null, error);
+                            inFlight.release();
+                        });
+                        chunk = new ArrayList<>(config.chunkSize);
+                    }
+                }
+                if (failure.get() != null) break;
+            }
+        } finally {
+            // Wait for the chunks still being written.
+            inFlight.acquireUninterruptibly(config.maxInFlight);
+            inFlight.release(config.maxInFlight);
+        }
+
+        Exception error = failure.get();
+        if (error != null) throw error;
+        return new Stats(config.userIds.size(), entries, chunks, fingerprint, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Lazily generates one user's entries, oldest first. `user` is the user's position in
+     * {@link Config#userIds}; the same position always gives the same entries.
+     */
+    @NonNull
+    public Iterator<WeightData> entries(int user) {
+        return new UserEntries(user);
+    }
+
+    private final class UserEntries implements Iterator<WeightData> {
+        private final Random random;
+        private final long endDay;
+        private LocalDate date;
+        private double trendWeight;
+        private int entriesLeftToday;
+        private WeightData next;
+
+        UserEntries(int user) {
+            this.random = new Random(mix(config.seed, user));
+            this.endDay = config.endDate().toEpochDay();
+            this.date = config.startDate.minusDays(1);
+            this.trendWeight = config.initialWeight
+                    + (random.nextDouble() * 2 - 1) * config.initialWeightSpread;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public WeightData next() {
+            if (next == null) throw new NoSuchElementException();
+            WeightData current = next;
+            advance();
+            return current;
+        }
+
+        // Moves `next` to the following entry, skipping missing days, or to null past the end.
+        private void advance() {
+            while (entriesLeftToday == 0) {
+                date = date.plusDays(1);
+                if (date.toEpochDay() >= endDay) {
+                    next = null;
+                    return;
+                }
+                // The trend moves on even on days nobody weighed in.
+                trendWeight += config.trendPerMonth / date.lengthOfMonth();
+                entriesLeftToday = random.nextDouble() < config.missingDayRate ? 0 : config.entriesPerDay;
+            }
+            entriesLeftToday--;
+            next = generate(random, date, trendWeight);
+        }
+    }
+
+    // Draws one entry. The order of the draws is part of the output, so don't reorder them.
+    private WeightData generate(Random random, LocalDate date, double trendWeight) {
+        double fluctuation = random.nextDouble() * (2 * config.dailyNoise) - config.dailyNoise;
+        double weight = Math.max(100.0, trendWeight + fluctuation);
+        weight = Math.round(weight * 10) / 10.0;
+
+        Double hoursOfSleep = random.nextDouble() >= config.missingMetricRate
+                ? Math.round((random.nextDouble() * 4.0 + 5.0) * 10) / 10.0 : null; // 5.0 to 9.0 hours
+        Integer dailySteps = random.nextDouble() >= config.missingMetricRate
+                ? random.nextInt(12001) + 3000 : null; // 3000 to 15000 steps
+        String mood = random.nextDouble() >= config.missingMetricRate
+                ? MOODS[random.nextInt(MOODS.length)] : null;
+        Integer calorieIntake = random.nextDouble() >= config.missingMetricRate
+                ? random.nextInt(1001) + 1500 : null; // 1500 to 2500 calories
+
+        String dateString = date.format(DateKeys.STORAGE_FORMAT);
+        String notes = random.nextDouble() < config.notesRate ? "Generated entry: " + dateString : null;
+        return new WeightData(dateString, weight, notes, hoursOfSleep, dailySteps, mood, calorieIntake);
+    }
+
+    private static long hash(WeightData data) {
+        long h = data.getEpochDay();
+        h = 31 * h + Double.hashCode(data.getWeight());
+        h = 31 * h + (data.getHoursOfSleep() != null ? data.getHoursOfSleep().hashCode() : 0);
+        h = 31 * h + (data.getDailySteps() != null ? data.getDailySteps() : -1);
+        h = 31 * h + (data.getMood() != null ? data.getMood().hashCode() : 0);
+        h = 31 * h + (data.getCalorieIntake() != null ? data.getCalorieIntake() : -1);
+        h = 31 * h + (data.getNotes() != null ? data.getNotes().hashCode() : 0);
+        return h;
+    }
+
+    // SplitMix64 finalizer, so neighbouring users get unrelated random streams.
+    private static long mix(long seed, int user) {
+        long z = seed + 0x9E3779B97F4A7C15L * (user + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,613 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WeightCacheHelper manages the on-device SQLite copy of each user's weight entries.
+ * Firestore stays the source of truth; this table only exists so screens can render
+ * the last known data straight from disk before any network round trip finishes.
+ *
+ * The same database holds the write-behind outbox: entries saved on this device that Firestore
+ * doesn't have yet, in the order they were saved, and tombstones for entries deleted on this
+ * device. {@link OutboxFlusher} drains it. Unlike the cached entries it can't be rebuilt from the
+ * server, so it is kept across upgrades, and cached rows that are still queued survive a server
+ * result that doesn't contain them yet.
+ *
+ * All methods here do blocking disk I/O and must be called from
+ * {@link AppExecutors#diskIO()}, never from the main thread.
+ */
+public class WeightCacheHelper extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "weightCache.db";
+    private static final int DATABASE_VERSION = 7;
+
+    // Table and column names for the cached weight entries.
+    private static final String TABLE_ENTRIES = "weight_entries";
+    private static final String COL_DOCUMENT_ID = "document_id";
+    private static final String COL_USER_ID = "user_id";
+    private static final String COL_DATE = "date";
+    private static final String COL_EPOCH_DAY = "epoch_day";
+    private static final String COL_WEIGHT = "weight";
+    private static final String COL_NOTES = "notes";
+    private static final String COL_SLEEP = "hours_of_sleep";
+    private static final String COL_STEPS = "daily_steps";
+    private static final String COL_MOOD = "mood";
+    private static final String COL_CALORIES = "calorie_intake";
+
+    // The outbox has the same entry columns, plus its own insertion order, when the entry was
+    // queued, whether it is a tombstone (a delete), and the time before which it must not be sent.
+    private static final String TABLE_OUTBOX = "outbox";
+    private static final String COL_SEQUENCE = "seq";
+    private static final String COL_QUEUED_AT = "queued_at";
+    private static final String COL_DELETED = "deleted";
+    private static final String COL_NOT_BEFORE = "not_before";
+
+    // The rolled-up values the server has for a queued entry, so server rollups can be corrected
+    // until it is sent. All null if the server has no entry for that day.
+    private static final String COL_BASE_WEIGHT = "base_weight";
+    private static final String COL_BASE_SLEEP = "base_sleep";
+    private static final String COL_BASE_STEPS = "base_steps";
+    private static final String COL_BASE_CALORIES = "base_calories";
+    private static final String[] BASE_COLUMNS = {COL_BASE_WEIGHT, COL_BASE_SLEEP, COL_BASE_STEPS, COL_BASE_CALORIES};
+    private static final String[] ROLLED_UP_COLUMNS = {COL_WEIGHT, COL_SLEEP, COL_STEPS, COL_CALORIES};
+
+    // Only one helper per process so every caller shares the same connection.
+    private static WeightCacheHelper instance;
+
+    public static synchronized WeightCacheHelper getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new WeightCacheHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private WeightCacheHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    // Entry IDs are the entry's day (see DateKeys#entryId), so two users on one device share IDs:
+    // rows of both tables are keyed by (user, document ID).
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ENTRIES + " (" +
+                COL_DOCUMENT_ID + " TEXT NOT NULL, " +
+                COL_USER_ID + " TEXT NOT NULL, " +
+                COL_DATE + " TEXT, " +
+                COL_EPOCH_DAY + " INTEGER NOT NULL, " +
+                COL_WEIGHT + " REAL, " +
+                COL_NOTES + " TEXT, " +
+                COL_SLEEP + " REAL, " +
+                COL_STEPS + " INTEGER, " +
+                COL_MOOD + " TEXT, " +
+                COL_CALORIES + " INTEGER, " +
+                "PRIMARY KEY (" + COL_USER_ID + ", " + COL_DOCUMENT_ID + "))");
+        // Every read is "this user's entries, ordered or ranged by (day, document ID)", so index exactly that.
+        db.execSQL("CREATE INDEX idx_entries_user_day_doc ON " + TABLE_ENTRIES +
+                " (" + COL_USER_ID + ", " + COL_EPOCH_DAY + ", " + COL_DOCUMENT_ID + ")");
+        // IF NOT EXISTS because onUpgrade calls this again with the outbox still in place.
+        createOutbox(db, "IF NOT EXISTS " + TABLE_OUTBOX);
+    }
+
+    private static void createOutbox(SQLiteDatabase db, String table) {
+        db.execSQL("CREATE TABLE " + table + " (" +
+                COL_SEQUENCE + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_DOCUMENT_ID + " TEXT NOT NULL, " +
+                COL_USER_ID + " TEXT NOT NULL, " +
+                COL_DATE + " TEXT, " +
+                COL_EPOCH_DAY + " INTEGER NOT NULL, " +
+                COL_WEIGHT + " REAL, " +
+                COL_NOTES + " TEXT, " +
+                COL_SLEEP + " REAL, " +
+                COL_STEPS + " INTEGER, " +
+                COL_MOOD + " TEXT, " +
+                COL_CALORIES + " INTEGER, " +
+                COL_QUEUED_AT + " INTEGER NOT NULL, " +
+                COL_DELETED + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_NOT_BEFORE + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_BASE_WEIGHT + " REAL, " +
+                COL_BASE_SLEEP + " REAL, " +
+                COL_BASE_STEPS + " INTEGER, " +
+                COL_BASE_CALORIES + " INTEGER, " +
+                "UNIQUE (" + COL_USER_ID + ", " + COL_DOCUMENT_ID + "))");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The cache can always be rebuilt from Firestore, so it is safe to start over.
+        // The outbox can't, so it is migrated and never dropped.
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ENTRIES);
+        if (oldVersion == 4) {
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN " + COL_DELETED + " INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN " + COL_NOT_BEFORE + " INTEGER NOT NULL DEFAULT 0");
+        }
+        if (oldVersion == 4 || oldVersion == 5) {
+            // The document ID used to be unique on its own. SQLite can't change a table's
+            // constraints, so the queued rows are copied into a new table, keeping their order.
+            String columns = COL_SEQUENCE + ", " + COL_DOCUMENT_ID + ", " + COL_USER_ID + ", " + COL_DATE + ", "
+                    + COL_EPOCH_DAY + ", " + COL_WEIGHT + ", " + COL_NOTES + ", " + COL_SLEEP + ", " + COL_STEPS + ", "
+                    + COL_MOOD + ", " + COL_CALORIES + ", " + COL_QUEUED_AT + ", " + COL_DELETED + ", " + COL_NOT_BEFORE;
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " RENAME TO " + TABLE_OUTBOX + "_old");
+            createOutbox(db, TABLE_OUTBOX);
+            db.execSQL("INSERT INTO " + TABLE_OUTBOX + " (" + columns + ") SELECT " + columns
+                    + " FROM " + TABLE_OUTBOX + "_old");
+            db.execSQL("DROP TABLE " + TABLE_OUTBOX + "_old");
+        }
+        if (oldVersion == 6) {
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN " + COL_BASE_WEIGHT + " REAL");
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN " + COL_BASE_SLEEP + " REAL");
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN " + COL_BASE_STEPS + " INTEGER");
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN " + COL_BASE_CALORIES + " INTEGER");
+        }
+        onCreate(db);
+    }
+
+    /**
+     * Returns up to `limit` cached entries for the user, newest first, that come strictly after the
+     * given cursor in (epochDay DESC, documentId DESC) order. A null cursor starts from the newest entry.
+     */
+    @NonNull
+    public List<WeightData> queryPage(@NonNull String userId, @Nullable PagedWeightList.EntryKey after, int limit) {
+        String selection = COL_USER_ID + " = ?";
+        String[] args = {userId};
+        if (after != null) {
+            selection += " AND " + olderThan();
+            args = new String[]{userId, String.valueOf(after.epochDay), String.valueOf(after.epochDay), after.documentId};
+        }
+        Cursor cursor = getReadableDatabase().query(TABLE_ENTRIES, null, selection, args, null, null,
+                COL_EPOCH_DAY + " DESC, " + COL_DOCUMENT_ID + " DESC", String.valueOf(limit));
+        return readEntries(cursor);
+    }
+
+    /**
+     * Returns the cached entries for the user whose epoch day falls inside [startDay, endDay],
+     * oldest first.
+     */
+    @NonNull
+    public List<WeightData> queryRange(@NonNull String userId, long startDay, long endDay) {
+        Cursor cursor = getReadableDatabase().query(TABLE_ENTRIES, null,
+                COL_USER_ID + " = ? AND " + COL_EPOCH_DAY + " >= ? AND " + COL_EPOCH_DAY + " <= ?",
+                new String[]{userId, String.valueOf(startDay), String.valueOf(endDay)},
+                null, null, COL_EPOCH_DAY + " ASC");
+        return readEntries(cursor);
+    }
+
+    /**
+     * Returns the cached entry with the given document ID, or null if it isn't cached.
+     */
+    @Nullable
+    public WeightData queryEntry(@NonNull String userId, @NonNull String documentId) {
+        Cursor cursor = getReadableDatabase().query(TABLE_ENTRIES, null,
+                COL_USER_ID + " = ? AND " + COL_DOCUMENT_ID + " = ?", new String[]{userId, documentId},
+                null, null, null, "1");
+        List<WeightData> entries = readEntries(cursor);
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+
+    /**
+     * Returns the first and last cached epoch day of the user as {first, last}, or null if nothing
+     * is cached for them.
+     */
+    @Nullable
+    public long[] dayBounds(@NonNull String userId) {
+        Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT MIN(" + COL_EPOCH_DAY + "), MAX(" + COL_EPOCH_DAY + ") FROM " + TABLE_ENTRIES
+                        + " WHERE " + COL_USER_ID + " = ?",
+                new String[]{userId});
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                return new long[]{cursor.getLong(0), cursor.getLong(1)};
+            }
+            return null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Inserts or replaces the given entries. Entries without a document ID or epoch day are skipped,
+     * since those are what tie a cached row back to Firestore and to its place in the timeline.
+     */
+    public void upsert(@NonNull String userId, @NonNull List<WeightData> entries) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (WeightData data : entries) {
+                if (data.getDocumentId() == null || !data.hasEpochDay()) continue;
+                db.insertWithOnConflict(TABLE_ENTRIES, null, toValues(userId, data),
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Replaces the cached rows of one history page with a fresh server copy of that page. The window
+     * is everything strictly older than `upper` (or everything if null) and at least as new as
+     * `lower` (or down to the oldest row if null), so deletions inside the page are picked up too.
+     * Rows still waiting in the outbox are kept.
+     */
+    public void replaceWindow(@NonNull String userId, @Nullable PagedWeightList.EntryKey upper,
+                              @Nullable PagedWeightList.EntryKey lower, @NonNull List<WeightData> entries) {
+        StringBuilder selection = new StringBuilder(COL_USER_ID + " = ?");
+        List<String> args = new ArrayList<>();
+        args.add(userId);
+        if (upper != null) {
+            selection.append(" AND ").append(olderThan());
+            args.add(String.valueOf(upper.epochDay));
+            args.add(String.valueOf(upper.epochDay));
+            args.add(upper.documentId);
+        }
+        if (lower != null) {
+            selection.append(" AND (" + COL_EPOCH_DAY + " > ? OR (" + COL_EPOCH_DAY + " = ? AND "
+                    + COL_DOCUMENT_ID + " >= ?))");
+            args.add(String.valueOf(lower.epochDay));
+            args.add(String.valueOf(lower.epochDay));
+            args.add(lower.documentId);
+        }
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_ENTRIES, selection + " AND " + notQueued(), args.toArray(new String[0]));
+            for (WeightData data : entries) {
+                if (data.getDocumentId() == null || !data.hasEpochDay()) continue;
+                db.insertWithOnConflict(TABLE_ENTRIES, null, toValues(userId, data),
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Replaces the cached rows inside [startDay, endDay] with a fresh server result for that range,
+     * so entries deleted on another device also disappear locally. Rows still waiting in the
+     * outbox are kept.
+     */
+    public void replaceRange(@NonNull String userId, long startDay, long endDay,
+                             @NonNull List<WeightData> entries) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_ENTRIES,
+                    COL_USER_ID + " = ? AND " + COL_EPOCH_DAY + " >= ? AND " + COL_EPOCH_DAY + " <= ? AND " + notQueued(),
+                    new String[]{userId, String.valueOf(startDay), String.valueOf(endDay)});
+            for (WeightData data : entries) {
+                if (data.getDocumentId() == null || !data.hasEpochDay()) continue;
+                db.insertWithOnConflict(TABLE_ENTRIES, null, toValues(userId, data),
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Removes a single cached entry.
+     */
+    public void delete(@NonNull String userId, @NonNull String documentId) {
+        getWritableDatabase().delete(TABLE_ENTRIES,
+                COL_USER_ID + " = ? AND " + COL_DOCUMENT_ID + " = ?",
+                new String[]{userId, documentId});
+    }
+
+    /**
+     * Caches a new entry and appends it to the outbox in one transaction, so once this returns the
+     * entry is on disk and will reach Firestore even if the process dies. The entry needs its
+     * document ID and epoch day set. Queuing a document ID that is still queued replaces the
+     * queued copy, so saving the same day twice before a flush sends only the last version.
+     */
+    public void enqueue(@NonNull String userId, @NonNull WeightData data) {
+        if (data.getDocumentId() == null || !data.hasEpochDay()) {
+            throw new IllegalArgumentException("Queued entries need a document ID and an epoch day");
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            // Read before the cached row is overwritten.
+            ContentValues base = baseValues(db, userId, data.getDocumentId());
+            ContentValues values = toValues(userId, data);
+            db.insertWithOnConflict(TABLE_ENTRIES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            values.put(COL_QUEUED_AT, System.currentTimeMillis());
+            values.putAll(base);
+            db.insertWithOnConflict(TABLE_OUTBOX, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Marks entries as deleted: each gets a tombstone in the outbox (replacing a queued save of the
+     * same entry), which is not sent before `notBeforeMs` so the delete can still be undone. Their
+     * cached rows stay until the delete is sent.
+     */
+    public void tombstone(@NonNull String userId, @NonNull List<WeightData> entries, long notBeforeMs) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            long now = System.currentTimeMillis();
+            for (WeightData data : entries) {
+                if (data.getDocumentId() == null || !data.hasEpochDay()) continue;
+                ContentValues values = toValues(userId, data);
+                values.put(COL_QUEUED_AT, now);
+                values.put(COL_DELETED, 1);
+                values.put(COL_NOT_BEFORE, notBeforeMs);
+                values.putAll(baseValues(db, userId, data.getDocumentId()));
+                db.insertWithOnConflict(TABLE_OUTBOX, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Undoes {@link #tombstone} for the given entries that still have one. They are queued as saves
+     * of their cached values instead, which changes nothing on the server if it still has them and
+     * puts them back if their delete was already sent.
+     *
+     * @return The entries that were restored.
+     */
+    @NonNull
+    public List<WeightData> restore(@NonNull String userId, @NonNull List<String> documentIds) {
+        List<WeightData> restored = new ArrayList<>();
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String documentId : documentIds) {
+                Cursor cursor = db.query(TABLE_OUTBOX, null,
+                        COL_USER_ID + " = ? AND " + COL_DOCUMENT_ID + " = ? AND " + COL_DELETED + " = 1",
+                        new String[]{userId, documentId}, null, null, null);
+                List<WeightData> tombstones = readEntries(cursor);
+                if (tombstones.isEmpty()) continue;
+                // Replaced rather than updated, so it gets a new sequence number; see dequeue().
+                ContentValues values = toValues(userId, tombstones.get(0));
+                values.put(COL_QUEUED_AT, System.currentTimeMillis());
+                values.putAll(baseValues(db, userId, documentId));
+                db.insertWithOnConflict(TABLE_OUTBOX, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                restored.add(tombstones.get(0));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return restored;
+    }
+
+    /**
+     * Returns up to `limit` of the user's queued saves and deletes that may be sent at `nowMs`,
+     * oldest first.
+     */
+    @NonNull
+    public List<QueuedWrite> queuedWrites(@NonNull String userId, int limit, long nowMs) {
+        Cursor cursor = getReadableDatabase().query(TABLE_OUTBOX, null,
+                COL_USER_ID + " = ? AND " + COL_NOT_BEFORE + " <= ?", new String[]{userId, String.valueOf(nowMs)},
+                null, null, COL_SEQUENCE + " ASC", String.valueOf(limit));
+        return readQueuedWrites(cursor);
+    }
+
+    /**
+     * Returns the user's queued saves (not deletes) whose epoch day falls inside [startDay, endDay],
+     * so results from the server, which doesn't have them yet, can be corrected.
+     */
+    @NonNull
+    public List<QueuedWrite> queuedSaves(@NonNull String userId, long startDay, long endDay) {
+        Cursor cursor = getReadableDatabase().query(TABLE_OUTBOX, null,
+                COL_USER_ID + " = ? AND " + COL_DELETED + " = 0 AND " + COL_EPOCH_DAY + " >= ? AND " + COL_EPOCH_DAY + " <= ?",
+                new String[]{userId, String.valueOf(startDay), String.valueOf(endDay)},
+                null, null, COL_SEQUENCE + " ASC");
+        return readQueuedWrites(cursor);
+    }
+
+    /**
+     * The earliest time a held-back write of the user may be sent, or Long.MAX_VALUE if none is held back.
+     */
+    public long nextReadyAt(@NonNull String userId) {
+        Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT MIN(" + COL_NOT_BEFORE + ") FROM " + TABLE_OUTBOX + " WHERE " + COL_USER_ID + " = ?",
+                new String[]{userId});
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : Long.MAX_VALUE;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Number of the user's saves and deletes still waiting in the outbox.
+     */
+    public long queuedCount(@NonNull String userId) {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_OUTBOX,
+                COL_USER_ID + " = ?", new String[]{userId});
+    }
+
+    /**
+     * Takes writes that Firestore now has out of the outbox, and drops the cached rows of sent
+     * deletes. Rows are matched by sequence number, so an entry that was saved, deleted or
+     * restored again while its write was on the way stays queued.
+     */
+    public void dequeue(@NonNull String userId, @NonNull List<QueuedWrite> sent) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (QueuedWrite write : sent) {
+                db.delete(TABLE_OUTBOX, COL_SEQUENCE + " = ?", new String[]{String.valueOf(write.sequence)});
+                if (write.delete) {
+                    db.delete(TABLE_ENTRIES, COL_USER_ID + " = ? AND " + COL_DOCUMENT_ID + " = ? AND " + notQueued(),
+                            new String[]{userId, write.entry.getDocumentId()});
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // The base values for a new outbox row of the given entry: those of a row already queued for
+    // it, or else its cached values, which are the last ones read from the server. Call this
+    // before the entry's cached row is replaced.
+    private static ContentValues baseValues(SQLiteDatabase db, String userId, String documentId) {
+        String selection = COL_USER_ID + " = ? AND " + COL_DOCUMENT_ID + " = ?";
+        String[] args = {userId, documentId};
+        ContentValues base = new ContentValues();
+        Cursor cursor = db.query(TABLE_OUTBOX, BASE_COLUMNS, selection, args, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                putBase(cursor, base);
+                return base;
+            }
+        } finally {
+            cursor.close();
+        }
+        cursor = db.query(TABLE_ENTRIES, ROLLED_UP_COLUMNS, selection, args, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                putBase(cursor, base);
+            } else {
+                for (String column : BASE_COLUMNS) base.putNull(column);
+            }
+        } finally {
+            cursor.close();
+        }
+        return base;
+    }
+
+    // Copies weight, sleep, steps and calories (in that column order) into the base columns.
+    private static void putBase(Cursor cursor, ContentValues base) {
+        base.put(COL_BASE_WEIGHT, cursor.isNull(0) ? null : cursor.getDouble(0));
+        base.put(COL_BASE_SLEEP, cursor.isNull(1) ? null : cursor.getDouble(1));
+        base.put(COL_BASE_STEPS, cursor.isNull(2) ? null : cursor.getInt(2));
+        base.put(COL_BASE_CALORIES, cursor.isNull(3) ? null : cursor.getInt(3));
+    }
+
+    // Reads outbox rows into QueuedWrites and closes the cursor.
+    private List<QueuedWrite> readQueuedWrites(Cursor cursor) {
+        List<QueuedWrite> writes = new ArrayList<>();
+        try {
+            int sequenceIdx = cursor.getColumnIndexOrThrow(COL_SEQUENCE);
+            int deletedIdx = cursor.getColumnIndexOrThrow(COL_DELETED);
+            int baseWeightIdx = cursor.getColumnIndexOrThrow(COL_BASE_WEIGHT);
+            int baseSleepIdx = cursor.getColumnIndexOrThrow(COL_BASE_SLEEP);
+            int baseStepsIdx = cursor.getColumnIndexOrThrow(COL_BASE_STEPS);
+            int baseCaloriesIdx = cursor.getColumnIndexOrThrow(COL_BASE_CALORIES);
+            List<WeightData> entries = readEntries(cursor, false);
+            cursor.moveToPosition(-1);
+            for (WeightData data : entries) {
+                cursor.moveToNext();
+                WeightData base = null;
+                if (!cursor.isNull(baseWeightIdx)) {
+                    base = new WeightData(data.getDate(), cursor.getDouble(baseWeightIdx), null,
+                            cursor.isNull(baseSleepIdx) ? null : cursor.getDouble(baseSleepIdx),
+                            cursor.isNull(baseStepsIdx) ? null : cursor.getInt(baseStepsIdx),
+                            null,
+                            cursor.isNull(baseCaloriesIdx) ? null : cursor.getInt(baseCaloriesIdx));
+                    base.setEpochDay(data.getEpochDay());
+                }
+                writes.add(new QueuedWrite(cursor.getLong(sequenceIdx), data, base, cursor.getInt(deletedIdx) != 0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return writes;
+    }
+
+    // Selection for cache rows that aren't waiting in their user's outbox; a server result can't
+    // know about those yet.
+    private static String notQueued() {
+        return COL_DOCUMENT_ID + " NOT IN (SELECT " + COL_DOCUMENT_ID + " FROM " + TABLE_OUTBOX
+                + " WHERE " + TABLE_OUTBOX + "." + COL_USER_ID + " = " + TABLE_ENTRIES + "." + COL_USER_ID + ")";
+    }
+
+    // Selection for rows strictly older than a (day, document ID) cursor; takes day, day, document ID.
+    private static String olderThan() {
+        return "(" + COL_EPOCH_DAY + " < ? OR (" + COL_EPOCH_DAY + " = ? AND " + COL_DOCUMENT_ID + " < ?))";
+    }
+
+    // Converts a WeightData object into the column values for one cache row.
+    private ContentValues toValues(String userId, WeightData data) {
+        ContentValues values = new ContentValues();
+        values.put(COL_DOCUMENT_ID, data.getDocumentId());
+        values.put(COL_USER_ID, userId);
+        values.put(COL_DATE, data.getDate());
+        values.put(COL_EPOCH_DAY, data.getEpochDay());
+        values.put(COL_WEIGHT, data.getWeight());
+        values.put(COL_NOTES, data.getNotes());
+        values.put(COL_SLEEP, data.getHoursOfSleep());
+        values.put(COL_STEPS, data.getDailySteps());
+        values.put(COL_MOOD, data.getMood());
+        values.put(COL_CALORIES, data.getCalorieIntake());
+        return values;
+    }
+
+    // Reads every row of the cursor into WeightData objects and closes the cursor.
+    private List<WeightData> readEntries(Cursor cursor) {
+        return readEntries(cursor, true);
+    }
+
+    // Reads every row of the cursor into WeightData objects, closing the cursor if asked to.
+    private List<WeightData> readEntries(Cursor cursor, boolean close) {
+        List<WeightData> entries = new ArrayList<>();
+        try {
+            // Look the column indexes up once instead of for every row.
+            int idIdx = cursor.getColumnIndexOrThrow(COL_DOCUMENT_ID);
+            int dateIdx = cursor.getColumnIndexOrThrow(COL_DATE);
+            int epochDayIdx = cursor.getColumnIndexOrThrow(COL_EPOCH_DAY);
+            int weightIdx = cursor.getColumnIndexOrThrow(COL_WEIGHT);
+            int notesIdx = cursor.getColumnIndexOrThrow(COL_NOTES);
+            int sleepIdx = cursor.getColumnIndexOrThrow(COL_SLEEP);
+            int stepsIdx = cursor.getColumnIndexOrThrow(COL_STEPS);
+            int moodIdx = cursor.getColumnIndexOrThrow(COL_MOOD);
+            int caloriesIdx = cursor.getColumnIndexOrThrow(COL_CALORIES);
+
+            while (cursor.moveToNext()) {
+                WeightData data = new WeightData(
+                        cursor.getString(dateIdx),
+                        cursor.getDouble(weightIdx),
+                        cursor.getString(notesIdx),
+                        cursor.isNull(sleepIdx) ? null : cursor.getDouble(sleepIdx),
+                        cursor.isNull(stepsIdx) ? null : cursor.getInt(stepsIdx),
+                        cursor.getString(moodIdx),
+                        cursor.isNull(caloriesIdx) ? null : cursor.getInt(caloriesIdx));
+                data.setEpochDay(cursor.getLong(epochDayIdx));
+                data.setDocumentId(cursor.getString(idIdx));
+                entries.add(data);
+            }
+        } finally {
+            if (close) cursor.close();
+        }
+        return entries;
+    }
+
+    /**
+     * One save or delete waiting in the outbox.
+     */
+    public static final class QueuedWrite {
+        public final long sequence;
+        public final WeightData entry; // For a delete, the entry's last known values.
+        @Nullable public final WeightData base; // The rolled-up values the server has for the day, if any.
+        public final boolean delete;
+
+        QueuedWrite(long sequence, @NonNull WeightData entry, @Nullable WeightData base, boolean delete) {
+            this.sequence = sequence;
+            this.entry = entry;
+            this.base = base;
+            this.delete = delete;
+        }
+    }
+}
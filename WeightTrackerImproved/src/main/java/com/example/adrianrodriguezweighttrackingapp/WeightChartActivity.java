@@ -1,7 +1,12 @@
 package com.example.adrianrodriguezweighttrackingapp;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.format.DateUtils;
 import android.util.Log;
+import android.view.MotionEvent;
 import android.widget.Button;
 import android.widget.ImageButton;
 import android.widget.TextView;
@@ -9,45 +14,53 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull; // Added for clarity with method parameters
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.util.Pair;
 
 // MPAndroidChart imports
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.Description;
 import com.github.mikephil.charting.components.XAxis;
+import com.github.mikephil.charting.components.YAxis;
 import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.IndexAxisValueFormatter;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
 import com.google.android.material.button.MaterialButtonToggleGroup;
+import com.google.android.material.datepicker.MaterialDatePicker;
 
 // Firebase imports
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
-import com.google.firebase.firestore.WriteBatch; // Required for batch writes (e.g., test data generation)
+
+// Chart period types (WEEK, MONTH, YEAR)
+import com.example.adrianrodriguezweighttrackingapp.ChartPeriod.FilterType;
 
 // Java Date and Time API imports
-import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Random; // Required for generating random test data
-import java.util.stream.Collectors;
 
 /**
  * WeightChartActivity is responsible for visualizing a user's weight data over time using
- * line charts. It allows users to filter the data by week, month, or year,
+ * line charts. It allows users to filter the data by week, month, or year, or view the whole
+ * history (or a custom range) with a bucket size that follows the zoom level,
  * navigate forward and backwards, and generate simulated test data for demonstration purposes.
- * Data is fetched from Firebase Firestore and displayed using the MPAndroidChart library.
+ * Data is loaded through WeightRepository (cached rows first, then Firestore) and displayed
+ * using the MPAndroidChart library.
+ *
+ * Sleep, steps and calories can be overlaid on a secondary axis. Every period is aggregated for
+ * all metrics in one pass, so overlays never cost another query or another aggregation.
+ *
+ * Computed periods are kept in the repository's ChartPeriodCache, and the periods on either
+ * side of the one on screen are prefetched in the background, so stepping back and forth
+ * redraws instantly.
  */
 public class WeightChartActivity extends AppCompatActivity {
 
@@ -55,28 +68,70 @@ public class WeightChartActivity extends AppCompatActivity {
     private static final String TAG = "WeightChartActivity";
 
     // UI Elements
-    private MaterialButtonToggleGroup filterToggleGroup; // Button group for selecting WEEK, MONTH, YEAR filter.
+    private MaterialButtonToggleGroup filterToggleGroup; // Button group for selecting WEEK, MONTH, YEAR, ALL filter.
+    private MaterialButtonToggleGroup overlayToggleGroup; // Buttons adding sleep, steps and calories lines.
     private ImageButton btnPrevious; // Button to navigate to the previous period.
     private ImageButton btnNext;     // Button to navigate to the next period.
     private TextView tvCurrentPeriod; // Displays the currently selected time period (e.g., "Jan 2024").
     private LineChart weightLineChart; // The chart view where weight trends are displayed.
     private Button btnGenerateTestData; // Button to trigger test data generation and upload.
 
-    // Firebase instances
-    private FirebaseFirestore db;             // Firestore database instance.
+    // Firebase and data instances
     private FirebaseAuth mAuth;               // Firebase Authentication instance.
     private FirebaseUser currentUser;         // The currently authenticated user.
-    private CollectionReference weightEntriesRef; // Reference to the current user's weight entries collection in Firestore.
+    private WeightRepository weightRepository; // Local-first access to the current user's weight entries.
+    private ChartPeriodCache chartCache;       // Computed chart periods, shared with the repository.
 
     // Chart State Variables
-    // Enum to define the different filtering modes for the chart.
-    private enum FilterType { WEEK, MONTH, YEAR }
     private FilterType currentFilter = FilterType.WEEK; // Default filter type upon activity launch.
-    private LocalDate currentDate; // An anchor date representing the period being displayed (e.g., a day in the current week/month/year).
-
-    // Date Formatters for consistent date string parsing and display.
-    // Used for database storage and retrieval (yyyy-MM-dd).
-    private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private ChartPeriod currentPeriod; // The week/month/year (or ALL range) being displayed.
+
+    // Period navigation taps closer together than this are treated as one burst; only the
+    // period the user stops on is fetched.
+    private static final long LOAD_DEBOUNCE_MS = 250L;
+
+    // Periods with a query on the way, so a prefetch and a real load don't fetch the same period
+    // twice. A failed server read after a cached answer reports nothing, so requests older than
+    // IN_FLIGHT_TIMEOUT_MS are treated as finished.
+    private static final long IN_FLIGHT_TIMEOUT_MS = 30_000L;
+    private final Map<ChartPeriod, PeriodRequest> periodsInFlight = new HashMap<>();
+
+    // ALL view: the most points shown across the visible part of the chart (the bucket size is
+    // picked to stay under it), how many points count as a dense line (no circles or value
+    // labels), roughly how many X-axis labels to show, and how long a zoom or pan must settle
+    // before the bucket size is re-evaluated.
+    private static final int VISIBLE_POINT_BUDGET = 120;
+    private static final int DENSE_POINT_COUNT = 60;
+    private static final int RANGE_LABEL_COUNT = 6;
+    private static final long VIEWPORT_SETTLE_MS = 120L;
+
+    // Aggregation and chart update timings, and how often a period is drawn from the period cache.
+    private static final MetricsRegistry.Histogram AGGREGATE = MetricsRegistry.histogram("chart.aggregate");
+    private static final MetricsRegistry.Histogram SET_DATA = MetricsRegistry.histogram("chart.setData");
+    private static final MetricsRegistry.Histogram INVALIDATE = MetricsRegistry.histogram("chart.invalidate");
+    private static final MetricsRegistry.Counter PERIOD_CACHE_HITS = MetricsRegistry.counter("chart.periodCache.hits");
+    private static final MetricsRegistry.Counter PERIOD_CACHE_MISSES = MetricsRegistry.counter("chart.periodCache.misses");
+
+    // Overlay metrics the user can add next to weight, in legend order, and the ones switched on.
+    private static final SeriesAggregator.Metric[] OVERLAY_METRICS = {
+            SeriesAggregator.Metric.SLEEP, SeriesAggregator.Metric.STEPS, SeriesAggregator.Metric.CALORIES
+    };
+    private final EnumSet<SeriesAggregator.Metric> overlayMetrics = EnumSet.noneOf(SeriesAggregator.Metric.class);
+
+    // The bucketed (WEEK/MONTH/YEAR) period on screen, kept for redraws.
+    private MetricResults displayedResults;
+
+    // The ALL range on screen, aggregated at every bucket size it has been zoomed to so far.
+    private AdaptiveAggregation adaptive;
+    private ChartPeriod adaptivePeriod;
+    private BucketSpec.Granularity displayedGranularity;
+    private final Runnable viewportCheck = this::onViewportChanged;
+
+    // Increases every time the displayed period changes. A scheduled fetch only runs if no newer
+    // navigation happened since it was scheduled.
+    private int loadGeneration;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Runnable pendingFetch;
 
      // Called when the activity is first created. This method initializes UI components,
      // Firebase instances, sets up chart configuration, and attaches all event listeners.
@@ -88,6 +143,7 @@ public class WeightChartActivity extends AppCompatActivity {
 
         // 1. Initialize UI Elements by finding them in the layout.
         filterToggleGroup = findViewById(R.id.filterToggleGroup);
+        overlayToggleGroup = findViewById(R.id.overlayToggleGroup);
         btnPrevious = findViewById(R.id.btnPrevious);
         btnNext = findViewById(R.id.btnNext);
         tvCurrentPeriod = findViewById(R.id.tvCurrentPeriod);
@@ -95,7 +151,6 @@ public class WeightChartActivity extends AppCompatActivity {
         btnGenerateTestData = findViewById(R.id.btnGenerateTestData); // Initialize the test data button.
 
         // 2. Initialize Firebase instances.
-        db = FirebaseFirestore.getInstance();
         mAuth = FirebaseAuth.getInstance();
         currentUser = mAuth.getCurrentUser();
 
@@ -106,22 +161,25 @@ public class WeightChartActivity extends AppCompatActivity {
             return;
         }
 
-        // Initialize Firestore collection reference for the current user's weight entries.
-        weightEntriesRef = db.collection("users")
-                .document(currentUser.getUid())
-                .collection("weightEntries");
+        // Get the repository for the current user's weight entries.
+        weightRepository = WeightRepository.getInstance(this, currentUser.getUid());
+        chartCache = weightRepository.getChartCache();
 
         // 3. Initialize Chart State.
-        currentDate = LocalDate.now(); // Set the anchor date to today's date initially.
+        currentPeriod = ChartPeriod.containing(currentFilter, LocalDate.now()); // Start with the period containing today.
 
         // 4. Set up UI Listeners for interactions.
         setupFilterListeners();      // For filter buttons (Week, Month, Year).
+        setupOverlayListeners();     // For the sleep, steps and calories overlay buttons.
         setupNavigationListeners();  // For previous/next period buttons.
         setupTestDataButtonListener(); // For the test data generation button.
 
         // 5. Initialize chart configuration and load data for the default filter (WEEK).
         setupChart();
-        loadWeightData(); // This will fetch data based on `currentFilter` and `currentDate`.
+        // On a cold start the period cache is empty; fill in the first period from the on-disk
+        // snapshot so it draws in the first frame instead of showing "Loading...".
+        weightRepository.seedChartFromSnapshot(currentPeriod);
+        loadWeightData(); // This will fetch data based on `currentPeriod`.
     }
 
     // Sets up listeners for the filter toggle group (Week, Month, Year buttons).
@@ -134,13 +192,38 @@ public class WeightChartActivity extends AppCompatActivity {
                     currentFilter = FilterType.MONTH;
                 } else if (checkedId == R.id.btnFilterYear) {
                     currentFilter = FilterType.YEAR;
+                } else if (checkedId == R.id.btnFilterAll) {
+                    currentFilter = FilterType.ALL;
                 }
-                currentDate = LocalDate.now(); // Reset the anchor date to the current date for the new filter.
+                // Reset to the period containing today for the new filter.
+                currentPeriod = ChartPeriod.containing(currentFilter, LocalDate.now());
                 loadWeightData(); // Reload data for the newly selected period.
             }
         });
     }
 
+    // Sets up the overlay buttons. Every period already holds all metrics, so toggling one only redraws.
+    private void setupOverlayListeners() {
+        overlayToggleGroup.addOnButtonCheckedListener((toggleGroup, checkedId, isChecked) -> {
+            SeriesAggregator.Metric metric;
+            if (checkedId == R.id.btnOverlaySleep) {
+                metric = SeriesAggregator.Metric.SLEEP;
+            } else if (checkedId == R.id.btnOverlaySteps) {
+                metric = SeriesAggregator.Metric.STEPS;
+            } else if (checkedId == R.id.btnOverlayCalories) {
+                metric = SeriesAggregator.Metric.CALORIES;
+            } else {
+                return;
+            }
+            if (isChecked) {
+                overlayMetrics.add(metric);
+            } else {
+                overlayMetrics.remove(metric);
+            }
+            redrawCurrent();
+        });
+    }
+
      // Sets up listeners for the previous and next period navigation buttons.
 
     private void setupNavigationListeners() {
@@ -151,6 +234,27 @@ public class WeightChartActivity extends AppCompatActivity {
         btnNext.setOnClickListener(v -> {
             navigatePeriod(1); // Navigate to the next period.
         });
+
+        // In the ALL view, tapping the title picks a custom date range.
+        tvCurrentPeriod.setOnClickListener(v -> {
+            if (currentFilter == FilterType.ALL) showRangePicker();
+        });
+    }
+
+    // Lets the user pick a custom range for the ALL view.
+    private void showRangePicker() {
+        MaterialDatePicker<Pair<Long, Long>> picker = MaterialDatePicker.Builder.dateRangePicker()
+                .setTitleText("Show range")
+                .build();
+        picker.addOnPositiveButtonClickListener(selection -> {
+            if (selection == null || selection.first == null || selection.second == null) return;
+            // The picker reports UTC midnight in milliseconds.
+            LocalDate start = LocalDate.ofEpochDay(selection.first / DateUtils.DAY_IN_MILLIS);
+            LocalDate end = LocalDate.ofEpochDay(selection.second / DateUtils.DAY_IN_MILLIS);
+            currentPeriod = ChartPeriod.range(start, end);
+            loadWeightData();
+        });
+        picker.show(getSupportFragmentManager(), "chart_range_picker");
     }
 
     // Sets up the listener for the button that will generate our test data
@@ -160,26 +264,15 @@ public class WeightChartActivity extends AppCompatActivity {
 
 
      // Navigates the current displayed time period (week, month, or year) backward or forward.
-     // The `currentDate` is adjusted based on the currentFilter and direction
     private void navigatePeriod(int direction) {
-        switch (currentFilter) {
-            case WEEK:
-                currentDate = currentDate.plusWeeks(direction); // Move by weeks.
-                break;
-            case MONTH:
-                currentDate = currentDate.plusMonths(direction); // Move by months.
-                break;
-            case YEAR:
-                currentDate = currentDate.plusYears(direction); // Move by years.
-                break;
-        }
-        loadWeightData(); // Reload the chart data for the new period.
+        currentPeriod = currentPeriod.shift(direction); // Move by one week, month or year.
+        loadWeightDataDebounced(); // Reload the chart data once the user stops tapping.
     }
 
     /**
      * Configures the basic appearance and interactivity settings for the LineChart.
      * This includes description text, touch gestures, grid lines, and axis styling.
-     * Note: Y-axis min/max are set dynamically based on data in `processAndDisplayChart`.
+     * Note: Y-axis min/max are set dynamically based on data in `displayChartEntries`.
      */
     private void setupChart() {
         Description description = new Description();
@@ -211,244 +304,525 @@ public class WeightChartActivity extends AppCompatActivity {
 
         // Style the chart legend text.
         weightLineChart.getLegend().setTextColor(getResources().getColor(R.color.light_grey, null));
+
+        // In the ALL view, re-pick the bucket size once a zoom or pan settles.
+        weightLineChart.setOnChartGestureListener(new OnChartGestureListener() {
+            @Override
+            public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
+                scheduleViewportCheck();
+            }
+
+            @Override
+            public void onChartTranslate(MotionEvent me, float dX, float dY) {
+                scheduleViewportCheck();
+            }
+
+            @Override
+            public void onChartDoubleTapped(MotionEvent me) {
+                scheduleViewportCheck();
+            }
+
+            @Override
+            public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) { }
+
+            @Override
+            public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) { }
+
+            @Override
+            public void onChartLongPressed(MotionEvent me) { }
+
+            @Override
+            public void onChartSingleTapped(MotionEvent me) { }
+
+            @Override
+            public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) { }
+        });
+    }
+
+    private void scheduleViewportCheck() {
+        if (adaptive == null) return;
+        mainHandler.removeCallbacks(viewportCheck);
+        mainHandler.postDelayed(viewportCheck, VIEWPORT_SETTLE_MS);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Nothing is left to draw into; drop the pending fetch and every outstanding request.
+        if (pendingFetch != null) mainHandler.removeCallbacks(pendingFetch);
+        mainHandler.removeCallbacks(viewportCheck);
+        for (PeriodRequest request : periodsInFlight.values()) {
+            request.handle.cancel();
+        }
+        periodsInFlight.clear();
     }
 
     /**
-     * Determines the start and end dates for the currently selected filter period (WEEK, MONTH, YEAR).
-     * It then fetches the corresponding weight data from Firebase Firestore and initiates chart display.
+     * Shows the current period and fetches it right away (first load, filter change, new data).
      */
     private void loadWeightData() {
-        LocalDate startDate;
-        LocalDate endDate;
-        String periodText; // Text to display in tvCurrentPeriod (e.g., "Jan 01 - Jan 07, 2024").
-
-        // Calculate the start and end dates based on the current filter type.
-        switch (currentFilter) {
-            case WEEK:
-                // Start of the week (Monday) and end of the week (Sunday).
-                startDate = currentDate.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
-                endDate = startDate.plusDays(6);
-                periodText = startDate.format(DateTimeFormatter.ofPattern("MMM dd")) + " - " +
-                        endDate.format(DateTimeFormatter.ofPattern("MMM dd, yyyy")); // e.g., "Jan 01 - Jan 07, 2024"
-                break;
-            case MONTH:
-                // First day of the month and last day of the month.
-                startDate = currentDate.with(TemporalAdjusters.firstDayOfMonth());
-                endDate = currentDate.with(TemporalAdjusters.lastDayOfMonth());
-                periodText = currentDate.format(DateTimeFormatter.ofPattern("MMMM yyyy")); // e.g., "January 2024"
-                break;
-            case YEAR:
-                // First day of the year and last day of the year.
-                startDate = currentDate.with(TemporalAdjusters.firstDayOfYear());
-                endDate = currentDate.with(TemporalAdjusters.lastDayOfYear());
-                periodText = currentDate.format(DateTimeFormatter.ofPattern("yyyy")); // e.g., "2024"
-                break;
-            default:
-                // Fallback case (should not be reached if filter types are handled).
-                startDate = LocalDate.now();
-                endDate = LocalDate.now();
-                periodText = "Unknown Period";
-                break;
-        }
-
-        tvCurrentPeriod.setText(periodText); // Update the TextView with the current period string.
-
-        // Format dates to strings for Firestore queries (which are string-based on "date" field).
-        String startDateString = startDate.format(dateFormatter);
-        String endDateString = endDate.format(dateFormatter);
-
-        Log.d(TAG, "Fetching data for " + currentFilter.name() + ": " + startDateString + " to " + endDateString);
-
-        // Fetch data from Firestore.
-        // Query for documents where the 'date' field is within the calculated period.
-        weightEntriesRef.whereGreaterThanOrEqualTo("date", startDateString)
-                .whereLessThanOrEqualTo("date", endDateString)
-                .orderBy("date", Query.Direction.ASCENDING) // Order results by date for chronological display.
-                .get() // Perform a one-time fetch (not a real-time listener like DataDisplayActivity).
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        List<WeightData> rawWeightData = new ArrayList<>();
-                        // Convert each fetched Firestore document to a WeightData object.
-                        for (QueryDocumentSnapshot document : task.getResult()) {
-                            WeightData weightData = document.toObject(WeightData.class);
-                            rawWeightData.add(weightData);
-                        }
-                        Log.d(TAG, "Fetched " + rawWeightData.size() + " documents.");
-                        // Process the raw data and display it on the chart.
-                        processAndDisplayChart(rawWeightData, startDate, endDate);
-                    } else {
-                        // Handle errors during data fetching.
-                        Log.w(TAG, "Error getting documents: ", task.getException());
-                        Toast.makeText(WeightChartActivity.this, "Error loading data for chart.", Toast.LENGTH_SHORT).show();
-                        // Clear and invalidate the chart to show no data and an error message.
-                        weightLineChart.clear();
-                        weightLineChart.invalidate();
-                        weightLineChart.setNoDataText("Failed to load data.");
-                    }
-                });
+        showPeriod(0);
     }
 
     /**
-     * Processes the raw weight data based on the current filter type, aggregates it if necessary,
-     * populates the chart entries and X-axis labels, and dynamically adjusts the Y-axis range.
-     *
-     * @param rawWeightData The list of WeightData objects fetched from Firestore for the period.
-     * @param periodStartDate The actual start date of the current display period (used for context).
-     * @param periodEndDate The actual end date of the current display period (used for context).
+     * Shows the current period but waits for a short pause in navigation before fetching, so a
+     * burst of previous/next taps only queries the period the user stops on.
      */
-    private void processAndDisplayChart(List<WeightData> rawWeightData, @NonNull LocalDate periodStartDate, @NonNull LocalDate periodEndDate) {
-        ArrayList<Entry> entries = new ArrayList<>(); // Chart entries (X, Y values).
-        ArrayList<String> xAxisLabels = new ArrayList<>(); // Labels for the X-axis.
-
-        // Sort the raw data by date to ensure chronological processing, essential for charting.
-        rawWeightData.sort(Comparator.comparing(WeightData::getDate));
+    private void loadWeightDataDebounced() {
+        showPeriod(LOAD_DEBOUNCE_MS);
+    }
 
-        // If no data is available for the period, clear the chart and display "No data" message.
-        if (rawWeightData.isEmpty()) {
+    /**
+     * Updates the title and draws the current period from the period cache if it's there, or
+     * clears the chart so no other period's data sits under the new title. Requests for periods
+     * that are no longer the current one or its neighbours are cancelled, then the current period
+     * (unless its cached values are fresh) and its neighbours are fetched after `fetchDelayMs`.
+     */
+    private void showPeriod(long fetchDelayMs) {
+        int generation = ++loadGeneration;
+        ChartPeriod period = currentPeriod;
+        tvCurrentPeriod.setText(period.title()); // Update the TextView with the current period string.
+
+        // The whole history has no previous/next period.
+        boolean canNavigate = !period.isAllTime();
+        btnPrevious.setEnabled(canNavigate);
+        btnNext.setEnabled(canNavigate);
+        btnPrevious.setAlpha(canNavigate ? 1f : 0.3f);
+        btnNext.setAlpha(canNavigate ? 1f : 0.3f);
+
+        ChartPeriodCache.Cached cached = chartCache.get(period);
+        if (cached != null) {
+            Log.d(TAG, "Drawing " + period + " from the period cache" + (cached.fresh ? "." : ", refreshing."));
+            PERIOD_CACHE_HITS.increment();
+            displayCached(period, cached);
+        } else {
+            PERIOD_CACHE_MISSES.increment();
+            clearChartState();
             weightLineChart.clear();
+            weightLineChart.setNoDataText("Loading...");
             weightLineChart.invalidate();
-            weightLineChart.setNoDataText("No weight data available for this period.");
-            // Reset Y-axis limits to their defaults when no data is present.
-            weightLineChart.getAxisLeft().resetAxisMinimum();
-            weightLineChart.getAxisLeft().resetAxisMaximum();
-            return;
         }
 
-        // Initialize min/max weight for dynamic Y-axis scaling.
-        double minWeight = Double.MAX_VALUE;
-        double maxWeight = Double.MIN_VALUE;
-
-        // Process data based on the current filter type (WEEK, MONTH, YEAR).
-        switch (currentFilter) {
-            case WEEK:
-                // For 'WEEK' view, we want to show each day in the week, even if no data is present for it.
-                LocalDate currentDay = periodStartDate;
-                int xIndex = 0; // X-axis index for chart entries.
-
-                while (!currentDay.isAfter(periodEndDate)) {
-                    final LocalDate finalCurrentDay = currentDay; // Need final variable for lambda.
-                    // Find if there's a weight entry for the current day.
-                    WeightData dailyData = rawWeightData.stream()
-                            .filter(data -> {
-                                try {
-                                    return finalCurrentDay.isEqual(LocalDate.parse(data.getDate(), dateFormatter));
-                                } catch (Exception e) {
-                                    Log.e(TAG, "Error parsing date for WEEK filter: " + data.getDate(), e);
-                                    return false;
-                                }
-                            })
-                            .findFirst() // Get the first matching entry (assuming one entry per day).
-                            .orElse(null);
-
-                    if (dailyData != null) {
-                        float weight = (float) dailyData.getWeight();
-                        entries.add(new Entry(xIndex, weight)); // Add entry to chart.
-                        minWeight = Math.min(minWeight, weight); // Update min/max for Y-axis scaling.
-                        maxWeight = Math.max(maxWeight, weight);
-                    }
-                    // Add X-axis label for each day of the week (e.g., "Mon\nJan 01").
-                    xAxisLabels.add(currentDay.format(DateTimeFormatter.ofPattern("EEE\nMMM dd")));
-                    currentDay = currentDay.plusDays(1); // Move to the next day.
-                    xIndex++;
-                }
-                break;
-
-            case MONTH:
-                // For 'MONTH' view, aggregate data by week (within the displayed month) and show average weight.
-                Map<Integer, List<WeightData>> dataByWeek = new HashMap<>();
-                for (WeightData data : rawWeightData) {
-                    try {
-                        LocalDate date = LocalDate.parse(data.getDate(), dateFormatter);
-                        // Calculate week number relative to the first day of the current month.
-                        // This approximates "Week X" within the month.
-                        int weekOfMonth = (int) (date.getDayOfYear() - periodStartDate.getDayOfYear()) / 7;
-                        dataByWeek.computeIfAbsent(weekOfMonth, k -> new ArrayList<>()).add(data);
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error parsing date in MONTH filter: " + data.getDate(), e);
-                    }
-                }
+        cancelRequestsNotNeededFor(period);
 
-                // Get sorted list of unique week indices that have data.
-                List<Integer> sortedWeekIndices = dataByWeek.keySet().stream().sorted().collect(Collectors.toList());
-
-                xIndex = 0; // Reset X-axis index for sequential numbering of weeks.
-                for (Integer weekIdx : sortedWeekIndices) {
-                    List<WeightData> weekData = dataByWeek.get(weekIdx);
-                    if (!weekData.isEmpty()) {
-                        // Calculate the average weight for the week.
-                        double averageWeight = weekData.stream()
-                                .mapToDouble(WeightData::getWeight)
-                                .average()
-                                .orElse(0.0); // Default to 0.0 if no weight data for the week (shouldn't happen here).
-                        float avgWeightFloat = (float) averageWeight;
-                        entries.add(new Entry(xIndex, avgWeightFloat));
-                        minWeight = Math.min(minWeight, avgWeightFloat);
-                        maxWeight = Math.max(maxWeight, avgWeightFloat);
-                        xAxisLabels.add("Week " + (xIndex + 1)); // Label as "Week 1", "Week 2", etc.
+        if (pendingFetch != null) mainHandler.removeCallbacks(pendingFetch);
+        pendingFetch = () -> {
+            if (generation != loadGeneration) return; // Superseded by a newer navigation.
+            pendingFetch = null;
+            if (!chartCache.isFresh(period)) {
+                fetchPeriod(period);
+            }
+            // Get the previous and next periods ready in the background.
+            // (ALL ranges can span years of entries, so they're only fetched on demand.)
+            if (period.type != FilterType.ALL) {
+                prefetch(period.shift(-1));
+                prefetch(period.shift(1));
+            }
+        };
+        if (fetchDelayMs > 0) {
+            mainHandler.postDelayed(pendingFetch, fetchDelayMs);
+        } else {
+            pendingFetch.run();
+        }
+    }
+
+    // Cancels in-flight requests for periods other than `period` and its two neighbours.
+    private void cancelRequestsNotNeededFor(@NonNull ChartPeriod period) {
+        ChartPeriod previous = period.shift(-1);
+        ChartPeriod next = period.shift(1);
+        Iterator<Map.Entry<ChartPeriod, PeriodRequest>> it = periodsInFlight.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<ChartPeriod, PeriodRequest> entry = it.next();
+            ChartPeriod requested = entry.getKey();
+            if (!requested.equals(period) && !requested.equals(previous) && !requested.equals(next)) {
+                Log.d(TAG, "Cancelling superseded request for " + requested);
+                entry.getValue().handle.cancel();
+                it.remove();
+            }
+        }
+    }
+
+    // Fetches a neighbouring period into the cache unless it's already there or on the way.
+    private void prefetch(@NonNull ChartPeriod period) {
+        if (!chartCache.isFresh(period)) {
+            fetchPeriod(period);
+        }
+    }
+
+    /**
+     * Loads one period through the repository and stores its chart values in the cache.
+     * The chart is only redrawn if the period is still the one on screen when the data arrives,
+     * and results of a request that was cancelled or replaced in the meantime are dropped.
+     */
+    private void fetchPeriod(@NonNull ChartPeriod period) {
+        PeriodRequest existing = periodsInFlight.get(period);
+        if (existing != null && SystemClock.elapsedRealtime() - existing.startedAtMs < IN_FLIGHT_TIMEOUT_MS) {
+            return; // Already being fetched.
+        }
+        if (existing != null) existing.handle.cancel();
+        Log.d(TAG, "Fetching data for " + period);
+
+        PeriodRequest request = new PeriodRequest();
+        periodsInFlight.put(period, request);
+
+        // The YEAR view is drawn from 12 monthly rollups instead of a whole year of raw entries.
+        if (period.type == FilterType.YEAR) {
+            request.handle = weightRepository.loadMonthlyRollups(period.start.getYear(), new WeightRepository.RollupCallback() {
+                @Override
+                public void onRollupsLoaded(@NonNull List<WeightRollup> rollups, boolean fromCache) {
+                    if (!isCurrent(period, request)) return;
+                    Log.d(TAG, "Loaded " + rollups.size() + " monthly rollups" + (fromCache ? " from the cache." : "."));
+                    long started = MetricsRegistry.now();
+                    MetricResults result = period.aggregateRollups(rollups);
+                    AGGREGATE.recordSince(started);
+                    onPeriodLoaded(period, result, fromCache);
+                    if (!fromCache) {
+                        // The year's cached entries can fill in its weeks and months for free.
+                        weightRepository.seedChartCache(period.startDay(), period.endDay());
                     }
-                    xIndex++; // Increment for the next available week.
                 }
 
-                // If no entries are created after processing, clear the chart.
-                if (entries.isEmpty()) {
-                    weightLineChart.clear();
-                    weightLineChart.invalidate();
-                    weightLineChart.setNoDataText("No weight data available for this month.");
-                    weightLineChart.getAxisLeft().resetAxisMinimum();
-                    weightLineChart.getAxisLeft().resetAxisMaximum();
-                    return;
-                }
-                break;
-
-            case YEAR:
-                // For 'YEAR' view, aggregate data by month and show average weight.
-                Map<Integer, List<WeightData>> dataByMonth = new HashMap<>();
-                for (WeightData data : rawWeightData) {
-                    try {
-                        LocalDate date = LocalDate.parse(data.getDate(), dateFormatter);
-                        int month = date.getMonthValue(); // Get month as an integer (1-12).
-                        dataByMonth.computeIfAbsent(month, k -> new ArrayList<>()).add(data);
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error parsing date in YEAR filter: " + data.getDate(), e);
-                    }
+                @Override
+                public void onError(@NonNull Exception e) {
+                    if (isCurrent(period, request)) onPeriodFailed(period, e);
                 }
+            });
+            return;
+        }
 
-                // Iterate through all 12 months (from 1 to 12) to ensure all months are considered for labels.
-                for (int i = 1; i <= 12; i++) {
-                    List<WeightData> monthData = dataByMonth.getOrDefault(i, new ArrayList<>());
-                    if (!monthData.isEmpty()) {
-                        // Calculate average weight for the month.
-                        double averageWeight = monthData.stream()
-                                .mapToDouble(WeightData::getWeight)
-                                .average()
-                                .orElse(0.0);
-                        float avgWeightFloat = (float) averageWeight;
-                        // For year view, X-index corresponds to month index (0 for Jan, 11 for Dec).
-                        entries.add(new Entry(i - 1, avgWeightFloat));
-                        minWeight = Math.min(minWeight, avgWeightFloat);
-                        maxWeight = Math.max(maxWeight, avgWeightFloat);
-                        // Add month abbreviation as label (e.g., "Jan", "Feb").
-                        xAxisLabels.add(LocalDate.of(periodStartDate.getYear(), i, 1).format(DateTimeFormatter.ofPattern("MMM")));
-                    } else {
-                        // If no data for a month, still add its label to maintain consistent X-axis spacing.
-                        xAxisLabels.add(LocalDate.of(periodStartDate.getYear(), i, 1).format(DateTimeFormatter.ofPattern("MMM")));
-                    }
+        // Load data for the period through the repository as a columnar series.
+        // Cached entries are delivered first, then the server result for the same range.
+        request.handle = weightRepository.loadSeries(period.startDay(), period.endDay(), new WeightRepository.SeriesCallback() {
+            @Override
+            public void onSeriesLoaded(@NonNull WeightSeries series, boolean fromCache) {
+                if (!isCurrent(period, request)) return;
+                Log.d(TAG, "Loaded " + series.size() + " entries" + (fromCache ? " from the cache." : "."));
+                if (period.type == FilterType.ALL) {
+                    onRangeLoaded(period, series, fromCache);
+                } else {
+                    long started = MetricsRegistry.now();
+                    MetricResults result = period.aggregate(series);
+                    AGGREGATE.recordSince(started);
+                    onPeriodLoaded(period, result, fromCache);
                 }
+            }
+
+            @Override
+            public void onError(@NonNull Exception e) {
+                if (isCurrent(period, request)) onPeriodFailed(period, e);
+            }
+        });
+    }
+
+    // True if `request` is still the live request for `period` (not cancelled or replaced).
+    private boolean isCurrent(@NonNull ChartPeriod period, @NonNull PeriodRequest request) {
+        return periodsInFlight.get(period) == request;
+    }
+
+    // Caches a loaded period, and draws it if it's the one on screen.
+    private void onPeriodLoaded(@NonNull ChartPeriod period, @NonNull MetricResults result, boolean fromCache) {
+        if (!fromCache) periodsInFlight.remove(period);
+        chartCache.put(period, result, !fromCache);
+        if (period.equals(currentPeriod)) {
+            displayAggregate(result, period.noDataText(), true);
+        }
+    }
+
+    // ALL version of onPeriodLoaded: the series itself is cached and downsampled when drawn.
+    private void onRangeLoaded(@NonNull ChartPeriod period, @NonNull WeightSeries series, boolean fromCache) {
+        if (!fromCache) periodsInFlight.remove(period);
+        chartCache.putSeries(period, series, !fromCache);
+        if (period.equals(currentPeriod)) {
+            displayRange(period, series);
+        }
+    }
+
+    // Draws a cached period with the renderer matching its type.
+    private void displayCached(@NonNull ChartPeriod period, @NonNull ChartPeriodCache.Cached cached) {
+        if (cached.series != null) {
+            displayRange(period, cached.series);
+        } else if (cached.result != null) {
+            displayAggregate(cached.result, period.noDataText(), true);
+        }
+    }
+
+    private void onPeriodFailed(@NonNull ChartPeriod period, @NonNull Exception e) {
+        periodsInFlight.remove(period);
+        if (period.equals(currentPeriod)) {
+            showLoadError(e);
+        } else {
+            Log.w(TAG, "Prefetch failed for " + period, e);
+        }
+    }
+
+    // One outstanding period query. Callbacks compare themselves against the map entry by identity,
+    // so a request that was cancelled or replaced can never draw or cache anything.
+    private static final class PeriodRequest {
+        final long startedAtMs = SystemClock.elapsedRealtime();
+        WeightRepository.RequestHandle handle = () -> { };
+    }
+
+    // Handles errors during data fetching (only reached when nothing was cached).
+    private void showLoadError(@NonNull Exception e) {
+        Log.w(TAG, "Error getting documents: ", e);
+        Toast.makeText(WeightChartActivity.this, "Error loading data for chart.", Toast.LENGTH_SHORT).show();
+        // Clear and invalidate the chart to show no data and an error message.
+        clearChartState();
+        weightLineChart.clear();
+        weightLineChart.invalidate();
+        weightLineChart.setNoDataText("Failed to load data.");
+    }
+
+    /**
+     * Turns a period's chart values into chart entries: every bucket gets an X-axis label, and
+     * every bucket with a value gets a point at its bucket index. Enabled overlays are drawn from
+     * the same results, which are kept so toggling an overlay only redraws.
+     */
+    private void displayAggregate(@NonNull MetricResults results, @NonNull String noDataText, boolean animate) {
+        AggregateResult result = results.weight();
+        // If no bucket has a value, clear the chart and display the "No data" message.
+        if (result.isEmpty()) {
+            showNoData(noDataText);
+            return;
+        }
+
+        ArrayList<String> xAxisLabels = new ArrayList<>(result.bucketCount()); // Labels for the X-axis.
+        float[] bucketX = new float[result.bucketCount()];
+        for (int b = 0; b < result.bucketCount(); b++) {
+            bucketX[b] = b;
+            xAxisLabels.add(result.label(b));
+        }
+        ArrayList<Entry> entries = entriesFor(result, bucketX, Integer.MAX_VALUE); // Chart entries (X, Y values).
+        displayChartEntries(entries, xAxisLabels, result.min(), result.max(),
+                overlayDataSets(results, bucketX, Integer.MAX_VALUE), animate);
+        displayedResults = results;
+    }
+
+    /**
+     * Points of one metric, one per bucket with a value, at the given X position of each bucket.
+     * Lines with more than `maxPoints` points are thinned with LTTB so spikes and dips stay visible.
+     */
+    @NonNull
+    private static ArrayList<Entry> entriesFor(@NonNull AggregateResult result, @NonNull float[] bucketX, int maxPoints) {
+        int count = 0;
+        float[] x = new float[result.bucketCount()];
+        float[] y = new float[result.bucketCount()];
+        for (int b = 0; b < result.bucketCount(); b++) {
+            if (!result.hasValue(b)) continue;
+            x[count] = bucketX[b];
+            y[count] = result.value(b);
+            count++;
+        }
+        int[] kept = Downsampler.largestTriangleThreeBuckets(x, y, count, Math.min(count, maxPoints));
+        ArrayList<Entry> entries = new ArrayList<>(kept.length);
+        for (int index : kept) {
+            entries.add(new Entry(x[index], y[index]));
+        }
+        return entries;
+    }
 
-                // If no entries are created after processing, clear the chart.
-                if (entries.isEmpty()) {
-                    weightLineChart.clear();
-                    weightLineChart.invalidate();
-                    weightLineChart.setNoDataText("No weight data available for this year.");
-                    weightLineChart.getAxisLeft().resetAxisMinimum();
-                    weightLineChart.getAxisLeft().resetAxisMaximum();
-                    return;
+    /**
+     * Builds the line of every enabled overlay metric with data, on the right Y-axis. A single
+     * overlay is plotted in its own units. Several are each scaled to their own min-max range
+     * (listed in the legend), because steps, calories and hours of sleep don't share a scale.
+     */
+    @NonNull
+    private List<LineDataSet> overlayDataSets(@NonNull MetricResults results, @NonNull float[] bucketX, int maxPoints) {
+        List<SeriesAggregator.Metric> shown = new ArrayList<>();
+        for (SeriesAggregator.Metric metric : OVERLAY_METRICS) {
+            if (overlayMetrics.contains(metric) && !results.get(metric).isEmpty()) shown.add(metric);
+        }
+        boolean normalized = shown.size() > 1;
+        applyOverlayAxis(shown.size(), normalized);
+
+        List<LineDataSet> dataSets = new ArrayList<>(shown.size());
+        for (SeriesAggregator.Metric metric : shown) {
+            AggregateResult result = results.get(metric);
+            ArrayList<Entry> entries = entriesFor(result, bucketX, maxPoints);
+            String label = overlayName(metric);
+            if (normalized) {
+                float min = result.min();
+                float span = result.max() - min;
+                for (Entry entry : entries) {
+                    entry.setY(span > 0 ? (entry.getY() - min) / span : 0.5f);
                 }
-                break;
+                String format = metric == SeriesAggregator.Metric.SLEEP ? "%s (%.1f-%.1f)" : "%s (%.0f-%.0f)";
+                label = String.format(Locale.getDefault(), format, label, min, result.max());
+            }
+            dataSets.add(createOverlayDataSet(metric, entries, label));
+        }
+        return dataSets;
+    }
+
+    // Shows the right Y-axis for overlays: in the metric's units for one, unlabelled 0-1 for several.
+    private void applyOverlayAxis(int overlayCount, boolean normalized) {
+        YAxis rightAxis = weightLineChart.getAxisRight();
+        rightAxis.setEnabled(overlayCount > 0);
+        if (overlayCount == 0) return;
+        rightAxis.setDrawGridLines(false); // The weight axis already draws the grid.
+        rightAxis.setTextColor(getResources().getColor(R.color.light_grey, null));
+        rightAxis.setTextSize(12f);
+        rightAxis.setDrawLabels(!normalized);
+        if (normalized) {
+            rightAxis.setAxisMinimum(-0.05f);
+            rightAxis.setAxisMaximum(1.05f);
+        } else {
+            rightAxis.resetAxisMinimum();
+            rightAxis.resetAxisMaximum();
+        }
+    }
+
+    // Redraws the period on screen from the values already in memory, e.g. after an overlay toggle.
+    private void redrawCurrent() {
+        if (adaptive != null && displayedGranularity != null) {
+            displayLevel(displayedGranularity, visibleDays(), false);
+        } else if (displayedResults != null) {
+            displayAggregate(displayedResults, currentPeriod.noDataText(), false);
+        }
+    }
+
+    /**
+     * Draws an ALL / custom range period. Its entries are bucketed by day, week, month or quarter,
+     * whichever is the finest that keeps the visible part of the chart within VISIBLE_POINT_BUDGET
+     * points; pinch-zooming later switches between those levels (see {@link #onViewportChanged}).
+     * A series reloaded for the period already on screen keeps the current zoom.
+     */
+    private void displayRange(@NonNull ChartPeriod period, @NonNull WeightSeries series) {
+        AdaptiveAggregation aggregation = AdaptiveAggregation.of(series, period.startDay(), period.endDay());
+        if (aggregation == null) {
+            showNoData(period.noDataText());
+            return;
+        }
+        boolean samePeriod = period.equals(adaptivePeriod);
+        if (!samePeriod) {
+            clearChartState(); // Nothing on screen belongs to this range.
+            weightLineChart.fitScreen(); // A new range starts zoomed out.
         }
+        adaptive = aggregation;
+        adaptivePeriod = period;
 
-        // --- Dynamic Y-Axis Scaling ---
-        // Adjust the Y-axis (left axis) limits to fit the data range with some padding.
+        // X is counted in days from the first entry, which keeps float precision exact. The
+        // X-axis spans the whole range at every level so switching levels keeps the viewport.
+        XAxis xAxis = weightLineChart.getXAxis();
+        xAxis.setAxisMinimum(0f);
+        xAxis.setAxisMaximum(aggregation.endDay() - aggregation.startDay());
+        xAxis.setLabelCount(RANGE_LABEL_COUNT, false);
+        applyYAxisRange(aggregation.min(), aggregation.max());
+
+        long[] visible = visibleDays();
+        displayLevel(aggregation.granularityFor(visible[0], visible[1], VISIBLE_POINT_BUDGET), visible, !samePeriod);
+    }
+
+    /**
+     * Plots one granularity of the current ALL range, one point per bucket with a value, placed at
+     * the bucket's first day.
+     */
+    private void displayLevel(@NonNull BucketSpec.Granularity granularity, @NonNull long[] visible, boolean animate) {
+        long started = MetricsRegistry.now();
+        MetricResults results = adaptive.level(granularity);
+        AGGREGATE.recordSince(started);
+        BucketSpec spec = results.spec();
+        long baseDay = adaptive.startDay();
+        float[] bucketX = new float[spec.bucketCount()];
+        for (int b = 0; b < spec.bucketCount(); b++) {
+            bucketX[b] = spec.bucketStart(b) - baseDay;
+        }
+
+        // Even quarters can be too many when a long history is fully zoomed out; those get thinned.
+        long visibleBuckets = granularity.bucketCount(Math.max(baseDay, visible[0]), Math.min(adaptive.endDay(), visible[1]));
+        int maxPoints = visibleBuckets > VISIBLE_POINT_BUDGET ? VISIBLE_POINT_BUDGET : Integer.MAX_VALUE;
+
+        ArrayList<Entry> entries = entriesFor(results.weight(), bucketX, maxPoints);
+        displayedGranularity = granularity;
+        Log.d(TAG, "Plotting " + entries.size() + " " + granularity + " points for " + adaptivePeriod);
+
+        LineDataSet dataSet = createDataSet(entries);
+        // Dense lines read better without per-point circles and value labels.
+        boolean dense = Math.min(visibleBuckets, entries.size()) > DENSE_POINT_COUNT;
+        dataSet.setDrawCircles(!dense);
+        dataSet.setDrawValues(!dense);
+
+        weightLineChart.getXAxis().setValueFormatter(new EpochDayAxisFormatter(baseDay, visible[1] - visible[0]));
+        showDataSet(dataSet, overlayDataSets(results, bucketX, maxPoints), animate);
+    }
+
+    // Called after a pinch, double tap or drag settles: switches the ALL range to the bucket size
+    // that suits the newly visible days, reusing the aggregation that's already in memory.
+    private void onViewportChanged() {
+        if (adaptive == null || displayedGranularity == null) return;
+        long[] visible = visibleDays();
+        BucketSpec.Granularity granularity = adaptive.granularityFor(visible[0], visible[1], VISIBLE_POINT_BUDGET);
+        if (granularity != displayedGranularity) {
+            Log.d(TAG, "Zoom changed the bucket size from " + displayedGranularity + " to " + granularity);
+            displayLevel(granularity, visible, false);
+        } else {
+            // Same buckets; only the date labels may need a different style for the new span.
+            weightLineChart.getXAxis().setValueFormatter(new EpochDayAxisFormatter(adaptive.startDay(), visible[1] - visible[0]));
+            weightLineChart.invalidate();
+        }
+    }
+
+    // Epoch days at the left and right edges of the chart, or the whole ALL range before anything is drawn.
+    @NonNull
+    private long[] visibleDays() {
+        if (weightLineChart.getData() == null || displayedGranularity == null) {
+            return new long[] { adaptive.startDay(), adaptive.endDay() };
+        }
+        long baseDay = adaptive.startDay();
+        return new long[] {
+                baseDay + (long) Math.floor(weightLineChart.getLowestVisibleX()),
+                baseDay + (long) Math.ceil(weightLineChart.getHighestVisibleX())
+        };
+    }
+
+    // Forgets what's on screen: the ALL range state (so gestures no longer rebucket and the X-axis
+    // auto-scales again) and the bucketed period's values.
+    private void clearChartState() {
+        displayedResults = null;
+        adaptive = null;
+        adaptivePeriod = null;
+        displayedGranularity = null;
+        mainHandler.removeCallbacks(viewportCheck);
+        weightLineChart.getXAxis().resetAxisMinimum();
+        weightLineChart.getXAxis().resetAxisMaximum();
+    }
+
+    // Clears the chart and shows a "no data" message with the Y-axis back on auto-scaling.
+    private void showNoData(@NonNull String noDataText) {
+        clearChartState();
+        weightLineChart.clear();
+        weightLineChart.invalidate();
+        weightLineChart.setNoDataText(noDataText);
+        // Reset Y-axis limits to their defaults when no data is present.
+        weightLineChart.getAxisLeft().resetAxisMinimum();
+        weightLineChart.getAxisLeft().resetAxisMaximum();
+    }
+
+    /**
+     * Scales the Y-axis to the given weight range, then draws the entries with their X-axis labels
+     * and any overlay lines.
+     */
+    private void displayChartEntries(ArrayList<Entry> entries, ArrayList<String> xAxisLabels,
+                                     double minWeight, double maxWeight,
+                                     List<LineDataSet> overlays, boolean animate) {
+        clearChartState();
+        applyYAxisRange(minWeight, maxWeight);
+
+        LineDataSet dataSet = createDataSet(entries);
+        dataSet.setDrawCircles(true);
+        dataSet.setDrawValues(true); // Draw numerical values on the chart points.
+
+        // Set the custom X-axis labels using IndexAxisValueFormatter.
+        weightLineChart.getXAxis().setValueFormatter(new IndexAxisValueFormatter(xAxisLabels));
+        // Set label count for X-axis to match the number of labels, ensuring all labels are displayed.
+        weightLineChart.getXAxis().setLabelCount(xAxisLabels.size(), true);
+        weightLineChart.fitScreen(); // Bucketed periods always start zoomed out.
+        showDataSet(dataSet, overlays, animate);
+    }
+
+    // --- Dynamic Y-Axis Scaling ---
+    // Adjust the Y-axis (left axis) limits to fit the data range with some padding.
+    private void applyYAxisRange(double minWeight, double maxWeight) {
         float yAxisPadding = 5f; // Padding above max and below min weight values.
 
         // Handle case where minWeight or maxWeight might not have been updated (e.g., if only one data point).
@@ -475,9 +849,10 @@ public class WeightChartActivity extends AppCompatActivity {
             // Suggest a preferred number of labels, allowing the chart library to adjust.
             weightLineChart.getAxisLeft().setLabelCount(5, true);
         }
+    }
 
-        // --- Chart Data Set and Display Logic ---
-        // Create a LineDataSet with the prepared entries.
+    // Creates the weight LineDataSet with the app's styling.
+    private LineDataSet createDataSet(ArrayList<Entry> entries) {
         LineDataSet dataSet = new LineDataSet(entries, "Weight"); // Label for the legend.
         dataSet.setColor(getResources().getColor(R.color.chartLineColor, null)); // Set line color from resources.
         dataSet.setValueTextColor(getResources().getColor(android.R.color.white, null)); // Set value text color.
@@ -486,23 +861,67 @@ public class WeightChartActivity extends AppCompatActivity {
         dataSet.setValueTextSize(10f); // Set text size of values on data points.
         dataSet.setMode(LineDataSet.Mode.LINEAR); // Draw lines as linear segments.
         dataSet.setLineWidth(2f); // Set line thickness.
-        dataSet.setDrawValues(true); // Draw numerical values on the chart points.
+        return dataSet;
+    }
+
+    // Creates an overlay metric's LineDataSet: a thin dashed line on the right Y-axis.
+    private LineDataSet createOverlayDataSet(SeriesAggregator.Metric metric, ArrayList<Entry> entries, String label) {
+        LineDataSet dataSet = new LineDataSet(entries, label);
+        dataSet.setAxisDependency(YAxis.AxisDependency.RIGHT);
+        dataSet.setColor(getResources().getColor(overlayColor(metric), null));
+        dataSet.setLineWidth(1.5f);
+        dataSet.enableDashedLine(10f, 6f, 0f);
+        dataSet.setDrawCircles(false);
+        dataSet.setDrawValues(false);
+        dataSet.setHighlightEnabled(false);
+        dataSet.setMode(LineDataSet.Mode.LINEAR);
+        return dataSet;
+    }
+
+    private static String overlayName(SeriesAggregator.Metric metric) {
+        switch (metric) {
+            case SLEEP:
+                return "Sleep (h)";
+            case STEPS:
+                return "Steps";
+            default:
+                return "Calories";
+        }
+    }
+
+    private static int overlayColor(SeriesAggregator.Metric metric) {
+        switch (metric) {
+            case SLEEP:
+                return R.color.chartSleepColor;
+            case STEPS:
+                return R.color.chartStepsColor;
+            default:
+                return R.color.chartCaloriesColor;
+        }
+    }
 
-        // Create a LineData object from the data set.
+    // --- Chart Data Set and Display Logic ---
+    private void showDataSet(LineDataSet dataSet, List<LineDataSet> overlays, boolean animate) {
+        // Create a LineData object from the weight data set and the overlays.
         LineData lineData = new LineData(dataSet);
+        for (LineDataSet overlay : overlays) {
+            lineData.addDataSet(overlay);
+        }
+        long started = MetricsRegistry.now();
         weightLineChart.setData(lineData); // Set the data to the chart.
+        SET_DATA.recordSince(started);
 
-        // Set the custom X-axis labels using IndexAxisValueFormatter.
-        weightLineChart.getXAxis().setValueFormatter(new IndexAxisValueFormatter(xAxisLabels));
-        // Set label count for X-axis to match the number of labels, ensuring all labels are displayed.
-        weightLineChart.getXAxis().setLabelCount(xAxisLabels.size(), true);
-
-        // Animate the chart to make the loading visually appealing.
-        weightLineChart.animateX(500); // Animate X-axis values over 500 milliseconds.
+        // Animate the chart to make the loading visually appealing (but not when a zoom swaps the
+        // bucket size, which should look like the same line getting more or less detailed).
+        if (animate) {
+            weightLineChart.animateX(500); // Animate X-axis values over 500 milliseconds.
+        }
 
         // Notify the chart that its data has changed and needs to be redrawn.
+        started = MetricsRegistry.now();
         weightLineChart.notifyDataSetChanged();
         weightLineChart.invalidate();
+        INVALIDATE.recordSince(started);
     }
 
 
@@ -517,81 +936,52 @@ public class WeightChartActivity extends AppCompatActivity {
             return;
         }
 
-        // Get the specific Firestore collection reference for the current user.
-        CollectionReference userWeightEntriesRef = db.collection("users")
-                .document(currentUser.getUid())
-                .collection("weightEntries");
-
         // Call the helper method to add the generated data using a batch write.
-        addGeneratedData(userWeightEntriesRef);
+        addGeneratedData();
     }
 
-    // This helper function makes up a year's worth of test data and saves it to Firestore in big batches.
-    private void addGeneratedData(@NonNull CollectionReference collectionRef) {
-        // We want data for THIS year, starting from January 1st.
-        LocalDate startDate = LocalDate.of(LocalDate.now().getYear(), 1, 1);
-        // Let's get the exact number of days in this year (it handles leap years automatically!).
-        int numDays = startDate.lengthOfYear();
-
-        double initialWeightLbs = 180.0; // Starting weight for our fake data.
-        double weightFluctuationLbs = 2.0; // How much weight can randomly go up or down each day.
-        double trendChangeLbsPerMonth = -0.5; // We'll pretend the person loses a little weight each month.
-
-        String[] moods = {"Happy", "Neutral", "Motivated", "Tired", "Relaxed"}; // Some mood options.
-        Random random = new Random(); // A tool to make random numbers.
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd"); // How we want dates to look (e.g., 2025-01-01).
-
-        WriteBatch batch = db.batch(); // This helps us send a lot of data to Firestore at once, super fast!
-
-        double currentWeight = initialWeightLbs; // This will change as we go through the year.
-
-        for (int i = 0; i < numDays; i++) {
-            LocalDate currentDate = startDate.plusDays(i); // Get the date for today in our loop.
-
-            // Adjust the weight a tiny bit each day based on our monthly trend.
-            // We divide by how many days are in the *current month* for a better trend.
-            currentWeight += (trendChangeLbsPerMonth / currentDate.lengthOfMonth());
-
-            // Add some random up-and-down to the weight to make it more realistic.
-            double fluctuation = random.nextDouble() * (2 * weightFluctuationLbs) - weightFluctuationLbs;
-            double dailyWeight = currentWeight + fluctuation;
-            dailyWeight = Math.max(100.0, dailyWeight); // Don't let the weight go super low!
-
-            String dateString = currentDate.format(dateFormatter); // Turn the date into a text string.
-
-            // Generate some other health info. About 10% of the time, we'll leave them blank (null).
-            Double hoursOfSleep = (random.nextDouble() > 0.1) ? (double) Math.round((random.nextDouble() * 4.0 + 5.0) * 10) / 10 : null; // Between 5.0 and 9.0 hours
-            Integer dailySteps = (random.nextDouble() > 0.1) ? random.nextInt(12001) + 3000 : null; // Between 3000 and 15000 steps
-            String mood = (random.nextDouble() > 0.1) ? moods[random.nextInt(moods.length)] : null; // Pick a random mood
-            Integer calorieIntake = (random.nextDouble() > 0.1) ? random.nextInt(1001) + 1500 : null; // Between 1500 and 2500 calories
-
-            // Put all this daily info into a WeightData object.
-            WeightData weightData = new WeightData(
-                    dateString,
-                    dailyWeight,
-                    "Generated entry: " + dateString, // Just a simple note.
-                    hoursOfSleep,
-                    dailySteps,
-                    mood,
-                    calorieIntake
-            );
+    // This helper function makes up a year's worth of test data and saves it to Firestore in chunks.
+    // The generator is seeded, so every press produces exactly the same entries (handy for comparing runs).
+    private void addGeneratedData() {
+        // One year of daily entries for THIS user, starting from January 1st of this year.
+        SyntheticDataGenerator.Config config = new SyntheticDataGenerator.Builder()
+                .userIds(currentUser.getUid())
+                // One chunk at a time, so each chunk's rollup rebuild sees the chunks before it.
+                .chunking(WeightImporter.BATCH_SIZE, 1)
+                .build();
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(config);
+
+        // Every chunk goes through the repository (Firestore and the phone's cache).
+        WeightEntrySink repositorySink = (userId, chunk, done) ->
+                weightRepository.addEntries(chunk, new WeightRepository.WriteCallback() {
+                    @Override
+                    public void onSuccess() {
+                        done.onDone(null);
+                    }
 
-            // Add this day's data to our batch. Firestore will give it a unique ID.
-            batch.set(collectionRef.document(), weightData);
-        }
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        done.onDone(e);
+                    }
+                });
 
-        // Now, send all the data to Firestore!
-        batch.commit()
-                .addOnSuccessListener(aVoid -> {
+        // The generator waits on the repository's callbacks, which come on the main thread, so run it in the background.
+        AppExecutors.bulk().execute(() -> {
+            try {
+                SyntheticDataGenerator.Stats stats = generator.run(repositorySink);
+                AppExecutors.mainThread().execute(() -> {
                     // If it worked!
-                    Log.d(TAG, "Yay! Test data made and uploaded for " + numDays + " days.");
-                    Toast.makeText(this, "Test data generated and loaded!", Toast.LENGTH_SHORT).show();
+                    Log.d(TAG, "Yay! Test data made and uploaded: " + stats);
+                    Toast.makeText(WeightChartActivity.this, "Test data generated and loaded!", Toast.LENGTH_SHORT).show();
                     loadWeightData(); // Show the new data on the chart.
-                })
-                .addOnFailureListener(e -> {
+                });
+            } catch (Exception e) {
+                AppExecutors.mainThread().execute(() -> {
                     // If something went wrong...
                     Log.e(TAG, "Uh oh! Error uploading test data", e);
-                    Toast.makeText(this, "Error making test data: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                    Toast.makeText(WeightChartActivity.this, "Error making test data: " + e.getMessage(), Toast.LENGTH_LONG).show();
                 });
+            }
+        });
     }
 }
\ No newline at end of file
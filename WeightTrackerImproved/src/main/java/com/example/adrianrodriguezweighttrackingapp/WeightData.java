@@ -2,13 +2,17 @@ package com.example.adrianrodriguezweighttrackingapp;
 
 import com.google.firebase.firestore.Exclude; // Import for Firestore exclusion annotation
 
+import java.util.Objects;
+
 /**
  * WeightData is a Plain Old Java Object (POJO) that represents a single
  * weight entry along with associated health metrics. This class is designed
  * to be directly mapped to and from Firebase Firestore documents.
  *
  * It includes fields for date, weight, notes, and optional additional metrics
- * like hours of sleep, daily steps, mood, and calorie intake. The `documentId`
+ * like hours of sleep, daily steps, mood, and calorie intake. The `epochDay` field
+ * (days since 1970-01-01) is the key used for all queries, ordering and chart
+ * bucketing; `date` is kept as the readable "yyyy-MM-dd" form of the same day. The `documentId`
  * field is used internally by the application to reference the corresponding
  * Firestore document for operations like updates or deletions, and is excluded
  * from direct serialization to Firestore.
@@ -16,7 +20,8 @@ import com.google.firebase.firestore.Exclude; // Import for Firestore exclusion
 public class WeightData {
 
     // Original weight tracking fields
-    private String date;        // The date of the weight entry
+    private String date;        // The date of the weight entry ("yyyy-MM-dd").
+    private long epochDay = DateKeys.MISSING_EPOCH_DAY; // The same date as days since 1970-01-01.
     private double weight;      // The recorded weight.
     private String notes;       // Optional notes for the entry.
 
@@ -41,7 +46,8 @@ public class WeightData {
     /**
      * Full constructor for creating new WeightData objects with all fields.
      *
-     * @param date The date of the weight entry in "yyyy-MM-dd" format.
+     * @param date The date of the weight entry in "yyyy-MM-dd" (or legacy "dd-MM-yyyy") format.
+     *             It is stored normalized to "yyyy-MM-dd" and its epoch day is derived from it.
      * @param weight The recorded weight as a double.
      * @param notes Optional string for any additional notes.
      * @param hoursOfSleep Optional: Hours of sleep as a Double (can be null).
@@ -51,7 +57,8 @@ public class WeightData {
      */
     public WeightData(String date, double weight, String notes,
                       Double hoursOfSleep, Integer dailySteps, String mood, Integer calorieIntake) {
-        this.date = date;
+        this.epochDay = DateKeys.parseEpochDay(date);
+        this.date = DateKeys.normalize(date);
         this.weight = weight;
         this.notes = notes;
         this.hoursOfSleep = hoursOfSleep;
@@ -69,6 +76,19 @@ public class WeightData {
         return date;
     }
 
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * Returns true if this entry has a usable epoch day. Documents written before the
+     * epoch-day field existed come back from Firestore without one until they are migrated.
+     */
+    @Exclude
+    public boolean hasEpochDay() {
+        return epochDay != DateKeys.MISSING_EPOCH_DAY;
+    }
+
     public double getWeight() {
         return weight;
     }
@@ -111,6 +131,10 @@ public class WeightData {
         this.date = date;
     }
 
+    public void setEpochDay(long epochDay) {
+        this.epochDay = epochDay;
+    }
+
     public void setWeight(double weight) {
         this.weight = weight;
     }
@@ -135,6 +159,23 @@ public class WeightData {
         this.calorieIntake = calorieIntake;
     }
 
+    /**
+     * Returns true if every stored field (everything except the document ID) matches the other entry.
+     * Used by the history list to decide whether a row needs to be redrawn, and by the outbox
+     * to skip entries the server already has.
+     */
+    public boolean hasSameContent(WeightData other) {
+        return other != null
+                && epochDay == other.epochDay
+                && Double.compare(weight, other.weight) == 0
+                && Objects.equals(date, other.date)
+                && Objects.equals(notes, other.notes)
+                && Objects.equals(hoursOfSleep, other.hoursOfSleep)
+                && Objects.equals(dailySteps, other.dailySteps)
+                && Objects.equals(mood, other.mood)
+                && Objects.equals(calorieIntake, other.calorieIntake);
+    }
+
     /**
      * Sets the Firestore document ID for this object. This setter is called to link the POJO to its
      * database record for operations
@@ -4,49 +4,214 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull; // Annotation for indicating non-null parameters/returns
+import androidx.core.text.PrecomputedTextCompat; // Text measured ahead of time, off the UI thread
+import androidx.core.widget.TextViewCompat; // Reads and applies precomputed text layout parameters
+import androidx.recyclerview.widget.DiffUtil; // Computes the minimal set of row changes between two lists
+import androidx.recyclerview.widget.ListAdapter; // RecyclerView.Adapter that diffs submitted lists off the main thread
 import androidx.recyclerview.widget.RecyclerView; // Core RecyclerView components
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale; // Used for consistent number formatting
+import java.util.Map;
+import java.util.Set;
 
 /**
- * WeightDataAdapter is a custom RecyclerView.Adapter that displays a list of
+ * WeightDataAdapter is a custom RecyclerView adapter that displays a list of
  * WeightData objects. Each item in the list represents a single
  * entry and its associated user input data. It provides functionality to update
  * the displayed data and handle delete actions for individual items.
+ *
+ * It extends ListAdapter, so every new list is diffed against the current one on a
+ * background thread (rows are matched by Firestore document ID). Only rows that were
+ * actually inserted, removed, moved or changed get rebound, which keeps RecyclerView's
+ * item animations and scroll position intact.
+ *
+ * Row text is formatted once per entry into a {@link WeightRowModel} on the computation
+ * thread, so onBindViewHolder only assigns cached text and toggles visibility.
+ *
+ * Rows the server doesn't have yet are drawn dimmed with a "waiting to sync" note, and their
+ * delete button stays usable so a mistyped entry can be removed before it's uploaded.
+ *
+ * Long-pressing a row starts selection mode: every row shows a checkbox instead of its delete
+ * button, and tapping a row toggles it. Selection mode ends when nothing is selected anymore.
+ * Selection changes only rebind the checkboxes, through a payload, not the whole row.
  */
-public class WeightDataAdapter extends RecyclerView.Adapter<WeightDataAdapter.WeightViewHolder> {
+public class WeightDataAdapter extends ListAdapter<WeightRowModel, WeightDataAdapter.WeightViewHolder> {
+
+    // Row formatting and binding timings, and how many rows the list holds.
+    private static final MetricsRegistry.Histogram BUILD_ROWS = MetricsRegistry.histogram("list.buildRows");
+    private static final MetricsRegistry.Histogram BIND = MetricsRegistry.histogram("list.bind");
+    private static final MetricsRegistry.Gauge ROWS = MetricsRegistry.gauge("list.rows");
 
-    // The list of WeightData objects to be displayed in the RecyclerView.
-    private List<WeightData> weightList;
     // Listener for delete button clicks on individual items.
     private OnItemDeleteListener deleteListener;
 
+    // Told whenever rows are selected or unselected.
+    private OnSelectionChangedListener selectionListener;
+
+    // Document IDs of the selected rows, in the order they were selected. Empty outside selection mode.
+    private final Set<String> selectedIds = new LinkedHashSet<>();
+
+    // Payload for rebinding only a row's selection state.
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    // Layout parameters of the row TextViews, read from the first row attached to the window.
+    // Until then rows are formatted as plain text.
+    private WeightRowModel.TextStyles textStyles;
+
+    // Alpha of rows that are still waiting to sync.
+    private static final float PENDING_ALPHA = 0.6f;
+
+    // Increases with every updateData() call; results from an older call are dropped.
+    private int updateGeneration;
+
+    // Rows built by the last update, by document ID. Only touched on the computation thread.
+    private Map<String, WeightRowModel> rowCache = new HashMap<>();
+
+    /**
+     * Tells DiffUtil how to match rows between two lists: the same document ID means the same
+     * row. Rows are reused for unchanged entries, so a row only needs rebinding if it's a new object.
+     */
+    private static final DiffUtil.ItemCallback<WeightRowModel> DIFF_CALLBACK = new DiffUtil.ItemCallback<WeightRowModel>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull WeightRowModel oldItem, @NonNull WeightRowModel newItem) {
+            return oldItem.documentId != null && oldItem.documentId.equals(newItem.documentId);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull WeightRowModel oldItem, @NonNull WeightRowModel newItem) {
+            return oldItem == newItem;
+        }
+    };
+
     /**
      * Interface definition for a callback when an item's delete button is clicked.
      */
     public interface OnItemDeleteListener {
-        void onDeleteClick(String documentId);
+        void onDeleteClick(@NonNull WeightData entry);
+    }
+
+    /**
+     * Interface definition for a callback when the selection changes. A count of 0 means
+     * selection mode has ended.
+     */
+    public interface OnSelectionChangedListener {
+        void onSelectionChanged(int selectedCount);
     }
 
     // Constructor for the WeightDataAdapter.
-    public WeightDataAdapter(List<WeightData> weightList, OnItemDeleteListener deleteListener) {
-        this.weightList = weightList;
+    public WeightDataAdapter(OnItemDeleteListener deleteListener, OnSelectionChangedListener selectionListener) {
+        super(DIFF_CALLBACK);
         this.deleteListener = deleteListener; // Assign the provided listener to the private field.
+        this.selectionListener = selectionListener;
+    }
+
+    /**
+     * True while at least one row is selected.
+     */
+    public boolean isSelecting() {
+        return !selectedIds.isEmpty();
     }
 
     /**
-     * Updates the data set of the adapter and notifies the RecyclerView to refresh its views
+     * The entries of the selected rows, in list order.
+     */
+    @NonNull
+    public List<WeightData> getSelectedEntries() {
+        List<WeightData> selected = new ArrayList<>(selectedIds.size());
+        for (WeightRowModel row : getCurrentList()) {
+            if (selectedIds.contains(row.documentId)) selected.add(row.source);
+        }
+        return selected;
+    }
+
+    /**
+     * Selects every row currently in the list.
+     */
+    public void selectAll() {
+        for (WeightRowModel row : getCurrentList()) {
+            if (row.documentId != null) selectedIds.add(row.documentId);
+        }
+        selectionChanged();
+    }
+
+    /**
+     * Unselects everything, which ends selection mode.
+     */
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) return;
+        selectedIds.clear();
+        selectionChanged();
+    }
+
+    private void toggleSelection(String documentId) {
+        if (documentId == null) return;
+        if (!selectedIds.remove(documentId)) selectedIds.add(documentId);
+        selectionChanged();
+    }
+
+    // Rebinds the checkboxes (they appear or disappear with selection mode) and tells the listener.
+    private void selectionChanged() {
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        if (selectionListener != null) selectionListener.onSelectionChanged(selectedIds.size());
+    }
+
+    // Forgets selected rows that are no longer in the list, e.g. because they were deleted.
+    private void pruneSelection() {
+        if (selectedIds.isEmpty()) return;
+        Set<String> shown = new HashSet<>();
+        for (WeightRowModel row : getCurrentList()) shown.add(row.documentId);
+        if (selectedIds.retainAll(shown)) selectionChanged();
+    }
+
+    /**
+     * Replaces the displayed data. Rows for new or changed entries are formatted on the
+     * computation thread, then the difference to the current list is computed off the main
+     * thread and applied as individual insert/remove/move/change notifications.
      *
-     * @param newData The new list of WeightData objects to display.
+     * @param newData    The new list of WeightData objects to display. It must not be modified afterwards.
+     * @param pendingIds Document IDs of the entries the server doesn't have yet.
      */
-    public void updateData(List<WeightData> newData) {
-        this.weightList.clear();     // Clear existing data.
-        this.weightList.addAll(newData); // Add all new data.
-        notifyDataSetChanged();      // Notify the RecyclerView that the data set has changed.
+    public void updateData(List<WeightData> newData, Set<String> pendingIds) {
+        int generation = ++updateGeneration;
+        WeightRowModel.TextStyles styles = textStyles;
+        // A copy, since the caller's set keeps changing on the main thread.
+        Set<String> pending = new HashSet<>(pendingIds);
+        AppExecutors.computation().execute(() -> {
+            long started = MetricsRegistry.now();
+            List<WeightRowModel> rows = buildRows(newData, pending, styles);
+            BUILD_ROWS.recordSince(started);
+            AppExecutors.mainThread().execute(() -> {
+                if (generation == updateGeneration) {
+                    submitList(rows, this::pruneSelection);
+                    ROWS.set(rows.size());
+                }
+            });
+        });
+    }
+
+    // Runs on the computation thread: reuses the previous row for every unchanged entry and formats the rest.
+    private List<WeightRowModel> buildRows(List<WeightData> data, Set<String> pendingIds, WeightRowModel.TextStyles styles) {
+        List<WeightRowModel> rows = new ArrayList<>(data.size());
+        Map<String, WeightRowModel> built = new HashMap<>(data.size() * 2);
+        for (WeightData entry : data) {
+            boolean pending = pendingIds.contains(entry.getDocumentId());
+            WeightRowModel row = rowCache.get(entry.getDocumentId());
+            if (row == null || !row.isUpToDate(entry, pending, styles)) {
+                row = WeightRowModel.create(entry, pending, styles);
+            }
+            rows.add(row);
+            built.put(row.documentId, row);
+        }
+        rowCache = built;
+        return rows;
     }
 
     /**
@@ -62,86 +227,118 @@ public class WeightDataAdapter extends RecyclerView.Adapter<WeightDataAdapter.We
     public WeightViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         // Inflate the item layout (item_weight_data.xml) to create a new View.
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_weight_data, parent, false);
-        return new WeightViewHolder(view); // Return a new ViewHolder instance.
+        WeightViewHolder holder = new WeightViewHolder(view);
+
+        // One click listener per ViewHolder; it looks up whichever row the holder shows right now.
+        holder.buttonDelete.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            // Ensure the listener is set and the row hasn't just been removed.
+            if (deleteListener != null && position != RecyclerView.NO_POSITION) {
+                // Pass the entry this row shows for deletion.
+                deleteListener.onDeleteClick(getItem(position).source);
+            }
+        });
+
+        // Long-press starts selection mode with this row; after that, taps toggle rows.
+        holder.itemView.setOnLongClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION || isSelecting()) return false;
+            toggleSelection(getItem(position).documentId);
+            return true;
+        });
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && isSelecting()) {
+                toggleSelection(getItem(position).documentId);
+            }
+        });
+        return holder; // Return the new ViewHolder instance.
     }
 
     /**
      * Called by RecyclerView to display the data at the specified position.
      * This method updates the contents of the WeightViewHolder#itemView to reflect
-     * the item at the given position in the weightList
+     * the item at the given position in the current list. All text is already formatted.
      */
     @Override
     public void onBindViewHolder(@NonNull WeightViewHolder holder, int position) {
-        // Get the WeightData object for the current position.
-        WeightData currentWeight = weightList.get(position);
-
-        // Bind core weight data to TextViews.
-        holder.textViewDate.setText("Date: " + currentWeight.getDate());
-        // Format weight to one decimal place and append " lbs".
-        holder.textViewWeight.setText("Weight: " + String.format(Locale.US, "%.1f", currentWeight.getWeight()) + " lbs");
-
-        // Handle optional Notes field: show if present, hide otherwise.
-        if (currentWeight.getNotes() != null && !currentWeight.getNotes().isEmpty()) {
-            holder.textViewNotes.setText("Notes: " + currentWeight.getNotes());
-            holder.textViewNotes.setVisibility(View.VISIBLE);
-        } else {
-            holder.textViewNotes.setVisibility(View.GONE); // Hide the TextView if no notes.
-        }
+        long started = MetricsRegistry.now();
+        WeightRowModel row = getItem(position);
 
-        // Handle new optional data points (Sleep, Steps, Calories, Mood).
-        // Each is checked for nullability and visibility is adjusted accordingly.
+        // Core weight data is always shown.
+        setRowText(holder.textViewDate, row.dateText);
+        setRowText(holder.textViewWeight, row.weightText);
 
-        // Hours of Sleep
-        if (currentWeight.getHoursOfSleep() != null) {
-            holder.textViewSleep.setText("Sleep: " + String.format(Locale.US, "%.1f", currentWeight.getHoursOfSleep()) + " hrs");
-            holder.textViewSleep.setVisibility(View.VISIBLE);
-        } else {
-            holder.textViewSleep.setVisibility(View.GONE);
-        }
-
-        // Daily Steps
-        if (currentWeight.getDailySteps() != null) {
-            holder.textViewSteps.setText("Steps: " + currentWeight.getDailySteps());
-            holder.textViewSteps.setVisibility(View.VISIBLE);
-        } else {
-            holder.textViewSteps.setVisibility(View.GONE);
-        }
+        // Optional values: show if present, hide otherwise.
+        bindOptional(holder.textViewNotes, row.notesText);
+        bindOptional(holder.textViewSleep, row.sleepText);
+        bindOptional(holder.textViewSteps, row.stepsText);
+        bindOptional(holder.textViewCalories, row.caloriesText);
+        bindOptional(holder.textViewMood, row.moodText);
 
-        // Calorie Intake
-        if (currentWeight.getCalorieIntake() != null) {
-            holder.textViewCalories.setText("Calories: " + currentWeight.getCalorieIntake() + " kcal");
-            holder.textViewCalories.setVisibility(View.VISIBLE);
-        } else {
-            holder.textViewCalories.setVisibility(View.GONE);
-        }
+        // Not on the server yet: dim the row and say so.
+        holder.itemView.setAlpha(row.pending ? PENDING_ALPHA : 1f);
+        holder.textViewPending.setVisibility(row.pending ? View.VISIBLE : View.GONE);
+        bindSelection(holder, row);
+        BIND.recordSince(started);
+    }
 
-        // Mood (also check for "Select Mood" if that's a default spinner hint you want to hide)
-        if (currentWeight.getMood() != null && !currentWeight.getMood().isEmpty() && !currentWeight.getMood().equals("Select Mood")) {
-            holder.textViewMood.setText("Mood: " + currentWeight.getMood());
-            holder.textViewMood.setVisibility(View.VISIBLE);
+    /**
+     * Rebinds only the selection state when that's all that changed.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull WeightViewHolder holder, int position, @NonNull List<Object> payloads) {
+        // Payloads of several changes can arrive together; anything else means a full bind.
+        boolean selectionOnly = !payloads.isEmpty();
+        for (Object payload : payloads) selectionOnly &= payload == PAYLOAD_SELECTION;
+        if (selectionOnly) {
+            bindSelection(holder, getItem(position));
         } else {
-            holder.textViewMood.setVisibility(View.GONE);
+            onBindViewHolder(holder, position);
         }
+    }
 
-        // Set up the click listener for the delete button.
-        // When clicked, it calls the onDeleteClick method of the assigned deleteListener.
-        holder.buttonDelete.setOnClickListener(v -> {
-            // Ensure the listener is not null before invoking the callback.
-            if (deleteListener != null) {
-                // Pass the Firestore document ID associated with this item for deletion.
-                deleteListener.onDeleteClick(currentWeight.getDocumentId());
-            }
-        });
+    // In selection mode a checkbox replaces the delete button.
+    private void bindSelection(WeightViewHolder holder, WeightRowModel row) {
+        boolean selecting = isSelecting();
+        holder.checkBoxSelect.setVisibility(selecting ? View.VISIBLE : View.GONE);
+        holder.checkBoxSelect.setChecked(selectedIds.contains(row.documentId));
+        holder.buttonDelete.setVisibility(selecting ? View.GONE : View.VISIBLE);
     }
 
     /**
-     * Returns the total number of items in the data set held by the adapter.
-     *
-     * @return The total number of items currently in the `weightList`.
+     * Reads the row text styles once a row is attached, so later updates can precompute their text.
      */
     @Override
-    public int getItemCount() {
-        return weightList.size();
+    public void onViewAttachedToWindow(@NonNull WeightViewHolder holder) {
+        super.onViewAttachedToWindow(holder);
+        if (textStyles == null) {
+            textStyles = new WeightRowModel.TextStyles(
+                    TextViewCompat.getTextMetricsParams(holder.textViewDate),
+                    TextViewCompat.getTextMetricsParams(holder.textViewSleep));
+        }
+    }
+
+    private static void bindOptional(TextView view, CharSequence text) {
+        if (text != null) {
+            setRowText(view, text);
+            view.setVisibility(View.VISIBLE);
+        } else {
+            view.setVisibility(View.GONE); // Hide the TextView if there's nothing to show.
+        }
+    }
+
+    // Applies precomputed text when it matches the view's current style, otherwise sets it as normal text.
+    private static void setRowText(TextView view, CharSequence text) {
+        if (text instanceof PrecomputedTextCompat) {
+            try {
+                TextViewCompat.setPrecomputedText(view, (PrecomputedTextCompat) text);
+                return;
+            } catch (IllegalArgumentException e) {
+                // The view's style changed since the text was measured; fall through.
+            }
+        }
+        view.setText(text);
     }
 
     /**
@@ -155,12 +352,14 @@ public class WeightDataAdapter extends RecyclerView.Adapter<WeightDataAdapter.We
         public TextView textViewWeight;
         public TextView textViewNotes;
         public Button buttonDelete; // The button to initiate deletion of this item.
+        public CheckBox checkBoxSelect; // Shown instead of the delete button in selection mode.
 
         // TextViews for the new additional health data points.
         public TextView textViewSleep;
         public TextView textViewSteps;
         public TextView textViewCalories;
         public TextView textViewMood;
+        public TextView textViewPending; // "Waiting to sync", for rows the server doesn't have yet.
 
         /**
          * Constructor for the ViewHolder. The root View of a single list item
@@ -172,12 +371,14 @@ public class WeightDataAdapter extends RecyclerView.Adapter<WeightDataAdapter.We
             textViewWeight = itemView.findViewById(R.id.textViewItemWeight);
             textViewNotes = itemView.findViewById(R.id.textViewItemNotes);
             buttonDelete = itemView.findViewById(R.id.buttonItemDelete);
+            checkBoxSelect = itemView.findViewById(R.id.checkBoxItemSelect);
 
             // Initialize new TextViews for additional data points.
             textViewSleep = itemView.findViewById(R.id.textViewItemSleep);
             textViewSteps = itemView.findViewById(R.id.textViewItemSteps);
             textViewCalories = itemView.findViewById(R.id.textViewItemCalories);
             textViewMood = itemView.findViewById(R.id.textViewItemMood);
+            textViewPending = itemView.findViewById(R.id.textViewItemPending);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * WeightEntrySink is anything bulk-generated entries can be written to: Firestore through
+ * {@link WeightRepository#addEntries}, the local cache, or an {@link InMemoryWeightStore} for
+ * benchmarks. Used by {@link SyntheticDataGenerator}.
+ *
+ * Writes are asynchronous. The sink calls `done` exactly once per chunk, on any thread, and the
+ * generator doesn't send more than a few chunks ahead of those calls, so a slow sink slows the
+ * generator down instead of piling up entries in memory.
+ */
+public interface WeightEntrySink {
+
+    /**
+     * Called once a chunk has been written, with null on success or the error that stopped it.
+     */
+    interface Completion {
+        void onDone(@Nullable Exception error);
+    }
+
+    /**
+     * Writes one chunk of entries for the given user.
+     */
+    void write(@NonNull String userId, @NonNull List<WeightData> chunk, @NonNull Completion done);
+}
@@ -0,0 +1,389 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * WeightExporter writes all of a user's weight entries, oldest first, to a CSV or JSON file.
+ * Obtained through {@link WeightRepository#exportEntries}.
+ *
+ * The collection is read one page of {@link #PAGE_SIZE} entries at a time with a startAfter
+ * cursor on (epochDay, documentId), the same order the history screen uses, and every page is
+ * encoded straight into a fixed {@link ByteBuffer} that is drained into the target channel
+ * whenever it fills up. Only the current page and the buffer are ever in memory, however many
+ * years of entries there are.
+ *
+ * The column and property names are the Firestore field names, so an export can be read back by
+ * {@link WeightImporter}. Entries not migrated to `epochDay` yet ({@link DateMigrationJob}) are
+ * left out, since they can't be ordered.
+ */
+public class WeightExporter {
+
+    private static final String TAG = "WeightExporter";
+
+    // Entries read per round trip.
+    static final int PAGE_SIZE = 500;
+
+    // Encoded bytes held before they are written to the channel.
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String FIELD_EPOCH_DAY = "epochDay";
+
+    /**
+     * Output formats, with the MIME type and file extension to create the target with.
+     */
+    public enum Format {
+        CSV("text/csv", "csv"),
+        JSON("application/json", "json");
+
+        public final String mimeType;
+        public final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * Snapshot of an export's progress.
+     */
+    public static final class Progress {
+        public final long entriesWritten;
+        public final long bytesWritten;
+        // How far through the user's date range the export is, from 0 to 1.
+        public final float fraction;
+
+        Progress(long entriesWritten, long bytesWritten, float fraction) {
+            this.entriesWritten = entriesWritten;
+            this.bytesWritten = bytesWritten;
+            this.fraction = fraction;
+        }
+    }
+
+    /**
+     * Export callbacks, always delivered on the main thread. Nothing is delivered after the
+     * export was cancelled.
+     */
+    public interface Listener {
+        void onProgress(@NonNull Progress progress);
+
+        void onComplete(@NonNull Progress progress);
+
+        // Whatever was written so far stays in the target; the caller decides whether to delete it.
+        void onFailure(@NonNull Exception e, @NonNull Progress progress);
+    }
+
+    private final CollectionReference weightEntriesRef;
+
+    // Reads are filed under the screen that started the export.
+    private final FirestoreCostLedger ledger = FirestoreCostLedger.getInstance();
+    private final String screen = ledger.currentScreen();
+
+    WeightExporter(@NonNull CollectionReference weightEntriesRef) {
+        this.weightEntriesRef = weightEntriesRef;
+    }
+
+    /**
+     * A target that (over)writes the given file.
+     */
+    @NonNull
+    public static Callable<WritableByteChannel> fileTarget(@NonNull File file) {
+        return () -> new FileOutputStream(file).getChannel();
+    }
+
+    /**
+     * Starts exporting on the bulk thread.
+     *
+     * @param target Opens the channel to write to; called on the bulk thread. The channel is
+     *               closed when the export ends.
+     */
+    @NonNull
+    public WeightRepository.RequestHandle start(@NonNull Callable<WritableByteChannel> target,
+                                                @NonNull Format format, @NonNull Listener listener) {
+        Job job = new Job(target, format, listener);
+        AppExecutors.bulk().execute(job);
+        return () -> job.cancelled = true;
+    }
+
+    // One export run, entirely on the bulk thread; Firestore reads are awaited there.
+    private final class Job implements Runnable {
+        private final Callable<WritableByteChannel> target;
+        private final Format format;
+        private final Listener listener;
+        private final StringBuilder record = new StringBuilder(256); // Reused for every entry.
+
+        volatile boolean cancelled;
+
+        private long entriesWritten;
+        private long firstDay;
+        private long lastDay;
+        private long currentDay;
+        private ChannelTextWriter out;
+
+        Job(Callable<WritableByteChannel> target, Format format, Listener listener) {
+            this.target = target;
+            this.format = format;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            try (ChannelTextWriter writer = new ChannelTextWriter(target.call(), BUFFER_SIZE)) {
+                out = writer;
+                export();
+                if (cancelled) {
+                    Log.d(TAG, "Export cancelled after " + entriesWritten + " entries");
+                    return;
+                }
+                writer.finish();
+                Progress done = new Progress(entriesWritten, writer.bytesWritten(), 1f);
+                Log.d(TAG, "Exported " + done.entriesWritten + " entries, " + done.bytesWritten + " bytes");
+                deliver(() -> listener.onComplete(done));
+            } catch (Exception e) {
+                Exception cause = e instanceof ExecutionException && e.getCause() instanceof Exception
+                        ? (Exception) e.getCause() : e;
+                Log.w(TAG, "Export failed after " + entriesWritten + " entries", cause);
+                Progress partial = snapshot();
+                deliver(() -> listener.onFailure(cause, partial));
+            }
+        }
+
+        private void export() throws Exception {
+            // The first and last day only drive the progress fraction; two single-document reads.
+            DocumentSnapshot first = firstOf(ordered(Query.Direction.ASCENDING).limit(1));
+            DocumentSnapshot last = firstOf(ordered(Query.Direction.DESCENDING).limit(1));
+            firstDay = epochDayOf(first);
+            lastDay = epochDayOf(last);
+            currentDay = firstDay;
+
+            writeHeader();
+            DocumentSnapshot cursor = null;
+            while (!cancelled) {
+                Query page = ordered(Query.Direction.ASCENDING).limit(PAGE_SIZE);
+                if (cursor != null) page = page.startAfter(cursor);
+                QuerySnapshot result = Tasks.await(page.get());
+                ledger.recordRead(screen, "entries.export",
+                        FirestoreCostLedger.Source.firestore(result.getMetadata().isFromCache()), result.size());
+                List<DocumentSnapshot> docs = result.getDocuments();
+                for (DocumentSnapshot doc : docs) {
+                    WeightData data = doc.toObject(WeightData.class);
+                    if (data == null) continue;
+                    writeEntry(data);
+                    currentDay = data.getEpochDay();
+                }
+                if (docs.size() < PAGE_SIZE) break;
+                cursor = docs.get(docs.size() - 1);
+                Progress progress = snapshot();
+                deliver(() -> listener.onProgress(progress));
+            }
+            writeFooter();
+        }
+
+        // Export order: (epochDay, documentId), oldest first when ascending.
+        private Query ordered(Query.Direction direction) {
+            return weightEntriesRef
+                    .orderBy(FIELD_EPOCH_DAY, direction)
+                    .orderBy(FieldPath.documentId(), direction);
+        }
+
+        private DocumentSnapshot firstOf(Query query) throws ExecutionException, InterruptedException {
+            QuerySnapshot result = Tasks.await(query.get());
+            ledger.recordRead(screen, "entries.export.bounds",
+                    FirestoreCostLedger.Source.firestore(result.getMetadata().isFromCache()), result.size());
+            return result.isEmpty() ? null : result.getDocuments().get(0);
+        }
+
+        private long epochDayOf(DocumentSnapshot doc) {
+            Long day = doc != null ? doc.getLong(FIELD_EPOCH_DAY) : null;
+            return day != null ? day : 0;
+        }
+
+        private void writeHeader() throws IOException {
+            if (format == Format.CSV) {
+                out.write("date,weight,notes,hoursOfSleep,dailySteps,mood,calorieIntake\r\n");
+            } else {
+                out.write("{\"entries\":[");
+            }
+        }
+
+        private void writeFooter() throws IOException {
+            if (format == Format.JSON) out.write("\n]}\n");
+        }
+
+        private void writeEntry(WeightData data) throws IOException {
+            record.setLength(0);
+            if (format == Format.CSV) {
+                appendCsv(data.getDate()).append(',');
+                record.append(data.getWeight()).append(',');
+                appendCsv(data.getNotes()).append(',');
+                if (data.getHoursOfSleep() != null) record.append(data.getHoursOfSleep());
+                record.append(',');
+                if (data.getDailySteps() != null) record.append(data.getDailySteps());
+                record.append(',');
+                appendCsv(data.getMood()).append(',');
+                if (data.getCalorieIntake() != null) record.append(data.getCalorieIntake());
+                record.append("\r\n");
+            } else {
+                record.append(entriesWritten == 0 ? "\n" : ",\n");
+                record.append("{\"date\":");
+                appendJson(data.getDate());
+                record.append(",\"epochDay\":").append(data.getEpochDay());
+                record.append(",\"weight\":").append(data.getWeight());
+                if (data.getNotes() != null) {
+                    record.append(",\"notes\":");
+                    appendJson(data.getNotes());
+                }
+                if (data.getHoursOfSleep() != null) record.append(",\"hoursOfSleep\":").append(data.getHoursOfSleep());
+                if (data.getDailySteps() != null) record.append(",\"dailySteps\":").append(data.getDailySteps());
+                if (data.getMood() != null) {
+                    record.append(",\"mood\":");
+                    appendJson(data.getMood());
+                }
+                if (data.getCalorieIntake() != null) record.append(",\"calorieIntake\":").append(data.getCalorieIntake());
+                record.append('}');
+            }
+            out.write(record);
+            entriesWritten++;
+        }
+
+        // RFC 4180: quote fields containing a comma, quote or line break, doubling inner quotes.
+        private StringBuilder appendCsv(String value) {
+            if (value == null) return record;
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) return record.append(value);
+            record.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') record.append('"');
+                record.append(c);
+            }
+            return record.append('"');
+        }
+
+        private void appendJson(String value) {
+            if (value == null) {
+                record.append("null");
+                return;
+            }
+            record.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        record.append("\\\"");
+                        break;
+                    case '\\':
+                        record.append("\\\\");
+                        break;
+                    case '\n':
+                        record.append("\\n");
+                        break;
+                    case '\r':
+                        record.append("\\r");
+                        break;
+                    case '\t':
+                        record.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            record.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            record.append(c);
+                        }
+                        break;
+                }
+            }
+            record.append('"');
+        }
+
+        private Progress snapshot() {
+            float fraction = lastDay > firstDay ? (float) (currentDay - firstDay) / (lastDay - firstDay) : 0f;
+            return new Progress(entriesWritten, out != null ? out.bytesWritten() : 0, Math.max(0f, Math.min(1f, fraction)));
+        }
+
+        private void deliver(Runnable callback) {
+            AppExecutors.mainThread().execute(() -> {
+                if (!cancelled) callback.run();
+            });
+        }
+    }
+
+    // Encodes text as UTF-8 into a fixed buffer and writes it to the channel whenever it fills.
+    // Every write() must be whole characters (no surrogate pair split across calls).
+    private static final class ChannelTextWriter implements Closeable {
+        private final WritableByteChannel channel;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final ByteBuffer buffer;
+        private long bytesWritten;
+
+        ChannelTextWriter(WritableByteChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        void write(CharSequence text) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(text);
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, false);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isError()) {
+                    result.throwException();
+                } else {
+                    return;
+                }
+            }
+        }
+
+        // Flushes the encoder and everything still buffered. Call once, after the last write.
+        void finish() throws IOException {
+            while (encoder.encode(CharBuffer.allocate(0), buffer, true).isOverflow()) drain();
+            while (encoder.flush(buffer).isOverflow()) drain();
+            drain();
+        }
+
+        long bytesWritten() {
+            return bytesWritten + buffer.position();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                bytesWritten += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
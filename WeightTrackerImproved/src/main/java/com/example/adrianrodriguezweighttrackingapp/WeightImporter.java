@@ -0,0 +1,421 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+
+/**
+ * WeightImporter bulk-imports a CSV or JSON export from another tracker into the user's weight
+ * entries. Obtained through {@link WeightRepository#importEntries}.
+ *
+ * The file is streamed record by record ({@link ImportRecordReader}) and normalized
+ * ({@link ImportRowNormalizer}) on the bulk thread, and valid entries are written in batches of
+ * {@link #BATCH_SIZE}, below Firestore's 500-operation limit. At most {@link #MAX_IN_FLIGHT}
+ * batches are committing at once; the reader waits for one to finish before sending another.
+ * Memory therefore stays at a few batches however large the file is.
+ *
+ * Every record is written to its day's document ({@link DateKeys#entryId}), merged into whatever
+ * is there, so writing a record twice overwrites the same document, importing the same or an
+ * overlapping file again adds no duplicates, and a day that already has an entry takes the
+ * imported values. Of several records for one day, the last in the file wins. After each batch, the number of records from the
+ * start of the file that are known to be written (the checkpoint) is saved. An import that was
+ * interrupted, by a failure, a cancel or the app being killed, resumes from there the next time
+ * the same file is imported; batches past the checkpoint that did land are simply rewritten.
+ *
+ * Rollups for the imported years are rebuilt once at the end, like {@link WeightRepository#addEntries}.
+ * An import that is cancelled or fails rebuilds them too, for the days its landed batches cover
+ * ({@link ImportCheckpoint}), so entries it did write never sit beside stale rollups.
+ */
+public class WeightImporter {
+
+    private static final String TAG = "WeightImporter";
+
+    // Entries per WriteBatch, below Firestore's 500-operation limit.
+    static final int BATCH_SIZE = 400;
+
+    // Batches committing at the same time.
+    static final int MAX_IN_FLIGHT = 3;
+
+    // Rejected records beyond this many are counted but not logged.
+    private static final int MAX_LOGGED_REJECTS = 20;
+
+    // Per-user, per-file checkpoints: records written, and the days they span.
+    private static final String PREFS_NAME = "weight_import";
+    private static final String KEY_RECORDS_SUFFIX = "_records";
+    private static final String KEY_FIRST_DAY_SUFFIX = "_first_day";
+    private static final String KEY_LAST_DAY_SUFFIX = "_last_day";
+
+    /**
+     * Snapshot of an import's progress. Record counts cover this run only, except `recordsRead`,
+     * which counts from the start of the file (including records skipped on resume).
+     */
+    public static final class Progress {
+        public final long bytesRead;
+        public final long totalBytes;   // -1 if the file size is unknown.
+        public final long recordsRead;
+        public final long imported;
+        public final long rejected;
+        public final long resumedFrom;  // Records skipped because an earlier run wrote them.
+
+        Progress(long bytesRead, long totalBytes, long recordsRead, long imported, long rejected, long resumedFrom) {
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+            this.recordsRead = recordsRead;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.resumedFrom = resumedFrom;
+        }
+
+        // Fraction of the file read, from 0 to 1, or -1 if the size is unknown.
+        public float fraction() {
+            return totalBytes > 0 ? Math.min(1f, (float) bytesRead / totalBytes) : -1f;
+        }
+    }
+
+    /**
+     * Import callbacks, always delivered on the main thread. Nothing is delivered after the
+     * import was cancelled.
+     */
+    public interface Listener {
+        void onProgress(@NonNull Progress progress);
+
+        void onComplete(@NonNull Progress progress);
+
+        // The checkpoint is kept, so importing the same file again resumes.
+        void onFailure(@NonNull Exception e, @NonNull Progress progress);
+    }
+
+    private final String userId;
+    private final FirebaseFirestore db;
+    private final CollectionReference weightEntriesRef;
+    private final CollectionReference rollupsRef;
+    private final WeightCacheHelper cache;
+    private final ChartPeriodCache chartCache;
+    private final SeriesSnapshot snapshot;
+    private final SharedPreferences prefs;
+
+    // Writes are filed under the screen that started the import.
+    private final FirestoreCostLedger ledger = FirestoreCostLedger.getInstance();
+    private final String screen = ledger.currentScreen();
+
+    WeightImporter(@NonNull Context context, @NonNull String userId, @NonNull FirebaseFirestore db,
+                   @NonNull CollectionReference weightEntriesRef, @NonNull CollectionReference rollupsRef,
+                   @NonNull WeightCacheHelper cache, @NonNull ChartPeriodCache chartCache,
+                   @NonNull SeriesSnapshot snapshot) {
+        this.userId = userId;
+        this.db = db;
+        this.weightEntriesRef = weightEntriesRef;
+        this.rollupsRef = rollupsRef;
+        this.cache = cache;
+        this.chartCache = chartCache;
+        this.snapshot = snapshot;
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Starts importing on the bulk thread.
+     *
+     * @param source     Opens the file; called on the bulk thread.
+     * @param totalBytes The file size for progress reporting, or -1 if unknown.
+     * @param sourceId   Identifies the file across runs (e.g. its URI and size), so an interrupted
+     *                   import of the same file resumes and a re-import doesn't duplicate entries.
+     */
+    @NonNull
+    public WeightRepository.RequestHandle start(@NonNull Callable<InputStream> source, long totalBytes,
+                                                @NonNull String sourceId, @NonNull Listener listener) {
+        Job job = new Job(source, totalBytes, sourceKey(sourceId), listener);
+        AppExecutors.bulk().execute(job);
+        return () -> job.cancelled = true;
+    }
+
+    // One import run. The reading loop runs on the bulk thread; batch results arrive on the main
+    // thread, so the shared counters are guarded by the job's lock.
+    private final class Job implements Runnable {
+        private final Callable<InputStream> source;
+        private final long totalBytes;
+        private final String key;
+        private final Listener listener;
+        private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        private final ImportRowNormalizer normalizer = new ImportRowNormalizer();
+
+        volatile boolean cancelled;
+
+        // Guarded by this.
+        private ImportCheckpoint checkpoint;
+        private long imported;
+        private long rejected;
+        private long recordsRead;
+        private long bytesRead;
+        private long resumedFrom;
+        private Exception failure;
+
+        Job(Callable<InputStream> source, long totalBytes, String key, Listener listener) {
+            this.source = source;
+            this.totalBytes = totalBytes;
+            this.key = key;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                checkpoint = new ImportCheckpoint(
+                        prefs.getLong(key + KEY_RECORDS_SUFFIX, 0),
+                        prefs.getLong(key + KEY_FIRST_DAY_SUFFIX, Long.MAX_VALUE),
+                        prefs.getLong(key + KEY_LAST_DAY_SUFFIX, Long.MIN_VALUE));
+                resumedFrom = checkpoint.records();
+            }
+            if (resumedFrom > 0) Log.d(TAG, "Resuming import after record " + resumedFrom);
+
+            try (CountingInputStream in = new CountingInputStream(source.call());
+                 ImportRecordReader reader = ImportRecordReader.open(in)) {
+                List<WeightData> batch = new ArrayList<>(BATCH_SIZE);
+                long batchStart = resumedFrom;
+                long index = 0;
+                ImportRecordReader.Record record;
+                while (!cancelled && !failed() && (record = reader.next()) != null) {
+                    long recordIndex = index++;
+                    synchronized (this) {
+                        recordsRead = index;
+                        bytesRead = in.count;
+                    }
+                    if (recordIndex < resumedFrom) continue; // Written by an earlier run.
+
+                    WeightData data = normalizer.normalize(record);
+                    if (data == null) {
+                        long count;
+                        synchronized (this) {
+                            count = ++rejected;
+                        }
+                        if (count <= MAX_LOGGED_REJECTS) Log.w(TAG, "Skipped " + normalizer.getRejectReason());
+                        continue;
+                    }
+                    data.setDocumentId(DateKeys.entryId(data.getEpochDay()));
+                    batch.add(data);
+                    if (batch.size() == BATCH_SIZE) {
+                        commit(batch, batchStart, index);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                        batchStart = index;
+                    }
+                }
+                if (!cancelled && !failed()) {
+                    commit(batch, batchStart, index); // The rest, possibly only rejected records.
+                }
+            } catch (Exception e) {
+                fail(e);
+            }
+
+            // Wait for every batch still committing before reporting anything.
+            inFlight.acquireUninterruptibly(MAX_IN_FLIGHT);
+            inFlight.release(MAX_IN_FLIGHT);
+            AppExecutors.mainThread().execute(this::finish);
+        }
+
+        // Sends one batch, waiting first if MAX_IN_FLIGHT batches are already committing.
+        // The batch covers records [start, end), valid or not.
+        private void commit(List<WeightData> batch, long start, long end) {
+            if (batch.isEmpty()) {
+                onBatchWritten(batch, start, end, Long.MAX_VALUE, Long.MIN_VALUE);
+                return;
+            }
+            inFlight.acquireUninterruptibly();
+            WriteBatch writeBatch = db.batch();
+            long minDay = Long.MAX_VALUE;
+            long maxDay = Long.MIN_VALUE;
+            for (WeightData data : batch) {
+                writeBatch.set(weightEntriesRef.document(data.getDocumentId()), data, SetOptions.merge());
+                minDay = Math.min(minDay, data.getEpochDay());
+                maxDay = Math.max(maxDay, data.getEpochDay());
+            }
+            final long batchFirstDay = minDay;
+            final long batchLastDay = maxDay;
+            writeBatch.commit().addOnCompleteListener(task -> {
+                if (task.isSuccessful()) {
+                    ledger.recordWrite(screen, "entries.import", batch.size());
+                    AppExecutors.diskIO().execute(() -> cache.upsert(userId, batch));
+                    snapshot.markDirty(batchFirstDay, batchLastDay);
+                    chartCache.invalidate(batchFirstDay, batchLastDay);
+                    onBatchWritten(batch, start, end, batchFirstDay, batchLastDay);
+                } else {
+                    fail(task.getException() != null ? task.getException() : new IOException("Batch write failed"));
+                }
+                inFlight.release();
+            });
+        }
+
+        // Counts a written batch, moves the checkpoint past every batch that is now contiguous with
+        // it, saves it, and reports progress.
+        private void onBatchWritten(List<WeightData> batch, long start, long end, long batchFirstDay, long batchLastDay) {
+            Progress progress;
+            synchronized (this) {
+                imported += batch.size();
+                checkpoint.batchWritten(start, end, batchFirstDay, batchLastDay);
+                prefs.edit()
+                        .putLong(key + KEY_RECORDS_SUFFIX, checkpoint.records())
+                        .putLong(key + KEY_FIRST_DAY_SUFFIX, checkpoint.firstDay())
+                        .putLong(key + KEY_LAST_DAY_SUFFIX, checkpoint.lastDay())
+                        .apply();
+                progress = snapshot();
+            }
+            AppExecutors.mainThread().execute(() -> {
+                if (!cancelled) listener.onProgress(progress);
+            });
+        }
+
+        // On the main thread, once nothing is committing anymore.
+        private void finish() {
+            Progress progress;
+            Exception error;
+            boolean written;
+            long from;
+            long to;
+            synchronized (this) {
+                progress = snapshot();
+                error = failure;
+                written = checkpoint.hasWrittenDays();
+                from = checkpoint.firstDay();
+                to = checkpoint.lastDay();
+            }
+            if (cancelled || error != null) {
+                if (cancelled) {
+                    Log.d(TAG, "Import cancelled; it will resume from record " + checkpointNow());
+                } else {
+                    Log.w(TAG, "Import failed; it will resume from record " + checkpointNow(), error);
+                }
+                finishInterrupted(written, from, to, error, progress);
+                return;
+            }
+            Log.d(TAG, "Imported " + progress.imported + " entries, rejected " + progress.rejected);
+            if (!written) {
+                clearCheckpoint();
+                listener.onComplete(progress); // Nothing was written.
+                return;
+            }
+            // Every record is written; bring the rollups of the touched years up to date.
+            new RollupRebuilder(db, weightEntriesRef, rollupsRef).rebuildYears(from, to, new WeightRepository.WriteCallback() {
+                @Override
+                public void onSuccess() {
+                    chartCache.clear();
+                    clearCheckpoint();
+                    if (!cancelled) listener.onComplete(progress);
+                }
+
+                @Override
+                public void onFailure(@NonNull Exception e) {
+                    // The checkpoint stays at the end of the file, so a retry only rebuilds the rollups.
+                    if (!cancelled) listener.onFailure(e, progress);
+                }
+            });
+        }
+
+        // The batches that landed already changed entries in [from, to], so their rollups are rebuilt
+        // before the failure is reported. The checkpoint stays, so importing the file again resumes.
+        private void finishInterrupted(boolean written, long from, long to, Exception error, Progress progress) {
+            if (!written) {
+                if (!cancelled) listener.onFailure(error, progress);
+                return;
+            }
+            new RollupRebuilder(db, weightEntriesRef, rollupsRef).rebuildYears(from, to, new WeightRepository.WriteCallback() {
+                @Override
+                public void onSuccess() {
+                    chartCache.clear();
+                    if (!cancelled) listener.onFailure(error, progress);
+                }
+
+                @Override
+                public void onFailure(@NonNull Exception e) {
+                    Log.w(TAG, "Rollup rebuild after an interrupted import failed", e);
+                    if (!cancelled) listener.onFailure(error, progress);
+                }
+            });
+        }
+
+        private synchronized boolean failed() {
+            return failure != null;
+        }
+
+        private synchronized void fail(Exception e) {
+            if (failure == null) failure = e;
+        }
+
+        private synchronized long checkpointNow() {
+            return checkpoint.records();
+        }
+
+        private void clearCheckpoint() {
+            prefs.edit()
+                    .remove(key + KEY_RECORDS_SUFFIX)
+                    .remove(key + KEY_FIRST_DAY_SUFFIX)
+                    .remove(key + KEY_LAST_DAY_SUFFIX)
+                    .apply();
+        }
+
+        // Called with the lock held.
+        private Progress snapshot() {
+            return new Progress(bytesRead, totalBytes, recordsRead, imported, rejected, resumedFrom);
+        }
+    }
+
+    // Short, stable key for a file, under which its checkpoint is saved.
+    private String sourceKey(String sourceId) {
+        String id = userId + "|" + sourceId;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(id.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder("import-");
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return "import-" + Integer.toHexString(id.hashCode());
+        }
+    }
+
+    // Counts the bytes read through it, for progress reporting.
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
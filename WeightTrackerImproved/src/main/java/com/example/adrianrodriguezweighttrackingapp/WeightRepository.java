@@ -0,0 +1,993 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+/**
+ * WeightRepository is the single entry point the activities use to read and write a user's
+ * weight entries. Reads are served from the on-device {@link WeightCacheHelper} first, so a screen
+ * can draw the last known data right away, and are then refreshed from Firestore in the background.
+ * Every server result and every successful write is copied back into the local cache.
+ *
+ * The repository owns the "users/{uid}/weightEntries" path; no activity builds it anymore.
+ * All queries and orderings use the integer `epochDay` field rather than the date string.
+ * Entries are keyed by day ({@link DateKeys#entryId}): saving a day again overwrites its entry,
+ * and {@link #loadEntryForDay} reads a day's entry by ID instead of querying for it.
+ *
+ * Single adds are written behind: they go to a durable on-device outbox and return right away,
+ * and {@link OutboxFlusher} sends them in batches. Deletes go through the outbox too, as
+ * tombstones that can be undone for {@link #UNDO_WINDOW_MS} and are then purged in the same
+ * batches. Those batches run as transactions that also update the user's week/month/year
+ * {@link WeightRollup} documents in "users/{uid}/rollups", so the rollups never drift from the
+ * raw entries they summarize.
+ *
+ * It also owns the user's {@link ChartPeriodCache}, and drops the cached chart periods a write
+ * touches, so charts never show values from before an add or delete.
+ */
+public class WeightRepository {
+
+    private static final String TAG = "WeightRepository";
+
+    // Firestore path segments for a user's weight entries.
+    private static final String USERS_COLLECTION = "users";
+    private static final String ENTRIES_COLLECTION = "weightEntries";
+    private static final String ROLLUPS_COLLECTION = "rollups";
+
+    // Remembers, per user, that the rollups have been built from the raw entries at least once.
+    private static final String PREFS_NAME = "weight_repository";
+    private static final String KEY_ROLLUPS_BUILT_PREFIX = "rollups_built_";
+
+    /**
+     * How long a delete can be undone before its tombstone may be purged from the server.
+     */
+    public static final int UNDO_WINDOW_MS = 5_000;
+
+    // Tombstones are held back this much longer, so an undo tapped at the last moment still wins.
+    private static final long TOMBSTONE_GRACE_MS = 2_000;
+
+    // Field every range query and ordering runs on.
+    private static final String FIELD_EPOCH_DAY = "epochDay";
+
+    // Server round trips (request to result), document mapping and series building.
+    private static final MetricsRegistry.Histogram PAGE_QUERY = MetricsRegistry.histogram("firestore.entries.page");
+    private static final MetricsRegistry.Histogram RANGE_QUERY = MetricsRegistry.histogram("firestore.entries.range");
+    private static final MetricsRegistry.Histogram ROLLUP_QUERY = MetricsRegistry.histogram("firestore.rollups.month");
+    private static final MetricsRegistry.Histogram DAY_QUERY = MetricsRegistry.histogram("firestore.entries.day");
+    private static final MetricsRegistry.Histogram TO_OBJECT = MetricsRegistry.histogram("map.toObject");
+    private static final MetricsRegistry.Counter DOCUMENTS_MAPPED = MetricsRegistry.counter("map.toObject.documents");
+    private static final MetricsRegistry.Histogram TO_SERIES = MetricsRegistry.histogram("map.series");
+
+    // One repository for the signed-in user; replaced when a different user signs in.
+    private static WeightRepository instance;
+
+    // Set once the activity lifecycle callbacks that tell the cost ledger which screen is in front are registered.
+    private static boolean screensTracked;
+
+    private final Context appContext;
+    private final String userId;
+    private final WeightCacheHelper cache;
+    private final CollectionReference weightEntriesRef;
+    private final CollectionReference rollupsRef;
+    private final FirebaseFirestore db;
+    private final ChartPeriodCache chartCache = new ChartPeriodCache();
+    private final SeriesSnapshot snapshot;
+    private final FirestoreCostLedger ledger = FirestoreCostLedger.getInstance();
+    private final PendingWrites pendingWrites = new PendingWrites();
+    private final OutboxFlusher outbox;
+
+    /**
+     * Callback for reads. It can fire more than once per request: first with the cached
+     * rows (fromCache = true) and then again with the server result.
+     */
+    public interface DataCallback {
+        void onDataLoaded(@NonNull List<WeightData> data, boolean fromCache);
+
+        // Only called when nothing at all could be shown for the request.
+        void onError(@NonNull Exception e);
+    }
+
+    /**
+     * Callback for writes (add/delete), always delivered on the main thread.
+     */
+    public interface WriteCallback {
+        void onSuccess();
+
+        void onFailure(@NonNull Exception e);
+    }
+
+    /**
+     * Callback for single-day reads. Like {@link DataCallback}, it can fire first with the cached
+     * entry and then with the server's.
+     */
+    public interface EntryCallback {
+        // entry is null if the day has no entry.
+        void onEntryLoaded(@Nullable WeightData entry, boolean fromCache);
+
+        // Only called when nothing at all could be shown for the request.
+        void onError(@NonNull Exception e);
+    }
+
+    /**
+     * Callback for paged history reads. Like {@link DataCallback}, it can fire first with the cached
+     * page and then with the server page.
+     */
+    public interface PageCallback {
+        /**
+         * @param page     The page's entries, newest first.
+         * @param fullPage True if the page was filled to its limit, so older entries may exist.
+         * @param fromCache True if this page came from the on-device cache.
+         */
+        void onPageLoaded(@NonNull List<WeightData> page, boolean fullPage, boolean fromCache);
+
+        // Only called when nothing at all could be shown for the request.
+        void onError(@NonNull Exception e);
+    }
+
+    /**
+     * Callback for chart and statistics reads. Like {@link DataCallback}, it can fire first with a
+     * series built from the cached rows and then with one built from the server result.
+     */
+    public interface SeriesCallback {
+        void onSeriesLoaded(@NonNull WeightSeries series, boolean fromCache);
+
+        // Only called when nothing at all could be shown for the request.
+        void onError(@NonNull Exception e);
+    }
+
+    /**
+     * Callback for rollup reads. Like {@link DataCallback}, it may fire first with rollups computed
+     * from the cached entries and then with the stored rollups from the server.
+     */
+    public interface RollupCallback {
+        void onRollupsLoaded(@NonNull List<WeightRollup> rollups, boolean fromCache);
+
+        void onError(@NonNull Exception e);
+    }
+
+    /**
+     * Handle for a one-shot read. Cancelling it (on the main thread) guarantees no further
+     * callbacks for that read; results that still arrive are written to the local cache only.
+     */
+    public interface RequestHandle {
+        void cancel();
+    }
+
+    /**
+     * Returns the repository for the given user, creating a new one if the user changed.
+     */
+    public static synchronized WeightRepository getInstance(@NonNull Context context, @NonNull String userId) {
+        if (instance == null || !instance.userId.equals(userId)) {
+            instance = new WeightRepository(context, userId);
+        }
+        return instance;
+    }
+
+    private WeightRepository(Context context, String userId) {
+        this.appContext = context.getApplicationContext();
+        this.userId = userId;
+        this.cache = WeightCacheHelper.getInstance(context);
+        this.snapshot = new SeriesSnapshot(context, userId, cache);
+        this.db = FirebaseFirestore.getInstance();
+        this.weightEntriesRef = db.collection(USERS_COLLECTION)
+                .document(userId)
+                .collection(ENTRIES_COLLECTION);
+        this.rollupsRef = db.collection(USERS_COLLECTION)
+                .document(userId)
+                .collection(ROLLUPS_COLLECTION);
+        this.outbox = new OutboxFlusher(userId, db, weightEntriesRef, rollupsRef, cache, this::onBatchSent);
+        startCostSession(context);
+        // Show and send whatever an earlier process left queued or deleted.
+        AppExecutors.diskIO().execute(() -> {
+            List<WeightData> queued = new ArrayList<>();
+            List<String> deleting = new ArrayList<>();
+            for (WeightCacheHelper.QueuedWrite write : cache.queuedWrites(userId, Integer.MAX_VALUE, Long.MAX_VALUE)) {
+                if (write.delete) {
+                    deleting.add(write.entry.getDocumentId());
+                } else {
+                    queued.add(write.entry);
+                }
+            }
+            AppExecutors.mainThread().execute(() -> {
+                pendingWrites.queued(queued);
+                pendingWrites.deleteStarted(deleting);
+                outbox.requestFlush(0);
+            });
+        });
+    }
+
+    // Called by the flusher once a batch is on the server and out of the outbox. Purged entries'
+    // cached rows went with it. The chart periods of every day in the batch are dropped, since
+    // their server rollups changed only now.
+    private void onBatchSent(List<WeightData> saved, List<WeightData> deleted) {
+        long firstDay = Long.MAX_VALUE;
+        long lastDay = Long.MIN_VALUE;
+        for (List<WeightData> entries : Arrays.asList(saved, deleted)) {
+            for (WeightData data : entries) {
+                firstDay = Math.min(firstDay, data.getEpochDay());
+                lastDay = Math.max(lastDay, data.getEpochDay());
+            }
+        }
+        if (firstDay <= lastDay) {
+            snapshot.markDirty(firstDay, lastDay);
+            chartCache.invalidate(firstDay, lastDay);
+        }
+        pendingWrites.sent(documentIds(saved));
+        pendingWrites.purged(documentIds(deleted));
+    }
+
+    private static List<String> documentIds(List<WeightData> entries) {
+        List<String> ids = new ArrayList<>(entries.size());
+        for (WeightData data : entries) ids.add(data.getDocumentId());
+        return ids;
+    }
+
+    // Starts a cost-accounting session for this user, with the read budgets from resources.
+    // Budget warnings are only raised in debuggable builds.
+    private void startCostSession(Context context) {
+        ledger.startSession(userId);
+        for (String budget : appContext.getResources().getStringArray(R.array.firestore_read_budgets)) {
+            int split = budget.indexOf('=');
+            ledger.setReadBudget(budget.substring(0, split).trim(), Long.parseLong(budget.substring(split + 1).trim()));
+        }
+        if ((appContext.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            ledger.setBudgetListener((screen, billedReads, budget) -> {
+                String message = screen + " has made " + billedReads + " billed Firestore reads this session (budget " + budget + ")";
+                Log.w(TAG, message);
+                AppExecutors.mainThread().execute(() -> Toast.makeText(appContext, message, Toast.LENGTH_LONG).show());
+            });
+        }
+        // The repository is created from an activity's onCreate, after that activity's own callback already fired.
+        if (context instanceof Activity) ledger.enterScreen(context.getClass().getSimpleName());
+        if (!screensTracked) {
+            ((Application) appContext).registerActivityLifecycleCallbacks(new ScreenTracker());
+            screensTracked = true;
+        }
+    }
+
+    @NonNull
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Writes of this user the server hasn't confirmed yet; see {@link PendingWrites}.
+     */
+    @NonNull
+    public PendingWrites getPendingWrites() {
+        return pendingWrites;
+    }
+
+    /**
+     * Computed chart periods of this user; see {@link ChartPeriodCache}.
+     */
+    @NonNull
+    public ChartPeriodCache getChartCache() {
+        return chartCache;
+    }
+
+    /**
+     * The last known entries from the on-disk snapshot (see {@link SeriesSnapshot}), or null if
+     * there is none yet. Read synchronously, so a screen can draw them in its first frame.
+     */
+    @Nullable
+    public SnapshotCodec.Contents readSnapshot() {
+        return snapshot.read();
+    }
+
+    /**
+     * Puts provisional values for `period` into the chart cache from the on-disk snapshot, unless
+     * the period is already cached, so the chart has something to draw before any query returns.
+     */
+    public void seedChartFromSnapshot(@NonNull ChartPeriod period) {
+        if (chartCache.get(period) != null) return;
+        SnapshotCodec.Contents contents = snapshot.read();
+        if (contents == null || contents.series.isEmpty()) return;
+        if (period.type == ChartPeriod.FilterType.ALL) {
+            chartCache.putSeries(period, contents.series, false);
+        } else {
+            chartCache.put(period, period.aggregate(contents.series), false);
+        }
+    }
+
+    /**
+     * Starts (or resumes) the background job that adds `epochDay` to entries saved before
+     * that field existed, and moves entries saved under random IDs to their day's document.
+     * Safe to call on every screen start; it only runs once per user.
+     */
+    public void migrateLegacyDates() {
+        // Rollups can only be built once every entry has an epoch day, so chain that on afterwards.
+        new DateMigrationJob(appContext, db, weightEntriesRef, rollupsRef, cache, chartCache, snapshot, userId)
+                .start(this::ensureRollupsBuilt);
+    }
+
+    /**
+     * Recomputes every rollup document from the raw entries.
+     */
+    public void rebuildRollups(@NonNull WriteCallback callback) {
+        new RollupRebuilder(db, weightEntriesRef, rollupsRef).rebuildAll(new WriteCallback() {
+            @Override
+            public void onSuccess() {
+                // Migrated dates and rebuilt rollups can change any period.
+                chartCache.clear();
+                callback.onSuccess();
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e) {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    // Builds the rollups once per user, for entries that were saved before rollups existed.
+    private void ensureRollupsBuilt() {
+        SharedPreferences prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getBoolean(KEY_ROLLUPS_BUILT_PREFIX + userId, false)) return;
+        rebuildRollups(new WriteCallback() {
+            @Override
+            public void onSuccess() {
+                prefs.edit().putBoolean(KEY_ROLLUPS_BUILT_PREFIX + userId, true).apply();
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception e) {
+                Log.w(TAG, "Initial rollup build failed, will retry on next start.", e);
+            }
+        });
+    }
+
+    /**
+     * Streams the newest page of entries (newest first). The cached page is delivered as soon as it
+     * is read from disk, then a Firestore snapshot listener keeps that one page live. Older history
+     * is fetched on demand with {@link #loadOlderPage}, so the live listener never covers more than
+     * `pageSize` documents.
+     *
+     * @return A registration the caller must remove (e.g. in onStop) to stop listening.
+     */
+    @NonNull
+    public ListenerRegistration listenNewestPage(int pageSize, @NonNull PageCallback callback) {
+        final RequestState state = new RequestState();
+
+        // 1. Serve the last known newest page from disk.
+        String screen = ledger.currentScreen();
+        AppExecutors.diskIO().execute(() -> {
+            List<WeightData> cached = cache.queryPage(userId, null, pageSize);
+            ledger.recordRead(screen, "entries.page.newest", FirestoreCostLedger.Source.LOCAL_CACHE, cached.size());
+            AppExecutors.mainThread().execute(() -> deliverCachedPage(state, cached, pageSize, callback));
+        });
+
+        // 2. Keep that page fresh from Firestore and write every snapshot through to the cache.
+        long started = MetricsRegistry.now();
+        ListenerRegistration registration = pageQuery(pageSize)
+                .addSnapshotListener((snapshots, e) -> {
+                    if (state.cancelled) return;
+                    if (e != null) {
+                        deliverPageError(state, e, callback);
+                        return;
+                    }
+                    // Only the first snapshot is a round trip; later ones are pushed changes.
+                    if (!state.serverDelivered) PAGE_QUERY.recordSince(started);
+                    recordListenerSnapshot(screen, "entries.page.newest", snapshots, !state.serverSnapshotSeen);
+                    if (snapshots != null && !snapshots.getMetadata().isFromCache()) state.serverSnapshotSeen = true;
+                    List<WeightData> fresh = toWeightDataList(snapshots);
+                    boolean fullPage = fresh.size() == pageSize;
+                    PagedWeightList.EntryKey lower = fullPage ? PagedWeightList.keyOf(fresh.get(fresh.size() - 1)) : null;
+                    AppExecutors.diskIO().execute(() -> cache.replaceWindow(userId, null, lower, fresh));
+                    snapshot.markDirty(lower != null ? lower.epochDay : Long.MIN_VALUE, Long.MAX_VALUE);
+                    state.serverDelivered = true;
+                    callback.onPageLoaded(fresh, fullPage, false);
+                });
+
+        return () -> {
+            state.cancelled = true;
+            registration.remove();
+        };
+    }
+
+    /**
+     * Loads one page of entries strictly older than the given cursor (newest first), using a
+     * startAfter/limit query so only `pageSize` documents are read. Cached rows are delivered first.
+     */
+    public void loadOlderPage(@NonNull PagedWeightList.EntryKey after, int pageSize, @NonNull PageCallback callback) {
+        final RequestState state = new RequestState();
+
+        String screen = ledger.currentScreen();
+        AppExecutors.diskIO().execute(() -> {
+            List<WeightData> cached = cache.queryPage(userId, after, pageSize);
+            ledger.recordRead(screen, "entries.page.older", FirestoreCostLedger.Source.LOCAL_CACHE, cached.size());
+            AppExecutors.mainThread().execute(() -> deliverCachedPage(state, cached, pageSize, callback));
+        });
+
+        long started = MetricsRegistry.now();
+        pageQuery(pageSize)
+                .startAfter(after.epochDay, after.documentId)
+                .get()
+                .addOnCompleteListener(task -> {
+                    PAGE_QUERY.recordSince(started);
+                    if (!task.isSuccessful() || task.getResult() == null) {
+                        Exception e = task.getException() != null ? task.getException()
+                                : new IllegalStateException("Empty result for page query");
+                        deliverPageError(state, e, callback);
+                        return;
+                    }
+                    recordQuery(screen, "entries.page.older", task.getResult());
+                    List<WeightData> fresh = toWeightDataList(task.getResult());
+                    boolean fullPage = fresh.size() == pageSize;
+                    PagedWeightList.EntryKey lower = fullPage ? PagedWeightList.keyOf(fresh.get(fresh.size() - 1)) : null;
+                    AppExecutors.diskIO().execute(() -> cache.replaceWindow(userId, after, lower, fresh));
+                    snapshot.markDirty(lower != null ? lower.epochDay : Long.MIN_VALUE, after.epochDay);
+                    state.serverDelivered = true;
+                    callback.onPageLoaded(fresh, fullPage, false);
+                });
+    }
+
+    // History order shared by the live page, older pages and the cache: (epochDay, documentId), newest first.
+    private Query pageQuery(int pageSize) {
+        return weightEntriesRef
+                .orderBy(FIELD_EPOCH_DAY, Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING)
+                .limit(pageSize);
+    }
+
+    /**
+     * Loads the entries whose epoch day falls inside [startDay, endDay], oldest first.
+     * Cached rows are delivered first, then the server result replaces them. Entries still
+     * waiting in the outbox are part of both, since the server result can't have them yet.
+     *
+     * @return A handle to drop the request's callbacks once the caller no longer needs them.
+     */
+    @NonNull
+    public RequestHandle loadRange(long startDay, long endDay, @NonNull DataCallback callback) {
+        final RequestState state = new RequestState();
+
+        String screen = ledger.currentScreen();
+        AppExecutors.diskIO().execute(() -> {
+            List<WeightData> cached = cache.queryRange(userId, startDay, endDay);
+            ledger.recordRead(screen, "entries.range", FirestoreCostLedger.Source.LOCAL_CACHE, cached.size());
+            AppExecutors.mainThread().execute(() -> deliverCached(state, cached, callback));
+        });
+
+        long started = MetricsRegistry.now();
+        weightEntriesRef.whereGreaterThanOrEqualTo(FIELD_EPOCH_DAY, startDay)
+                .whereLessThanOrEqualTo(FIELD_EPOCH_DAY, endDay)
+                .orderBy(FIELD_EPOCH_DAY, Query.Direction.ASCENDING)
+                .get()
+                .addOnCompleteListener(task -> {
+                    RANGE_QUERY.recordSince(started);
+                    if (!task.isSuccessful() || task.getResult() == null) {
+                        if (state.cancelled) return;
+                        Exception e = task.getException() != null ? task.getException()
+                                : new IllegalStateException("Empty result for range query");
+                        deliverError(state, e, callback);
+                        return;
+                    }
+                    recordQuery(screen, "entries.range", task.getResult());
+                    List<WeightData> fresh = toWeightDataList(task.getResult());
+                    // Keep the result even if the caller moved on; it was already paid for.
+                    AppExecutors.diskIO().execute(() -> {
+                        cache.replaceRange(userId, startDay, endDay, fresh);
+                        // Read back, so queued rows (which replaceRange keeps) are delivered too.
+                        List<WeightData> merged = cache.queryRange(userId, startDay, endDay);
+                        AppExecutors.mainThread().execute(() -> {
+                            if (state.cancelled) return;
+                            state.serverDelivered = true;
+                            callback.onDataLoaded(merged, false);
+                        });
+                    });
+                    snapshot.markDirty(startDay, endDay);
+                });
+
+        return () -> state.cancelled = true;
+    }
+
+    /**
+     * Same as {@link #loadRange}, but hands back a columnar {@link WeightSeries} built on the
+     * computation thread, ready for aggregation. Results arrive in the same order as loadRange's.
+     */
+    @NonNull
+    public RequestHandle loadSeries(long startDay, long endDay, @NonNull SeriesCallback callback) {
+        final RequestState state = new RequestState();
+        RequestHandle rangeRequest = loadRange(startDay, endDay, new DataCallback() {
+            @Override
+            public void onDataLoaded(@NonNull List<WeightData> data, boolean fromCache) {
+                AppExecutors.computation().execute(() -> {
+                    long started = MetricsRegistry.now();
+                    WeightSeries series = WeightSeries.from(data);
+                    TO_SERIES.recordSince(started);
+                    AppExecutors.mainThread().execute(() -> {
+                        if (!state.cancelled) callback.onSeriesLoaded(series, fromCache);
+                    });
+                });
+            }
+
+            @Override
+            public void onError(@NonNull Exception e) {
+                callback.onError(e);
+            }
+        });
+
+        return () -> {
+            state.cancelled = true;
+            rangeRequest.cancel();
+        };
+    }
+
+    /**
+     * Reads [startDay, endDay] from the on-device cache only (no Firestore reads) and fills the
+     * chart cache with provisional WEEK and MONTH periods inside it. Used after a YEAR load, so
+     * the weeks and months of that year open instantly.
+     */
+    public void seedChartCache(long startDay, long endDay) {
+        String screen = ledger.currentScreen();
+        AppExecutors.diskIO().execute(() -> {
+            List<WeightData> cached = cache.queryRange(userId, startDay, endDay);
+            ledger.recordRead(screen, "entries.range.seed", FirestoreCostLedger.Source.LOCAL_CACHE, cached.size());
+            if (cached.isEmpty()) return;
+            AppExecutors.computation().execute(() -> chartCache.seedFrom(WeightSeries.from(cached), startDay, endDay));
+        });
+    }
+
+    /**
+     * Loads the 12 monthly rollups of a year (only months with entries are returned), oldest first.
+     * Rollups computed from the cached raw entries are delivered first; the server answer costs
+     * at most 12 document reads instead of a full year of entries. Saves still waiting in the
+     * outbox are laid over the server rollups, since those don't have them yet.
+     */
+    @NonNull
+    public RequestHandle loadMonthlyRollups(int year, @NonNull RollupCallback callback) {
+        final RequestState state = new RequestState();
+        long startDay = LocalDate.of(year, 1, 1).toEpochDay();
+        long endDay = LocalDate.of(year, 12, 31).toEpochDay();
+
+        String screen = ledger.currentScreen();
+        AppExecutors.diskIO().execute(() -> {
+            List<WeightData> rows = cache.queryRange(userId, startDay, endDay);
+            ledger.recordRead(screen, "rollups.month", FirestoreCostLedger.Source.LOCAL_CACHE, rows.size());
+            List<WeightRollup> cached = rollUp(rows, WeightRollup.TYPE_MONTH);
+            AppExecutors.mainThread().execute(() -> {
+                if (state.cancelled || state.serverDelivered || cached.isEmpty()) return;
+                state.cacheDelivered = true;
+                callback.onRollupsLoaded(cached, true);
+            });
+        });
+
+        long started = MetricsRegistry.now();
+        rollupsRef.orderBy(FieldPath.documentId())
+                .startAt(String.format(Locale.US, "M-%04d-01", year))
+                .endAt(String.format(Locale.US, "M-%04d-12", year))
+                .get()
+                .addOnCompleteListener(task -> {
+                    ROLLUP_QUERY.recordSince(started);
+                    if (state.cancelled) return;
+                    if (!task.isSuccessful() || task.getResult() == null) {
+                        Log.w(TAG, "Rollup request failed for user " + userId, task.getException());
+                        if (!state.cacheDelivered) {
+                            callback.onError(task.getException() != null ? task.getException()
+                                    : new IllegalStateException("Empty result for rollup query"));
+                        }
+                        return;
+                    }
+                    recordQuery(screen, "rollups.month", task.getResult());
+                    List<WeightRollup> fresh = new ArrayList<>();
+                    for (QueryDocumentSnapshot doc : task.getResult()) {
+                        fresh.add(doc.toObject(WeightRollup.class));
+                    }
+                    AppExecutors.diskIO().execute(() -> {
+                        List<WeightCacheHelper.QueuedWrite> queued = cache.queuedSaves(userId, startDay, endDay);
+                        List<WeightRollup> merged = queued.isEmpty() ? fresh : withQueued(fresh, queued, WeightRollup.TYPE_MONTH);
+                        AppExecutors.mainThread().execute(() -> {
+                            if (state.cancelled) return;
+                            state.serverDelivered = true;
+                            callback.onRollupsLoaded(merged, false);
+                        });
+                    });
+                });
+
+        return () -> state.cancelled = true;
+    }
+
+    /**
+     * Loads the entry of one day, e.g. today's, with a single document read by ID. The cached row
+     * is delivered first. An entry still waiting in the outbox is newer than anything on the
+     * server, so for those only the local copy is delivered and no read is made.
+     *
+     * Entries saved before IDs were keyed by day aren't found this way.
+     *
+     * @return A handle to drop the request's callbacks once the caller no longer needs them.
+     */
+    @NonNull
+    public RequestHandle loadEntryForDay(long epochDay, @NonNull EntryCallback callback) {
+        final RequestState state = new RequestState();
+        String documentId = DateKeys.entryId(epochDay);
+        boolean queued = pendingWrites.isQueued(documentId);
+
+        String screen = ledger.currentScreen();
+        AppExecutors.diskIO().execute(() -> {
+            WeightData cached = cache.queryEntry(userId, documentId);
+            ledger.recordRead(screen, "entries.day", FirestoreCostLedger.Source.LOCAL_CACHE, cached != null ? 1 : 0);
+            AppExecutors.mainThread().execute(() -> {
+                if (state.cancelled || state.serverDelivered || (cached == null && !queued)) return;
+                state.cacheDelivered = true;
+                callback.onEntryLoaded(cached, true);
+            });
+        });
+        if (queued) return () -> state.cancelled = true;
+
+        long started = MetricsRegistry.now();
+        weightEntriesRef.document(documentId).get()
+                .addOnCompleteListener(task -> {
+                    DAY_QUERY.recordSince(started);
+                    if (!task.isSuccessful() || task.getResult() == null) {
+                        Log.w(TAG, "Entry request failed for user " + userId, task.getException());
+                        if (!state.cancelled && !state.cacheDelivered) {
+                            callback.onError(task.getException() != null ? task.getException()
+                                    : new IllegalStateException("Empty result for entry read"));
+                        }
+                        return;
+                    }
+                    DocumentSnapshot doc = task.getResult();
+                    ledger.recordRead(screen, "entries.day",
+                            FirestoreCostLedger.Source.firestore(doc.getMetadata().isFromCache()), doc.exists() ? 1 : 0);
+                    WeightData fresh = doc.exists() ? toWeightData(doc) : null;
+                    if (fresh != null) {
+                        AppExecutors.diskIO().execute(() -> cache.upsert(userId, Collections.singletonList(fresh)));
+                    }
+                    if (state.cancelled) return;
+                    state.serverDelivered = true;
+                    callback.onEntryLoaded(fresh, false);
+                });
+
+        return () -> state.cancelled = true;
+    }
+
+    /**
+     * Saves a new entry write-behind: it is cached and appended to the durable outbox in one local
+     * transaction, and the callback fires as soon as that is on disk. {@link OutboxFlusher} sends
+     * it to Firestore (folding it into its week/month/year rollups) in the background, retrying
+     * until it gets through, so saving never waits on the network.
+     *
+     * The document ID is the entry's day, so saving a day that already has an entry replaces it
+     * (locally right away, on the server when the outbox is flushed) instead of adding another.
+     *
+     * onFailure only means the entry could not be written to the device.
+     */
+    public void addEntry(@NonNull WeightData data, @NonNull WriteCallback callback) {
+        if (!data.hasEpochDay()) {
+            callback.onFailure(new IllegalArgumentException("Entry has no valid date: " + data.getDate()));
+            return;
+        }
+        data.setDocumentId(DateKeys.entryId(data.getEpochDay()));
+        AppExecutors.diskIO().execute(() -> {
+            try {
+                cache.enqueue(userId, data);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Couldn't queue entry for user " + userId, e);
+                AppExecutors.mainThread().execute(() -> callback.onFailure(e));
+                return;
+            }
+            // Only now, so the snapshot rewrite this schedules (on this same thread) sees the new row.
+            snapshot.markDirty(data.getEpochDay(), data.getEpochDay());
+            chartCache.invalidate(data.getEpochDay(), data.getEpochDay());
+            AppExecutors.mainThread().execute(() -> {
+                pendingWrites.queued(Collections.singletonList(data));
+                callback.onSuccess();
+                outbox.requestFlush(OutboxFlusher.COALESCE_DELAY_MS);
+            });
+        });
+    }
+
+    /**
+     * Saves many entries in batch writes of at most {@link WeightImporter#BATCH_SIZE} (used by the
+     * test data generator), then rebuilds the rollups for the years those entries fall in. Each
+     * entry is merged into its day's document, so of several entries for one day the last wins.
+     */
+    public void addEntries(@NonNull List<WeightData> entries, @NonNull WriteCallback callback) {
+        // A single WriteBatch is capped at 500 operations, so larger lists are split up.
+        List<Task<Void>> commits = new ArrayList<>();
+        WriteBatch batch = db.batch();
+        int batchSize = 0;
+        long minDay = Long.MAX_VALUE;
+        long maxDay = Long.MIN_VALUE;
+        for (WeightData data : entries) {
+            data.setDocumentId(DateKeys.entryId(data.getEpochDay()));
+            batch.set(weightEntriesRef.document(data.getDocumentId()), data, SetOptions.merge());
+            minDay = Math.min(minDay, data.getEpochDay());
+            maxDay = Math.max(maxDay, data.getEpochDay());
+            if (++batchSize == WeightImporter.BATCH_SIZE) {
+                commits.add(batch.commit());
+                batch = db.batch();
+                batchSize = 0;
+            }
+        }
+        if (batchSize > 0) commits.add(batch.commit());
+        final long firstDay = minDay;
+        final long lastDay = maxDay;
+        String screen = ledger.currentScreen();
+        Tasks.whenAll(commits)
+                .addOnSuccessListener(aVoid -> {
+                    ledger.recordWrite(screen, "entries.addBatch", entries.size());
+                    AppExecutors.diskIO().execute(() -> cache.upsert(userId, entries));
+                    snapshot.markDirty(firstDay, lastDay);
+                    chartCache.invalidate(firstDay, lastDay);
+                    if (entries.isEmpty()) {
+                        callback.onSuccess();
+                        return;
+                    }
+                    new RollupRebuilder(db, weightEntriesRef, rollupsRef).rebuildYears(firstDay, lastDay, callback);
+                })
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    /**
+     * Imports a CSV or JSON export from another tracker in the background; see {@link WeightImporter}.
+     * Importing the same source again after a failure or cancel resumes where it stopped.
+     *
+     * @param source     Opens the file; called on a background thread.
+     * @param totalBytes The file size for progress reporting, or -1 if unknown.
+     * @param sourceId   Identifies the file across runs, e.g. its URI and size.
+     */
+    @NonNull
+    public RequestHandle importEntries(@NonNull Callable<InputStream> source, long totalBytes,
+                                       @NonNull String sourceId, @NonNull WeightImporter.Listener listener) {
+        return new WeightImporter(appContext, userId, db, weightEntriesRef, rollupsRef, cache, chartCache, snapshot)
+                .start(source, totalBytes, sourceId, listener);
+    }
+
+    /**
+     * Exports every entry, oldest first, as CSV or JSON in the background; see {@link WeightExporter}.
+     *
+     * @param target Opens the channel to write to (e.g. a file or a document picked by the user);
+     *               called on a background thread and closed when the export ends.
+     */
+    @NonNull
+    public RequestHandle exportEntries(@NonNull Callable<WritableByteChannel> target,
+                                       @NonNull WeightExporter.Format format, @NonNull WeightExporter.Listener listener) {
+        return new WeightExporter(weightEntriesRef).start(target, format, listener);
+    }
+
+    /**
+     * Deletes entries, undoably: each gets a tombstone in the durable outbox in one local
+     * transaction, and the callback fires as soon as that is on disk. Screens hide the entries
+     * right away through {@link PendingWrites}. For {@link #UNDO_WINDOW_MS} the delete can be
+     * taken back with {@link #restoreEntries}; after that {@link OutboxFlusher} purges the entries
+     * from Firestore in batches, taking them out of their rollups, and drops their cached rows.
+     *
+     * Entries without an ID or a day are skipped. onFailure only means the tombstones could not
+     * be written to the device; the entries then show up again.
+     */
+    public void deleteEntries(@NonNull List<WeightData> entries, @NonNull WriteCallback callback) {
+        List<WeightData> deleted = new ArrayList<>(entries.size());
+        for (WeightData data : entries) {
+            if (data.getDocumentId() != null && data.hasEpochDay()) deleted.add(data);
+        }
+        List<String> ids = documentIds(deleted);
+        pendingWrites.deleteStarted(ids);
+        long holdMs = UNDO_WINDOW_MS + TOMBSTONE_GRACE_MS;
+        long notBefore = System.currentTimeMillis() + holdMs;
+        AppExecutors.diskIO().execute(() -> {
+            try {
+                cache.tombstone(userId, deleted, notBefore);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Couldn't delete " + deleted.size() + " entries for user " + userId, e);
+                AppExecutors.mainThread().execute(() -> {
+                    pendingWrites.deleteCancelled(ids);
+                    callback.onFailure(e);
+                });
+                return;
+            }
+            AppExecutors.mainThread().execute(() -> {
+                callback.onSuccess();
+                outbox.requestFlush(holdMs);
+            });
+        });
+    }
+
+    /**
+     * Undoes {@link #deleteEntries} for the given entries whose tombstones haven't been purged
+     * yet. They show up again, queued as saves of their last values, which the server skips if it
+     * still has them. Entries already purged stay deleted.
+     */
+    public void restoreEntries(@NonNull List<String> documentIds) {
+        AppExecutors.diskIO().execute(() -> {
+            List<WeightData> restored = cache.restore(userId, documentIds);
+            AppExecutors.mainThread().execute(() -> {
+                if (restored.isEmpty()) return;
+                pendingWrites.deleteCancelled(documentIds(restored));
+                pendingWrites.queued(restored);
+                outbox.requestFlush(OutboxFlusher.COALESCE_DELAY_MS);
+            });
+        });
+    }
+
+    // Lays queued saves over server rollups of one period type: each takes its day's server values
+    // (if the server has an entry for that day) out and its queued values in, the way the flusher
+    // will. Rollups left empty are dropped. The result is ordered by ID, i.e. chronologically.
+    private static List<WeightRollup> withQueued(List<WeightRollup> rollups, List<WeightCacheHelper.QueuedWrite> queued,
+                                                 String periodType) {
+        Map<String, WeightRollup> byId = new TreeMap<>();
+        for (WeightRollup rollup : rollups) byId.put(rollup.getId(), rollup);
+        for (WeightCacheHelper.QueuedWrite write : queued) {
+            String id = WeightRollup.idFor(periodType, write.entry.getEpochDay());
+            WeightRollup rollup = byId.get(id);
+            if (rollup == null) {
+                rollup = WeightRollup.forPeriod(periodType, write.entry.getEpochDay());
+                byId.put(id, rollup);
+            }
+            if (write.base != null) rollup.apply(write.base, -1);
+            rollup.apply(write.entry, +1);
+        }
+        List<WeightRollup> merged = new ArrayList<>(byId.size());
+        for (WeightRollup rollup : byId.values()) {
+            if (!rollup.isEmpty()) merged.add(rollup);
+        }
+        return merged;
+    }
+
+    // Computes rollups of one period type from raw entries, the same way the rebuilder does.
+    private static List<WeightRollup> rollUp(List<WeightData> entries, String periodType) {
+        Map<String, WeightRollup> byId = new TreeMap<>();
+        for (WeightData entry : entries) {
+            String id = WeightRollup.idFor(periodType, entry.getEpochDay());
+            WeightRollup rollup = byId.get(id);
+            if (rollup == null) {
+                rollup = WeightRollup.forPeriod(periodType, entry.getEpochDay());
+                byId.put(id, rollup);
+            }
+            rollup.apply(entry, +1);
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    // Hands the cached rows to the caller, unless the server already answered or there is nothing cached.
+    private void deliverCached(RequestState state, List<WeightData> cached, DataCallback callback) {
+        if (state.cancelled || state.serverDelivered || cached.isEmpty()) return;
+        state.cacheDelivered = true;
+        Log.d(TAG, "Served " + cached.size() + " entries from the local cache.");
+        callback.onDataLoaded(cached, true);
+    }
+
+    // Page version of deliverCached.
+    private void deliverCachedPage(RequestState state, List<WeightData> cached, int pageSize, PageCallback callback) {
+        if (state.cancelled || state.serverDelivered || cached.isEmpty()) return;
+        state.cacheDelivered = true;
+        callback.onPageLoaded(cached, cached.size() == pageSize, true);
+    }
+
+    // Page version of deliverError.
+    private void deliverPageError(RequestState state, Exception e, PageCallback callback) {
+        Log.w(TAG, "Firestore page request failed for user " + userId, e);
+        if (!state.cacheDelivered) {
+            callback.onError(e);
+        }
+    }
+
+    // Reports a server failure, but only if the screen has nothing from the cache to fall back on.
+    private void deliverError(RequestState state, Exception e, DataCallback callback) {
+        Log.w(TAG, "Firestore request failed for user " + userId, e);
+        if (!state.cacheDelivered) {
+            callback.onError(e);
+        }
+    }
+
+    // Files a one-shot query with the cost ledger; results served by the Firestore cache aren't billed.
+    private void recordQuery(String screen, String shape, QuerySnapshot result) {
+        ledger.recordRead(screen, shape, FirestoreCostLedger.Source.firestore(result.getMetadata().isFromCache()), result.size());
+    }
+
+    // Files a snapshot listener update. Until the server has answered once, a snapshot counts as a
+    // read of the whole result; after that only added or changed documents are read, and snapshots
+    // raised by our own pending writes are free. (An estimate: a listener re-attached within 30
+    // minutes may be billed less by Firestore.)
+    private void recordListenerSnapshot(String screen, String shape, @Nullable QuerySnapshot snapshots, boolean first) {
+        if (snapshots == null) return;
+        if (first) {
+            recordQuery(screen, shape, snapshots);
+            return;
+        }
+        int changed = snapshots.getDocumentChanges().size();
+        if (changed == 0) return;
+        boolean free = snapshots.getMetadata().isFromCache() || snapshots.getMetadata().hasPendingWrites();
+        ledger.recordRead(screen, shape, FirestoreCostLedger.Source.firestore(free), changed);
+    }
+
+    // Converts a query result into WeightData objects with their document IDs attached.
+    private List<WeightData> toWeightDataList(QuerySnapshot snapshots) {
+        List<WeightData> list = new ArrayList<>();
+        if (snapshots == null) return list;
+        long started = MetricsRegistry.now();
+        for (QueryDocumentSnapshot doc : snapshots) {
+            list.add(toWeightData(doc));
+        }
+        TO_OBJECT.recordSince(started);
+        DOCUMENTS_MAPPED.add(list.size());
+        return list;
+    }
+
+    // Converts one existing entry document into a WeightData object with its document ID attached.
+    private static WeightData toWeightData(DocumentSnapshot doc) {
+        WeightData data = doc.toObject(WeightData.class);
+        data.setDocumentId(doc.getId());
+        if (!data.hasEpochDay()) {
+            // Not migrated yet; derive the key from the date string so it still sorts and buckets correctly.
+            data.setEpochDay(DateKeys.parseEpochDay(data.getDate()));
+        }
+        return data;
+    }
+
+    // Tracks what has been delivered for one read so cache and server results don't race.
+    // Only touched on the main thread.
+    private static class RequestState {
+        boolean cacheDelivered;
+        boolean serverDelivered;
+        boolean serverSnapshotSeen; // Listeners only: a snapshot not served from the Firestore cache arrived.
+        boolean cancelled;
+    }
+
+    // Tells the cost ledger which activity is in front. Created and started both count, since
+    // screens start their loads from onCreate and onStart.
+    private static final class ScreenTracker implements Application.ActivityLifecycleCallbacks {
+        @Override
+        public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+            FirestoreCostLedger.getInstance().enterScreen(activity.getClass().getSimpleName());
+        }
+
+        @Override
+        public void onActivityStarted(@NonNull Activity activity) {
+            FirestoreCostLedger.getInstance().enterScreen(activity.getClass().getSimpleName());
+        }
+
+        @Override
+        public void onActivityResumed(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(@NonNull Activity activity) {
+        }
+    }
+}
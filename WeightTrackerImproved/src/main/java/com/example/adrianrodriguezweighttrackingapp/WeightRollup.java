@@ -0,0 +1,268 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.firestore.Exclude;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+/**
+ * WeightRollup is a Firestore POJO that summarizes every weight entry inside one calendar
+ * period (an ISO week, a month or a year) for a single user. For each metric it keeps the
+ * sum, count, minimum and maximum, so the chart can draw a YEAR view from 12 monthly rollups
+ * instead of reading a whole year of raw entries.
+ *
+ * Rollups are stored in "users/{uid}/rollups" under IDs that sort chronologically within
+ * a period type: "W-2024-01-01" (the week's Monday), "M-2024-01" and "Y-2024".
+ */
+public class WeightRollup {
+
+    // Period types a rollup can cover.
+    public static final String TYPE_WEEK = "WEEK";
+    public static final String TYPE_MONTH = "MONTH";
+    public static final String TYPE_YEAR = "YEAR";
+
+    // Every period type, in the order rollups are read and written for a single day.
+    public static final String[] ALL_TYPES = {TYPE_WEEK, TYPE_MONTH, TYPE_YEAR};
+
+    private String periodType;  // One of the TYPE_ constants.
+    private long startEpochDay; // First day covered by this rollup.
+    private long endEpochDay;   // Last day covered by this rollup.
+
+    // Per-metric statistics. Optional metrics only count entries where they were recorded.
+    private MetricStats weight = new MetricStats();
+    private MetricStats sleep = new MetricStats();
+    private MetricStats steps = new MetricStats();
+    private MetricStats calories = new MetricStats();
+
+    /**
+     * Required public no-argument constructor for Firebase Firestore.
+     */
+    public WeightRollup() {
+        // Default constructor is intentionally empty.
+    }
+
+    /**
+     * Creates an empty rollup for the period of the given type that contains the given day.
+     */
+    @NonNull
+    public static WeightRollup forPeriod(@NonNull String periodType, long epochDay) {
+        LocalDate day = LocalDate.ofEpochDay(epochDay);
+        LocalDate start;
+        LocalDate end;
+        switch (periodType) {
+            case TYPE_WEEK:
+                start = day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                end = start.plusDays(6);
+                break;
+            case TYPE_MONTH:
+                start = day.with(TemporalAdjusters.firstDayOfMonth());
+                end = day.with(TemporalAdjusters.lastDayOfMonth());
+                break;
+            case TYPE_YEAR:
+                start = day.with(TemporalAdjusters.firstDayOfYear());
+                end = day.with(TemporalAdjusters.lastDayOfYear());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown rollup period type: " + periodType);
+        }
+        WeightRollup rollup = new WeightRollup();
+        rollup.periodType = periodType;
+        rollup.startEpochDay = start.toEpochDay();
+        rollup.endEpochDay = end.toEpochDay();
+        return rollup;
+    }
+
+    /**
+     * Returns the document ID of the rollup of the given type that contains the given day.
+     */
+    @NonNull
+    public static String idFor(@NonNull String periodType, long epochDay) {
+        return forPeriod(periodType, epochDay).getId();
+    }
+
+    /**
+     * Document ID of this rollup, derived from its type and start day.
+     */
+    @Exclude
+    @NonNull
+    public String getId() {
+        LocalDate start = LocalDate.ofEpochDay(startEpochDay);
+        switch (periodType) {
+            case TYPE_WEEK:
+                return "W-" + start.format(DateKeys.STORAGE_FORMAT);
+            case TYPE_MONTH:
+                return String.format(Locale.US, "M-%04d-%02d", start.getYear(), start.getMonthValue());
+            default:
+                return String.format(Locale.US, "Y-%04d", start.getYear());
+        }
+    }
+
+    /**
+     * Adds (sign = +1) or removes (sign = -1) one entry's values from this rollup.
+     */
+    public void apply(@NonNull WeightData entry, int sign) {
+        weight.apply(entry.getWeight(), sign);
+        if (entry.getHoursOfSleep() != null) sleep.apply(entry.getHoursOfSleep(), sign);
+        if (entry.getDailySteps() != null) steps.apply(entry.getDailySteps(), sign);
+        if (entry.getCalorieIntake() != null) calories.apply(entry.getCalorieIntake(), sign);
+    }
+
+    /**
+     * Returns true if no entries are left in this rollup.
+     */
+    @Exclude
+    public boolean isEmpty() {
+        return weight.count <= 0;
+    }
+
+    // --- Getters and setters used by Firestore ---
+
+    public String getPeriodType() {
+        return periodType;
+    }
+
+    public void setPeriodType(String periodType) {
+        this.periodType = periodType;
+    }
+
+    public long getStartEpochDay() {
+        return startEpochDay;
+    }
+
+    public void setStartEpochDay(long startEpochDay) {
+        this.startEpochDay = startEpochDay;
+    }
+
+    public long getEndEpochDay() {
+        return endEpochDay;
+    }
+
+    public void setEndEpochDay(long endEpochDay) {
+        this.endEpochDay = endEpochDay;
+    }
+
+    public MetricStats getWeight() {
+        return weight;
+    }
+
+    public void setWeight(MetricStats weight) {
+        this.weight = weight;
+    }
+
+    public MetricStats getSleep() {
+        return sleep;
+    }
+
+    public void setSleep(MetricStats sleep) {
+        this.sleep = sleep;
+    }
+
+    public MetricStats getSteps() {
+        return steps;
+    }
+
+    public void setSteps(MetricStats steps) {
+        this.steps = steps;
+    }
+
+    public MetricStats getCalories() {
+        return calories;
+    }
+
+    public void setCalories(MetricStats calories) {
+        this.calories = calories;
+    }
+
+    /**
+     * Sum, count, minimum and maximum of a single metric within a rollup period.
+     *
+     * Adding a value keeps min/max exact. Removing a value that was the current min or max
+     * can't be undone without rescanning the period, so the extremes are flagged as stale
+     * until the next rebuild recomputes them; sum, count and mean always stay exact.
+     */
+    public static class MetricStats {
+        private double sum;
+        private long count;
+        private Double min;
+        private Double max;
+        private boolean extremaStale;
+
+        public MetricStats() {
+            // Required by Firestore.
+        }
+
+        void apply(double value, int sign) {
+            if (sign > 0) {
+                sum += value;
+                count++;
+                min = (min == null) ? value : Math.min(min, value);
+                max = (max == null) ? value : Math.max(max, value);
+            } else {
+                sum -= value;
+                count--;
+                if (count <= 0) {
+                    // Period is empty again; start over cleanly.
+                    sum = 0;
+                    count = 0;
+                    min = null;
+                    max = null;
+                    extremaStale = false;
+                } else if ((min != null && value <= min) || (max != null && value >= max)) {
+                    extremaStale = true;
+                }
+            }
+        }
+
+        /**
+         * Mean of the recorded values, or NaN if none were recorded.
+         */
+        @Exclude
+        public double getMean() {
+            return count > 0 ? sum / count : Double.NaN;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        public void setSum(double sum) {
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public Double getMin() {
+            return min;
+        }
+
+        public void setMin(Double min) {
+            this.min = min;
+        }
+
+        public Double getMax() {
+            return max;
+        }
+
+        public void setMax(Double max) {
+            this.max = max;
+        }
+
+        public boolean isExtremaStale() {
+            return extremaStale;
+        }
+
+        public void setExtremaStale(boolean extremaStale) {
+            this.extremaStale = extremaStale;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
+
+/**
+ * WeightRowModel is the immutable, ready-to-display form of one history row.
+ * All of its text is formatted (and, when possible, measured as PrecomputedText) on a
+ * background thread when the data arrives, so binding a row on the UI thread only assigns
+ * cached values instead of formatting numbers and concatenating strings on every scroll.
+ *
+ * An optional line is null when the entry didn't record that value; its view is hidden.
+ * A pending row is one the server doesn't have yet (see {@link PendingWrites}); it is shown
+ * dimmed with a "waiting to sync" note until its write goes through.
+ */
+public final class WeightRowModel {
+
+    public final String documentId;
+    public final WeightData source; // The entry this row was built from, used for diffing.
+    public final boolean pending;
+
+    public final CharSequence dateText;
+    public final CharSequence weightText;
+    @Nullable public final CharSequence notesText;
+    @Nullable public final CharSequence sleepText;
+    @Nullable public final CharSequence stepsText;
+    @Nullable public final CharSequence caloriesText;
+    @Nullable public final CharSequence moodText;
+
+    // The text layout parameters used to precompute this row's text (null if it is plain text).
+    @Nullable final TextStyles styles;
+
+    private WeightRowModel(WeightData source, boolean pending, @Nullable TextStyles styles) {
+        this.documentId = source.getDocumentId();
+        this.source = source;
+        this.pending = pending;
+        this.styles = styles;
+
+        PrecomputedTextCompat.Params header = styles != null ? styles.header : null;
+        PrecomputedTextCompat.Params body = styles != null ? styles.body : null;
+
+        dateText = precompute(WeightRowText.date(source), header);
+        weightText = precompute(WeightRowText.weight(source), header);
+        notesText = precompute(WeightRowText.notes(source), body);
+        sleepText = precompute(WeightRowText.sleep(source), body);
+        stepsText = precompute(WeightRowText.steps(source), body);
+        caloriesText = precompute(WeightRowText.calories(source), body);
+        moodText = precompute(WeightRowText.mood(source), body);
+    }
+
+    /**
+     * Builds the row for an entry. Call this off the main thread.
+     *
+     * @param pending True if the server doesn't have the entry yet.
+     * @param styles  Text layout parameters of the row's TextViews, or null to format plain text only.
+     */
+    @NonNull
+    public static WeightRowModel create(@NonNull WeightData source, boolean pending, @Nullable TextStyles styles) {
+        return new WeightRowModel(source, pending, styles);
+    }
+
+    /**
+     * Returns true if this row can be shown as-is for the given entry, i.e. the entry's values and
+     * pending state haven't changed and the row was laid out with the current text styles.
+     */
+    public boolean isUpToDate(@NonNull WeightData data, boolean isPending, @Nullable TextStyles currentStyles) {
+        return styles == currentStyles && pending == isPending && source.hasSameContent(data);
+    }
+
+    // Null text (a line the entry doesn't have) stays null.
+    private static CharSequence precompute(@Nullable String text, @Nullable PrecomputedTextCompat.Params params) {
+        if (text == null) return null;
+        return params != null ? PrecomputedTextCompat.create(text, params) : text;
+    }
+
+    /**
+     * The text layout parameters of a row's two text styles: the bold header line
+     * (date and weight) and the smaller body lines. Read from real TextViews on the main thread.
+     */
+    public static final class TextStyles {
+        final PrecomputedTextCompat.Params header;
+        final PrecomputedTextCompat.Params body;
+
+        public TextStyles(@NonNull PrecomputedTextCompat.Params header, @NonNull PrecomputedTextCompat.Params body) {
+            this.header = header;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * WeightRowText formats the lines of one history row. {@link WeightRowModel} precomputes them
+ * for display; they live here, free of Android types, so the formatting can also be benchmarked
+ * on a plain JVM.
+ *
+ * The optional lines return null when the entry didn't record that value.
+ */
+final class WeightRowText {
+
+    // The mood spinner's hint, not a real answer.
+    private static final String MOOD_HINT = "Select Mood";
+
+    private WeightRowText() {
+        // Static helpers only.
+    }
+
+    @NonNull
+    static String date(@NonNull WeightData data) {
+        return "Date: " + data.getDate();
+    }
+
+    @NonNull
+    static String weight(@NonNull WeightData data) {
+        return "Weight: " + String.format(Locale.US, "%.1f", data.getWeight()) + " lbs";
+    }
+
+    @Nullable
+    static String notes(@NonNull WeightData data) {
+        String notes = data.getNotes();
+        return (notes != null && !notes.isEmpty()) ? "Notes: " + notes : null;
+    }
+
+    @Nullable
+    static String sleep(@NonNull WeightData data) {
+        Double sleep = data.getHoursOfSleep();
+        return sleep != null ? "Sleep: " + String.format(Locale.US, "%.1f", sleep) + " hrs" : null;
+    }
+
+    @Nullable
+    static String steps(@NonNull WeightData data) {
+        Integer steps = data.getDailySteps();
+        return steps != null ? "Steps: " + steps : null;
+    }
+
+    @Nullable
+    static String calories(@NonNull WeightData data) {
+        Integer calories = data.getCalorieIntake();
+        return calories != null ? "Calories: " + calories + " kcal" : null;
+    }
+
+    @Nullable
+    static String mood(@NonNull WeightData data) {
+        String mood = data.getMood();
+        return (mood != null && !mood.isEmpty() && !mood.equals(MOOD_HINT)) ? "Mood: " + mood : null;
+    }
+}
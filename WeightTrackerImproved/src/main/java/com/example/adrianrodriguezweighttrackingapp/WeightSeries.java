@@ -0,0 +1,230 @@
+package com.example.adrianrodriguezweighttrackingapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WeightSeries is a read-only, column-oriented copy of a range of weight entries, built once
+ * from a query result and used by the chart and statistics code instead of List<WeightData>.
+ *
+ * Each metric lives in its own primitive array, indexed by entry and sorted by epoch day,
+ * so a scan is a tight loop over ints and floats with no boxing, no string dates and no
+ * pointer chasing. Optional metrics carry a bitmap of which entries recorded them, and
+ * moods are stored as one byte per entry pointing into a small dictionary.
+ *
+ * Roughly 21 bytes per entry: ten years of daily entries take about 75 KB.
+ */
+public final class WeightSeries {
+
+    // Mood code meaning "no mood recorded".
+    public static final byte NO_MOOD = 0;
+
+    // Codes are unsigned bytes, and 0 is reserved for NO_MOOD.
+    private static final int MAX_MOODS = 255;
+
+    public static final WeightSeries EMPTY = new WeightSeries(0, new int[0], new float[0], new float[0],
+            new int[0], new int[0], new long[0], new long[0], new long[0], new byte[0], new String[]{null});
+
+    private final int size;
+    private final int[] days;       // Epoch day of each entry, ascending.
+    private final float[] weight;
+    private final float[] sleep;    // Only meaningful where the sleep bit is set.
+    private final int[] steps;      // Only meaningful where the steps bit is set.
+    private final int[] calories;   // Only meaningful where the calories bit is set.
+    private final long[] sleepPresent;
+    private final long[] stepsPresent;
+    private final long[] caloriesPresent;
+    private final byte[] moods;     // Index into moodDictionary, NO_MOOD if none.
+    private final String[] moodDictionary; // moodDictionary[0] is null (NO_MOOD).
+
+    WeightSeries(int size, int[] days, float[] weight, float[] sleep, int[] steps, int[] calories,
+                 long[] sleepPresent, long[] stepsPresent, long[] caloriesPresent,
+                 byte[] moods, String[] moodDictionary) {
+        this.size = size;
+        this.days = days;
+        this.weight = weight;
+        this.sleep = sleep;
+        this.steps = steps;
+        this.calories = calories;
+        this.sleepPresent = sleepPresent;
+        this.stepsPresent = stepsPresent;
+        this.caloriesPresent = caloriesPresent;
+        this.moods = moods;
+        this.moodDictionary = moodDictionary;
+    }
+
+    /**
+     * Builds a series from query results, sorted by epoch day. Entries without an epoch day are
+     * skipped; entries on the same day keep their relative order.
+     */
+    @NonNull
+    public static WeightSeries from(@NonNull List<WeightData> entries) {
+        List<WeightData> sorted = new ArrayList<>(entries.size());
+        for (WeightData entry : entries) {
+            if (entry != null && entry.hasEpochDay()) sorted.add(entry);
+        }
+        if (sorted.isEmpty()) return EMPTY;
+        sorted.sort(Comparator.comparingLong(WeightData::getEpochDay));
+
+        int n = sorted.size();
+        int[] days = new int[n];
+        float[] weight = new float[n];
+        float[] sleep = new float[n];
+        int[] steps = new int[n];
+        int[] calories = new int[n];
+        long[] sleepPresent = new long[bitmapWords(n)];
+        long[] stepsPresent = new long[bitmapWords(n)];
+        long[] caloriesPresent = new long[bitmapWords(n)];
+        byte[] moods = new byte[n];
+
+        List<String> dictionary = new ArrayList<>();
+        dictionary.add(null); // Code 0 is NO_MOOD.
+        Map<String, Integer> codes = new HashMap<>();
+
+        for (int i = 0; i < n; i++) {
+            WeightData entry = sorted.get(i);
+            days[i] = (int) entry.getEpochDay();
+            weight[i] = (float) entry.getWeight();
+            if (entry.getHoursOfSleep() != null) {
+                sleep[i] = entry.getHoursOfSleep().floatValue();
+                setBit(sleepPresent, i);
+            }
+            if (entry.getDailySteps() != null) {
+                steps[i] = entry.getDailySteps();
+                setBit(stepsPresent, i);
+            }
+            if (entry.getCalorieIntake() != null) {
+                calories[i] = entry.getCalorieIntake();
+                setBit(caloriesPresent, i);
+            }
+            String mood = entry.getMood();
+            if (mood != null && !mood.isEmpty()) {
+                Integer code = codes.get(mood);
+                if (code == null && dictionary.size() <= MAX_MOODS) {
+                    code = dictionary.size();
+                    dictionary.add(mood);
+                    codes.put(mood, code);
+                }
+                // Moods come from a fixed spinner list, so the dictionary never realistically fills up;
+                // if it ever does, further new moods are stored as "no mood".
+                moods[i] = code != null ? (byte) (int) code : NO_MOOD;
+            }
+        }
+
+        return new WeightSeries(n, days, weight, sleep, steps, calories,
+                sleepPresent, stepsPresent, caloriesPresent, moods, dictionary.toArray(new String[0]));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int day(int index) {
+        return days[index];
+    }
+
+    public float weight(int index) {
+        return weight[index];
+    }
+
+    public boolean hasSleep(int index) {
+        return isSet(sleepPresent, index);
+    }
+
+    public float sleep(int index) {
+        return sleep[index];
+    }
+
+    public boolean hasSteps(int index) {
+        return isSet(stepsPresent, index);
+    }
+
+    public int steps(int index) {
+        return steps[index];
+    }
+
+    public boolean hasCalories(int index) {
+        return isSet(caloriesPresent, index);
+    }
+
+    public int calories(int index) {
+        return calories[index];
+    }
+
+    /**
+     * Returns the dictionary code of the entry's mood, NO_MOOD if none was recorded.
+     */
+    public int moodCode(int index) {
+        return moods[index] & 0xFF;
+    }
+
+    /**
+     * Returns the entry's mood, or null if none was recorded.
+     */
+    @Nullable
+    public String mood(int index) {
+        return moodDictionary[moodCode(index)];
+    }
+
+    /**
+     * Number of mood codes in use, including NO_MOOD; codes run from 0 to moodCount() - 1.
+     */
+    public int moodCount() {
+        return moodDictionary.length;
+    }
+
+    @Nullable
+    public String moodForCode(int code) {
+        return moodDictionary[code];
+    }
+
+    /**
+     * Returns the index of the first entry on or after the given epoch day (size() if there is none).
+     */
+    public int lowerBound(long epochDay) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Approximate memory held by the columns, in bytes.
+     */
+    public long estimatedSizeBytes() {
+        return 4L * days.length + 4L * weight.length + 4L * sleep.length + 4L * steps.length
+                + 4L * calories.length + moods.length
+                + 8L * (sleepPresent.length + stepsPresent.length + caloriesPresent.length);
+    }
+
+    // --- Bitmap helpers ---
+
+    static int bitmapWords(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    static void setBit(long[] bitmap, int index) {
+        bitmap[index >>> 6] |= 1L << index;
+    }
+
+    static boolean isSet(long[] bitmap, int index) {
+        return (bitmap[index >>> 6] & (1L << index)) != 0;
+    }
+}